@@ -11,8 +11,53 @@ import visitor.Visitor;
 
 
 public abstract class AST {
+
+	// The kinds of nodes, see kind(). FlatAST and BinaryAST number their
+	// nodes with these too.
+	public static final int OTHER = 0;
+	public static final int ASSIGN = 1;
+	public static final int FUNCTION_DECLARATION = 2;
+	public static final int PLUS = 3;
+	public static final int MINUS = 4;
+	public static final int TIMES = 5;
+	public static final int LESS_THAN = 6;
+	public static final int NOT = 7;
+	public static final int CONDITIONAL = 8;
+	public static final int INTEGER_LITERAL = 9;
+	public static final int IDENTIFIER = 10;
+	public static final int INTEGER_TYPE = 11;
+	public static final int BOOLEAN_TYPE = 12;
+	public static final int UNKNOWN_TYPE = 13;
+	public static final int FUNCTION_TYPE = 14;
+	public static final int PRINT = 15;
+	public static final int PROGRAM = 16;
+	public static final int NODE_LIST = 17;
 	
+	/**
+	 * The kind, in a field rather than returned by a method of each class,
+	 * so that reading it is not itself a call that goes to many classes. A
+	 * byte fits in the padding of most nodes.
+	 */
+	private final byte kind;
+
+	protected AST() {
+		this(OTHER);
+	}
+
+	protected AST(int kind) {
+		this.kind = (byte) kind;
+	}
+
 	public abstract <R> R accept(Visitor<R> v);
+
+	/**
+	 * @return Which class of node this is, as a small int to switch on (see
+	 * {@link visitor.SwitchVisitor}), or OTHER for a node that is only
+	 * visited through accept, like a FlatAST.
+	 */
+	public final int kind() {
+		return kind;
+	}
 	
 	@Override
 	public String toString() {
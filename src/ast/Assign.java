@@ -5,11 +5,14 @@ import visitor.Visitor;
 public class Assign extends Statement {
 	
 	public final String name;
+	/** The id of name in the program's {@link Symbols} */
+	public final int id;
 	public final Expression value;
 	
-	public Assign(String name, Expression value) {
-		super();
+	public Assign(String name, int id, Expression value) {
+		super(ASSIGN);
 		this.name = name;
+		this.id = id;
 		this.value = value;
 	}
 
@@ -0,0 +1,282 @@
+package ast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * What the phases of a compilation find out about its expressions: their
+ * types, the values of the ones that are constants, and where in the source
+ * they are. They are kept here, in arrays indexed by
+ * {@link Expression#nodeId}, rather than in the nodes themselves, so a tree
+ * can be shared between programs (see {@link HashConsingNodeFactory}),
+ * reused, and checked by several compilations at once, each with its own
+ * Attributes.
+ * <p>
+ * Basic types are stored by their id in the {@link TypeTable}, and given
+ * back as the canonical instance for it, so they can be compared by
+ * identity. Function types are numbered by each Attributes, from
+ * {@link TypeTable#FUNCTION} up, the first time one is set.
+ * <p>
+ * The arrays are split in pages of 4096 nodes, which are only made for the
+ * ranges of node ids that are used, and found in a hash table by the
+ * range: the ids of a program need not be close to each other (e.g. when
+ * it was parsed by several threads, or reuses statements of an older
+ * version), it only takes the pages its ids fall in.
+ * <p>
+ * Several threads can set the attributes of different expressions at once
+ * (e.g. to check functions in parallel): making pages and arrays is
+ * synchronized, the rest writes to different elements. What one thread
+ * sets is seen by another after the usual synchronization, e.g. joining
+ * it.
+ */
+public class Attributes {
+
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	// Flags for whether a node has a constant value and a span
+	private static final byte CONSTANT = 1;
+	private static final byte SPAN = 2;
+
+	private static class Page {
+		final short[] type = new short[PAGE_SIZE];
+		final byte[] flags = new byte[PAGE_SIZE];
+		int[] constant;
+		int[] start;
+		int[] end;
+	}
+
+	/**
+	 * The pages, in a hash table by their number (node id / PAGE_SIZE),
+	 * with linear probing. A page is put in the table after its number, so
+	 * a thread that reads it without synchronization sees the number that
+	 * goes with it. The table is only made again when it gets half full.
+	 */
+	private static class Pages {
+		final long[] number;
+		final AtomicReferenceArray<Page> page;
+		int size;
+
+		Pages(int length) {
+			number = new long[length];
+			page = new AtomicReferenceArray<Page>(length);
+		}
+	}
+
+	/**
+	 * The last page found, most expressions that are looked at one after
+	 * the other are in the same one.
+	 */
+	private static class Last {
+		final long number;
+		final Page page;
+
+		Last(long number, Page page) {
+			this.number = number;
+			this.page = page;
+		}
+	}
+
+	private volatile Pages pages = new Pages(8);
+	private Last last = new Last(-1, null);
+
+	/** The function types set so far, and their numbers. */
+	private volatile FunctionType[] functions = new FunctionType[0];
+	private final Map<FunctionType, Integer> functionIds = new HashMap<FunctionType, Integer>();
+
+	/**
+	 * @return The type of the expression, or null if it has none yet.
+	 */
+	public Type type(Expression e) {
+		Page page = find(e.nodeId);
+		return page == null ? null : type(page.type[(int) e.nodeId & PAGE_MASK] & 0xFFFF);
+	}
+
+	private Type type(int id) {
+		return id < TypeTable.FUNCTION ? TypeTable.type(id) : functions[id - TypeTable.FUNCTION];
+	}
+
+	/**
+	 * @return The number of a function type in this Attributes, given the
+	 * first time it is asked for.
+	 */
+	private synchronized int functionId(FunctionType type) {
+		Integer id = functionIds.get(type);
+		if (id == null) {
+			FunctionType[] functions = this.functions;
+			id = TypeTable.FUNCTION + functions.length;
+			if (id > 0xFFFF)
+				throw new IllegalArgumentException("Can't store type " + type);
+			functions = Arrays.copyOf(functions, functions.length + 1);
+			functions[functions.length - 1] = type;
+			this.functions = functions;
+			functionIds.put(type, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Set the type of an expression. The types that get set only depend on
+	 * the kind of the expression (e.g. a Plus is always an int), so an
+	 * expression that is shared by several parents gets the same type set
+	 * once for each of them; setting a different one is an error.
+	 */
+	public void setType(Expression e, Type type) {
+		int id = type instanceof FunctionType ? functionId((FunctionType) type) : type.id();
+		Page page = page(e.nodeId);
+		int i = (int) e.nodeId & PAGE_MASK;
+		if (page.type[i] != TypeTable.NONE && page.type[i] != (short) id)
+			throw new IllegalStateException("Expression " + e + " already has type " + type(page.type[i] & 0xFFFF));
+		page.type[i] = (short) id;
+	}
+
+	/**
+	 * @return Whether the expression was found to have a constant value.
+	 */
+	public boolean isConstant(Expression e) {
+		Page page = find(e.nodeId);
+		return page != null && (page.flags[(int) e.nodeId & PAGE_MASK] & CONSTANT) != 0;
+	}
+
+	/**
+	 * @return The value of a constant expression, with true and false as 1
+	 * and 0.
+	 */
+	public int constant(Expression e) {
+		if (!isConstant(e))
+			throw new IllegalStateException("Not a constant: " + e);
+		return find(e.nodeId).constant[(int) e.nodeId & PAGE_MASK];
+	}
+
+	public void setConstant(Expression e, int value) {
+		Page page = page(e.nodeId);
+		if (page.constant == null)
+			allocateConstants(page);
+		int i = (int) e.nodeId & PAGE_MASK;
+		page.constant[i] = value;
+		page.flags[i] |= CONSTANT;
+	}
+
+	/**
+	 * @return Whether the source span of the expression is known.
+	 */
+	public boolean hasSpan(Expression e) {
+		Page page = find(e.nodeId);
+		return page != null && (page.flags[(int) e.nodeId & PAGE_MASK] & SPAN) != 0;
+	}
+
+	/**
+	 * @return The offset of the first character of the expression, or -1 if
+	 * its span is not known.
+	 */
+	public int start(Expression e) {
+		return hasSpan(e) ? find(e.nodeId).start[(int) e.nodeId & PAGE_MASK] : -1;
+	}
+
+	/**
+	 * @return The offset right after the last character of the expression,
+	 * or -1 if its span is not known.
+	 */
+	public int end(Expression e) {
+		return hasSpan(e) ? find(e.nodeId).end[(int) e.nodeId & PAGE_MASK] : -1;
+	}
+
+	/**
+	 * Set the span of an expression, unless it already has one: an
+	 * expression that is shared keeps the span of its first occurrence.
+	 */
+	public void setSpan(Expression e, int start, int end) {
+		Page page = page(e.nodeId);
+		int i = (int) e.nodeId & PAGE_MASK;
+		if ((page.flags[i] & SPAN) != 0)
+			return;
+		if (page.start == null || page.end == null)
+			allocateSpans(page);
+		page.start[i] = start;
+		page.end[i] = end;
+		page.flags[i] |= SPAN;
+	}
+
+	/**
+	 * @return The page for a node, or null if none was made.
+	 */
+	private Page find(long node) {
+		long number = node >>> PAGE_BITS;
+		Last last = this.last;
+		if (last.number == number)
+			return last.page;
+		Pages pages = this.pages;
+		int mask = pages.page.length() - 1;
+		for (int i = slot(number) & mask; ; i = (i + 1) & mask) {
+			Page page = pages.page.get(i);
+			if (page == null)
+				return null;
+			if (pages.number[i] == number) {
+				this.last = new Last(number, page);
+				return page;
+			}
+		}
+	}
+
+	/**
+	 * @return The page for a node, made if needed.
+	 */
+	private Page page(long node) {
+		Page page = find(node);
+		return page != null ? page : newPage(node >>> PAGE_BITS);
+	}
+
+	private static int slot(long number) {
+		return (int) ((number * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+	/**
+	 * Make the page with the given number, unless another thread just did,
+	 * making the table of pages twice as big if it gets half full.
+	 */
+	private synchronized Page newPage(long number) {
+		Pages pages = this.pages;
+		int mask = pages.page.length() - 1;
+		for (int i = slot(number) & mask; pages.page.get(i) != null; i = (i + 1) & mask) {
+			if (pages.number[i] == number)
+				return pages.page.get(i);
+		}
+		if (pages.size + 1 > pages.page.length() / 2) {
+			Pages bigger = new Pages(pages.page.length() * 2);
+			for (int j = 0; j < pages.page.length(); j++) {
+				if (pages.page.get(j) != null)
+					insert(bigger, pages.number[j], pages.page.get(j));
+			}
+			pages = this.pages = bigger;
+		}
+		Page page = new Page();
+		insert(pages, number, page);
+		return page;
+	}
+
+	private static void insert(Pages pages, long number, Page page) {
+		int mask = pages.page.length() - 1;
+		int i = slot(number) & mask;
+		while (pages.page.get(i) != null)
+			i = (i + 1) & mask;
+		pages.number[i] = number;
+		pages.page.set(i, page);
+		pages.size++;
+	}
+
+	private synchronized void allocateConstants(Page page) {
+		if (page.constant == null)
+			page.constant = new int[PAGE_SIZE];
+	}
+
+	private synchronized void allocateSpans(Page page) {
+		if (page.start == null || page.end == null) {
+			page.start = new int[PAGE_SIZE];
+			page.end = new int[PAGE_SIZE];
+		}
+	}
+
+}
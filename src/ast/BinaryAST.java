@@ -0,0 +1,113 @@
+package ast;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compact binary encoding of Programs, so that a program can be loaded
+ * again without lexing and parsing it.
+ * <p>
+ * The encoding is:
+ * <pre>
+ * Program    ::= MAGIC version:varint Symbols count:varint Statement* Exp
+ * Symbols    ::= count:varint (length:varint utf8Byte*)*
+ * Statement  ::= ASSIGN id:varint Exp
+ *              | FUNCTION Type id:varint count:varint (Type id:varint)*
+ *                         count:varint Statement* Exp
+ * Exp        ::= (PLUS | MINUS | TIMES | LESS_THAN) Exp Exp
+ *              | NOT Exp
+ *              | CONDITIONAL Exp Exp Exp
+ *              | INTEGER value:zigzag-varint
+ *              | IDENTIFIER id:varint
+ * Type       ::= INT_TYPE | BOOLEAN_TYPE | UNKNOWN_TYPE
+ * </pre>
+ * The nodes are written in preorder, each starting with a one byte tag.
+ * Identifiers are ids in the string table that comes first, which is the
+ * program's {@link Symbols}, so they get the same ids when they are read
+ * back. Types set on expressions by the type checker are not written.
+ * <p>
+ * Neither writing nor reading recurses into expressions, so expressions
+ * of any depth can be written and read back.
+ */
+public class BinaryAST {
+
+	/** The first bytes of every encoded Program. */
+	static final byte[] MAGIC = { 'E', 'X', 'P', 'A' };
+
+	/**
+	 * Bump this whenever the encoding changes. Readers reject any other
+	 * version.
+	 */
+	public static final int VERSION = 1;
+
+	// Node tags, the kinds of AST#kind(): renumbering those changes the
+	// encoding, and VERSION with it
+	static final int ASSIGN = AST.ASSIGN;
+	static final int FUNCTION = AST.FUNCTION_DECLARATION;
+	static final int PLUS = AST.PLUS;
+	static final int MINUS = AST.MINUS;
+	static final int TIMES = AST.TIMES;
+	static final int LESS_THAN = AST.LESS_THAN;
+	static final int NOT = AST.NOT;
+	static final int CONDITIONAL = AST.CONDITIONAL;
+	static final int INTEGER = AST.INTEGER_LITERAL;
+	static final int IDENTIFIER = AST.IDENTIFIER;
+	static final int INT_TYPE = AST.INTEGER_TYPE;
+	static final int BOOLEAN_TYPE = AST.BOOLEAN_TYPE;
+	static final int UNKNOWN_TYPE = AST.UNKNOWN_TYPE;
+
+	/**
+	 * @return The encoding of a Program.
+	 */
+	public static byte[] write(Program program) {
+		return new BinaryASTWriter().write(program);
+	}
+
+	public static void write(Program program, OutputStream out) throws IOException {
+		out.write(write(program));
+	}
+
+	public static void write(Program program, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(program, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Decode a Program from the remaining bytes of a buffer.
+	 * @throws IOException If the bytes are not an encoded Program of this
+	 * {@link #VERSION}.
+	 */
+	public static Program read(ByteBuffer bytes) throws IOException {
+		return new BinaryASTReader(bytes).read();
+	}
+
+	public static Program read(byte[] bytes) throws IOException {
+		return read(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Map a file written by {@link #write(Program, File)} into memory, and
+	 * decode the Program straight from the mapped bytes.
+	 */
+	public static Program read(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+}
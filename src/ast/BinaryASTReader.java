@@ -0,0 +1,277 @@
+package ast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a Program in the format described in {@link BinaryAST}.
+ * <p>
+ * Reading single bytes from a direct (e.g. memory-mapped) buffer is
+ * relatively slow, so bytes are read through a window that is refilled
+ * with bulk gets, like {@link parser.AsciiCharSequence} does.
+ */
+class BinaryASTReader {
+
+	private static final int WINDOW_SIZE = 8192;
+
+	private final ByteBuffer bytes;
+	private byte[] window = new byte[WINDOW_SIZE];
+	private int pos = 0;
+	private int limit = 0;
+
+	private Symbols symbols;
+	private String[] names;
+
+	/**
+	 * The expressions whose children are being read, as a stack of their
+	 * tags and of where their children start on the stack of values.
+	 */
+	private int[] tags = new int[16];
+	private int[] firstChild = new int[16];
+	private int frames = 0;
+	private Expression[] values = new Expression[16];
+	private int valueCount = 0;
+
+	BinaryASTReader(ByteBuffer bytes) {
+		this.bytes = bytes.duplicate();
+	}
+
+	Program read() throws IOException {
+		for (byte b : BinaryAST.MAGIC) {
+			if (readByte() != (b & 0xff))
+				throw new IOException("Not an encoded Program");
+		}
+		int version = readVarint();
+		if (version != BinaryAST.VERSION)
+			throw new IOException("Unsupported version " + version + ", expected " + BinaryAST.VERSION);
+
+		int size = readCount();
+		symbols = new Symbols();
+		names = new String[size];
+		for (int id = 0; id < size; id++) {
+			int length = readCount();
+			fill(length);
+			String name = new String(window, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			if (symbols.intern(name) != id)
+				throw new IOException("Duplicate name " + name);
+			names[id] = symbols.name(id);
+		}
+
+		NodeList<Statement> statements = readStatements();
+		Print print = new Print(readExpression());
+		if (pos < limit || bytes.hasRemaining())
+			throw new IOException("Unexpected bytes after the Program");
+		return new Program(statements, print, symbols);
+	}
+
+	private NodeList<Statement> readStatements() throws IOException {
+		int count = readCount();
+		List<Statement> statements = new ArrayList<Statement>(Math.min(count, 1 << 16));
+		for (int i = 0; i < count; i++)
+			statements.add(readStatement());
+		return new NodeList<Statement>(statements);
+	}
+
+	private Statement readStatement() throws IOException {
+		int tag = readByte();
+		if (tag == BinaryAST.ASSIGN) {
+			int id = readId();
+			return new Assign(names[id], id, readExpression());
+		}
+		if (tag == BinaryAST.FUNCTION) {
+			Type type = readType();
+			int id = readId();
+			int count = readCount();
+			List<Param> formal = new ArrayList<Param>(Math.min(count, 16));
+			for (int i = 0; i < count; i++) {
+				Type paramType = readType();
+				int paramId = readId();
+				formal.add(new Param(paramType, names[paramId], paramId));
+			}
+			NodeList<Statement> assign = readStatements();
+			return new FunctionDeclaration(type, names[id], id, formal, assign, readExpression());
+		}
+		throw new IOException("Bad statement tag " + tag);
+	}
+
+	private Type readType() throws IOException {
+		int tag = readByte();
+		switch (tag) {
+		case BinaryAST.INT_TYPE:
+			return IntegerType.INSTANCE;
+		case BinaryAST.BOOLEAN_TYPE:
+			return BooleanType.INSTANCE;
+		case BinaryAST.UNKNOWN_TYPE:
+			return UnknownType.INSTANCE;
+		default:
+			throw new IOException("Bad type tag " + tag);
+		}
+	}
+
+	/**
+	 * Read an expression in preorder without recursion: nodes with children
+	 * wait on a stack until all their children have been read.
+	 */
+	private Expression readExpression() throws IOException {
+		int base = frames;
+		while (true) {
+			int tag = readByte();
+			Expression value;
+			if (tag == BinaryAST.INTEGER) {
+				int zigzag = readVarint();
+				value = new IntegerLiteral((zigzag >>> 1) ^ -(zigzag & 1));
+			}
+			else if (tag == BinaryAST.IDENTIFIER) {
+				int id = readId();
+				value = new IdentifierExp(names[id], id);
+			}
+			else if (arity(tag) > 0) {
+				push(tag);
+				continue;
+			}
+			else
+				throw new IOException("Bad expression tag " + tag);
+
+			// Build the nodes that now have all their children
+			while (true) {
+				if (frames == base)
+					return value;
+				int top = frames - 1;
+				if (valueCount == values.length) {
+					Expression[] bigger = new Expression[valueCount * 2];
+					System.arraycopy(values, 0, bigger, 0, valueCount);
+					values = bigger;
+				}
+				values[valueCount++] = value;
+				if (valueCount - firstChild[top] < arity(tags[top]))
+					break;
+				value = build(tags[top], firstChild[top]);
+				valueCount = firstChild[top];
+				frames--;
+			}
+		}
+	}
+
+	private static int arity(int tag) {
+		switch (tag) {
+		case BinaryAST.PLUS:
+		case BinaryAST.MINUS:
+		case BinaryAST.TIMES:
+		case BinaryAST.LESS_THAN:
+			return 2;
+		case BinaryAST.NOT:
+			return 1;
+		case BinaryAST.CONDITIONAL:
+			return 3;
+		default:
+			return 0;
+		}
+	}
+
+	private Expression build(int tag, int first) {
+		Expression[] v = values;
+		Expression result;
+		switch (tag) {
+		case BinaryAST.PLUS:
+			result = new Plus(v[first], v[first + 1]);
+			break;
+		case BinaryAST.MINUS:
+			result = new Minus(v[first], v[first + 1]);
+			break;
+		case BinaryAST.TIMES:
+			result = new Times(v[first], v[first + 1]);
+			break;
+		case BinaryAST.LESS_THAN:
+			result = new LessThan(v[first], v[first + 1]);
+			break;
+		case BinaryAST.NOT:
+			result = new Not(v[first]);
+			break;
+		default:
+			result = new Conditional(v[first], v[first + 1], v[first + 2]);
+			break;
+		}
+		for (int i = first; i < valueCount; i++)
+			v[i] = null;
+		return result;
+	}
+
+	private void push(int tag) {
+		if (frames == tags.length) {
+			int[] biggerTags = new int[frames * 2];
+			System.arraycopy(tags, 0, biggerTags, 0, frames);
+			tags = biggerTags;
+			int[] biggerFirst = new int[frames * 2];
+			System.arraycopy(firstChild, 0, biggerFirst, 0, frames);
+			firstChild = biggerFirst;
+		}
+		tags[frames] = tag;
+		firstChild[frames] = valueCount;
+		frames++;
+	}
+
+	private int readId() throws IOException {
+		int id = readVarint();
+		if (id < 0 || id >= names.length)
+			throw new IOException("Bad identifier id " + id);
+		return id;
+	}
+
+	/**
+	 * Read the number of things that follow, e.g. names. Each takes at
+	 * least one byte, so there can't be more of them than bytes left.
+	 */
+	private int readCount() throws IOException {
+		int count = readVarint();
+		if (count < 0 || count > bytes.remaining() + limit - pos)
+			throw new IOException("Bad count " + count);
+		return count;
+	}
+
+	private int readByte() throws IOException {
+		if (pos == limit)
+			fill(1);
+		return window[pos++] & 0xff;
+	}
+
+	private int readVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			// The fifth byte only has the top 4 bits of an int
+			if (shift == 28 && (b & 0x70) != 0)
+				break;
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Bad varint");
+	}
+
+	/**
+	 * Make sure the window holds at least the next n bytes.
+	 */
+	private void fill(int n) throws IOException {
+		int rest = limit - pos;
+		if (rest >= n)
+			return;
+		if (n > bytes.remaining() + rest)
+			throw new IOException("Unexpected end of the encoded Program");
+		if (n > window.length) {
+			byte[] bigger = new byte[n];
+			System.arraycopy(window, pos, bigger, 0, rest);
+			window = bigger;
+		}
+		else
+			System.arraycopy(window, pos, window, 0, rest);
+		int more = Math.min(window.length - rest, bytes.remaining());
+		bytes.get(window, rest, more);
+		pos = 0;
+		limit = rest + more;
+	}
+
+}
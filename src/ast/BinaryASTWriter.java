@@ -0,0 +1,166 @@
+package ast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import visitor.ExpressionWalker;
+
+/**
+ * Encodes a Program in the format described in {@link BinaryAST}.
+ */
+class BinaryASTWriter extends ExpressionWalker<Void> {
+
+	/** The string table, a copy of the program's Symbols. */
+	private final Symbols symbols = new Symbols();
+
+	private byte[] bytes = new byte[1024];
+	private int count = 0;
+
+	byte[] write(Program program) {
+		for (int id = 0; id < program.symbols.size(); id++)
+			symbols.intern(program.symbols.name(id));
+		writeVarint(program.statements.size());
+		for (int i = 0; i < program.statements.size(); i++)
+			writeStatement(program.statements.elementAt(i));
+		walk(program.print.exp);
+		byte[] body = bytes;
+		int bodyCount = count;
+
+		// The string table goes first, but names can still be added to it
+		// while writing the body (see id), so it is written last.
+		bytes = new byte[bodyCount + 16 * symbols.size() + 16];
+		count = 0;
+		for (byte b : BinaryAST.MAGIC)
+			writeByte(b);
+		writeVarint(BinaryAST.VERSION);
+		writeVarint(symbols.size());
+		for (int id = 0; id < symbols.size(); id++) {
+			byte[] name = symbols.name(id).getBytes(StandardCharsets.UTF_8);
+			writeVarint(name.length);
+			writeBytes(name, name.length);
+		}
+		writeBytes(body, bodyCount);
+		byte[] result = new byte[count];
+		System.arraycopy(bytes, 0, result, 0, count);
+		return result;
+	}
+
+	private void writeStatement(Statement statement) {
+		if (statement instanceof Assign) {
+			Assign assign = (Assign) statement;
+			writeByte(BinaryAST.ASSIGN);
+			writeVarint(id(assign.name, assign.id));
+			walk(assign.value);
+		}
+		else if (statement instanceof FunctionDeclaration) {
+			FunctionDeclaration function = (FunctionDeclaration) statement;
+			writeByte(BinaryAST.FUNCTION);
+			writeType(function.type);
+			writeVarint(id(function.name, function.id));
+			List<Param> formal = function.formal;
+			writeVarint(formal.size());
+			for (Param param : formal) {
+				writeType(param.type);
+				writeVarint(id(param.name, param.id));
+			}
+			writeVarint(function.assign.size());
+			for (int i = 0; i < function.assign.size(); i++)
+				writeStatement(function.assign.elementAt(i));
+			walk(function.ret);
+		}
+		else
+			throw new IllegalArgumentException("Can't encode a " + statement.getClass().getSimpleName());
+	}
+
+	private void writeType(Type type) {
+		if (type instanceof IntegerType)
+			writeByte(BinaryAST.INT_TYPE);
+		else if (type instanceof BooleanType)
+			writeByte(BinaryAST.BOOLEAN_TYPE);
+		else
+			writeByte(BinaryAST.UNKNOWN_TYPE);
+	}
+
+	/**
+	 * Expressions are written in preorder, as the walk enters their nodes.
+	 */
+	@Override
+	protected void enter(Expression n) {
+		if (n instanceof Plus)
+			writeByte(BinaryAST.PLUS);
+		else if (n instanceof Minus)
+			writeByte(BinaryAST.MINUS);
+		else if (n instanceof Times)
+			writeByte(BinaryAST.TIMES);
+		else if (n instanceof LessThan)
+			writeByte(BinaryAST.LESS_THAN);
+		else if (n instanceof Not)
+			writeByte(BinaryAST.NOT);
+		else if (n instanceof Conditional)
+			writeByte(BinaryAST.CONDITIONAL);
+		else if (n instanceof IntegerLiteral) {
+			int value = ((IntegerLiteral) n).value;
+			writeByte(BinaryAST.INTEGER);
+			writeVarint((value << 1) ^ (value >> 31));
+		}
+		else if (n instanceof IdentifierExp) {
+			IdentifierExp identifier = (IdentifierExp) n;
+			writeByte(BinaryAST.IDENTIFIER);
+			writeVarint(id(identifier.name, identifier.id));
+		}
+		else
+			throw new IllegalArgumentException("Can't encode a " + n.getClass().getSimpleName());
+	}
+
+	@Override
+	protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+		return null;
+	}
+
+	/**
+	 * @return The id of name in the string table. This is normally the id
+	 * the node already has, but nodes that were not made by the parser may
+	 * have names that are not in the program's Symbols.
+	 */
+	private int id(String name, int id) {
+		if (id >= 0 && id < symbols.size()) {
+			String interned = symbols.name(id);
+			if (interned == name || interned.equals(name))
+				return id;
+		}
+		return symbols.intern(name);
+	}
+
+	private void writeByte(int b) {
+		if (count == bytes.length)
+			grow(1);
+		bytes[count++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] b, int length) {
+		if (count + length > bytes.length)
+			grow(length);
+		System.arraycopy(b, 0, bytes, count, length);
+		count += length;
+	}
+
+	/**
+	 * Write an unsigned int, seven bits at a time, low bits first.
+	 */
+	private void writeVarint(int value) {
+		if (count + 5 > bytes.length)
+			grow(5);
+		while ((value & ~0x7f) != 0) {
+			bytes[count++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		bytes[count++] = (byte) value;
+	}
+
+	private void grow(int needed) {
+		byte[] bigger = new byte[Math.max(bytes.length * 2, count + needed)];
+		System.arraycopy(bytes, 0, bigger, 0, count);
+		bytes = bigger;
+	}
+
+}
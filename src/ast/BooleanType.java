@@ -4,9 +4,16 @@ import visitor.Visitor;
 
 public class BooleanType extends Type {
 
+	/**
+	 * The boolean type. All BooleanTypes are equal, the phases use this one so
+	 * that types can be compared by identity.
+	 */
+	public static final BooleanType INSTANCE = new BooleanType();
+
 	public final String type;
 
 	public BooleanType() {
+		super(BOOLEAN_TYPE);
 		this.type = "boolean";
 	}
 	@Override
@@ -15,8 +22,8 @@ public class BooleanType extends Type {
 	}
 
 	@Override
-	public boolean equals(Object other) {
-		return this.getClass()==other.getClass();
+	public int id() {
+		return TypeTable.BOOLEAN;
 	}
 	
 }
@@ -9,7 +9,7 @@ public class Conditional extends Expression {
 	public final Expression e3;
 
 	public Conditional(Expression e1, Expression e2, Expression e3) {
-		super();
+		super(CONDITIONAL, hash(hash(CONDITIONAL, e1, e2), e3, null));
 		this.e1 = e1;
 		this.e2 = e2;
 		this.e3 = e3;
@@ -1,22 +1,91 @@
 package ast;
 
-import org.junit.Assert;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class Expression extends AST {
-	
+
 	/**
-	 * The type of an expression is set by the type checking phase.
+	 * A hash of the structure of the expression: expressions that are the
+	 * same tree have the same hash. It starts from the kind of the node, and
+	 * is computed from the hashes of the children when an expression is
+	 * made, so it is never out of date (all the fields of expressions are
+	 * final).
 	 */
-	private Type type;
+	private final int hash;
+
+	/**
+	 * Numbers every expression that is made, so that what the phases compute
+	 * about expressions can be kept in arrays indexed by it (see
+	 * {@link Attributes}) rather than in the nodes. Each thread takes the
+	 * numbers a block at a time, so the expressions of a program parsed by
+	 * one thread are numbered (almost) consecutively.
+	 * <p>
+	 * The numbers are never reused, two live expressions never have the
+	 * same one: they are longs, which would take centuries to run out, and
+	 * making an expression fails if they do.
+	 */
+	public final long nodeId;
+
+	private static final int ID_BLOCK = 1024;
+	private static final AtomicLong nextBlock = new AtomicLong();
+	private static final ThreadLocal<long[]> ids = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+
+	protected Expression(int kind, int hash) {
+		super(kind);
+		this.hash = hash;
+		long[] block = ids.get();
+		if (block[0] == block[1]) {
+			long first = nextBlock.getAndIncrement() * ID_BLOCK;
+			if (first < 0)
+				throw new IllegalStateException("Out of node ids");
+			block[0] = first;
+			block[1] = first + ID_BLOCK;
+		}
+		this.nodeId = block[0]++;
+	}
+
+	public int structuralHash() {
+		return hash;
+	}
 
+	protected static int hash(int seed, Expression e1, Expression e2) {
+		int h = seed * 0x9E3779B9;
+		h = 31 * h + (e1 == null ? 0 : e1.hash);
+		h = 31 * h + (e2 == null ? 0 : e2.hash);
+		return h ^ (h >>> 15);
+	}
+
+	protected static int hash(int seed, int value) {
+		int h = seed * 0x9E3779B9 + value;
+		return h ^ (h >>> 15);
+	}
+
+	/**
+	 * The type of an expression is set by the type checking phase, in the
+	 * Attributes of the check rather than in the expression, which can be
+	 * in several programs and checked by several compilations.
+	 *
+	 * @deprecated Use the Attributes of the check, e.g. from
+	 * {@link typechecker.TypeChecked#getAttributes()}.
+	 * @throws UnsupportedOperationException always
+	 */
+	@Deprecated
 	public Type getType() {
-		Assert.assertNotNull("Was this AST typechecked?", type);
-		return type;
+		throw new UnsupportedOperationException("Types are kept in the Attributes of the check, see TypeChecked.getAttributes()");
 	}
-	
+
+	/**
+	 * @deprecated Use {@link Attributes#setType(Expression, Type)}.
+	 * @throws UnsupportedOperationException always
+	 */
+	@Deprecated
 	public void setType(Type theType) {
-		Assert.assertNull(type);
-		type = theType;
+		throw new UnsupportedOperationException("Types are kept in the Attributes of the check, see Attributes.setType");
 	}
 
 }
@@ -0,0 +1,389 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import parser.StatementSink;
+import visitor.ExpressionWalker;
+import visitor.Visitor;
+
+/**
+ * A Program stored in a few primitive arrays, rather than as one object per
+ * node. This takes much less heap than a tree of objects, and walking it
+ * is walking through arrays rather than chasing pointers.
+ * <p>
+ * Each node has an id, which indexes {@link #kind}, {@link #first} and
+ * {@link #second}. What first and second hold depends on the kind:
+ * <pre>
+ * PLUS, MINUS, TIMES, LESS_THAN  first: e1, second: e2
+ * NOT                            first: e
+ * CONDITIONAL                    first: e1, second: offset in lists of e2, e3
+ * INTEGER                        first: the value
+ * IDENTIFIER                     first: the id in symbols
+ * ASSIGN                         first: the id in symbols, second: the value
+ * FUNCTION                       first: the id in symbols, second: offset in
+ *                                lists of the return type, the return
+ *                                expression, the number of params, the type
+ *                                and id of each param, the number of
+ *                                statements and the statements
+ * </pre>
+ * Types are stored as one of INT_TYPE, BOOLEAN_TYPE or UNKNOWN_TYPE.
+ * <p>
+ * Nodes are numbered in postorder, so the children of a node always have
+ * smaller ids than the node itself, and the nodes of a subtree have
+ * consecutive ids. A loop over all the ids therefore sees every node after
+ * its children, which is how most analyses can be written without
+ * recursion or a stack: keep the result for each node in an array indexed
+ * by id.
+ * <p>
+ * Visitors still work: {@link #accept(Visitor)} builds the tree of objects
+ * first, each time it is called, and {@link #node(int)} builds it for one
+ * subtree.
+ */
+public class FlatAST extends AST {
+
+	// Node kinds, the ones of AST#kind() as bytes
+	public static final byte ASSIGN = AST.ASSIGN;
+	public static final byte FUNCTION = AST.FUNCTION_DECLARATION;
+	public static final byte PLUS = AST.PLUS;
+	public static final byte MINUS = AST.MINUS;
+	public static final byte TIMES = AST.TIMES;
+	public static final byte LESS_THAN = AST.LESS_THAN;
+	public static final byte NOT = AST.NOT;
+	public static final byte CONDITIONAL = AST.CONDITIONAL;
+	public static final byte INTEGER = AST.INTEGER_LITERAL;
+	public static final byte IDENTIFIER = AST.IDENTIFIER;
+
+	// Types
+	public static final int INT_TYPE = AST.INTEGER_TYPE;
+	public static final int BOOLEAN_TYPE = AST.BOOLEAN_TYPE;
+	public static final int UNKNOWN_TYPE = AST.UNKNOWN_TYPE;
+
+	public byte[] kind;
+	public int[] first;
+	public int[] second;
+	/** The number of nodes. */
+	public int count;
+
+	/** The parts of nodes that don't fit in first and second. */
+	public int[] lists;
+
+	/** The top level statements, and the expression of the print statement. */
+	public int[] statements;
+	public int statementCount;
+	public int print;
+
+	/** The identifiers used in the program */
+	public final Symbols symbols;
+
+	private FlatAST(Symbols symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Flatten a tree of objects.
+	 */
+	public static FlatAST from(Program program) {
+		Builder builder = new Builder();
+		for (int i = 0; i < program.statements.size(); i++)
+			builder.statement(program.statements.elementAt(i));
+		builder.print(program.print);
+		return builder.build(program.symbols);
+	}
+
+	/**
+	 * @return The number of children of a node, in the same order as the
+	 * fields of its class (the params of a function don't count).
+	 */
+	public int childCount(int node) {
+		switch (kind[node]) {
+		case PLUS:
+		case MINUS:
+		case TIMES:
+		case LESS_THAN:
+			return 2;
+		case NOT:
+		case ASSIGN:
+			return 1;
+		case CONDITIONAL:
+			return 3;
+		case FUNCTION:
+			int params = lists[second[node] + 2];
+			return lists[second[node] + 3 + 2 * params] + 1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @return The i-th child of a node. The children of a function are its
+	 * statements followed by its return expression.
+	 */
+	public int child(int node, int i) {
+		switch (kind[node]) {
+		case PLUS:
+		case MINUS:
+		case TIMES:
+		case LESS_THAN:
+			return i == 0 ? first[node] : second[node];
+		case NOT:
+			return first[node];
+		case ASSIGN:
+			return second[node];
+		case CONDITIONAL:
+			return i == 0 ? first[node] : lists[second[node] + i - 1];
+		case FUNCTION:
+			int list = second[node];
+			int statementsAt = list + 3 + 2 * lists[list + 2];
+			if (i < lists[statementsAt])
+				return lists[statementsAt + 1 + i];
+			return lists[list + 1];
+		default:
+			throw new IndexOutOfBoundsException("Node " + node + " has no children");
+		}
+	}
+
+	/**
+	 * @return The tree of objects for the whole program.
+	 */
+	public Program toProgram() {
+		AST[] nodes = build(0, count);
+		NodeList<Statement> list = new NodeList<Statement>(new ArrayList<Statement>(statementCount));
+		for (int i = 0; i < statementCount; i++)
+			list.add((Statement) nodes[statements[i]]);
+		return new Program(list, new Print((Expression) nodes[print]), symbols);
+	}
+
+	/**
+	 * @return The tree of objects for the subtree under a node: an
+	 * Expression, an Assign or a FunctionDeclaration.
+	 */
+	public AST node(int node) {
+		int from = node;
+		while (childCount(from) > 0)
+			from = child(from, 0);
+		return build(from, node + 1)[node - from];
+	}
+
+	/**
+	 * Build the objects for nodes from..to, children first.
+	 * @return The objects, indexed by id - from.
+	 */
+	private AST[] build(int from, int to) {
+		AST[] nodes = new AST[to - from];
+		for (int n = from; n < to; n++) {
+			AST node;
+			switch (kind[n]) {
+			case PLUS:
+				node = new Plus((Expression) nodes[first[n] - from], (Expression) nodes[second[n] - from]);
+				break;
+			case MINUS:
+				node = new Minus((Expression) nodes[first[n] - from], (Expression) nodes[second[n] - from]);
+				break;
+			case TIMES:
+				node = new Times((Expression) nodes[first[n] - from], (Expression) nodes[second[n] - from]);
+				break;
+			case LESS_THAN:
+				node = new LessThan((Expression) nodes[first[n] - from], (Expression) nodes[second[n] - from]);
+				break;
+			case NOT:
+				node = new Not((Expression) nodes[first[n] - from]);
+				break;
+			case CONDITIONAL:
+				node = new Conditional((Expression) nodes[first[n] - from],
+						(Expression) nodes[lists[second[n]] - from], (Expression) nodes[lists[second[n] + 1] - from]);
+				break;
+			case INTEGER:
+				node = new IntegerLiteral(first[n]);
+				break;
+			case IDENTIFIER:
+				node = new IdentifierExp(symbols.name(first[n]), first[n]);
+				break;
+			case ASSIGN:
+				node = new Assign(symbols.name(first[n]), first[n], (Expression) nodes[second[n] - from]);
+				break;
+			default:
+				int list = second[n];
+				List<Param> formal = new ArrayList<Param>();
+				int params = lists[list + 2];
+				for (int i = 0; i < params; i++) {
+					int id = lists[list + 4 + 2 * i];
+					formal.add(new Param(type(lists[list + 3 + 2 * i]), symbols.name(id), id));
+				}
+				int at = list + 3 + 2 * params;
+				NodeList<Statement> assign = new NodeList<Statement>();
+				for (int i = 0; i < lists[at]; i++)
+					assign.add((Statement) nodes[lists[at + 1 + i] - from]);
+				node = new FunctionDeclaration(type(lists[list]), symbols.name(first[n]), first[n],
+						formal, assign, (Expression) nodes[lists[list + 1] - from]);
+				break;
+			}
+			nodes[n - from] = node;
+		}
+		return nodes;
+	}
+
+	private static Type type(int type) {
+		if (type == INT_TYPE)
+			return IntegerType.INSTANCE;
+		if (type == BOOLEAN_TYPE)
+			return BooleanType.INSTANCE;
+		return UnknownType.INSTANCE;
+	}
+
+	/**
+	 * Runs the visitor over the tree of objects built by {@link #toProgram()}.
+	 * The tree is built again on every call (the arrays are public and may
+	 * have changed since), which costs about as much as parsing the program:
+	 * to run several visitors, call toProgram() once and have them visit
+	 * that.
+	 */
+	@Override
+	public <R> R accept(Visitor<R> v) {
+		return toProgram().accept(v);
+	}
+
+	/**
+	 * Flattens statements as they come. Used as the sink of a streaming
+	 * parse, the tree of objects for the whole program never exists.
+	 */
+	public static class Builder extends ExpressionWalker<Void> implements StatementSink {
+
+		private final FlatAST flat = new FlatAST(null);
+		private int listCount = 0;
+
+		/** The ids of the expressions whose parent hasn't been added yet. */
+		private int[] done = new int[16];
+		private int doneCount = 0;
+
+		public Builder() {
+			flat.kind = new byte[1024];
+			flat.first = new int[1024];
+			flat.second = new int[1024];
+			flat.lists = new int[256];
+			flat.statements = new int[256];
+		}
+
+		public void statement(Statement statement) {
+			int node = add(statement);
+			if (flat.statementCount == flat.statements.length)
+				flat.statements = Arrays.copyOf(flat.statements, flat.statementCount * 2);
+			flat.statements[flat.statementCount++] = node;
+		}
+
+		public void print(Print print) {
+			flat.print = expression(print.exp);
+		}
+
+		/**
+		 * @return The flat program. Don't use the builder after this.
+		 */
+		public FlatAST build(Symbols symbols) {
+			FlatAST result = new FlatAST(symbols);
+			result.count = flat.count;
+			result.kind = Arrays.copyOf(flat.kind, flat.count);
+			result.first = Arrays.copyOf(flat.first, flat.count);
+			result.second = Arrays.copyOf(flat.second, flat.count);
+			result.lists = Arrays.copyOf(flat.lists, listCount);
+			result.statementCount = flat.statementCount;
+			result.statements = Arrays.copyOf(flat.statements, flat.statementCount);
+			result.print = flat.print;
+			return result;
+		}
+
+		private int add(Statement statement) {
+			if (statement instanceof Assign) {
+				Assign assign = (Assign) statement;
+				return node(ASSIGN, assign.id, expression(assign.value));
+			}
+			FunctionDeclaration function = (FunctionDeclaration) statement;
+			int[] assigns = new int[function.assign.size()];
+			for (int i = 0; i < assigns.length; i++)
+				assigns[i] = add(function.assign.elementAt(i));
+			int ret = expression(function.ret);
+			int list = list(3 + 2 * function.formal.size() + 1 + assigns.length);
+			int[] lists = flat.lists;
+			lists[list] = type(function.type);
+			lists[list + 1] = ret;
+			lists[list + 2] = function.formal.size();
+			int at = list + 3;
+			for (Param param : function.formal) {
+				lists[at++] = type(param.type);
+				lists[at++] = param.id;
+			}
+			lists[at++] = assigns.length;
+			System.arraycopy(assigns, 0, lists, at, assigns.length);
+			return node(FUNCTION, function.id, list);
+		}
+
+		private static int type(Type type) {
+			if (type instanceof IntegerType)
+				return INT_TYPE;
+			if (type instanceof BooleanType)
+				return BOOLEAN_TYPE;
+			return UNKNOWN_TYPE;
+		}
+
+		private int expression(Expression e) {
+			walk(e);
+			return done[--doneCount];
+		}
+
+		/**
+		 * Adds the nodes as the walk leaves them, which is in postorder. The
+		 * ids of their children are on top of done.
+		 */
+		@Override
+		protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+			int node;
+			if (n instanceof IntegerLiteral)
+				node = node(INTEGER, ((IntegerLiteral) n).value, 0);
+			else if (n instanceof IdentifierExp)
+				node = node(IDENTIFIER, ((IdentifierExp) n).id, 0);
+			else if (n instanceof Not)
+				node = node(NOT, done[--doneCount], 0);
+			else if (n instanceof Conditional) {
+				int list = list(2);
+				flat.lists[list + 1] = done[--doneCount];
+				flat.lists[list] = done[--doneCount];
+				node = node(CONDITIONAL, done[--doneCount], list);
+			}
+			else {
+				byte kind = n instanceof Plus ? PLUS : n instanceof Minus ? MINUS : n instanceof Times ? TIMES : LESS_THAN;
+				int e2 = done[--doneCount];
+				node = node(kind, done[--doneCount], e2);
+			}
+			if (doneCount == done.length)
+				done = Arrays.copyOf(done, doneCount * 2);
+			done[doneCount++] = node;
+			return null;
+		}
+
+		private int node(byte kind, int first, int second) {
+			int node = flat.count++;
+			if (node == flat.kind.length) {
+				flat.kind = Arrays.copyOf(flat.kind, node * 2);
+				flat.first = Arrays.copyOf(flat.first, node * 2);
+				flat.second = Arrays.copyOf(flat.second, node * 2);
+			}
+			flat.kind[node] = kind;
+			flat.first[node] = first;
+			flat.second[node] = second;
+			return node;
+		}
+
+		/**
+		 * @return The offset of length new ints in lists.
+		 */
+		private int list(int length) {
+			if (listCount + length > flat.lists.length)
+				flat.lists = Arrays.copyOf(flat.lists, Math.max(flat.lists.length * 2, listCount + length));
+			int list = listCount;
+			listCount += length;
+			return list;
+		}
+
+	}
+
+}
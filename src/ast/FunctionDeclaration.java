@@ -1,5 +1,7 @@
 package ast;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import visitor.Visitor;
@@ -8,19 +10,28 @@ public class FunctionDeclaration extends Statement {
 	
 	public final Type type;
 	public final String name;
+	/** The id of name in the program's {@link Symbols} */
+	public final int id;
 	public final List<Param> formal;
 	public final NodeList<Statement> assign;
 	public final Expression ret;
+	/** The type of the function, from the types of its result and params */
+	public final FunctionType signature;
 	
-	public FunctionDeclaration(Type type, String name, 
+	public FunctionDeclaration(Type type, String name, int id,
 			List<Param> formal, NodeList<Statement> assign, 
 			Expression ret) {
-		super();
+		super(FUNCTION_DECLARATION);
 		this.type = type;
 		this.name = name;
-		this.formal = formal;
+		this.id = id;
+		this.formal = Collections.unmodifiableList(formal);
 		this.assign = assign;
 		this.ret = ret;
+		List<Type> params = new ArrayList<Type>(formal.size());
+		for (Param param : formal)
+			params.add(param.type);
+		this.signature = FunctionType.of(type, params);
 	}
 
 	@Override
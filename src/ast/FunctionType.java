@@ -0,0 +1,69 @@
+package ast;
+
+import java.util.Arrays;
+import java.util.List;
+
+import visitor.Visitor;
+
+/**
+ * The type of a function: the types of its parameters and result. Function
+ * types are equal when their results and parameters are, they all have the
+ * id {@link TypeTable#FUNCTION}.
+ */
+public class FunctionType extends Type {
+
+	public final Type result;
+	private final Type[] params;
+	private final int hash;
+
+	FunctionType(Type result, Type[] params) {
+		super(FUNCTION_TYPE);
+		this.result = result;
+		this.params = params;
+		this.hash = 31 * result.hashCode() + Arrays.hashCode(params);
+	}
+
+	/**
+	 * @return The function type with the given result and parameter types.
+	 */
+	public static FunctionType of(Type result, List<Type> params) {
+		Type[] canonical = new Type[params.size()];
+		for (int i = 0; i < canonical.length; i++)
+			canonical[i] = TypeTable.canonical(params.get(i));
+		return new FunctionType(TypeTable.canonical(result), canonical);
+	}
+
+	public int paramCount() {
+		return params.length;
+	}
+
+	public Type param(int i) {
+		return params[i];
+	}
+
+	@Override
+	public int id() {
+		return TypeTable.FUNCTION;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof FunctionType))
+			return false;
+		FunctionType f = (FunctionType) other;
+		return hash == f.hash && result.equals(f.result) && Arrays.equals(params, f.params);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public <R> R accept(Visitor<R> v) {
+		return v.visit(this);
+	}
+
+}
@@ -0,0 +1,180 @@
+package ast;
+
+/**
+ * Makes expression nodes that are shared: asking twice for the same tree
+ * returns the same node. Programs tend to repeat subexpressions like
+ * <code>x * 2</code> or <code>1</code> all over, and each of them only
+ * takes memory once. Whether two subexpressions are the same is then simply
+ * whether they are the same node, which is what common subexpression
+ * elimination needs to know.
+ * <p>
+ * Sharing nodes is safe because expressions have no side effects and all
+ * the fields of nodes are final. What phases compute for an expression is
+ * kept outside of it (e.g. the IR from the translator, which is made again
+ * for each place the node is used), and where it is kept by node (the
+ * {@link Attributes}) it only depends on the node's subtree, except for
+ * its source span, which is the one of its first occurrence.
+ * <p>
+ * The nodes are kept in a hash table keyed by their
+ * {@link Expression#structuralHash()}. The children of a node come from
+ * the same factory, so comparing nodes only has to compare their children
+ * by identity. A factory keeps all the nodes it made alive, use one for
+ * each Program.
+ */
+public class HashConsingNodeFactory extends NodeFactory {
+
+	private Expression[] table = new Expression[1024];
+	private int size = 0;
+	private long requests = 0;
+
+	@Override
+	public Expression plus(Expression e1, Expression e2) {
+		int hash = Expression.hash(Expression.PLUS, e1, e2);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new Plus(e1, e2));
+			if (e.structuralHash() == hash && e instanceof Plus && ((Plus) e).e1 == e1 && ((Plus) e).e2 == e2)
+				return e;
+		}
+	}
+
+	@Override
+	public Expression minus(Expression e1, Expression e2) {
+		int hash = Expression.hash(Expression.MINUS, e1, e2);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new Minus(e1, e2));
+			if (e.structuralHash() == hash && e instanceof Minus && ((Minus) e).e1 == e1 && ((Minus) e).e2 == e2)
+				return e;
+		}
+	}
+
+	@Override
+	public Expression times(Expression e1, Expression e2) {
+		int hash = Expression.hash(Expression.TIMES, e1, e2);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new Times(e1, e2));
+			if (e.structuralHash() == hash && e instanceof Times && ((Times) e).e1 == e1 && ((Times) e).e2 == e2)
+				return e;
+		}
+	}
+
+	@Override
+	public Expression lessThan(Expression e1, Expression e2) {
+		int hash = Expression.hash(Expression.LESS_THAN, e1, e2);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new LessThan(e1, e2));
+			if (e.structuralHash() == hash && e instanceof LessThan && ((LessThan) e).e1 == e1 && ((LessThan) e).e2 == e2)
+				return e;
+		}
+	}
+
+	@Override
+	public Expression not(Expression e1) {
+		int hash = Expression.hash(Expression.NOT, e1, null);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new Not(e1));
+			if (e.structuralHash() == hash && e instanceof Not && ((Not) e).e == e1)
+				return e;
+		}
+	}
+
+	@Override
+	public Expression conditional(Expression e1, Expression e2, Expression e3) {
+		int hash = Expression.hash(Expression.hash(Expression.CONDITIONAL, e1, e2), e3, null);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new Conditional(e1, e2, e3));
+			if (e.structuralHash() == hash && e instanceof Conditional) {
+				Conditional c = (Conditional) e;
+				if (c.e1 == e1 && c.e2 == e2 && c.e3 == e3)
+					return e;
+			}
+		}
+	}
+
+	@Override
+	public Expression integer(int value) {
+		int hash = Expression.hash(Expression.INTEGER_LITERAL, value);
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new IntegerLiteral(value));
+			if (e.structuralHash() == hash && e instanceof IntegerLiteral && ((IntegerLiteral) e).value == value)
+				return e;
+		}
+	}
+
+	@Override
+	public Expression identifier(String name, int id) {
+		int hash = Expression.hash(Expression.IDENTIFIER, name.hashCode());
+		for (int i = slot(hash); ; i = next(i)) {
+			Expression e = table[i];
+			if (e == null)
+				return add(i, new IdentifierExp(name, id));
+			if (e.structuralHash() == hash && e instanceof IdentifierExp) {
+				IdentifierExp identifier = (IdentifierExp) e;
+				if (identifier.id == id && identifier.name.equals(name))
+					return e;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of distinct nodes made.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of nodes asked for.
+	 */
+	public long requests() {
+		return requests;
+	}
+
+	private int slot(int hash) {
+		requests++;
+		return index(hash);
+	}
+
+	private int index(int hash) {
+		int h = hash * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (table.length - 1);
+	}
+
+	private int next(int slot) {
+		return (slot + 1) & (table.length - 1);
+	}
+
+	private Expression add(int slot, Expression e) {
+		table[slot] = e;
+		if (++size * 2 > table.length)
+			rehash();
+		return e;
+	}
+
+	private void rehash() {
+		Expression[] old = table;
+		table = new Expression[old.length * 2];
+		for (Expression e : old) {
+			if (e == null)
+				continue;
+			int i = index(e.structuralHash());
+			while (table[i] != null)
+				i = next(i);
+			table[i] = e;
+		}
+	}
+
+}
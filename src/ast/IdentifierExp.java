@@ -5,10 +5,13 @@ import visitor.Visitor;
 public class IdentifierExp extends Expression {
 
 	public final String name;
+	/** The id of name in the program's {@link Symbols} */
+	public final int id;
 	
-	public IdentifierExp(String name) {
-		super();
+	public IdentifierExp(String name, int id) {
+		super(IDENTIFIER, hash(IDENTIFIER, name.hashCode()));
 		this.name = name;
+		this.id = id;
 	}
 
 	@Override
@@ -7,7 +7,7 @@ public class IntegerLiteral extends Expression {
 	public final int value;
 
 	public IntegerLiteral(int value) {
-		super();
+		super(INTEGER_LITERAL, hash(INTEGER_LITERAL, value));
 		this.value = value;
 	}
 
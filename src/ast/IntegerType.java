@@ -3,10 +3,17 @@ package ast;
 import visitor.Visitor;
 
 public class IntegerType extends Type {
+
+	/**
+	 * The int type. All IntegerTypes are equal, the phases use this one so
+	 * that types can be compared by identity.
+	 */
+	public static final IntegerType INSTANCE = new IntegerType();
 	
 	public final String type;
 
 	public IntegerType() {
+		super(INTEGER_TYPE);
 		this.type = "int";
 	}
 
@@ -16,8 +23,8 @@ public class IntegerType extends Type {
 	}
 	
 	@Override
-	public boolean equals(Object other) {
-		return this.getClass()==other.getClass();
+	public int id() {
+		return TypeTable.INT;
 	}
 
 }
@@ -8,7 +8,7 @@ public class LessThan extends Expression {
 	public final Expression e2;
 	
 	public LessThan(Expression e1, Expression e2) {
-		super();
+		super(LESS_THAN, hash(LESS_THAN, e1, e2));
 		this.e1 = e1;
 		this.e2 = e2;
 	}
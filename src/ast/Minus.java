@@ -8,7 +8,7 @@ public class Minus extends Expression {
 	public final Expression e2;
 
 	public Minus(Expression e1, Expression e2) {
-		super();
+		super(MINUS, hash(MINUS, e1, e2));
 		this.e1 = e1;
 		this.e2 = e2;
 	}
@@ -0,0 +1,41 @@
+package ast;
+
+/**
+ * Makes the expression nodes for a parser. This one simply makes a new node
+ * every time, see {@link HashConsingNodeFactory} for one that shares them.
+ */
+public class NodeFactory {
+
+	public Expression plus(Expression e1, Expression e2) {
+		return new Plus(e1, e2);
+	}
+
+	public Expression minus(Expression e1, Expression e2) {
+		return new Minus(e1, e2);
+	}
+
+	public Expression times(Expression e1, Expression e2) {
+		return new Times(e1, e2);
+	}
+
+	public Expression lessThan(Expression e1, Expression e2) {
+		return new LessThan(e1, e2);
+	}
+
+	public Expression not(Expression e) {
+		return new Not(e);
+	}
+
+	public Expression conditional(Expression e1, Expression e2, Expression e3) {
+		return new Conditional(e1, e2, e3);
+	}
+
+	public Expression integer(int value) {
+		return new IntegerLiteral(value);
+	}
+
+	public Expression identifier(String name, int id) {
+		return new IdentifierExp(name, id);
+	}
+
+}
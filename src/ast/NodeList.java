@@ -12,18 +12,36 @@ import visitor.Visitor;
 public class NodeList<T extends AST> extends AST {
 	
 	private List<T> nodes;
+	private boolean frozen = false;
 	
 	public NodeList() {
+		super(NODE_LIST);
 		this.nodes = new ArrayList<T>();
 	}
 
 	public NodeList(List<T> nodes) {
+		super(NODE_LIST);
 		this.nodes = nodes;
 	}
 
 	public void add(T t) {
+		if (frozen)
+			throw new UnsupportedOperationException("The list is frozen");
 		this.nodes.add(t);
 	}
+
+	/**
+	 * Make {@link #add(AST)} throw from now on, e.g. when the list is in a
+	 * Program that is shared.
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
 	public int size() {
 		return nodes.size();
 	}
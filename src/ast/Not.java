@@ -7,7 +7,7 @@ public class Not extends Expression {
 	public final Expression e;
 	
 	public Not(Expression e) {
-		super();
+		super(NOT, hash(NOT, e, null));
 		this.e = e;
 	}
 
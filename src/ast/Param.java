@@ -4,9 +4,12 @@ package ast;
 public class Param {
 	public final Type type;
 	public final String name;
+	/** The id of name in the program's {@link Symbols} */
+	public final int id;
 	
-	public Param(Type type, String name) {
+	public Param(Type type, String name, int id) {
 		this.type = type;
 		this.name = name;
+		this.id = id;
 	}
 }
@@ -8,7 +8,7 @@ public class Plus extends Expression {
 	public final Expression e2;
 
 	public Plus(Expression e1, Expression e2) {
-		super();
+		super(PLUS, hash(PLUS, e1, e2));
 		this.e1 = e1;
 		this.e2 = e2;
 	}
@@ -7,7 +7,7 @@ public class Print extends Statement {
 	public final Expression exp;
 
 	public Print(Expression exp) {
-		super();
+		super(PRINT);
 		this.exp = exp;
 	}
 
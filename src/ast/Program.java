@@ -6,10 +6,29 @@ public class Program extends AST {
 	
 	public final NodeList<Statement> statements;
 	public final Print print;
+	/** The identifiers used in the program */
+	public final Symbols symbols;
 
-	public Program(NodeList<Statement> statements, Print print) {
+	public Program(NodeList<Statement> statements, Print print, Symbols symbols) {
+		super(PROGRAM);
 		this.statements = statements;
 		this.print = print; 
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Make the program read only, so that it can be shared: its lists of
+	 * statements (those of the functions too) can't be added to, and its
+	 * symbols can't get new names. The rest of the tree can't be changed
+	 * anyway, what the phases find out about it goes in {@link Attributes}.
+	 */
+	public void freeze() {
+		statements.freeze();
+		for (int i = 0; i < statements.size(); i++) {
+			if (statements.elementAt(i) instanceof FunctionDeclaration)
+				((FunctionDeclaration) statements.elementAt(i)).assign.freeze();
+		}
+		symbols.freeze();
 	}
 
 	public <R> R accept(Visitor<R> v) {
@@ -2,4 +2,8 @@ package ast;
 
 public abstract class Statement extends AST {
 
+	protected Statement(int kind) {
+		super(kind);
+	}
+
 }
@@ -0,0 +1,82 @@
+package ast;
+
+import util.ImpTable;
+
+/**
+ * A table from identifiers to values, indexed by the ids that {@link Symbols}
+ * gives to identifiers. This is what the type checker and translator use
+ * instead of looking identifiers up by name in an {@link ImpTable}.
+ */
+public class SymbolMap<V> {
+
+	private final Symbols symbols;
+	private Object[] values;
+
+	public SymbolMap(Symbols symbols) {
+		this(symbols, symbols.size());
+	}
+
+	/**
+	 * @param capacity How many ids to make room for at first, e.g. only a
+	 * few for the scope of a function, which grows as ids are set.
+	 */
+	public SymbolMap(Symbols symbols, int capacity) {
+		this.symbols = symbols;
+		this.values = new Object[Math.max(capacity, 16)];
+	}
+
+	public Symbols getSymbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return The value of the identifier with the given id, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V lookup(int id) {
+		return id < values.length ? (V) values[id] : null;
+	}
+
+	/**
+	 * Add a new entry.
+	 * @return false if the identifier already had a value, in which case the
+	 * table is not changed.
+	 */
+	public boolean put(int id, V value) {
+		if (lookup(id) != null)
+			return false;
+		set(id, value);
+		return true;
+	}
+
+	/**
+	 * Set the value of an identifier, whether it already had one or not.
+	 */
+	public void set(int id, V value) {
+		if (id >= values.length) {
+			Object[] bigger = new Object[Math.max(id + 1, values.length * 2)];
+			System.arraycopy(values, 0, bigger, 0, values.length);
+			values = bigger;
+		}
+		values[id] = value;
+	}
+
+	/**
+	 * Copy the entries into an ImpTable, keyed by name.
+	 */
+	@SuppressWarnings("unchecked")
+	public ImpTable<V> toImpTable() {
+		ImpTable<V> table = new ImpTable<V>();
+		for (int id = 0; id < values.length; id++) {
+			if (values[id] != null)
+				table.set(symbols.name(id), (V) values[id]);
+		}
+		return table;
+	}
+
+	@Override
+	public String toString() {
+		return toImpTable().toString();
+	}
+
+}
@@ -0,0 +1,223 @@
+package ast;
+
+/**
+ * The identifiers of one program, interned so that each distinct name gets a
+ * small integer id. Ids are dense: they are handed out as 0, 1, 2, ... in the
+ * order the names are first seen, so tables of identifiers can simply be
+ * arrays indexed by id (see {@link SymbolMap}).
+ * <p>
+ * The lexer interns identifiers straight from the input text, so only one
+ * String gets created for each distinct name. After that, comparing two
+ * identifiers is comparing two ints.
+ */
+public class Symbols {
+
+	private String[] names = new String[16];
+	private int count = 0;
+
+	/**
+	 * Open addressing hash table. Each slot is four ints: the hash of a name,
+	 * its id + 1 (0 means the slot is free), and the offset and length of its
+	 * characters in {@link #chars}. With programs that have many names,
+	 * interning is limited by cache misses, so a probe should only touch the
+	 * slot itself and the name's characters.
+	 * <p>
+	 * Most names are short, those of at most {@link #PACKED} ASCII chars are
+	 * kept in the slot itself, a byte each in the last two ints, so that
+	 * finding them only touches the slot. Their slots have -(id + 1) rather
+	 * than id + 1.
+	 */
+	private int[] slots = new int[128];
+	private static final int SLOT = 4;
+	private static final int PACKED = 8;
+
+	/**
+	 * The characters of the names that are not packed in their slots, one
+	 * after the other.
+	 */
+	private char[] chars = new char[128];
+	private int charCount = 0;
+
+	private boolean frozen = false;
+
+	/**
+	 * @return The id of the name text[start..start+length), adding it if
+	 * it wasn't there yet.
+	 */
+	public int intern(CharSequence text, int start, int length) {
+		int hash = 0;
+		for (int i = start; i < start + length; i++)
+			hash = 31 * hash + text.charAt(i);
+		return intern(text, start, length, hash);
+	}
+
+	/**
+	 * Like {@link #intern(CharSequence, int, int)}, for a caller that
+	 * already has the hash of the name: its chars c0, c1, ... combined as
+	 * in String.hashCode(), ((c0 * 31) + c1) * 31 + ...
+	 */
+	public int intern(CharSequence text, int start, int length, int hash) {
+		int mask = slots.length - SLOT;
+		int slot = (spread(hash) * SLOT) & mask;
+		int entry;
+		while ((entry = slots[slot + 1]) != 0) {
+			if (slots[slot] == hash) {
+				if (entry < 0) {
+					if (packedMatches(slot, text, start, length))
+						return -entry - 1;
+				}
+				else if (slots[slot + 3] == length && matches(slots[slot + 2], text, start, length))
+					return entry - 1;
+			}
+			slot = (slot + SLOT) & mask;
+		}
+		return add(text.subSequence(start, start + length).toString(), hash, slot);
+	}
+
+	/**
+	 * @return The id of a name, adding it if it wasn't there yet.
+	 */
+	public int intern(String name) {
+		int slot = find(name);
+		int entry = slots[slot + 1];
+		if (entry != 0)
+			return Math.abs(entry) - 1;
+		return add(name, name.hashCode(), slot);
+	}
+
+	/**
+	 * @return The id of a name, or -1 if it was never interned.
+	 */
+	public int lookup(String name) {
+		return Math.abs(slots[find(name) + 1]) - 1;
+	}
+
+	/**
+	 * @return The name with the given id.
+	 */
+	public String name(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return The number of distinct names, which is one more than the largest id.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Stop adding names, e.g. when the program is shared: interning a name
+	 * that isn't there yet throws an IllegalStateException from now on.
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	/**
+	 * @return The slot that holds name, or the free slot where it should go.
+	 */
+	private int find(String name) {
+		int hash = name.hashCode();
+		int mask = slots.length - SLOT;
+		int slot = (spread(hash) * SLOT) & mask;
+		int entry;
+		while ((entry = slots[slot + 1]) != 0) {
+			if (slots[slot] == hash && names[Math.abs(entry) - 1].equals(name))
+				break;
+			slot = (slot + SLOT) & mask;
+		}
+		return slot;
+	}
+
+	private int add(String name, int hash, int slot) {
+		if (frozen)
+			throw new IllegalStateException("Can't add " + name + ", the symbols are frozen");
+		int id = count++;
+		if (id == names.length) {
+			String[] newNames = new String[id * 2];
+			System.arraycopy(names, 0, newNames, 0, id);
+			names = newNames;
+		}
+		names[id] = name;
+		slots[slot] = hash;
+		long packed = pack(name, 0, name.length());
+		if (packed != -1) {
+			slots[slot + 1] = -(id + 1);
+			slots[slot + 2] = (int) packed;
+			slots[slot + 3] = (int) (packed >>> 32);
+		}
+		else {
+			int length = name.length();
+			if (charCount + length > chars.length) {
+				char[] newChars = new char[Math.max(chars.length * 2, charCount + length)];
+				System.arraycopy(chars, 0, newChars, 0, charCount);
+				chars = newChars;
+			}
+			name.getChars(0, length, chars, charCount);
+			slots[slot + 1] = id + 1;
+			slots[slot + 2] = charCount;
+			slots[slot + 3] = length;
+			charCount += length;
+		}
+		if (count * 2 * SLOT > slots.length)
+			rehash();
+		return id;
+	}
+
+	private void rehash() {
+		int[] old = slots;
+		slots = new int[old.length * 2];
+		int mask = slots.length - SLOT;
+		for (int i = 0; i < old.length; i += SLOT) {
+			if (old[i + 1] == 0)
+				continue;
+			int slot = (spread(old[i]) * SLOT) & mask;
+			while (slots[slot + 1] != 0)
+				slot = (slot + SLOT) & mask;
+			System.arraycopy(old, i, slots, slot, SLOT);
+		}
+	}
+
+	/**
+	 * Names like v1, v2, v3 have nearly consecutive hash codes, which makes long
+	 * runs of used slots with linear probing. Multiplying by the golden ratio
+	 * spreads them out.
+	 */
+	private static int spread(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return text[start..start+length) packed in a long, a byte for each
+	 * char, or -1 if it is too long or has chars that are not ASCII (or 0).
+	 */
+	private static long pack(CharSequence text, int start, int length) {
+		if (length > PACKED)
+			return -1;
+		long packed = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(start + i);
+			if (c == 0 || c >= 128)
+				return -1;
+			packed |= (long) c << (i << 3);
+		}
+		return packed;
+	}
+
+	private boolean packedMatches(int slot, CharSequence text, int start, int length) {
+		long packed = pack(text, start, length);
+		return packed != -1 && (int) packed == slots[slot + 2] && (int) (packed >>> 32) == slots[slot + 3];
+	}
+
+	private boolean matches(int offset, CharSequence text, int start, int length) {
+		char[] chars = this.chars;
+		for (int i = 0; i < length; i++) {
+			if (chars[offset + i] != text.charAt(start + i))
+				return false;
+		}
+		return true;
+	}
+
+}
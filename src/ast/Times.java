@@ -8,7 +8,7 @@ public class Times extends Expression {
 	public final Expression e2;
 
 	public Times(Expression e1, Expression e2) {
-		super();
+		super(TIMES, hash(TIMES, e1, e2));
 		this.e1 = e1;
 		this.e2 = e2;
 	}
@@ -1,8 +1,29 @@
 package ast;
 
+/**
+ * Every type has a small integer id, see {@link TypeTable}. Basic types are
+ * equal when their ids are, so the phases mostly compare ints; function
+ * types also compare their results and parameters.
+ */
 public abstract class Type extends AST {
-	
+
+	protected Type(int kind) {
+		super(kind);
+	}
+
+	/**
+	 * @return The id of this type in the {@link TypeTable}.
+	 */
+	public abstract int id();
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Type && ((Type) other).id() == id();
+	}
+
 	@Override
-	public abstract boolean equals(Object other);
+	public int hashCode() {
+		return id();
+	}
 
 }
@@ -0,0 +1,102 @@
+package ast;
+
+/**
+ * Gives the basic types small fixed integer ids, with one canonical
+ * instance for each id.
+ * <p>
+ * Which basic types can be assigned to which is kept as a table of bits
+ * indexed by id, so the type checker answers "can a value of this type go
+ * there?" with an array lookup. Right now each basic type is only
+ * assignable to itself; a new rule (e.g. a subtype) is one more bit in the
+ * table, filled in by {@link #rule(Type, Type)}.
+ * <p>
+ * Function types are not in the table: they all have the id
+ * {@link #FUNCTION}, and are compared by their result and parameter types
+ * (see {@link FunctionType}). That way parsing doesn't make the table
+ * grow, and the table never changes after it is made.
+ */
+public final class TypeTable {
+
+	/** Not a type, e.g. for an expression that hasn't been checked. */
+	public static final int NONE = 0;
+	public static final int INT = 1;
+	public static final int BOOLEAN = 2;
+	public static final int UNKNOWN = 3;
+	/** The id of every function type. */
+	public static final int FUNCTION = 4;
+
+	/**
+	 * The canonical type for each basic id, and for each the bits of the
+	 * ids whose values can be assigned to it.
+	 */
+	private static final Type[] types = {
+		null, IntegerType.INSTANCE, BooleanType.INSTANCE, UnknownType.INSTANCE
+	};
+	private static final long[] assignable = new long[types.length];
+
+	static {
+		for (int to = 1; to < types.length; to++) {
+			for (int from = 1; from < types.length; from++) {
+				if (rule(types[to], types[from]))
+					assignable[to] |= 1L << from;
+			}
+		}
+	}
+
+	private TypeTable() {
+	}
+
+	/**
+	 * @return The canonical type with the given basic id.
+	 */
+	public static Type type(int id) {
+		return types[id];
+	}
+
+	/**
+	 * @return The canonical instance of a type, e.g. IntegerType.INSTANCE
+	 * for any IntegerType. A function type is its own.
+	 */
+	public static Type canonical(Type type) {
+		int id = type.id();
+		return id < types.length ? types[id] : type;
+	}
+
+	/**
+	 * @return Whether a value of basic type from can be used where a value
+	 * of basic type to is expected.
+	 */
+	public static boolean assignable(int to, int from) {
+		return to < types.length && (assignable[to] & (1L << from)) != 0;
+	}
+
+	public static boolean assignableFrom(Type to, Type from) {
+		if (to instanceof FunctionType || from instanceof FunctionType)
+			return to instanceof FunctionType && from instanceof FunctionType
+					&& rule(to, from);
+		return assignable(to.id(), from.id());
+	}
+
+	/**
+	 * The rules for which types can be assigned to which. Every type can be
+	 * assigned to itself, and a function type to another one with the same
+	 * number of parameters if its result can be assigned to the other's
+	 * result, and the other's parameters to its parameters.
+	 */
+	private static boolean rule(Type to, Type from) {
+		if (to.equals(from))
+			return true;
+		if (to instanceof FunctionType && from instanceof FunctionType) {
+			FunctionType f = (FunctionType) to, g = (FunctionType) from;
+			if (f.paramCount() != g.paramCount() || !assignableFrom(f.result, g.result))
+				return false;
+			for (int i = 0; i < f.paramCount(); i++) {
+				if (!assignableFrom(g.param(i), f.param(i)))
+					return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+}
@@ -4,14 +4,24 @@ import visitor.Visitor;
 
 public class UnknownType extends Type {
 
+	/**
+	 * The unknown type. All UnknownTypes are equal, the phases use this one so
+	 * that types can be compared by identity.
+	 */
+	public static final UnknownType INSTANCE = new UnknownType();
+
+	public UnknownType() {
+		super(UNKNOWN_TYPE);
+	}
+
 	@Override
 	public <R> R accept(Visitor<R> v) {
 		return v.visit(this);
 	}
 
 	@Override
-	public boolean equals(Object other) {
-		return this.getClass()==other.getClass();
+	public int id() {
+		return TypeTable.UNKNOWN;
 	}
 	
 }
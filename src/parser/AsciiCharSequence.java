@@ -0,0 +1,109 @@
+package parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence view of a buffer of ASCII bytes. Each byte is one char, so
+ * nothing needs to be decoded or copied up front.
+ * <p>
+ * The Expression language only uses ASCII characters, except possibly
+ * inside of comments. Non-ASCII bytes are passed on as chars in the range
+ * 0x80-0xFF (i.e. the input is treated as ISO-8859-1), which the lexer
+ * happily skips over inside comments.
+ */
+public class AsciiCharSequence implements CharSequence {
+
+	private final ByteBuffer bytes;
+	private final int offset;
+	private final int length;
+
+	/**
+	 * Reading single bytes from a direct buffer is relatively slow, so chars are
+	 * read through a small window that is refilled with bulk gets. Because of
+	 * this, instances are not thread safe.
+	 */
+	private static final int WINDOW_SIZE = 8192;
+	private byte[] window;
+	private int windowStart;
+	private int windowLength;
+
+	public AsciiCharSequence(ByteBuffer bytes) {
+		this(bytes, bytes.position(), bytes.remaining());
+	}
+
+	private AsciiCharSequence(ByteBuffer bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Map the contents of a file into memory. The file is closed before
+	 * this method returns, the mapping stays valid until it is garbage
+	 * collected.
+	 */
+	public static AsciiCharSequence map(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return new AsciiCharSequence(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return Another view of the same bytes, with its own window, so that
+	 * another thread can read them.
+	 */
+	public AsciiCharSequence duplicate() {
+		return new AsciiCharSequence(bytes, offset, length);
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		int i = index - windowStart;
+		if (i >= 0 && i < windowLength)
+			return (char) (window[i] & 0xff);
+		return charAtSlow(index);
+	}
+
+	private char charAtSlow(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("" + index);
+		if (window == null)
+			window = new byte[WINDOW_SIZE];
+		windowStart = index;
+		windowLength = Math.min(WINDOW_SIZE, length - index);
+		ByteBuffer view = bytes.duplicate();
+		view.position(offset + index);
+		view.get(window, 0, windowLength);
+		return (char) (window[0] & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new AsciiCharSequence(bytes, offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		byte[] chars = new byte[length];
+		ByteBuffer view = bytes.duplicate();
+		view.position(offset);
+		view.get(chars);
+		return new String(chars, StandardCharsets.ISO_8859_1);
+	}
+
+}
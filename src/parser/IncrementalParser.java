@@ -0,0 +1,205 @@
+package parser;
+
+import java.util.Arrays;
+
+import parser.jcc.ParseException;
+
+import ast.NodeList;
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+import ast.Symbols;
+
+/**
+ * Parses a document over and over as it is being edited, reusing as much of
+ * the previous AST as possible.
+ * <p>
+ * The parser remembers where each statement of the last Program it returned
+ * ends in the text. When the text is edited, the statements that end before
+ * the edit are kept, and the parser starts lexing and parsing right after
+ * them. As soon as it finishes a statement past the end of the edit at the
+ * same place as one of the old statements ended, the text after that is the
+ * same as before, so the rest of the old statements and the print statement
+ * are reused as they are. The work done therefore depends on the size of the
+ * edit (and of the statements it touches), not on the size of the text.
+ * <p>
+ * All the Programs share one Symbols table, so that the reused statements
+ * keep valid ids. Names that are no longer used keep their ids.
+ * <p>
+ * Use one IncrementalParser for each document. This uses the
+ * {@link Parser.Backend#PRATT} backend.
+ */
+public class IncrementalParser {
+
+	/**
+	 * Tokens are lexed this many at a time, the edited statements usually
+	 * only need a few.
+	 */
+	private static final int CHUNK = 64;
+
+	private Program program;
+	private Symbols symbols;
+
+	/**
+	 * The offset right after the last token of each statement of program.
+	 */
+	private int[] ends = new int[0];
+
+	/**
+	 * Parse a whole text from scratch.
+	 */
+	public Program parse(String text) throws ParseException {
+		program = null;
+		symbols = new Symbols();
+		PrattParser parser = PrattParser.streaming(text, 0, new LineMap(), symbols, CHUNK);
+		NodeList<Statement> statements = new NodeList<Statement>();
+		int[] newEnds = new int[16];
+		int count = 0;
+		Statement statement;
+		while ((statement = parser.Statement()) != null) {
+			statements.add(statement);
+			if (count == newEnds.length)
+				newEnds = Arrays.copyOf(newEnds, count * 2);
+			newEnds[count++] = parser.end();
+		}
+		Print print = parser.Print();
+		ends = Arrays.copyOf(newEnds, count);
+		return program = new Program(statements, print, symbols);
+	}
+
+	/**
+	 * Parse the text after text[start..end) of oldText was replaced.
+	 * <p>
+	 * previous should be the Program this parser returned last, for oldText.
+	 * Otherwise, or if the last parse failed, the new text is parsed from
+	 * scratch.
+	 * <p>
+	 * Errors are reported in the same way as {@link Parser#parse(String)}.
+	 */
+	public Program reparse(Program previous, String oldText, int start, int end, String replacement)
+			throws ParseException {
+		CharSequence text = new EditedText(oldText, start, end, replacement);
+		if (previous == null || previous != program)
+			return parse(text.toString());
+		int delta = replacement.length() - (end - start);
+
+		// Keep the statements that end before the edit
+		int kept = firstEndAfter(start);
+		int from = kept == 0 ? 0 : ends[kept - 1];
+		NodeList<Statement> statements = new NodeList<Statement>();
+		for (int i = 0; i < kept; i++)
+			statements.add(program.statements.elementAt(i));
+		int[] newEnds = Arrays.copyOf(ends, kept + 16);
+		int count = kept;
+
+		try {
+			// Positions in errors would be wrong (the LineMap starts at from),
+			// errors are reported by parsing the whole text instead.
+			PrattParser parser = PrattParser.streaming(text, from, new LineMap(1, 1, from), symbols, CHUNK);
+			Statement statement;
+			while ((statement = parser.Statement()) != null) {
+				statements.add(statement);
+				int statementEnd = parser.end();
+				if (count == newEnds.length)
+					newEnds = Arrays.copyOf(newEnds, count * 2);
+				newEnds[count++] = statementEnd;
+				if (statementEnd >= start + replacement.length()) {
+					// Text inserted right after the last kept statement can end there
+					int same = Arrays.binarySearch(ends, Math.max(kept - 1, 0), ends.length, statementEnd - delta);
+					if (same >= 0)
+						return reuse(statements, newEnds, count, same + 1, delta);
+				}
+			}
+			Print print = parser.Print();
+			ends = Arrays.copyOf(newEnds, count);
+			return program = new Program(statements, print, symbols);
+		}
+		catch (ParseException e) {
+			return parse(text.toString());
+		}
+		catch (RuntimeException e) {
+			return parse(text.toString());
+		}
+		catch (Error e) {
+			return parse(text.toString());
+		}
+	}
+
+	/**
+	 * Finish a Program with the old statements from index first on, and the
+	 * old print statement. Their text has moved by delta.
+	 */
+	private Program reuse(NodeList<Statement> statements, int[] newEnds, int count, int first, int delta) {
+		int reused = ends.length - first;
+		int[] allEnds = Arrays.copyOf(newEnds, count + reused);
+		for (int i = 0; i < reused; i++) {
+			statements.add(program.statements.elementAt(first + i));
+			allEnds[count + i] = ends[first + i] + delta;
+		}
+		ends = allEnds;
+		return program = new Program(statements, program.print, symbols);
+	}
+
+	/**
+	 * @return The index of the first statement that ends after offset.
+	 */
+	private int firstEndAfter(int offset) {
+		int lo = 0, hi = ends.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ends[mid] <= offset)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * A view of a text with one part replaced, without copying it.
+	 */
+	private static class EditedText implements CharSequence {
+
+		private final String text;
+		private final int start, end;
+		private final String replacement;
+		private final int length;
+
+		EditedText(String text, int start, int end, String replacement) {
+			this.text = text;
+			this.start = start;
+			this.end = end;
+			this.replacement = replacement;
+			this.length = text.length() - (end - start) + replacement.length();
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < start)
+				return text.charAt(index);
+			index -= start;
+			if (index < replacement.length())
+				return replacement.charAt(index);
+			return text.charAt(index - replacement.length() + end);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			StringBuilder result = new StringBuilder(to - from);
+			for (int i = from; i < to; i++)
+				result.append(charAt(i));
+			return result.toString();
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length).toString();
+		}
+	}
+
+}
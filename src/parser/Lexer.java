@@ -0,0 +1,259 @@
+package parser;
+
+import ast.Symbols;
+import parser.jcc.JCCExpressionsParserConstants;
+import parser.jcc.TokenMgrError;
+
+/**
+ * A hand written lexer for the Expression language. It recognizes exactly the
+ * same tokens as the lexer generated from ExpressionParser.jj, but it is a
+ * simple DFA that writes its output into the arrays of a {@link TokenStream},
+ * so it doesn't create a Token or a String for each token.
+ * <p>
+ * Line starts and tabs are recorded in a {@link LineMap} as they are skipped
+ * over, so token positions can be computed later, when they are needed.
+ */
+public class Lexer implements JCCExpressionsParserConstants {
+
+	/** Token kinds for ",", "{" and "}" (these have no names in the grammar) */
+	public static final int COMMA = 26;
+	public static final int LBRACE = 27;
+	public static final int RBRACE = 28;
+
+	/** Same as TokenMgrError.LEXICAL_ERROR, which is not public */
+	private static final int LEXICAL_ERROR = 0;
+
+	private static final byte OTHER = 0;
+	private static final byte LETTER_CHAR = 1;
+	private static final byte DIGIT_CHAR = 2;
+	private static final byte SINGLE = 3;
+
+	private static final byte[] charClass = new byte[128];
+	private static final byte[] singleKind = new byte[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++)
+			charClass[c] = LETTER_CHAR;
+		for (char c = 'A'; c <= 'Z'; c++)
+			charClass[c] = LETTER_CHAR;
+		for (char c = '0'; c <= '9'; c++)
+			charClass[c] = DIGIT_CHAR;
+		single('(', LPAREN);
+		single(')', RPAREN);
+		single('=', ASSIGN);
+		single('?', QUESTION);
+		single(':', COLON);
+		single('+', PLUS);
+		single('-', MINUS);
+		single('*', MULT);
+		single('<', SMALLER);
+		single('!', NOT);
+		single(';', SEMICOLON);
+		single(',', COMMA);
+		single('{', LBRACE);
+		single('}', RBRACE);
+	}
+
+	private static void single(char c, int kind) {
+		charClass[c] = SINGLE;
+		singleKind[c] = (byte) kind;
+	}
+
+	private final CharSequence text;
+	private final int end;
+	private final TokenStream out;
+	private final LineMap lines;
+	private final Symbols symbols;
+
+	Lexer(CharSequence text, int end, TokenStream out) {
+		this.text = text;
+		this.end = end;
+		this.out = out;
+		this.lines = out.lines;
+		this.symbols = out.symbols;
+	}
+
+	/**
+	 * Split the whole text into tokens.
+	 */
+	public static TokenStream lex(CharSequence text) {
+		TokenStream tokens = new TokenStream(text, new LineMap(), new Symbols(), text.length() / 4);
+		lex(text, 0, text.length(), tokens);
+		return tokens;
+	}
+
+	/**
+	 * Split text[from..to) into tokens, and add them to a TokenStream.
+	 */
+	public static void lex(CharSequence text, int from, int to, TokenStream tokens) {
+		new Lexer(text, to, tokens).lex(from, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Add tokens from text[from..end) to the TokenStream, stopping when it
+	 * has maxCount tokens, so that a large input can be lexed a chunk at a
+	 * time.
+	 * @return The offset to continue lexing from, or -1 when all the input
+	 * has been lexed (or a lexical error was found).
+	 */
+	int lex(int i, int maxCount) {
+		while (true) {
+			if (out.count >= maxCount)
+				return i;
+			char c = 0;
+			// Skip white space and comments
+			while (i < end) {
+				c = text.charAt(i);
+				if (c == ' ')
+					i++;
+				else if (c == '\n' || c == '\r' || c == '\t')
+					i = lineOrTab(c, i);
+				else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '/')
+					i = lineComment(i + 2);
+				else if (c == '/' && i + 1 < end && text.charAt(i + 1) == '*') {
+					i = blockComment(i);
+					if (i < 0)
+						return -1;
+				}
+				else
+					break;
+			}
+			if (i >= end) {
+				out.add(EOF, end - 1, 0, 0);
+				return -1;
+			}
+			int start = i;
+			switch (c < 128 ? charClass[c] : OTHER) {
+			case LETTER_CHAR:
+				int hash = c;
+				i++;
+				while (i < end && isIdentifierPart(c = text.charAt(i))) {
+					hash = 31 * hash + c;
+					i++;
+				}
+				int kind = identifierOrKeyword(start, i - start);
+				out.add(kind, start, i - start, kind == IDENTIFIER ? symbols.intern(text, start, i - start, hash) : 0);
+				break;
+			case DIGIT_CHAR:
+				int value = c - '0';
+				i++;
+				while (i < end && (c = text.charAt(i)) >= '0' && c <= '9') {
+					value = value * 10 + (c - '0');
+					i++;
+				}
+				out.add(INTEGER_LITERAL, start, i - start, value);
+				break;
+			case SINGLE:
+				out.add(singleKind[c], start, 1, 0);
+				i++;
+				break;
+			default:
+				error(start, c == '/' && i + 1 < end ? i + 1 : i);
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Record a line terminator or tab at text[i]
+	 * @return the offset of the next character.
+	 */
+	private int lineOrTab(char c, int i) {
+		if (c == '\n')
+			lines.newline(i + 1);
+		else if (c == '\r') {
+			if (i + 1 >= text.length() || text.charAt(i + 1) != '\n')
+				lines.newline(i + 1);
+		}
+		else if (c == '\t')
+			lines.tab(i);
+		return i + 1;
+	}
+
+	/**
+	 * @return the offset of the "\n" that ends a comment starting before i.
+	 */
+	private int lineComment(int i) {
+		char c;
+		while (i < end && (c = text.charAt(i)) != '\n') {
+			if (c == '\r' || c == '\t')
+				lineOrTab(c, i);
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the offset right after the comment that starts at i, or -1
+	 * if the comment is not closed.
+	 */
+	private int blockComment(int start) {
+		int i = start + 2;
+		while (i < end) {
+			char c = text.charAt(i);
+			if (c == '*' && i + 1 < end && text.charAt(i + 1) == '/')
+				return i + 2;
+			if (c == '\n' || c == '\r' || c == '\t')
+				lineOrTab(c, i);
+			i++;
+		}
+		error(start, end - 1);
+		return -1;
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return c < 128 && (charClass[c] == LETTER_CHAR || charClass[c] == DIGIT_CHAR) || c == '_';
+	}
+
+	private int identifierOrKeyword(int start, int length) {
+		switch (length) {
+		case 3:
+			return matches("int", start) ? INT : IDENTIFIER;
+		case 5:
+			return matches("print", start) ? PRINT : IDENTIFIER;
+		case 6:
+			return matches("return", start) ? RETURN : IDENTIFIER;
+		case 7:
+			return matches("boolean", start) ? BOOL : IDENTIFIER;
+		default:
+			return IDENTIFIER;
+		}
+	}
+
+	private boolean matches(String keyword, int start) {
+		for (int i = 0; i < keyword.length(); i++) {
+			if (text.charAt(start + i) != keyword.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Record a lexical error for a token that starts at start and can't be
+	 * matched after reading the character at last. The error is reported the
+	 * same way the generated token manager does.
+	 */
+	private void error(int start, int last) {
+		boolean eof = last >= end - 1;
+		char c = text.charAt(last);
+		if (c == '\t')
+			lines.tab(last); // Not skipped over yet, but its column counts
+		int line = lines.line(last);
+		int column = lines.column(last);
+		String after = "";
+		if (eof) {
+			if (c == '\n' || c == '\r') {
+				line++;
+				column = 0;
+			}
+			else
+				column++;
+			if (last > start)
+				after = text.subSequence(start, last + 1).toString();
+		}
+		else if (last > start)
+			after = text.subSequence(start, last).toString();
+		out.error = new TokenMgrError(eof, DEFAULT, line, column, after, c, LEXICAL_ERROR);
+	}
+
+}
@@ -0,0 +1,183 @@
+package parser;
+
+/**
+ * A compact index from character offsets to line and column numbers.
+ * <p>
+ * Rather than remembering a line and column for every character that is read
+ * (which is what the generated SimpleCharStream used to do) we only remember
+ * where each line starts and where the (rare) tab characters are. Line and
+ * column numbers are then computed on demand, with a binary search. Columns
+ * follow the JavaCC conventions: they start at 1 and a tab advances to the
+ * next multiple of the tab size.
+ * <p>
+ * Offsets must be recorded in increasing order.
+ */
+public class LineMap {
+
+	private final int startLine;
+	private final int startColumn;
+	private int tabSize = 8;
+
+	/**
+	 * lineStarts[i] is the offset of the first character on line startLine+i.
+	 */
+	private int[] lineStarts = new int[64];
+	private int lineCount = 1;
+
+	private int[] tabs = new int[16];
+	private int tabCount = 0;
+
+	/**
+	 * Index of the line (and first tab on or after it) found by the last lookup.
+	 * Positions are mostly requested in order, so this avoids most of the binary
+	 * searches.
+	 */
+	private int lastLine = 0;
+	private int lastTab = 0;
+
+	public LineMap() {
+		this(1, 1);
+	}
+
+	public LineMap(int startLine, int startColumn) {
+		this(startLine, startColumn, 0);
+	}
+
+	/**
+	 * Create a LineMap for text that starts at the given offset, rather than at
+	 * the start of the input. Offsets before it should not be looked up.
+	 */
+	public LineMap(int startLine, int startColumn, int startOffset) {
+		this.startLine = startLine;
+		this.startColumn = startColumn;
+		this.lineStarts[0] = startOffset;
+	}
+
+	public void setTabSize(int tabSize) {
+		this.tabSize = tabSize;
+	}
+
+	public int getTabSize() {
+		return tabSize;
+	}
+
+	/**
+	 * Record that a new line starts at the given offset.
+	 */
+	public void newline(int offset) {
+		if (lineCount == lineStarts.length)
+			lineStarts = grow(lineStarts);
+		lineStarts[lineCount++] = offset;
+	}
+
+	/**
+	 * Record that there is a tab character at the given offset.
+	 */
+	public void tab(int offset) {
+		if (tabCount == tabs.length)
+			tabs = grow(tabs);
+		tabs[tabCount++] = offset;
+	}
+
+	/**
+	 * Record all the line starts and tabs in text[from..to). Line terminators
+	 * are "\n", "\r\n" and a lone "\r", like in SimpleCharStream.
+	 */
+	public void scan(CharSequence text, int from, int to) {
+		int length = text.length();
+		for (int i = from; i < to; i++) {
+			char c = text.charAt(i);
+			if (c <= '\r') {
+				if (c == '\n')
+					newline(i + 1);
+				else if (c == '\r') {
+					if (i + 1 >= length || text.charAt(i + 1) != '\n')
+						newline(i + 1);
+				}
+				else if (c == '\t')
+					tab(i);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of lines recorded so far.
+	 */
+	public int lineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return The offset of the first character of a given line.
+	 */
+	public int lineStart(int line) {
+		return lineStarts[line - startLine];
+	}
+
+	/**
+	 * @return The line number of the character at the given offset.
+	 */
+	public int line(int offset) {
+		if (offset < 0)
+			return 0;
+		return startLine + lineIndex(offset);
+	}
+
+	/**
+	 * @return The column number of the character at the given offset.
+	 */
+	public int column(int offset) {
+		if (offset < 0)
+			return 0;
+		int index = lineIndex(offset);
+		int start = lineStarts[index];
+		int col = index == 0 ? startColumn - 1 : 0;
+		int cursor = start;
+		for (int t = firstTabAtOrAfter(start); t < tabCount && tabs[t] <= offset; t++) {
+			col += tabs[t] - cursor;
+			col += tabSize - (col % tabSize);
+			cursor = tabs[t] + 1;
+		}
+		return col + offset + 1 - cursor;
+	}
+
+	private int lineIndex(int offset) {
+		int last = lastLine;
+		if (lineStarts[last] <= offset && (last + 1 == lineCount || offset < lineStarts[last + 1]))
+			return last;
+		if (last + 1 < lineCount && lineStarts[last + 1] <= offset
+				&& (last + 2 == lineCount || offset < lineStarts[last + 2]))
+			return lastLine = last + 1;
+		int lo = 0, hi = lineCount - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (lineStarts[mid] <= offset)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lastLine = lo;
+	}
+
+	private int firstTabAtOrAfter(int offset) {
+		int hint = lastTab;
+		if ((hint == tabCount || offset <= tabs[hint]) && (hint == 0 || tabs[hint - 1] < offset))
+			return hint;
+		int lo = 0, hi = tabCount;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (tabs[mid] < offset)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lastTab = lo;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] bigger = new int[array.length * 2];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+}
@@ -0,0 +1,245 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import parser.jcc.JCCExpressionsParserConstants;
+import parser.jcc.ParseException;
+
+import ast.NodeList;
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+import ast.Symbols;
+
+/**
+ * Parses large programs on several threads.
+ * <p>
+ * A program is a flat list of statements, so it can be cut up between
+ * two top level statements. A quick scan over the text finds the places
+ * where that is possible: right after a ";" or a "}" that is not inside of
+ * braces or a comment. The chunks are then lexed and parsed on a
+ * ForkJoinPool, and their statements are put together in source order. The
+ * result is the same Program that a sequential parse builds.
+ * <p>
+ * Each chunk interns its identifiers into a Symbols table of its own first.
+ * These are merged in source order before parsing, so every identifier gets
+ * the same id as in a sequential parse. Each chunk also has a LineMap that
+ * starts at the line the chunk starts on, so errors are reported at the
+ * right position.
+ */
+public class ParallelParser {
+
+	/** Chunks are at least this many chars, smaller inputs are not split. */
+	public static final int MIN_CHUNK = 256 * 1024;
+
+	/**
+	 * Parse with the common ForkJoinPool, in about four chunks per thread.
+	 */
+	public static Program parse(CharSequence text) throws ParseException {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int chunkSize = Math.max(MIN_CHUNK, text.length() / (4 * pool.getParallelism()));
+		return parse(text, pool, chunkSize);
+	}
+
+	/**
+	 * Parse on the given pool, with chunks of at least chunkSize chars.
+	 */
+	public static Program parse(CharSequence text, ForkJoinPool pool, int chunkSize) throws ParseException {
+		final List<Chunk> chunks = split(text, chunkSize);
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+				for (final Chunk chunk : chunks) {
+					tasks.add(new RecursiveAction() {
+						@Override
+						protected void compute() {
+							chunk.lex();
+						}
+					});
+				}
+				invokeAll(tasks);
+			}
+		});
+		Symbols symbols = new Symbols();
+		for (Chunk chunk : chunks)
+			chunk.renumber(symbols);
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+				for (int i = 0; i < chunks.size(); i++) {
+					final Chunk chunk = chunks.get(i);
+					final boolean last = i == chunks.size() - 1;
+					tasks.add(new RecursiveAction() {
+						@Override
+						protected void compute() {
+							chunk.parse(last);
+						}
+					});
+				}
+				invokeAll(tasks);
+			}
+		});
+
+		NodeList<Statement> statements = new NodeList<Statement>();
+		for (int i = 0; i < chunks.size(); i++) {
+			Chunk chunk = chunks.get(i);
+			if (chunk.error != null) {
+				if (i < chunks.size() - 1 && !chunk.errorIsExact())
+					return new PrattParser(Lexer.lex(text)).Program();
+				throw chunk.error();
+			}
+			for (Statement statement : chunk.statements)
+				statements.add(statement);
+		}
+		return new Program(statements, chunks.get(chunks.size() - 1).print, symbols);
+	}
+
+	/**
+	 * Find the split points, following the same rules for comments and line
+	 * terminators as the {@link Lexer}.
+	 */
+	static List<Chunk> split(CharSequence text, int chunkSize) {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		int length = text.length();
+		int depth = 0, line = 1, lineStart = 0;
+		int from = 0, fromLine = 1, fromLineStart = 0;
+		boolean lineComment = false, blockComment = false;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			char next = i + 1 < length ? text.charAt(i + 1) : 0;
+			if (c == '\n' || c == '\r' && next != '\n') {
+				line++;
+				lineStart = i + 1;
+			}
+			if (lineComment) {
+				if (c == '\n')
+					lineComment = false;
+			}
+			else if (blockComment) {
+				if (c == '*' && next == '/') {
+					blockComment = false;
+					i++;
+				}
+			}
+			else if (c == '/' && next == '/') {
+				lineComment = true;
+				i++;
+			}
+			else if (c == '/' && next == '*') {
+				blockComment = true;
+				i++;
+			}
+			else if (c == '{')
+				depth++;
+			else if ((c == ';' && depth == 0 || c == '}' && --depth == 0) && i + 1 - from >= chunkSize) {
+				chunks.add(new Chunk(text, from, i + 1, fromLine, fromLineStart));
+				from = i + 1;
+				fromLine = line;
+				fromLineStart = lineStart;
+			}
+		}
+		chunks.add(new Chunk(text, from, length, fromLine, fromLineStart));
+		return chunks;
+	}
+
+	/**
+	 * One piece of the text, text[from..to), which starts on the given line.
+	 */
+	static class Chunk implements StatementSink {
+
+		private final CharSequence text;
+		final int from, to;
+		private final int lineStart;
+		private final LineMap lines;
+
+		private TokenStream tokens;
+		private final List<Statement> statements = new ArrayList<Statement>();
+		private Print print;
+		private Throwable error;
+
+		Chunk(CharSequence text, int from, int to, int line, int lineStart) {
+			// AsciiCharSequence is not thread safe, so each chunk gets its own view
+			this.text = text instanceof AsciiCharSequence ? ((AsciiCharSequence) text).duplicate() : text;
+			this.from = from;
+			this.to = to;
+			this.lineStart = lineStart;
+			this.lines = new LineMap(line, 1, lineStart);
+		}
+
+		void lex() {
+			// Tabs on the line before the start of the chunk count for the columns
+			lines.scan(text, lineStart, from);
+			tokens = new TokenStream(text, lines, new Symbols(), (to - from) / 4);
+			Lexer.lex(text, from, to, tokens);
+		}
+
+		/**
+		 * Intern the identifiers of this chunk into the Symbols table of the
+		 * whole program.
+		 */
+		void renumber(Symbols symbols) {
+			Symbols local = tokens.symbols;
+			int[] ids = new int[local.size()];
+			for (int id = 0; id < ids.length; id++)
+				ids[id] = symbols.intern(local.name(id));
+			tokens = tokens.renumber(symbols, ids);
+		}
+
+		void parse(boolean last) {
+			try {
+				PrattParser parser = new PrattParser(tokens);
+				if (last)
+					parser.Program(this);
+				else
+					parser.Statements(this);
+			}
+			catch (ParseException e) {
+				error = e;
+			}
+			catch (RuntimeException e) {
+				error = e;
+			}
+			catch (Error e) {
+				error = e;
+			}
+			tokens = null;
+		}
+
+		public void statement(Statement statement) {
+			statements.add(statement);
+		}
+
+		public void print(Print print) {
+			this.print = print;
+		}
+
+		/**
+		 * A chunk that isn't the last one can fail where the whole program
+		 * doesn't, or in a different way: when it runs into the print
+		 * statement, when a statement goes on past its end, or with a lexical
+		 * error (which is reported differently close to the end of the text).
+		 * In those cases the error has to come from a sequential parse.
+		 */
+		boolean errorIsExact() {
+			if (!(error instanceof ParseException))
+				return error instanceof RuntimeException;
+			int kind = ((ParseException) error).currentToken.next.kind;
+			return kind != JCCExpressionsParserConstants.EOF && kind != JCCExpressionsParserConstants.PRINT;
+		}
+
+		private ParseException error() {
+			if (error instanceof ParseException)
+				return (ParseException) error;
+			if (error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			throw (Error) error;
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import parser.Parser.Backend;
+import parser.jcc.ParseException;
+
+import ast.Program;
+
+/**
+ * A cache in front of {@link Parser}, for when the same sources get parsed
+ * over and over.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the input text, and kept in
+ * least recently used order. The cache holds on to at most a given number
+ * of bytes (estimated), and evicts the least recently used entries to stay
+ * under it.
+ * <p>
+ * A hit returns the cached Program itself, which every caller shares. This
+ * is safe because nothing in it can change once it is cached: expression
+ * nodes only have final fields, what the phases find out about them is kept
+ * in {@link ast.Attributes} of each compilation rather than in the nodes,
+ * and the cache {@link Program#freeze() freezes} the Program before handing
+ * it out, so adding to its lists of statements or to its symbols throws.
+ * Several callers can check the same Program, even at once. A caller that
+ * wants to change it has to build a new one (as e.g.
+ * {@link visitor.RewriteVisitor} does).
+ * <p>
+ * This replaces keeping the {@link ast.BinaryAST} encoding of each Program
+ * and decoding a fresh copy on every hit, which was needed while the type
+ * checker set a type in each node: a hit now costs a hash of the input
+ * rather than allocating a whole tree. The size of an entry is estimated
+ * from the number of tokens of its input. Inputs with errors are not
+ * cached.
+ * <p>
+ * A ParseCache can be shared between threads.
+ */
+public class ParseCache {
+
+	/** Estimated bytes an entry takes besides its Program. */
+	private static final int ENTRY_OVERHEAD = 128;
+
+	/** Estimated bytes of tree for each token of the input. */
+	private static final int BYTES_PER_TOKEN = 32;
+
+	/**
+	 * A cached Program and its estimated size.
+	 */
+	private static class Entry {
+		final Program program;
+		final long size;
+
+		Entry(Program program, long size) {
+			this.program = program;
+			this.size = size;
+		}
+	}
+
+	private final long maxBytes;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private long bytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxBytes The most bytes the cached entries may take.
+	 */
+	public ParseCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Like {@link Parser#parse(String)}, but returns the cached Program if
+	 * the same text was parsed before.
+	 */
+	public Program parse(String inputText) throws ParseException {
+		return parse(inputText, Parser.getDefaultBackend());
+	}
+
+	public Program parse(String inputText, Backend backend) throws ParseException {
+		return parse((CharSequence) inputText, backend);
+	}
+
+	/**
+	 * Like {@link Parser#parse(File)}. The file is mapped into memory and
+	 * hashed, it is only lexed and parsed if its contents are not cached.
+	 */
+	public Program parse(File file) throws IOException, ParseException {
+		return parse(file, Parser.getDefaultBackend());
+	}
+
+	public Program parse(File file, Backend backend) throws IOException, ParseException {
+		return parse(AsciiCharSequence.map(file), backend);
+	}
+
+	private Program parse(CharSequence text, Backend backend) throws ParseException {
+		Key key = new Key(text);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+				return entry.program;
+			}
+			misses++;
+		}
+		TokenStream tokens = Lexer.lex(text);
+		long size = (long) tokens.count * BYTES_PER_TOKEN + ENTRY_OVERHEAD;
+		Program program = Parser.parse(tokens, backend);
+		program.freeze();
+		put(key, new Entry(program, size));
+		return program;
+	}
+
+	private synchronized void put(Key key, Entry entry) {
+		if (entry.size > maxBytes)
+			return;
+		Entry old = entries.put(key, entry);
+		if (old != null)
+			bytes -= old.size;
+		bytes += entry.size;
+		Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+		while (bytes > maxBytes) {
+			bytes -= eldest.next().getValue().size;
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return The estimated number of bytes taken by the cached entries.
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return The number of cached Programs.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Drop all the entries. The counters are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * The SHA-256 hash of a text.
+	 */
+	private static class Key {
+
+		private final byte[] digest;
+		private final int hash;
+
+		Key(CharSequence text) {
+			MessageDigest sha;
+			try {
+				sha = MessageDigest.getInstance("SHA-256");
+			}
+			catch (NoSuchAlgorithmException e) {
+				throw new Error(e); // Every Java platform has SHA-256
+			}
+			// Hash the chars as UTF-8 (surrogates one at a time), so that the
+			// usual ASCII text takes one byte for each char
+			byte[] buffer = new byte[8192];
+			int n = 0;
+			for (int i = 0; i < text.length(); i++) {
+				if (n > buffer.length - 3) {
+					sha.update(buffer, 0, n);
+					n = 0;
+				}
+				char c = text.charAt(i);
+				if (c < 0x80)
+					buffer[n++] = (byte) c;
+				else if (c < 0x800) {
+					buffer[n++] = (byte) (0xc0 | c >> 6);
+					buffer[n++] = (byte) (0x80 | c & 0x3f);
+				}
+				else {
+					buffer[n++] = (byte) (0xe0 | c >> 12);
+					buffer[n++] = (byte) (0x80 | c >> 6 & 0x3f);
+					buffer[n++] = (byte) (0x80 | c & 0x3f);
+				}
+			}
+			sha.update(buffer, 0, n);
+			digest = sha.digest();
+			hash = Arrays.hashCode(digest);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && Arrays.equals(digest, ((Key) other).digest);
+		}
+
+	}
+
+}
@@ -1,17 +1,19 @@
 package parser;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 
 import parser.jcc.JCCExpressionsParser;
 import parser.jcc.ParseException;
 
 import ast.AST;
+import ast.Attributes;
 import ast.Expression;
+import ast.FlatAST;
+import ast.HashConsingNodeFactory;
+import ast.NodeFactory;
 import ast.Program;
+import ast.Symbols;
 
 
 
@@ -35,33 +37,172 @@ import ast.Program;
  */
 public class Parser {
 
+	/**
+	 * The parsers we can choose from. Both build the same ASTs and throw
+	 * ParseExceptions for the same inputs.
+	 */
+	public enum Backend {
+		/** The parser generated by JavaCC from ExpressionParser.jj */
+		JAVACC,
+		/** The hand written {@link PrattParser} */
+		PRATT
+	}
+
+	/**
+	 * System property that selects the backend used by the methods that
+	 * don't take one, e.g. -Dparser.backend=javacc
+	 */
+	public static final String BACKEND_PROPERTY = "parser.backend";
+
+	private static final Backend defaultBackend =
+		Backend.valueOf(System.getProperty(BACKEND_PROPERTY, "pratt").toUpperCase());
+
+	/**
+	 * @return The backend selected by the {@link #BACKEND_PROPERTY} system
+	 * property, PRATT if it is not set. The JavaCC parser recurses for
+	 * every level of nesting, so it runs out of stack on deeply nested
+	 * input that the PrattParser handles.
+	 */
+	public static Backend getDefaultBackend() {
+		return defaultBackend;
+	}
+
 	/**
 	 * Read input from a File and parse it into an AST representation.
+	 * <p>
+	 * The file is mapped into memory and lexed straight from the mapped
+	 * bytes, rather than being decoded and copied through a Reader. This
+	 * assumes the file is ASCII (see {@link AsciiCharSequence}).
 	 */
 	public static Program parse(File file) throws IOException, ParseException {
-		FileReader input = new FileReader(file);
-		try {
-			return parse(input);
-		}
-		finally { //No matter what happens, always close the file!
-			input.close();
-		}
+		return parse(file, defaultBackend);
+	}
+
+	public static Program parse(File file, Backend backend) throws IOException, ParseException {
+		return parse(Lexer.lex(AsciiCharSequence.map(file)), backend);
+	}
+
+	/**
+	 * Parse a program from a File, with the work split over several threads
+	 * (see {@link ParallelParser}). This is only worth it for large files,
+	 * smaller ones are parsed in one piece.
+	 * <p>
+	 * This always uses the {@link Backend#PRATT} backend.
+	 */
+	public static Program parseParallel(File file) throws IOException, ParseException {
+		return ParallelParser.parse(AsciiCharSequence.map(file));
+	}
+
+	public static Program parseParallel(String inputText) throws ParseException {
+		return ParallelParser.parse(inputText);
+	}
+
+	/**
+	 * Parse a program from a File, passing each statement to the sink as soon
+	 * as it is parsed, rather than building a Program. The input is lexed
+	 * a chunk at a time as the parser gets to it, and tokens are dropped once
+	 * they have been parsed, so memory use doesn't grow with the size of the
+	 * input (other than for the identifiers and the line starts).
+	 * <p>
+	 * This always uses the {@link Backend#PRATT} backend.
+	 * @return The identifiers of the program, which the ids in the AST
+	 * nodes refer to.
+	 */
+	public static Symbols parse(File file, StatementSink sink) throws IOException, ParseException {
+		return parse(AsciiCharSequence.map(file), sink);
 	}
 
 	/**
-	 * Read input from a java.io.Reader and parse it into an AST. It is the
-	 * caller's responsibility to close the Reader.
+	 * Parse a program from a String, passing each statement to the sink as
+	 * soon as it is parsed (see {@link #parse(File, StatementSink)}).
 	 */
-	private static Program parse(Reader input) throws ParseException {
-		JCCExpressionsParser parser = new JCCExpressionsParser(input);
+	public static Symbols parse(String inputText, StatementSink sink) throws ParseException {
+		return parse((CharSequence) inputText, sink);
+	}
+
+	private static Symbols parse(CharSequence text, StatementSink sink) throws ParseException {
+		PrattParser parser = PrattParser.streaming(text);
+		parser.Program(sink);
+		return parser.getTokens().symbols;
+	}
+
+	/**
+	 * Parse a program, making its expression nodes with a NodeFactory (e.g.
+	 * a {@link HashConsingNodeFactory}, so that repeated subexpressions
+	 * share one node).
+	 * <p>
+	 * This always uses the {@link Backend#PRATT} backend.
+	 */
+	public static Program parse(File file, NodeFactory factory) throws IOException, ParseException {
+		return parse(Lexer.lex(AsciiCharSequence.map(file)), factory);
+	}
+
+	public static Program parse(String inputText, NodeFactory factory) throws ParseException {
+		return parse(Lexer.lex(inputText), factory);
+	}
+
+	private static Program parse(TokenStream tokens, NodeFactory factory) throws ParseException {
+		PrattParser parser = new PrattParser(tokens);
+		parser.setNodeFactory(factory);
+		return parser.Program();
+	}
+
+	/**
+	 * Parse a program, recording the source span of each of its expressions
+	 * in the given Attributes.
+	 * <p>
+	 * This always uses the {@link Backend#PRATT} backend.
+	 */
+	public static Program parse(String inputText, Attributes attributes) throws ParseException {
+		PrattParser parser = new PrattParser(Lexer.lex(inputText));
+		parser.setAttributes(attributes);
 		return parser.Program();
 	}
 
+	/**
+	 * Parse a program from a File into a {@link FlatAST}. The statements are
+	 * flattened as soon as they are parsed, so the tree of objects for the
+	 * whole program is never built.
+	 * <p>
+	 * This always uses the {@link Backend#PRATT} backend.
+	 */
+	public static FlatAST parseFlat(File file) throws IOException, ParseException {
+		FlatAST.Builder builder = new FlatAST.Builder();
+		return builder.build(parse(file, builder));
+	}
+
+	public static FlatAST parseFlat(String inputText) throws ParseException {
+		FlatAST.Builder builder = new FlatAST.Builder();
+		return builder.build(parse(inputText, builder));
+	}
+
+	/**
+	 * Parse the tokens produced by the {@link Lexer} into an AST.
+	 * <p>
+	 * The parser comes from the {@link ParserPool} of the current thread, so
+	 * this is safe to call from many threads at once.
+	 */
+	static Program parse(TokenStream tokens, Backend backend) throws ParseException {
+		if (backend == Backend.PRATT)
+			return new PrattParser(tokens).Program();
+		JCCExpressionsParser parser = ParserPool.acquire(tokens);
+		try {
+			return parser.Program();
+		}
+		finally {
+			ParserPool.release(parser);
+		}
+	}
+
 	/**
 	 * Read input directly from a String and parse it into an AST.
 	 */
 	public static Program parse(String inputText) throws ParseException {
-		return parse(new StringReader(inputText));
+		return parse(inputText, defaultBackend);
+	}
+
+	public static Program parse(String inputText, Backend backend) throws ParseException {
+		return parse(Lexer.lex(inputText), backend);
 	}
 
 	/**
@@ -70,9 +211,22 @@ public class Parser {
 	 * @throws ParseException 
 	 */
 	public static Expression parseExp(String exp) throws ParseException {
-		JCCExpressionsParser parser = new JCCExpressionsParser(new StringReader(exp));
-		return parser.Expression();
+		return parseExp(exp, defaultBackend);
 	}
+
+	public static Expression parseExp(String exp, Backend backend) throws ParseException {
+		TokenStream tokens = Lexer.lex(exp);
+		if (backend == Backend.PRATT)
+			return new PrattParser(tokens).Expression();
+		JCCExpressionsParser parser = ParserPool.acquire(tokens);
+		try {
+			return parser.Expression();
+		}
+		finally {
+			ParserPool.release(parser);
+		}
+	}
+
 	/**
 	 * Pretty print an AST node and return the result as a String.
 	 */
@@ -0,0 +1,60 @@
+package parser;
+
+import parser.jcc.JCCExpressionsParser;
+
+/**
+ * Keeps one JCCExpressionsParser (and its token manager) per thread, and
+ * reuses it for every parse on that thread with the generated ReInit
+ * method, rather than allocating a new parser each time.
+ * <p>
+ * Since each thread has its own instance, nothing here needs to be
+ * synchronized. If a thread asks for a parser while its pooled one is still
+ * in use, it just gets a new one.
+ */
+public class ParserPool {
+
+	private static final ThreadLocal<ParserPool> pools = new ThreadLocal<ParserPool>() {
+		@Override
+		protected ParserPool initialValue() {
+			return new ParserPool();
+		}
+	};
+
+	private final TokenStreamTokenManager tokenManager = new TokenStreamTokenManager(null);
+	private final JCCExpressionsParser parser = new JCCExpressionsParser(tokenManager);
+	private boolean inUse = false;
+
+	private ParserPool() {
+	}
+
+	/**
+	 * Get a parser that reads from the given tokens. It must be handed back
+	 * with {@link #release(JCCExpressionsParser)} when the parse is done
+	 * (whether or not it succeeded).
+	 */
+	public static JCCExpressionsParser acquire(TokenStream tokens) {
+		ParserPool pool = pools.get();
+		if (pool.inUse)
+			return TokenStreamTokenManager.parserOn(tokens);
+		pool.inUse = true;
+		pool.tokenManager.reset(tokens);
+		pool.parser.ReInit(pool.tokenManager);
+		pool.parser.symbols = tokens.symbols;
+		return pool.parser;
+	}
+
+	/**
+	 * Hand a parser back to the pool of the current thread.
+	 */
+	public static void release(JCCExpressionsParser parser) {
+		ParserPool pool = pools.get();
+		if (parser != pool.parser)
+			return;
+		// Don't hold on to the last program until the next parse
+		pool.tokenManager.reset(null);
+		pool.parser.ReInit(pool.tokenManager);
+		pool.parser.symbols = null;
+		pool.inUse = false;
+	}
+
+}
@@ -0,0 +1,623 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.jcc.JCCExpressionsParserConstants;
+import parser.jcc.ParseException;
+import parser.jcc.Token;
+
+import ast.Assign;
+import ast.Attributes;
+import ast.BooleanType;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.IntegerType;
+import ast.NodeFactory;
+import ast.NodeList;
+import ast.Param;
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+import ast.Symbols;
+import ast.Type;
+
+/**
+ * A hand written parser for the grammar in ExpressionParser.jj, which reads
+ * the tokens straight out of a {@link TokenStream}.
+ * <p>
+ * Binary operators are parsed by precedence climbing, with a table of
+ * binding powers rather than one method per precedence level, and there is
+ * no lookahead bookkeeping like in the generated parser. Very deeply nested
+ * expressions are parsed with explicit stacks rather than by recursion, so
+ * their depth is only limited by the heap.
+ * <p>
+ * It builds exactly the same ASTs as the JavaCC parser, and throws a
+ * ParseException for the same inputs.
+ * <p>
+ * A parser made with {@link #streaming(CharSequence)} lexes its input a
+ * chunk at a time, as the parser gets to it, and drops the tokens of each
+ * statement once it has been parsed. Together with
+ * {@link #Program(StatementSink)}, this parses a program of any size with
+ * a small, fixed amount of memory for the tokens.
+ */
+public class PrattParser implements JCCExpressionsParserConstants {
+
+	/**
+	 * The binding power of binary operators, by token kind (0 for tokens that
+	 * are not binary operators).
+	 */
+	private static final int[] precedence = new int[Lexer.RBRACE + 1];
+	static {
+		precedence[SMALLER] = 1;
+		precedence[PLUS] = 2;
+		precedence[MINUS] = 2;
+		precedence[MULT] = 3;
+	}
+
+	private static final int[] STATEMENT_START = { INT, BOOL, IDENTIFIER, PRINT };
+	private static final int[] EXPRESSION_START = { LPAREN, NOT, INTEGER_LITERAL, IDENTIFIER };
+	private static final int[] TYPE_START = { INT, BOOL };
+
+	/** Number of tokens lexed at a time by a streaming parser. */
+	public static final int DEFAULT_CHUNK = 1024;
+
+	private final TokenStream tokens;
+	private int[] kind;
+	private int pos = 0;
+
+	/**
+	 * For a streaming parser: the lexer, the offset to continue lexing from
+	 * (-1 when all the input has been lexed), and the position of the first
+	 * token that is still needed.
+	 */
+	private Lexer lexer;
+	private int lexed = -1;
+	private int chunk;
+	private int mark = 0;
+
+	/**
+	 * Expressions nested deeper than this are parsed by
+	 * {@link #nestedExpression()}, which doesn't use the thread's stack.
+	 */
+	private static final int MAX_RECURSION = 500;
+	private int depth = 0;
+
+	/**
+	 * The explicit stacks used by {@link #nestedExpression()}.
+	 */
+	private int[] ops = new int[16];
+	private int[] opStarts = new int[16];
+	private int opCount = 0;
+	private Expression[] operands = new Expression[16];
+	private int[] operandStarts = new int[16];
+	private int operandCount = 0;
+
+	private NodeFactory factory = new NodeFactory();
+
+	/**
+	 * Where to record the source spans of the expressions, if anywhere.
+	 */
+	private Attributes attributes;
+
+	/**
+	 * Create a parser for tokens that have all been lexed already.
+	 */
+	public PrattParser(TokenStream tokens) {
+		this.tokens = tokens;
+		this.kind = tokens.kind;
+	}
+
+	/**
+	 * Make the expression nodes with another factory, e.g. a
+	 * {@link ast.HashConsingNodeFactory} to share them.
+	 */
+	public void setNodeFactory(NodeFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Record the source span of each expression in the given Attributes.
+	 * The span of an expression starts at its first token, which may be an
+	 * opening parenthesis around its first operand.
+	 */
+	public void setAttributes(Attributes attributes) {
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Create a parser that lexes the text as it goes.
+	 */
+	public static PrattParser streaming(CharSequence text) {
+		return streaming(text, DEFAULT_CHUNK);
+	}
+
+	/**
+	 * Create a parser that lexes the text as it goes, chunk tokens at a time.
+	 */
+	public static PrattParser streaming(CharSequence text, int chunk) {
+		return streaming(text, 0, new LineMap(), new Symbols(), chunk);
+	}
+
+	/**
+	 * Create a parser that lexes text[from..] as it goes, with a LineMap
+	 * for the text from there on, and interning identifiers into an
+	 * existing Symbols table.
+	 */
+	static PrattParser streaming(CharSequence text, int from, LineMap lines, Symbols symbols, int chunk) {
+		TokenStream tokens = new TokenStream(text, lines, symbols, chunk + 1);
+		PrattParser parser = new PrattParser(tokens);
+		parser.lexer = new Lexer(text, text.length(), tokens);
+		parser.chunk = chunk;
+		parser.lexed = parser.lexer.lex(from, chunk);
+		parser.kind = tokens.kind;
+		return parser;
+	}
+
+	/**
+	 * @return The tokens this parser reads. For a streaming parser, this only
+	 * holds the tokens of the statement being parsed, and the ones lexed
+	 * after it.
+	 */
+	public TokenStream getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Program ::= Statement* "print" Expression EOF
+	 */
+	public Program Program() throws ParseException {
+		final NodeList<Statement> statements = new NodeList<Statement>();
+		final Print[] print = new Print[1];
+		Program(new StatementSink() {
+			public void statement(Statement statement) {
+				statements.add(statement);
+			}
+			public void print(Print p) {
+				print[0] = p;
+			}
+		});
+		return new Program(statements, print[0], tokens.symbols);
+	}
+
+	/**
+	 * Parse a whole program like {@link #Program()}, but pass each statement
+	 * to the sink as soon as it has been parsed, rather than building a
+	 * Program.
+	 */
+	public void Program(StatementSink sink) throws ParseException {
+		checkLexicalError();
+		statements(sink);
+		sink.print(Print());
+	}
+
+	/**
+	 * Parse the print statement at the end of a program.
+	 * <p>
+	 * Print ::= "print" Expression EOF
+	 */
+	Print Print() throws ParseException {
+		checkLexicalError();
+		expect(PRINT, STATEMENT_START);
+		Expression e = Expression();
+		expect(EOF);
+		return new Print(e);
+	}
+
+	/**
+	 * Statements ::= Statement* EOF
+	 * <p>
+	 * This is not part of the grammar, it parses one of the chunks that
+	 * {@link ParallelParser} splits a program into.
+	 */
+	void Statements(StatementSink sink) throws ParseException {
+		checkLexicalError();
+		statements(sink);
+		if (kind[pos] != EOF)
+			throw error(STATEMENT_START);
+	}
+
+	private void statements(StatementSink sink) throws ParseException {
+		Statement statement;
+		while ((statement = Statement()) != null)
+			sink.statement(statement);
+	}
+
+	/**
+	 * Parse one Assign or FunctionDeclaration.
+	 * @return The statement, or null if the next token doesn't start one.
+	 */
+	Statement Statement() throws ParseException {
+		checkLexicalError();
+		mark = pos;
+		int k = kind[pos];
+		if (k == IDENTIFIER)
+			return Assign();
+		if (k == INT || k == BOOL)
+			return FunctionDeclaration();
+		return null;
+	}
+
+	/**
+	 * @return The offset right after the last token that was parsed.
+	 */
+	int end() {
+		return tokens.start[pos - 1] + tokens.length[pos - 1];
+	}
+
+	/**
+	 * Assign ::= Identifier "=" Expression ";"
+	 */
+	private Assign Assign() throws ParseException {
+		int id = identifier();
+		expect(ASSIGN);
+		Expression value = Expression();
+		expect(SEMICOLON);
+		return new Assign(tokens.symbols.name(id), id, value);
+	}
+
+	/**
+	 * FunctionDeclaration ::= Type Identifier "(" (Type Identifier ("," Type Identifier)*)? ")"
+	 *     "{" Assign* "return" Expression ";" "}"
+	 */
+	private FunctionDeclaration FunctionDeclaration() throws ParseException {
+		Type type = Type();
+		int id = identifier();
+		expect(LPAREN);
+		List<Param> params = new ArrayList<Param>();
+		if (kind[pos] != RPAREN) {
+			params.add(Param());
+			while (kind[pos] == Lexer.COMMA) {
+				advance();
+				params.add(Param());
+			}
+		}
+		expect(RPAREN, new int[] { Lexer.COMMA, RPAREN });
+		expect(Lexer.LBRACE);
+		NodeList<Statement> body = new NodeList<Statement>();
+		while (kind[pos] == IDENTIFIER)
+			body.add(Assign());
+		expect(RETURN, new int[] { IDENTIFIER, RETURN });
+		Expression ret = Expression();
+		expect(SEMICOLON);
+		expect(Lexer.RBRACE);
+		return new FunctionDeclaration(type, tokens.symbols.name(id), id, params, body, ret);
+	}
+
+	private Param Param() throws ParseException {
+		Type type = Type();
+		int id = identifier();
+		return new Param(type, tokens.symbols.name(id), id);
+	}
+
+	private Type Type() throws ParseException {
+		switch (kind[pos]) {
+		case INT:
+			advance();
+			return IntegerType.INSTANCE;
+		case BOOL:
+			advance();
+			return BooleanType.INSTANCE;
+		default:
+			throw error(TYPE_START);
+		}
+	}
+
+	/**
+	 * Expression ::= Binary ("?" Expression ":" Expression)?
+	 */
+	public Expression Expression() throws ParseException {
+		checkLexicalError();
+		if (depth >= MAX_RECURSION)
+			return nestedExpression();
+		depth++;
+		int start = tokens.start[pos];
+		Expression e = binary(1);
+		if (kind[pos] == QUESTION) {
+			advance();
+			Expression e2 = Expression();
+			expect(COLON);
+			Expression e3 = Expression();
+			e = span(factory.conditional(e, e2, e3), start);
+		}
+		depth--;
+		return e;
+	}
+
+	/**
+	 * Parse a sequence of operands separated by binary operators with at least
+	 * the given binding power. "+", "-" and "*" are left associative, "<" is
+	 * not associative (a < b < c is an error, like in the grammar).
+	 * <p>
+	 * This recurses at most once for each level of precedence.
+	 */
+	private Expression binary(int minPrecedence) throws ParseException {
+		int start = tokens.start[pos];
+		Expression left = unary();
+		int k, p;
+		while ((p = precedence[k = kind[pos]]) >= minPrecedence) {
+			advance();
+			Expression right = binary(p + 1);
+			switch (k) {
+			case SMALLER:
+				left = factory.lessThan(left, right);
+				minPrecedence = p + 1;
+				break;
+			case PLUS:
+				left = factory.plus(left, right);
+				break;
+			case MINUS:
+				left = factory.minus(left, right);
+				break;
+			default:
+				left = factory.times(left, right);
+				break;
+			}
+			span(left, start);
+		}
+		return left;
+	}
+
+	/**
+	 * Unary ::= "!" Unary | Primary
+	 */
+	private Expression unary() throws ParseException {
+		int first = pos;
+		int nots = 0;
+		while (kind[pos] == NOT) {
+			advance();
+			nots++;
+		}
+		Expression e;
+		if (kind[pos] == LPAREN) {
+			advance();
+			e = Expression();
+			expect(RPAREN);
+		}
+		else
+			e = primary();
+		for (; nots > 0; nots--)
+			e = span(factory.not(e), tokens.start[first + nots - 1]);
+		return e;
+	}
+
+	/**
+	 * Parse an Expression like {@link #Expression()}, but without recursion,
+	 * for expressions that are nested very deeply (long chains of "?:" or
+	 * parentheses, as in generated code).
+	 * <p>
+	 * The operators and operands that are still waiting for the rest of their
+	 * expression are kept on two explicit stacks. Besides the binary operators,
+	 * the operator stack holds markers for the unfinished "!", "(", "? ..."
+	 * and ": ..." around the expression being parsed.
+	 */
+	private Expression nestedExpression() throws ParseException {
+		int base = opCount;
+		while (true) {
+			// An operand, after any number of "!" and "("
+			int k;
+			while ((k = kind[pos]) == NOT || k == LPAREN) {
+				pushOp(k);
+				advance();
+			}
+			int start = tokens.start[pos];
+			pushOperand(primary(), start);
+			operands: while (true) {
+				// The operand is complete, apply the "!"s in front of it
+				while (opCount > base && ops[opCount - 1] == NOT) {
+					opCount--;
+					start = opStarts[opCount];
+					pushOperand(span(factory.not(popOperand()), start), start);
+				}
+				k = kind[pos];
+				int p = precedence[k];
+				if (p > 0) {
+					reduce(base, p == 1 ? 2 : p);
+					// "<" is not associative: a < b < c ends the expression at the second "<"
+					if (p > 1 || opCount == base || ops[opCount - 1] != SMALLER) {
+						pushOp(k);
+						advance();
+						break operands;
+					}
+				}
+				reduce(base, 1);
+				if (k == QUESTION) {
+					pushOp(QUESTION);
+					advance();
+					break operands;
+				}
+				// A whole Expression is complete, which may complete the "?:"
+				// expressions it is the last part of
+				while (opCount > base && ops[opCount - 1] == COLON) {
+					opCount--;
+					Expression e3 = popOperand();
+					Expression e2 = popOperand();
+					start = operandStarts[operandCount - 1];
+					pushOperand(span(factory.conditional(popOperand(), e2, e3), start), start);
+				}
+				if (opCount == base)
+					return popOperand();
+				if (ops[opCount - 1] == QUESTION) {
+					expect(COLON);
+					ops[opCount - 1] = COLON;
+					break operands;
+				}
+				expect(RPAREN);
+				opCount--;
+				operandStarts[operandCount - 1] = opStarts[opCount];
+			}
+		}
+	}
+
+	/**
+	 * Replace the binary operators on top of the operator stack, that have at
+	 * least the given binding power, and their operands by the nodes for them.
+	 */
+	private void reduce(int base, int minPrecedence) {
+		while (opCount > base && precedence[ops[opCount - 1]] >= minPrecedence) {
+			Expression right = popOperand();
+			int start = operandStarts[operandCount - 1];
+			Expression left = popOperand();
+			Expression e;
+			switch (ops[--opCount]) {
+			case SMALLER:
+				e = factory.lessThan(left, right);
+				break;
+			case PLUS:
+				e = factory.plus(left, right);
+				break;
+			case MINUS:
+				e = factory.minus(left, right);
+				break;
+			default:
+				e = factory.times(left, right);
+				break;
+			}
+			pushOperand(span(e, start), start);
+		}
+	}
+
+	/**
+	 * Primary ::= INTEGER_LITERAL | Identifier | "(" Expression ")"
+	 * <p>
+	 * Only the first two, parentheses are handled by the callers.
+	 */
+	private Expression primary() throws ParseException {
+		switch (kind[pos]) {
+		case INTEGER_LITERAL:
+			int start = tokens.start[pos];
+			Expression literal = factory.integer(tokens.length[pos] < 10
+				? tokens.value[pos]
+				: Integer.parseInt(tokens.image(pos))); // May overflow, like in the JavaCC parser
+			advance();
+			return span(literal, start);
+		case IDENTIFIER:
+			start = tokens.start[pos];
+			int id = tokens.value[pos];
+			advance();
+			return span(factory.identifier(tokens.symbols.name(id), id), start);
+		default:
+			throw error(EXPRESSION_START);
+		}
+	}
+
+	/**
+	 * Push the operator at the current token.
+	 */
+	private void pushOp(int op) {
+		if (opCount == ops.length) {
+			int[] bigger = new int[opCount * 2];
+			System.arraycopy(ops, 0, bigger, 0, opCount);
+			ops = bigger;
+			bigger = new int[opCount * 2];
+			System.arraycopy(opStarts, 0, bigger, 0, opCount);
+			opStarts = bigger;
+		}
+		opStarts[opCount] = tokens.start[pos];
+		ops[opCount++] = op;
+	}
+
+	/**
+	 * Push an operand, and the offset of its first token.
+	 */
+	private void pushOperand(Expression e, int start) {
+		if (operandCount == operands.length) {
+			Expression[] bigger = new Expression[operandCount * 2];
+			System.arraycopy(operands, 0, bigger, 0, operandCount);
+			operands = bigger;
+			int[] biggerStarts = new int[operandCount * 2];
+			System.arraycopy(operandStarts, 0, biggerStarts, 0, operandCount);
+			operandStarts = biggerStarts;
+		}
+		operandStarts[operandCount] = start;
+		operands[operandCount++] = e;
+	}
+
+	/**
+	 * Record the span of an expression, from start to the end of the last
+	 * token parsed.
+	 */
+	private Expression span(Expression e, int start) {
+		if (attributes != null)
+			attributes.setSpan(e, start, end());
+		return e;
+	}
+
+	private Expression popOperand() {
+		Expression e = operands[--operandCount];
+		operands[operandCount] = null;
+		return e;
+	}
+
+	///////////////////// Helpers ///////////////////////////////////////////////
+
+	private int identifier() throws ParseException {
+		if (kind[pos] != IDENTIFIER)
+			throw error(new int[] { IDENTIFIER });
+		int id = tokens.value[pos];
+		advance();
+		return id;
+	}
+
+	private void expect(int expected) throws ParseException {
+		if (kind[pos] != expected)
+			throw error(new int[] { expected });
+		if (expected != EOF)
+			advance();
+	}
+
+	/**
+	 * Like expect(int), but report that any of the given kinds could have
+	 * been used here.
+	 */
+	private void expect(int expected, int[] possible) throws ParseException {
+		if (kind[pos] != expected)
+			throw error(possible);
+		advance();
+	}
+
+	/**
+	 * Move on to the next token. Hitting the end of the tokens (which is only
+	 * possible when there is a lexical error, otherwise EOF is the last token)
+	 * throws the lexical error, like the generated token manager does.
+	 */
+	private void advance() {
+		if (++pos == tokens.count)
+			moreTokens();
+	}
+
+	private void checkLexicalError() {
+		if (pos == tokens.count)
+			moreTokens();
+	}
+
+	/**
+	 * Out of tokens: lex the next chunk, or throw the lexical error that
+	 * stopped the lexer.
+	 */
+	private void moreTokens() {
+		if (lexed < 0)
+			throw tokens.error;
+		// Tokens before the current statement are not needed anymore
+		tokens.discard(mark);
+		pos -= mark;
+		mark = 0;
+		lexed = lexer.lex(lexed, tokens.count + chunk);
+		kind = tokens.kind;
+		checkLexicalError();
+	}
+
+	/**
+	 * Create a ParseException for the current token, in the same format as the
+	 * one the JavaCC parser makes.
+	 */
+	private ParseException error(int[] expected) {
+		Token current = pos > 0 ? tokens.token(pos - 1) : new Token();
+		current.next = tokens.token(pos);
+		int[][] sequences = new int[expected.length][];
+		for (int i = 0; i < expected.length; i++)
+			sequences[i] = new int[] { expected[i] };
+		return new ParseException(current, sequences, tokenImage);
+	}
+
+}
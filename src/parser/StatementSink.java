@@ -0,0 +1,24 @@
+package parser;
+
+import ast.Print;
+import ast.Statement;
+
+/**
+ * Receives the parts of a program one at a time, as they are parsed (see
+ * {@link Parser#parse(java.io.File, StatementSink)}). This way the rest of
+ * the compiler can start working on a statement while the ones after it are
+ * still being parsed, and the statements don't all have to be kept in memory.
+ */
+public interface StatementSink {
+
+	/**
+	 * Called for each Assign and FunctionDeclaration, in source order.
+	 */
+	void statement(Statement statement);
+
+	/**
+	 * Called last, with the print statement at the end of the program.
+	 */
+	void print(Print print);
+
+}
@@ -0,0 +1,26 @@
+package parser;
+
+import ast.Symbols;
+import parser.jcc.Token;
+
+/**
+ * An IDENTIFIER token that was already interned by the {@link Lexer}, so the
+ * parser doesn't need to look its image up again.
+ */
+public class SymbolToken extends Token {
+
+	public final Symbols symbols;
+	public final int id;
+
+	public SymbolToken(int kind, Symbols symbols, int id) {
+		super(kind, symbols.name(id));
+		this.symbols = symbols;
+		this.id = id;
+	}
+
+	@Override
+	public Object getValue() {
+		return id;
+	}
+
+}
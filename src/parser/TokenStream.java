@@ -0,0 +1,169 @@
+package parser;
+
+import ast.Symbols;
+import parser.jcc.JCCExpressionsParserConstants;
+import parser.jcc.JCCExpressionsParserTokenManager;
+import parser.jcc.Token;
+import parser.jcc.TokenMgrError;
+
+/**
+ * The output of the {@link Lexer}: all the tokens of an input, stored as
+ * parallel arrays rather than as one Token object per token.
+ * <p>
+ * Token kinds are the same as the ones used by the JavaCC generated parser
+ * (see {@link JCCExpressionsParserConstants}). The last token is always EOF,
+ * unless the input has a lexical error, in which case the tokens stop right
+ * before the error, and the error is kept in {@link #error}.
+ */
+public class TokenStream {
+
+	public final CharSequence text;
+
+	public int[] kind;
+	/** Offset of the first character of each token. */
+	public int[] start;
+	public int[] length;
+	/**
+	 * The value of INTEGER_LITERAL tokens, and the id of IDENTIFIER tokens
+	 * in {@link #symbols}.
+	 */
+	public int[] value;
+	public int count = 0;
+
+	/**
+	 * Line starts and tabs of the input, used to compute token positions.
+	 */
+	public final LineMap lines;
+
+	/**
+	 * The identifiers are interned here.
+	 */
+	public final Symbols symbols;
+
+	/**
+	 * The lexical error found after the last token, or null.
+	 */
+	public TokenMgrError error;
+
+	public TokenStream(CharSequence text, LineMap lines, Symbols symbols, int capacity) {
+		this.text = text;
+		this.lines = lines;
+		this.symbols = symbols;
+		capacity = Math.max(capacity, 16);
+		kind = new int[capacity];
+		start = new int[capacity];
+		length = new int[capacity];
+		value = new int[capacity];
+	}
+
+	void add(int tokenKind, int tokenStart, int tokenLength, int tokenValue) {
+		if (count == kind.length)
+			grow();
+		kind[count] = tokenKind;
+		start[count] = tokenStart;
+		length[count] = tokenLength;
+		value[count] = tokenValue;
+		count++;
+	}
+
+	/**
+	 * Drop the first n tokens, moving the others to the front. This is used
+	 * when lexing a chunk at a time, so that tokens the parser is done with
+	 * don't stay around.
+	 */
+	void discard(int n) {
+		int rest = count - n;
+		System.arraycopy(kind, n, kind, 0, rest);
+		System.arraycopy(start, n, start, 0, rest);
+		System.arraycopy(length, n, length, 0, rest);
+		System.arraycopy(value, n, value, 0, rest);
+		count = rest;
+	}
+
+	/**
+	 * @return The same tokens, but with the identifiers interned in another
+	 * Symbols table. ids maps the ids of this stream's table to the ids in
+	 * the other one. This stream should not be used anymore after this.
+	 */
+	TokenStream renumber(Symbols other, int[] ids) {
+		TokenStream renumbered = new TokenStream(text, lines, other, 0);
+		for (int i = 0; i < count; i++) {
+			if (kind[i] == JCCExpressionsParserConstants.IDENTIFIER)
+				value[i] = ids[value[i]];
+		}
+		renumbered.kind = kind;
+		renumbered.start = start;
+		renumbered.length = length;
+		renumbered.value = value;
+		renumbered.count = count;
+		renumbered.error = error;
+		return renumbered;
+	}
+
+	private void grow() {
+		int capacity = kind.length * 2;
+		kind = copy(kind, capacity);
+		start = copy(start, capacity);
+		length = copy(length, capacity);
+		value = copy(value, capacity);
+	}
+
+	private static int[] copy(int[] array, int capacity) {
+		int[] bigger = new int[capacity];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+
+	/**
+	 * @return The text of the i-th token.
+	 */
+	public String image(int i) {
+		String literal = JCCExpressionsParserTokenManager.jjstrLiteralImages[kind[i]];
+		if (literal != null)
+			return literal;
+		if (kind[i] == JCCExpressionsParserConstants.IDENTIFIER)
+			return symbols.name(value[i]);
+		return text.subSequence(start[i], start[i] + length[i]).toString();
+	}
+
+	/**
+	 * Offset of the last character of the i-th token. For EOF, this is the
+	 * last character of the input, which is where JavaCC reports it.
+	 */
+	public int end(int i) {
+		return start[i] + Math.max(length[i], 1) - 1;
+	}
+
+	/**
+	 * Create a JavaCC Token for the i-th token, with its position.
+	 */
+	public Token token(int i) {
+		int tokenKind = kind[i];
+		Token t = tokenKind == JCCExpressionsParserConstants.IDENTIFIER
+			? new SymbolToken(tokenKind, symbols, value[i])
+			: Token.newToken(tokenKind, image(i));
+		// Tokens never contain line terminators or tabs, so we only need to
+		// look up the position of their first character.
+		t.beginLine = t.endLine = beginLine(i);
+		t.beginColumn = beginColumn(i);
+		t.endColumn = t.beginColumn + end(i) - start[i];
+		return t;
+	}
+
+	public int beginLine(int i) {
+		return lines.line(start[i]);
+	}
+
+	public int beginColumn(int i) {
+		return lines.column(start[i]);
+	}
+
+	public int endLine(int i) {
+		return lines.line(end(i));
+	}
+
+	public int endColumn(int i) {
+		return lines.column(end(i));
+	}
+
+}
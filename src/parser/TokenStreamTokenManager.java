@@ -0,0 +1,59 @@
+package parser;
+
+import parser.jcc.JCCExpressionsParser;
+import parser.jcc.JCCExpressionsParserTokenManager;
+import parser.jcc.SimpleCharStream;
+import parser.jcc.Token;
+
+/**
+ * Adapts a {@link TokenStream} produced by the {@link Lexer} to the token
+ * manager interface that the JavaCC generated parser expects, so we can use
+ * the hand written lexer with the generated parser.
+ * <p>
+ * Token objects are only created as the parser asks for them. A lexical
+ * error is thrown when the parser gets to it, like the generated token
+ * manager would.
+ */
+public class TokenStreamTokenManager extends JCCExpressionsParserTokenManager {
+
+	private TokenStream tokens;
+	private int next;
+
+	public TokenStreamTokenManager(TokenStream tokens) {
+		super((SimpleCharStream) null);
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Start reading from another TokenStream (null to drop the reference to
+	 * the last one).
+	 */
+	public void reset(TokenStream tokens) {
+		this.tokens = tokens;
+		this.next = 0;
+	}
+
+	/**
+	 * Create a JavaCC parser that reads its tokens from a TokenStream.
+	 */
+	public static JCCExpressionsParser parserOn(TokenStream tokens) {
+		JCCExpressionsParser parser = new JCCExpressionsParser(new TokenStreamTokenManager(tokens));
+		parser.symbols = tokens.symbols;
+		return parser;
+	}
+
+	@Override
+	public Token getNextToken() {
+		TokenStream tokens = this.tokens;
+		int i = next;
+		if (i == tokens.count) {
+			if (tokens.error != null)
+				throw tokens.error;
+			i--; // Keep on returning EOF
+		}
+		else
+			next++;
+		return tokens.token(i);
+	}
+
+}
@@ -4,9 +4,22 @@ package parser.jcc;
 import ast.*;
 import java.util.ArrayList;
 import java.util.List;
+import parser.SymbolToken;
 
 @SuppressWarnings("all")
 public class JCCExpressionsParser implements JCCExpressionsParserConstants {
+
+	/** The identifiers of the program being parsed are interned here. */
+	public Symbols symbols = new Symbols();
+
+	/**
+	 * @return The id of an IDENTIFIER token.
+	 */
+	private int symbol(Token t) {
+		if (t instanceof SymbolToken && ((SymbolToken) t).symbols == symbols)
+			return ((SymbolToken) t).id;
+		return symbols.intern(t.image);
+	}
 
   final public Program Program() throws ParseException {
         NodeList<Statement> ss = new NodeList<Statement>();
@@ -30,7 +43,7 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
     jj_consume_token(PRINT);
     e = Expression();
     jj_consume_token(0);
-          {if (true) return new Program(ss, new Print(e));}
+          {if (true) return new Program(ss, new Print(e), symbols);}
     throw new Error("Missing return statement in function");
   }
 
@@ -55,13 +68,13 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
   }
 
   final public Statement Assign() throws ParseException {
-        String name;
+        Token name;
         Expression value;
     name = Identifier();
     jj_consume_token(ASSIGN);
     value = Expression();
     jj_consume_token(SEMICOLON);
-                 {if (true) return new Assign(name, value);}
+                 {if (true) return new Assign(name.image, symbol(name), value);}
     throw new Error("Missing return statement in function");
   }
 
@@ -188,7 +201,7 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
 /* PrimaryExpression is the expression that has highest precedence.*/
   final public Expression PrimaryExpression() throws ParseException {
         Token t;
-        String i, i2;
+        Token i, i2;
         Expression e, e2;
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case INTEGER_LITERAL:
@@ -197,7 +210,7 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
       break;
     case IDENTIFIER:
       i = Identifier();
-                                                                  {if (true) return new IdentifierExp(i);}
+                                                                  {if (true) return new IdentifierExp(i.image, symbol(i));}
       break;
     case LPAREN:
       jj_consume_token(LPAREN);
@@ -213,17 +226,17 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
     throw new Error("Missing return statement in function");
   }
 
-  final public String Identifier() throws ParseException {
+  final public Token Identifier() throws ParseException {
         Token i;
     i = jj_consume_token(IDENTIFIER);
-          {if (true) return i.image;}
+          {if (true) return i;}
     throw new Error("Missing return statement in function");
   }
 
 // Functions
   final public Statement FunctionDeclaration() throws ParseException {
-    Type t;
-    String funcName, name;
+    Type t, pt;
+    Token funcName, name;
         Expression ret;
         Statement s;
         List<Param> params = new ArrayList<Param>();
@@ -234,9 +247,9 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case INT:
     case BOOL:
-      t = Type();
+      pt = Type();
       name = Identifier();
-                                   params.add(new Param(t,name));
+                                   params.add(new Param(pt,name.image,symbol(name)));
       label_4:
       while (true) {
         switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -248,9 +261,9 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
           break label_4;
         }
         jj_consume_token(26);
-        t = Type();
+        pt = Type();
         name = Identifier();
-                                      params.add(new Param(t,name));
+                                      params.add(new Param(pt,name.image,symbol(name)));
       }
       break;
     default:
@@ -276,7 +289,7 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
     ret = Expression();
     jj_consume_token(SEMICOLON);
     jj_consume_token(28);
-         {if (true) return new FunctionDeclaration(t, funcName, params, body, ret);}
+         {if (true) return new FunctionDeclaration(t, funcName.image, symbol(funcName), params, body, ret);}
     throw new Error("Missing return statement in function");
   }
 
@@ -286,11 +299,11 @@ public class JCCExpressionsParser implements JCCExpressionsParserConstants {
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case INT:
       i = jj_consume_token(INT);
-                                                  {if (true) return new IntegerType();}
+                                                  {if (true) return IntegerType.INSTANCE;}
       break;
     case BOOL:
       b = jj_consume_token(BOOL);
-                                          {if (true) return new BooleanType();}
+                                          {if (true) return BooleanType.INSTANCE;}
       break;
     default:
       jj_la1[12] = jj_gen;
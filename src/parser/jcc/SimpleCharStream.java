@@ -2,9 +2,16 @@
 /* JavaCCOptions:STATIC=false */
 package parser.jcc;
 
+import parser.LineMap;
+
 /**
  * An implementation of interface CharStream, where the stream is assumed to
  * contain only ASCII characters (without unicode processing).
+ * <p>
+ * Modified from the generated version: rather than keeping a line and column
+ * number for every char in the buffer, we count chars from the start of the
+ * input and record line starts and tabs in a {@link LineMap}. Line and column
+ * numbers are computed from it when the token manager asks for them.
  */
 
 @SuppressWarnings("all")
@@ -17,31 +24,27 @@ public class SimpleCharStream
   int tokenBegin;
 /** Position in buffer. */
   public int bufpos = -1;
-  protected int bufline[];
-  protected int bufcolumn[];
 
-  protected int column = 0;
-  protected int line = 1;
+/** Offset from the start of the input of the char at bufpos, and of the token start. */
+  protected int offset = -1;
+  protected int tokenBeginOffset = 0;
+  protected LineMap lines;
 
   protected boolean prevCharIsCR = false;
-  protected boolean prevCharIsLF = false;
 
   protected java.io.Reader inputStream;
 
   protected char[] buffer;
   protected int maxNextCharInd = 0;
   protected int inBuf = 0;
-  protected int tabSize = 8;
 
-  protected void setTabSize(int i) { tabSize = i; }
-  protected int getTabSize(int i) { return tabSize; }
+  protected void setTabSize(int i) { lines.setTabSize(i); }
+  protected int getTabSize(int i) { return lines.getTabSize(); }
 
 
   protected void ExpandBuff(boolean wrapAround)
   {
      char[] newbuffer = new char[bufsize + 2048];
-     int newbufline[] = new int[bufsize + 2048];
-     int newbufcolumn[] = new int[bufsize + 2048];
 
      try
      {
@@ -52,14 +55,6 @@ public class SimpleCharStream
                                              bufsize - tokenBegin, bufpos);
            buffer = newbuffer;
 
-           System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-           System.arraycopy(bufline, 0, newbufline, bufsize - tokenBegin, bufpos);
-           bufline = newbufline;
-
-           System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-           System.arraycopy(bufcolumn, 0, newbufcolumn, bufsize - tokenBegin, bufpos);
-           bufcolumn = newbufcolumn;
-
            maxNextCharInd = (bufpos += (bufsize - tokenBegin));
         }
         else
@@ -67,12 +62,6 @@ public class SimpleCharStream
            System.arraycopy(buffer, tokenBegin, newbuffer, 0, bufsize - tokenBegin);
            buffer = newbuffer;
 
-           System.arraycopy(bufline, tokenBegin, newbufline, 0, bufsize - tokenBegin);
-           bufline = newbufline;
-
-           System.arraycopy(bufcolumn, tokenBegin, newbufcolumn, 0, bufsize - tokenBegin);
-           bufcolumn = newbufcolumn;
-
            maxNextCharInd = (bufpos -= tokenBegin);
         }
      }
@@ -127,7 +116,10 @@ public class SimpleCharStream
         --bufpos;
         backup(0);
         if (tokenBegin == -1)
+        {
            tokenBegin = bufpos;
+           tokenBeginOffset = offset;
+        }
         throw e;
      }
   }
@@ -138,28 +130,18 @@ public class SimpleCharStream
      tokenBegin = -1;
      char c = readChar();
      tokenBegin = bufpos;
+     tokenBeginOffset = offset;
 
      return c;
   }
 
   protected void UpdateLineColumn(char c)
   {
-     column++;
-
-     if (prevCharIsLF)
-     {
-        prevCharIsLF = false;
-        line += (column = 1);
-     }
-     else if (prevCharIsCR)
+     if (prevCharIsCR)
      {
         prevCharIsCR = false;
-        if (c == '\n')
-        {
-           prevCharIsLF = true;
-        }
-        else
-           line += (column = 1);
+        if (c != '\n')
+           lines.newline(offset);
      }
 
      switch (c)
@@ -168,18 +150,14 @@ public class SimpleCharStream
            prevCharIsCR = true;
            break;
         case '\n' :
-           prevCharIsLF = true;
+           lines.newline(offset + 1);
            break;
         case '\t' :
-           column--;
-           column += (tabSize - (column % tabSize));
+           lines.tab(offset);
            break;
         default :
            break;
      }
-
-     bufline[bufpos] = line;
-     bufcolumn[bufpos] = column;
   }
 
 /** Read a character. */
@@ -188,6 +166,7 @@ public class SimpleCharStream
      if (inBuf > 0)
      {
         --inBuf;
+        ++offset;
 
         if (++bufpos == bufsize)
            bufpos = 0;
@@ -199,6 +178,7 @@ public class SimpleCharStream
         FillBuff();
 
      char c = buffer[bufpos];
+     ++offset;
 
      UpdateLineColumn(c);
      return c;
@@ -210,7 +190,7 @@ public class SimpleCharStream
    */
 
   public int getColumn() {
-     return bufcolumn[bufpos];
+     return getEndColumn();
   }
 
   /**
@@ -219,33 +199,34 @@ public class SimpleCharStream
    */
 
   public int getLine() {
-     return bufline[bufpos];
+     return getEndLine();
   }
 
   /** Get token end column number. */
   public int getEndColumn() {
-     return bufcolumn[bufpos];
+     return lines.column(offset);
   }
 
   /** Get token end line number. */
   public int getEndLine() {
-     return bufline[bufpos];
+     return lines.line(offset);
   }
 
   /** Get token beginning column number. */
   public int getBeginColumn() {
-     return bufcolumn[tokenBegin];
+     return lines.column(tokenBeginOffset);
   }
 
   /** Get token beginning line number. */
   public int getBeginLine() {
-     return bufline[tokenBegin];
+     return lines.line(tokenBeginOffset);
   }
 
 /** Backup a number of characters. */
   public void backup(int amount) {
 
     inBuf += amount;
+    offset -= amount;
     if ((bufpos -= amount) < 0)
        bufpos += bufsize;
   }
@@ -255,13 +236,10 @@ public class SimpleCharStream
   int startcolumn, int buffersize)
   {
     inputStream = dstream;
-    line = startline;
-    column = startcolumn - 1;
+    lines = new LineMap(startline, startcolumn);
 
     available = bufsize = buffersize;
     buffer = new char[buffersize];
-    bufline = new int[buffersize];
-    bufcolumn = new int[buffersize];
   }
 
   /** Constructor. */
@@ -282,19 +260,19 @@ public class SimpleCharStream
   int startcolumn, int buffersize)
   {
     inputStream = dstream;
-    line = startline;
-    column = startcolumn - 1;
+    int tabSize = lines.getTabSize();
+    lines = new LineMap(startline, startcolumn);
+    lines.setTabSize(tabSize);
 
     if (buffer == null || buffersize != buffer.length)
     {
       available = bufsize = buffersize;
       buffer = new char[buffersize];
-      bufline = new int[buffersize];
-      bufcolumn = new int[buffersize];
     }
-    prevCharIsLF = prevCharIsCR = false;
+    prevCharIsCR = false;
     tokenBegin = inBuf = maxNextCharInd = 0;
-    bufpos = -1;
+    tokenBeginOffset = 0;
+    bufpos = offset = -1;
   }
 
   /** Reinitialise. */
@@ -417,56 +395,31 @@ public class SimpleCharStream
   public void Done()
   {
      buffer = null;
-     bufline = null;
-     bufcolumn = null;
   }
 
   /**
    * Method to adjust line and column numbers for the start of a token.
+   * <p>
+   * Positions are recomputed from a new LineMap that starts at the token,
+   * so positions before the token are no longer meaningful after this.
    */
   public void adjustBeginLineColumn(int newLine, int newCol)
   {
-     int start = tokenBegin;
-     int len;
-
-     if (bufpos >= tokenBegin)
-     {
-        len = bufpos - tokenBegin + inBuf + 1;
-     }
-     else
-     {
-        len = bufsize - tokenBegin + bufpos + 1 + inBuf;
-     }
-
-     int i = 0, j = 0, k = 0;
-     int nextColDiff = 0, columnDiff = 0;
-
-     while (i < len &&
-            bufline[j = start % bufsize] == bufline[k = ++start % bufsize])
-     {
-        bufline[j] = newLine;
-        nextColDiff = columnDiff + bufcolumn[k] - bufcolumn[j];
-        bufcolumn[j] = newCol + columnDiff;
-        columnDiff = nextColDiff;
-        i++;
-     } 
-
-     if (i < len)
+     int tabSize = lines.getTabSize();
+     lines = new LineMap(newLine, newCol, tokenBeginOffset);
+     lines.setTabSize(tabSize);
+
+     // Record the line starts and tabs in the chars read since the token began
+     int end = offset + inBuf;
+     offset = tokenBeginOffset;
+     prevCharIsCR = false;
+     for (int i = tokenBegin; offset <= end; offset++)
      {
-        bufline[j] = newLine++;
-        bufcolumn[j] = newCol + columnDiff;
-
-        while (i++ < len)
-        {
-           if (bufline[j = start % bufsize] != bufline[++start % bufsize])
-              bufline[j] = newLine++;
-           else
-              bufline[j] = newLine;
-        }
+        UpdateLineColumn(buffer[i]);
+        if (++i == bufsize)
+           i = 0;
      }
-
-     line = bufline[j];
-     column = bufcolumn[j];
+     offset = end - inBuf;
   }
 
 }
@@ -0,0 +1,239 @@
+package test.ast;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.Attributes;
+import ast.BooleanType;
+import ast.Conditional;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.IntegerLiteral;
+import ast.IntegerType;
+import ast.Minus;
+import ast.Not;
+import ast.Plus;
+import ast.Print;
+import ast.Program;
+import ast.Times;
+import ast.UnknownType;
+import typechecker.TypeChecked;
+import typechecker.implementation.TypeChecker;
+import typechecker.implementation.TypeCheckerImplementation;
+
+/**
+ * The types, constant values and spans that the phases record about
+ * expressions in an {@link Attributes}.
+ */
+public class AttributesTest {
+
+	private static Expression value(Program program, int statement) {
+		return ((Assign) program.statements.elementAt(statement)).value;
+	}
+
+	private static String span(String text, Attributes attributes, Expression e) {
+		return text.substring(attributes.start(e), attributes.end(e));
+	}
+
+	@Test public void types() throws Exception {
+		Program program = Parser.parse("x = 1 + 2; y = x < 3; z = !y; print z ? x : 0", Backend.PRATT);
+		Attributes attributes = new Attributes();
+		new TypeCheckerImplementation(program, attributes).typeCheck();
+		Assert.assertSame(IntegerType.INSTANCE, attributes.type(value(program, 0)));
+		Assert.assertSame(IntegerType.INSTANCE, attributes.type(((Plus) value(program, 0)).e1));
+		Assert.assertSame(BooleanType.INSTANCE, attributes.type(value(program, 1)));
+		Assert.assertSame(BooleanType.INSTANCE, attributes.type(value(program, 2)));
+		// Conditionals and identifiers have the type of something else
+		Assert.assertNull(attributes.type(program.print.exp));
+		Assert.assertNull(attributes.type(((Conditional) program.print.exp).e1));
+	}
+
+	@Test public void separateCompilations() throws Exception {
+		Program program = Parser.parse("x = 1 * 2; print x - 1", Backend.PRATT);
+		Attributes a1 = new Attributes(), a2 = new Attributes();
+		new TypeCheckerImplementation(program, a1).typeCheck();
+		Assert.assertNull(a2.type(value(program, 0)));
+		new TypeCheckerImplementation(program, a2).typeCheck();
+		Assert.assertSame(a1.type(value(program, 0)), a2.type(value(program, 0)));
+		Assert.assertSame(IntegerType.INSTANCE, a2.type(program.print.exp));
+	}
+
+	/**
+	 * The types are only in the Attributes of each check, the deprecated
+	 * accessors of the expressions say where to find them.
+	 */
+	@SuppressWarnings("deprecation")
+	@Test public void legacyAccessors() throws Exception {
+		Program program = Parser.parse("x = 1 * 2; print x < 1", Backend.PRATT);
+		TypeChecked checked = new TypeCheckerImplementation(program).typeCheck();
+		Assert.assertSame(BooleanType.INSTANCE, checked.getAttributes().type(program.print.exp));
+		try {
+			program.print.exp.getType();
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		try {
+			new IntegerLiteral(3).setType(IntegerType.INSTANCE);
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+	}
+
+	/**
+	 * What the public entry point checks is in the Attributes it returns,
+	 * whatever else is checked afterwards.
+	 */
+	@Test public void parseAndCheck() throws Exception {
+		TypeCheckerImplementation checked = (TypeCheckerImplementation) TypeChecker.parseAndCheck("x = 1 * 2; print x < 1");
+		Program program = checked.getProgram();
+		Assert.assertSame(IntegerType.INSTANCE, checked.getAttributes().type(value(program, 0)));
+		Assert.assertSame(BooleanType.INSTANCE, checked.getAttributes().type(program.print.exp));
+
+		TypeChecked other = TypeChecker.parseAndCheck("print 1");
+		Assert.assertNull(other.getAttributes().type(value(program, 0)));
+		Assert.assertSame(IntegerType.INSTANCE, checked.getAttributes().type(value(program, 0)));
+	}
+
+	@Test public void constants() throws Exception {
+		Program program = Parser.parse("x = 1 + 2 * 3; y = !(x < 2); z = 4 < 5 ? 6 - 7 : 8; w = x + 1; v = 1 < 2 ? x : 3; print 2 < 1 ? x : 9",
+				Backend.PRATT);
+		Attributes attributes = new Attributes();
+		new TypeCheckerImplementation(program, attributes).typeCheck();
+		Assert.assertEquals(7, attributes.constant(value(program, 0)));
+		Assert.assertFalse(attributes.isConstant(value(program, 1)));
+		Assert.assertEquals(-1, attributes.constant(value(program, 2)));
+		Assert.assertEquals(1, attributes.constant(((Conditional) value(program, 2)).e1));
+		Assert.assertFalse(attributes.isConstant(value(program, 3)));
+		Assert.assertEquals(1, attributes.constant(((Plus) value(program, 3)).e2));
+		Assert.assertFalse(attributes.isConstant(value(program, 4)));
+		Assert.assertEquals(9, attributes.constant(program.print.exp));
+		try {
+			attributes.constant(value(program, 3));
+			Assert.fail();
+		}
+		catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test public void spans() throws Exception {
+		String input = "x = (1 + 2) * 3; y = !!(x < 4) ? x : 5 - 6; print !y";
+		Attributes attributes = new Attributes();
+		Program program = Parser.parse(input, attributes);
+		Assert.assertEquals(program.dump(), Parser.parse(input, Backend.PRATT).dump());
+		Times times = (Times) value(program, 0);
+		Assert.assertEquals("(1 + 2) * 3", span(input, attributes, times));
+		Assert.assertEquals("1 + 2", span(input, attributes, times.e1));
+		Assert.assertEquals("3", span(input, attributes, times.e2));
+		Conditional c = (Conditional) value(program, 1);
+		Assert.assertEquals("!!(x < 4) ? x : 5 - 6", span(input, attributes, c));
+		Assert.assertEquals("!!(x < 4)", span(input, attributes, c.e1));
+		Assert.assertEquals("!(x < 4)", span(input, attributes, ((Not) c.e1).e));
+		Assert.assertEquals("5 - 6", span(input, attributes, c.e3));
+		Assert.assertEquals("6", span(input, attributes, ((Minus) c.e3).e2));
+		Assert.assertEquals("!y", span(input, attributes, program.print.exp));
+		Assert.assertFalse(attributes.hasSpan(new IntegerLiteral(1)));
+		Assert.assertEquals(-1, attributes.start(new IntegerLiteral(1)));
+	}
+
+	/**
+	 * Deeply nested expressions are parsed without recursion, they should
+	 * get the same spans.
+	 */
+	@Test public void nestedSpans() throws Exception {
+		StringBuilder input = new StringBuilder("print ");
+		int depth = 2000;
+		for (int i = 0; i < depth; i++)
+			input.append("!(1 < 2 ? ");
+		input.append("x");
+		for (int i = 0; i < depth; i++)
+			input.append(" : (y + 3) * 4)");
+		Attributes attributes = new Attributes();
+		String text = input.toString();
+		Program program = Parser.parse(text, attributes);
+		Expression e = program.print.exp;
+		for (int i = 0; i < depth; i++) {
+			Assert.assertEquals(text.substring(6 + i * 10, text.length() - i * 15), span(text, attributes, e));
+			Conditional c = (Conditional) ((Not) e).e;
+			Assert.assertEquals("1 < 2", span(text, attributes, c.e1));
+			Assert.assertEquals("(y + 3) * 4", span(text, attributes, c.e3));
+			Assert.assertEquals("y + 3", span(text, attributes, ((Times) c.e3).e1));
+			e = c.e2;
+		}
+		Assert.assertEquals("x", span(text, attributes, e));
+	}
+
+	@Test public void internedTypes() throws Exception {
+		Program program = Parser.parse("int f(int a, boolean b) { return a; } print 1", Backend.PRATT);
+		FunctionDeclaration f = (FunctionDeclaration) program.statements.elementAt(0);
+		Assert.assertSame(IntegerType.INSTANCE, f.type);
+		Assert.assertSame(BooleanType.INSTANCE, f.formal.get(1).type);
+		Assert.assertNotSame(UnknownType.INSTANCE, new UnknownType());
+		Assert.assertEquals(UnknownType.INSTANCE, new UnknownType());
+	}
+
+	/**
+	 * Pages are made for the node ids that are used, in any order.
+	 */
+	@Test public void pages() throws Exception {
+		Expression[] es = new Expression[20000];
+		for (int i = 0; i < es.length; i++)
+			es[i] = new IntegerLiteral(i);
+		Attributes attributes = new Attributes();
+		int[] order = { 10000, 19999, 0, 5000, 15000, 1 };
+		for (int i : order) {
+			attributes.setType(es[i], IntegerType.INSTANCE);
+			attributes.setConstant(es[i], i);
+		}
+		for (int i = 0; i < es.length; i++) {
+			boolean set = false;
+			for (int j : order)
+				set |= i == j;
+			Assert.assertEquals(set, attributes.isConstant(es[i]));
+			if (set) {
+				Assert.assertSame(IntegerType.INSTANCE, attributes.type(es[i]));
+				Assert.assertEquals(i, attributes.constant(es[i]));
+			}
+			else
+				Assert.assertNull(attributes.type(es[i]));
+		}
+	}
+
+	/**
+	 * The ids of the expressions of a program can be far apart, e.g. when
+	 * some of them were made by another thread or long before.
+	 */
+	@Test public void farApartIds() throws Exception {
+		final Expression[] other = new Expression[1];
+		Thread thread = new Thread() {
+			public void run() {
+				other[0] = new IntegerLiteral(2);
+			}
+		};
+		thread.start();
+		thread.join();
+		Expression first = new IntegerLiteral(1);
+		for (int i = 0; i < 100000; i++)
+			new IntegerLiteral(i);
+		Expression last = new IntegerLiteral(3);
+		Attributes attributes = new Attributes();
+		attributes.setConstant(last, 3);
+		attributes.setConstant(first, 1);
+		attributes.setConstant(other[0], 2);
+		Assert.assertEquals(1, attributes.constant(first));
+		Assert.assertEquals(2, attributes.constant(other[0]));
+		Assert.assertEquals(3, attributes.constant(last));
+		Assert.assertFalse(attributes.isConstant(new IntegerLiteral(4)));
+	}
+
+	@Test public void nodeIds() throws Exception {
+		Print print = Parser.parse("print 1", Backend.PRATT).print;
+		Assert.assertFalse(print.exp.nodeId == new IntegerLiteral(1).nodeId);
+	}
+
+}
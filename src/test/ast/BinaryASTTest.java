@@ -0,0 +1,185 @@
+package test.ast;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.BinaryAST;
+import ast.FunctionDeclaration;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.IntegerType;
+import ast.Minus;
+import ast.NodeList;
+import ast.Param;
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+import ast.Symbols;
+
+import test.bench.ProgramGenerator;
+
+/**
+ * Programs written with {@link BinaryAST} should read back as the same tree,
+ * with the same identifier ids.
+ */
+public class BinaryASTTest {
+
+	private static Program roundTrip(Program program) throws IOException {
+		Program read = BinaryAST.read(BinaryAST.write(program));
+		Assert.assertEquals(program.dump(), read.dump());
+		Assert.assertEquals(program.symbols.size(), read.symbols.size());
+		for (int id = 0; id < program.symbols.size(); id++)
+			Assert.assertEquals(program.symbols.name(id), read.symbols.name(id));
+		return read;
+	}
+
+	private static Program roundTrip(String input) throws Exception {
+		return roundTrip(Parser.parse(input, Backend.PRATT));
+	}
+
+	@Test public void programs() throws Exception {
+		roundTrip("print 1");
+		roundTrip("x = 1; y = !(x < 2) ? x - 3 : x * 4 + y; print y");
+		roundTrip("int f(int a, boolean b) { a = a + 1; return b ? a : 0; } boolean g() { return !true; } print 1");
+		for (int i = 0; i < 50; i++)
+			roundTrip(ProgramGenerator.generate(1 + i * 5, i));
+	}
+
+	@Test public void sampleCode() throws Exception {
+		for (File file : new File("sample").listFiles()) {
+			if (file.getName().endsWith(".exp"))
+				roundTrip(Parser.parse(file, Backend.PRATT));
+		}
+	}
+
+	@Test public void ids() throws Exception {
+		Program read = roundTrip("x = 1; y = x + y; print x");
+		Assign y = (Assign) read.statements.elementAt(1);
+		Assert.assertEquals(1, y.id);
+		Assert.assertEquals(0, ((IdentifierExp) read.print.exp).id);
+		Assert.assertSame(read.symbols.name(0), ((IdentifierExp) read.print.exp).name);
+	}
+
+	@Test public void integers() throws Exception {
+		for (int value : new int[] { 0, 1, 63, 64, 127, 128, 1 << 20, Integer.MAX_VALUE, -1, -64, -65, Integer.MIN_VALUE }) {
+			Program read = roundTrip(new Program(new NodeList<Statement>(), new Print(new IntegerLiteral(value)), new Symbols()));
+			Assert.assertEquals(value, ((IntegerLiteral) read.print.exp).value);
+		}
+	}
+
+	@Test public void namesNotInSymbols() throws Exception {
+		Symbols symbols = new Symbols();
+		symbols.intern("x");
+		NodeList<Statement> statements = new NodeList<Statement>();
+		statements.add(new Assign("y", 0, new IdentifierExp("z", 7)));
+		statements.add(new FunctionDeclaration(new IntegerType(), "f", -1,
+				Arrays.asList(new Param(new IntegerType(), "a", 3)), new NodeList<Statement>(), new IdentifierExp("a", -1)));
+		Program program = new Program(statements, new Print(new IdentifierExp("x", 0)), symbols);
+		Program read = BinaryAST.read(BinaryAST.write(program));
+		Assert.assertEquals(program.dump(), read.dump());
+		Assert.assertEquals("x", read.symbols.name(0));
+		Assert.assertEquals("y", read.symbols.name(((Assign) read.statements.elementAt(0)).id));
+	}
+
+	@Test public void deeplyNested() throws Exception {
+		Program program = Parser.parse("print 1", Backend.PRATT);
+		ast.Expression e = program.print.exp;
+		for (int i = 0; i < 100000; i++)
+			e = new Minus(e, new IntegerLiteral(i));
+		byte[] bytes = BinaryAST.write(new Program(program.statements, new Print(e), program.symbols));
+		Program read = BinaryAST.read(bytes);
+		for (int i = 100000 - 1; i >= 0; i--) {
+			Minus minus = (Minus) e;
+			Minus readMinus = (Minus) read.print.exp;
+			Assert.assertEquals(i, ((IntegerLiteral) readMinus.e2).value);
+			e = minus.e1;
+			read = new Program(read.statements, new Print(readMinus.e1), read.symbols);
+		}
+		Assert.assertEquals(1, ((IntegerLiteral) read.print.exp).value);
+	}
+
+	@Test public void mappedFile() throws Exception {
+		Program program = Parser.parse(ProgramGenerator.generateFile(5000, 3), Backend.PRATT);
+		File file = File.createTempFile("program", ".ast");
+		try {
+			BinaryAST.write(program, file);
+			Assert.assertEquals(program.dump(), BinaryAST.read(file).dump());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test public void badInput() throws Exception {
+		byte[] bytes = BinaryAST.write(Parser.parse("x = 1; print x + 2", Backend.PRATT));
+		ArrayList<byte[]> bad = new ArrayList<byte[]>();
+		bad.add(new byte[0]);
+		bad.add("EXPB".getBytes());
+		byte[] version = bytes.clone();
+		version[4]++;
+		bad.add(version);
+		for (int length = 0; length < bytes.length; length++)
+			bad.add(Arrays.copyOf(bytes, length));
+		bad.add(Arrays.copyOf(bytes, bytes.length + 1));
+		for (byte[] b : bad) {
+			try {
+				BinaryAST.read(b);
+				Assert.fail(Arrays.toString(b));
+			}
+			catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Counts, lengths and ids that are negative or bigger than the input
+	 * are IOExceptions too, not exceptions from using them.
+	 */
+	@Test public void badNumbers() throws Exception {
+		byte[][] bad = {
+			// -1 names
+			{ 'E', 'X', 'P', 'A', 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f },
+			// 2^31 - 1 names
+			{ 'E', 'X', 'P', 'A', 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 },
+			// A name of length -1
+			{ 'E', 'X', 'P', 'A', 1, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f },
+			// x = ... with identifier id -1
+			{ 'E', 'X', 'P', 'A', 1, 1, 1, 'x', 1, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f },
+			// A varint with more than 32 bits
+			{ 'E', 'X', 'P', 'A', 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10 },
+		};
+		for (byte[] b : bad) {
+			try {
+				BinaryAST.read(b);
+				Assert.fail(Arrays.toString(b));
+			}
+			catch (IOException e) {
+			}
+		}
+
+		// Random changes to a valid encoding are either read or rejected
+		byte[] bytes = BinaryAST.write(Parser.parse(ProgramGenerator.generate(20, 1), Backend.PRATT));
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			byte[] b = bytes.clone();
+			for (int j = random.nextInt(4); j >= 0; j--)
+				b[random.nextInt(b.length)] = (byte) random.nextInt(256);
+			try {
+				BinaryAST.read(b);
+			}
+			catch (IOException e) {
+			}
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package test.ast;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.FlatAST;
+import ast.IntegerLiteral;
+import ast.Minus;
+import ast.Print;
+import ast.Program;
+
+import test.bench.ProgramGenerator;
+
+/**
+ * A {@link FlatAST} should hold the same tree as the Program it was made
+ * from, with its nodes numbered in postorder.
+ */
+public class FlatASTTest {
+
+	private static void test(Program program) {
+		FlatAST flat = FlatAST.from(program);
+		Assert.assertEquals(program.dump(), flat.dump());
+		Assert.assertEquals(program.toString(), flat.toString());
+		Assert.assertEquals(program.statements.size(), flat.statementCount);
+		for (int i = 0; i < flat.statementCount; i++)
+			Assert.assertEquals(program.statements.elementAt(i).dump(), flat.node(flat.statements[i]).dump());
+		Assert.assertEquals(program.print.exp.dump(), flat.node(flat.print).dump());
+		checkPostorder(flat);
+	}
+
+	/**
+	 * Children come before their parents, and right after the subtree of
+	 * the child before them.
+	 */
+	private static void checkPostorder(FlatAST flat) {
+		int[] start = new int[flat.count];
+		for (int node = 0; node < flat.count; node++) {
+			int next = node;
+			for (int i = flat.childCount(node) - 1; i >= 0; i--) {
+				int child = flat.child(node, i);
+				Assert.assertEquals(next - 1, child);
+				next = start[child];
+			}
+			start[node] = next;
+		}
+		int next = flat.count;
+		Assert.assertEquals(next - 1, flat.print);
+		next = start[flat.print];
+		for (int i = flat.statementCount - 1; i >= 0; i--) {
+			Assert.assertEquals(next - 1, flat.statements[i]);
+			next = start[flat.statements[i]];
+		}
+		Assert.assertEquals(0, next);
+	}
+
+	@Test public void programs() throws Exception {
+		test(Parser.parse("print 1", Backend.PRATT));
+		test(Parser.parse("x = 1; y = !(x < 2) ? x - 3 : x * 4 + y; print y", Backend.PRATT));
+		test(Parser.parse("int f(int a, boolean b) { a = a + 1; c = a; return b ? a : c; } boolean g() { return !true; } print 1", Backend.PRATT));
+		for (int i = 0; i < 30; i++)
+			test(Parser.parse(ProgramGenerator.generate(1 + i * 7, i), Backend.PRATT));
+	}
+
+	@Test public void sampleCode() throws Exception {
+		for (File file : new File("sample").listFiles()) {
+			if (file.getName().endsWith(".exp"))
+				test(Parser.parse(file, Backend.PRATT));
+		}
+	}
+
+	@Test public void parseFlat() throws Exception {
+		String input = ProgramGenerator.generate(500, 9);
+		Program program = Parser.parse(input, Backend.PRATT);
+		FlatAST flat = Parser.parseFlat(input);
+		Assert.assertEquals(program.dump(), flat.dump());
+		Assert.assertEquals(program.symbols.size(), flat.symbols.size());
+		checkPostorder(flat);
+	}
+
+	@Test public void traversal() throws Exception {
+		FlatAST flat = Parser.parseFlat("x = 1 + 2 * 3; y = x < 4 ? 5 : 6 - x; print !(y < 7)");
+		// Count the literals in each subtree, children first
+		int[] literals = new int[flat.count];
+		for (int node = 0; node < flat.count; node++) {
+			if (flat.kind[node] == FlatAST.INTEGER)
+				literals[node] = 1;
+			for (int i = 0; i < flat.childCount(node); i++)
+				literals[node] += literals[flat.child(node, i)];
+		}
+		Assert.assertEquals(3, literals[flat.statements[0]]);
+		Assert.assertEquals(3, literals[flat.statements[1]]);
+		Assert.assertEquals(1, literals[flat.print]);
+		Assert.assertEquals(FlatAST.NOT, flat.kind[flat.print]);
+		Assert.assertEquals(FlatAST.ASSIGN, flat.kind[flat.statements[1]]);
+		Assert.assertEquals("y", flat.symbols.name(flat.first[flat.statements[1]]));
+	}
+
+	@Test public void deeplyNested() throws Exception {
+		Program program = Parser.parse("print 1", Backend.PRATT);
+		ast.Expression e = program.print.exp;
+		for (int i = 0; i < 100000; i++)
+			e = new Minus(e, new IntegerLiteral(i));
+		FlatAST flat = FlatAST.from(new Program(program.statements, new Print(e), program.symbols));
+		Assert.assertEquals(200001, flat.count);
+		int[] depth = new int[flat.count];
+		for (int node = 0; node < flat.count; node++) {
+			for (int i = 0; i < flat.childCount(node); i++)
+				depth[node] = Math.max(depth[node], depth[flat.child(node, i)] + 1);
+		}
+		Assert.assertEquals(100000, depth[flat.print]);
+		Program back = flat.toProgram();
+		Assert.assertEquals(99999, ((IntegerLiteral) ((Minus) back.print.exp).e2).value);
+	}
+
+}
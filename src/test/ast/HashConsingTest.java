@@ -0,0 +1,106 @@
+package test.ast;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.Conditional;
+import ast.Expression;
+import ast.HashConsingNodeFactory;
+import ast.IntegerType;
+import ast.LessThan;
+import ast.Plus;
+import ast.Program;
+import ast.Times;
+
+import test.bench.ProgramGenerator;
+import typechecker.TypeChecked;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+
+/**
+ * Programs parsed with a {@link HashConsingNodeFactory} should be the same
+ * trees, with the repeated subexpressions shared, and type check in the same
+ * way.
+ */
+public class HashConsingTest {
+
+	/**
+	 * @return The type errors of a program.
+	 */
+	private static String typeCheck(Program program) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(errors));
+		try {
+			new TypeCheckerImplementation(program).typeCheck();
+			return "" + errors;
+		}
+		catch (TypeCheckerException e) {
+			return e.getMessage() + errors;
+		}
+		finally {
+			System.setOut(out);
+		}
+	}
+
+	private static void test(String input) throws Exception {
+		Program program = Parser.parse(input, Backend.PRATT);
+		Program shared = Parser.parse(input, new HashConsingNodeFactory());
+		Assert.assertEquals(program.dump(), shared.dump());
+		Assert.assertEquals(program.toString(), shared.toString());
+		Assert.assertEquals(typeCheck(program), typeCheck(shared));
+	}
+
+	@Test public void sameTrees() throws Exception {
+		test("x = 1; y = x * 2 + 1; z = x * 2 < y ? x * 2 : 1; print x * 2 + z");
+		test("x = 1; y = !(x < 1) ? !(x < 1) : !(x < 1); print y");
+		test("x = 1 < 2; y = x + 1; z = x + 1; print !x");
+		test("x = 1; print y + y");
+		for (int i = 0; i < 20; i++)
+			test(ProgramGenerator.generate(5 + i * 2, i));
+	}
+
+	@Test public void shared() throws Exception {
+		HashConsingNodeFactory factory = new HashConsingNodeFactory();
+		Program program = Parser.parse("x = 1; y = x * 2 + 1; z = x * 2 < y ? x * 2 : 1; print x * 2 + z", factory);
+		Plus y = (Plus) ((Assign) program.statements.elementAt(1)).value;
+		Conditional z = (Conditional) ((Assign) program.statements.elementAt(2)).value;
+		Plus print = (Plus) program.print.exp;
+		Times x2 = (Times) y.e1;
+		Assert.assertSame(x2, ((LessThan) z.e1).e1);
+		Assert.assertSame(x2, z.e2);
+		Assert.assertSame(x2, print.e1);
+		Assert.assertSame(((Assign) program.statements.elementAt(0)).value, y.e2);
+		Assert.assertSame(y.e2, z.e3);
+		// x, 1, 2, x * 2, x * 2 + 1, y, x * 2 < y, the conditional, z, x * 2 + z
+		Assert.assertEquals(10, factory.size());
+		Assert.assertTrue(factory.requests() > factory.size());
+	}
+
+	@Test public void structuralHash() throws Exception {
+		Expression e1 = Parser.parseExp("x * 2 + (y < 3 ? !b : 4)");
+		Expression e2 = Parser.parseExp("x * 2 + (y < 3 ? !b : 4)");
+		Assert.assertNotSame(e1, e2);
+		Assert.assertEquals(e1.structuralHash(), e2.structuralHash());
+		String[] different = { "x * 2 + (y < 3 ? !b : 5)", "x * 2 - (y < 3 ? !b : 4)", "2 * x + (y < 3 ? !b : 4)",
+				"x * 2 + (y < 3 ? b : 4)", "x * 2 + (y < 3 ? 4 : !b)", "z * 2 + (y < 3 ? !b : 4)" };
+		for (String other : different)
+			Assert.assertFalse(other, e1.structuralHash() == Parser.parseExp(other).structuralHash());
+	}
+
+	@Test public void typesOfSharedNodes() throws Exception {
+		Program program = Parser.parse("x = 1; y = x * 2; z = x * 2; print y + z", new HashConsingNodeFactory());
+		TypeChecked checked = new TypeCheckerImplementation(program).typeCheck();
+		Expression x2 = ((Assign) program.statements.elementAt(1)).value;
+		Assert.assertSame(x2, ((Assign) program.statements.elementAt(2)).value);
+		Assert.assertEquals(new IntegerType(), checked.getAttributes().type(x2));
+	}
+
+}
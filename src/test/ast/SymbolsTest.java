@@ -0,0 +1,109 @@
+package test.ast;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+
+import ast.Assign;
+import ast.IdentifierExp;
+import ast.Plus;
+import ast.Program;
+import ast.SymbolMap;
+import ast.Symbols;
+
+/**
+ * Tests for the interning of identifiers in {@link Symbols}, and for the
+ * tables indexed by their ids.
+ */
+public class SymbolsTest {
+
+	@Test public void denseIds() {
+		Symbols symbols = new Symbols();
+		Assert.assertEquals(0, symbols.intern("x"));
+		Assert.assertEquals(1, symbols.intern("y"));
+		Assert.assertEquals(0, symbols.intern("x"));
+		Assert.assertEquals(2, symbols.size());
+		Assert.assertEquals("y", symbols.name(1));
+		Assert.assertEquals(-1, symbols.lookup("z"));
+	}
+
+	@Test public void internFromText() {
+		Symbols symbols = new Symbols();
+		String text = "abc = ab + abc";
+		int abc = symbols.intern(text, 0, 3);
+		int ab = symbols.intern(text, 6, 2);
+		Assert.assertEquals(abc, symbols.intern(text, 11, 3));
+		Assert.assertEquals(abc, symbols.intern("abc"));
+		Assert.assertEquals(ab, symbols.lookup("ab"));
+		Assert.assertNotSame(abc, ab);
+	}
+
+	/**
+	 * Short ASCII names are kept in the hash table itself, the others
+	 * elsewhere. Both kinds should be found from Strings and from text.
+	 */
+	@Test public void packedNames() {
+		Symbols symbols = new Symbols();
+		String[] names = { "a", "Aa", "BB", "abcdefgh", "abcdefghi", "abcdefg\u00e9", "\u00e9", "a\u0000", "AaAa", "BBBB", "AaBB",
+				"v12345", "v123456", "_", "z9" };
+		for (int i = 0; i < names.length; i++)
+			Assert.assertEquals(i, symbols.intern(names[i]));
+		String text = "";
+		for (String name : names)
+			text += " " + name;
+		int at = 1;
+		for (int i = 0; i < names.length; i++) {
+			Assert.assertEquals(names[i], i, symbols.intern(text, at, names[i].length()));
+			Assert.assertEquals(names[i], i, symbols.lookup(names[i]));
+			Assert.assertEquals(names[i], symbols.name(i));
+			at += names[i].length() + 1;
+		}
+		Assert.assertEquals(-1, symbols.lookup("abcdefgi"));
+		Assert.assertEquals(-1, symbols.lookup("a\u0000\u0000"));
+		Assert.assertEquals(names.length, symbols.size());
+	}
+
+	@Test public void manySymbols() {
+		Symbols symbols = new Symbols();
+		for (int i = 0; i < 100000; i++)
+			Assert.assertEquals(i, symbols.intern("v" + i));
+		for (int i = 0; i < 100000; i++) {
+			Assert.assertEquals(i, symbols.lookup("v" + i));
+			Assert.assertEquals("v" + i, symbols.name(i));
+		}
+	}
+
+	@Test public void symbolMap() {
+		Symbols symbols = new Symbols();
+		SymbolMap<Integer> map = new SymbolMap<Integer>(symbols);
+		int x = symbols.intern("x");
+		Assert.assertNull(map.lookup(x));
+		Assert.assertTrue(map.put(x, 1));
+		Assert.assertFalse(map.put(x, 2));
+		Assert.assertEquals(1, (int) map.lookup(x));
+		map.set(x, 3);
+		Assert.assertEquals(3, (int) map.lookup(x));
+		// Symbols interned after the map was made
+		int far = 0;
+		for (int i = 0; i < 1000; i++)
+			far = symbols.intern("v" + i);
+		Assert.assertNull(map.lookup(far));
+		map.set(far, 4);
+		Assert.assertEquals(4, (int) map.lookup(far));
+		Assert.assertEquals(3, (int) map.toImpTable().lookup("x"));
+	}
+
+	@Test public void parsedIds() throws Exception {
+		Program p = Parser.parse("x = 1; y = x + y; print x");
+		Assign x = (Assign) p.statements.elementAt(0);
+		Assign y = (Assign) p.statements.elementAt(1);
+		Plus plus = (Plus) y.value;
+		Assert.assertEquals(x.id, ((IdentifierExp) plus.e1).id);
+		Assert.assertEquals(y.id, ((IdentifierExp) plus.e2).id);
+		Assert.assertEquals(x.id, ((IdentifierExp) p.print.exp).id);
+		Assert.assertEquals("y", p.symbols.name(y.id));
+		Assert.assertEquals(2, p.symbols.size());
+	}
+
+}
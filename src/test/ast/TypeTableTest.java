@@ -0,0 +1,146 @@
+package test.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Attributes;
+import ast.BooleanType;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.FunctionType;
+import ast.IdentifierExp;
+import ast.IntegerType;
+import ast.Program;
+import ast.Type;
+import ast.TypeTable;
+import ast.UnknownType;
+
+/**
+ * Type ids, the canonical instances of types, function types and the table
+ * of which types are assignable to which.
+ */
+public class TypeTableTest {
+
+	private static final Type INT = IntegerType.INSTANCE;
+	private static final Type BOOLEAN = BooleanType.INSTANCE;
+
+	private static List<Type> types(Type... types) {
+		return Arrays.asList(types);
+	}
+
+	@Test public void basicTypes() {
+		Assert.assertEquals(TypeTable.INT, new IntegerType().id());
+		Assert.assertEquals(TypeTable.BOOLEAN, new BooleanType().id());
+		Assert.assertEquals(TypeTable.UNKNOWN, new UnknownType().id());
+		Assert.assertSame(INT, TypeTable.type(TypeTable.INT));
+		Assert.assertSame(BOOLEAN, TypeTable.canonical(new BooleanType()));
+		Assert.assertEquals(new IntegerType(), INT);
+		Assert.assertEquals(new IntegerType().hashCode(), INT.hashCode());
+		Assert.assertFalse(INT.equals(BOOLEAN));
+		Assert.assertFalse(INT.equals(null));
+	}
+
+	@Test public void assignable() {
+		Type[] basic = { INT, BOOLEAN, UnknownType.INSTANCE };
+		for (Type to : basic) {
+			for (Type from : basic)
+				Assert.assertEquals(to == from, TypeTable.assignableFrom(to, from));
+		}
+		Assert.assertTrue(TypeTable.assignableFrom(INT, new IntegerType()));
+	}
+
+	@Test public void functionTypes() {
+		FunctionType f = FunctionType.of(INT, types(INT, BOOLEAN));
+		Assert.assertEquals(f, FunctionType.of(new IntegerType(), types(new IntegerType(), new BooleanType())));
+		Assert.assertEquals(f.hashCode(), FunctionType.of(INT, types(INT, BOOLEAN)).hashCode());
+		Assert.assertSame(INT, f.result);
+		Assert.assertSame(BOOLEAN, f.param(1));
+		Assert.assertEquals(TypeTable.FUNCTION, f.id());
+		Assert.assertEquals("int(int, boolean)", f.toString());
+		FunctionType g = FunctionType.of(INT, types(BOOLEAN, INT));
+		FunctionType h = FunctionType.of(INT, types(INT));
+		FunctionType none = FunctionType.of(BOOLEAN, Collections.<Type>emptyList());
+		Assert.assertEquals("boolean()", none.toString());
+		List<FunctionType> all = Arrays.asList(f, g, h, none);
+		for (FunctionType to : all) {
+			Assert.assertFalse(TypeTable.assignableFrom(INT, to));
+			Assert.assertFalse(TypeTable.assignableFrom(to, INT));
+			Assert.assertFalse(to.equals(INT));
+			for (FunctionType from : all) {
+				Assert.assertEquals(to == from, to.equals(from));
+				Assert.assertEquals(to == from, TypeTable.assignableFrom(to, from));
+			}
+		}
+	}
+
+	@Test public void signatures() throws Exception {
+		Program program = Parser.parse("int f(int a, boolean b) { return a; } boolean g() { return true < 1; } print 1", Backend.PRATT);
+		FunctionDeclaration f = (FunctionDeclaration) program.statements.elementAt(0);
+		FunctionDeclaration g = (FunctionDeclaration) program.statements.elementAt(1);
+		Assert.assertEquals(FunctionType.of(INT, types(INT, BOOLEAN)), f.signature);
+		Assert.assertEquals(FunctionType.of(BOOLEAN, Collections.<Type>emptyList()), g.signature);
+		Program jcc = Parser.parse("int f(int a, boolean b) { return a; } print 1", Backend.JAVACC);
+		Assert.assertEquals(f.signature, ((FunctionDeclaration) jcc.statements.elementAt(0)).signature);
+	}
+
+	/**
+	 * Making function types doesn't change the table of basic types.
+	 */
+	@Test public void manyTypes() {
+		List<FunctionType> made = new ArrayList<FunctionType>();
+		List<Type> params = new ArrayList<Type>();
+		for (int i = 0; i < 300; i++) {
+			made.add(FunctionType.of(i % 2 == 0 ? INT : BOOLEAN, params));
+			params.add(i % 3 == 0 ? BOOLEAN : INT);
+		}
+		for (int i = 0; i < made.size(); i++) {
+			FunctionType f = made.get(i);
+			Assert.assertEquals(i, f.paramCount());
+			Assert.assertEquals(TypeTable.FUNCTION, f.id());
+			Assert.assertTrue(TypeTable.assignableFrom(f, f));
+			if (i > 0)
+				Assert.assertFalse(TypeTable.assignableFrom(f, made.get(i - 1)));
+		}
+		Assert.assertTrue(TypeTable.assignableFrom(INT, INT));
+		Assert.assertFalse(TypeTable.assignableFrom(BOOLEAN, INT));
+		Assert.assertNull(TypeTable.type(TypeTable.NONE));
+	}
+
+	/**
+	 * Each Attributes numbers the function types set in it, so a function
+	 * type reads back equal to the one set.
+	 */
+	@Test public void functionAttributes() {
+		Attributes first = new Attributes(), second = new Attributes();
+		Expression a = new IdentifierExp("a", 0), b = new IdentifierExp("b", 1), c = new IdentifierExp("c", 2);
+		FunctionType f = FunctionType.of(INT, types(INT));
+		FunctionType g = FunctionType.of(BOOLEAN, types(INT, INT));
+		first.setType(a, f);
+		first.setType(b, g);
+		first.setType(c, FunctionType.of(INT, types(INT)));
+		second.setType(a, g);
+		second.setType(c, INT);
+		Assert.assertEquals(f, first.type(a));
+		Assert.assertEquals(g, first.type(b));
+		Assert.assertEquals(f, first.type(c));
+		Assert.assertEquals(g, second.type(a));
+		Assert.assertNull(second.type(b));
+		Assert.assertSame(INT, second.type(c));
+		first.setType(a, FunctionType.of(INT, types(INT)));
+		try {
+			first.setType(a, g);
+			Assert.fail();
+		}
+		catch (IllegalStateException e) {
+		}
+	}
+
+}
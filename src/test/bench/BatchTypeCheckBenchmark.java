@@ -0,0 +1,94 @@
+package test.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import typechecker.CheckResult;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeChecker;
+
+/**
+ * Checks a batch of small programs, half of them with errors, one at a time
+ * with parseAndCheck (printing to a stream that drops everything), and with
+ * checkAll on pools of 1 up to as many threads as there are processors.
+ * Reports how many programs are checked per minute.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of programs.
+ */
+public class BatchTypeCheckBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		Random random = new Random(42);
+		List<String> sources = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			String program = ProgramGenerator.generate(3 + random.nextInt(20), i);
+			// Break every other one
+			sources.add(i % 2 == 0 ? program : "x = 1 < 2; y = x + 1;\n" + program);
+		}
+		System.out.println("Input: " + count + " programs");
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+		long time = Long.MAX_VALUE;
+		int rejected = 0;
+		try {
+			for (int run = 0; run < RUNS; run++) {
+				long start = System.nanoTime();
+				rejected = 0;
+				for (String source : sources) {
+					try {
+						TypeChecker.parseAndCheck(source);
+					}
+					catch (TypeCheckerException e) {
+						rejected++;
+					}
+				}
+				time = Math.min(time, System.nanoTime() - start);
+			}
+		}
+		finally {
+			System.setOut(console);
+		}
+		report("one at a time", count, rejected, time);
+
+		for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			time = Long.MAX_VALUE;
+			for (int run = 0; run < RUNS; run++) {
+				long start = System.nanoTime();
+				List<CheckResult> results = TypeChecker.checkAll(sources, executor);
+				time = Math.min(time, System.nanoTime() - start);
+				rejected = 0;
+				for (CheckResult result : results) {
+					if (!result.ok())
+						rejected++;
+				}
+			}
+			executor.shutdown();
+			report("checkAll, " + threads + " threads", count, rejected, time);
+		}
+	}
+
+	private static void report(String name, int count, int rejected, long nanos) {
+		System.out.printf("%-22s %8.0f ms, %10.0f programs/minute, %d rejected%n", name, nanos / 1e6,
+				count * 60e9 / nanos, rejected);
+	}
+
+}
@@ -0,0 +1,50 @@
+package test.bench;
+
+import java.io.File;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.BinaryAST;
+import ast.Program;
+
+/**
+ * Compares parsing a large generated program against loading it from a
+ * memory-mapped file written with {@link BinaryAST}.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class BinaryASTBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		File source = ProgramGenerator.generateFile(statements, 42);
+		File binary = File.createTempFile("program", ".ast");
+		binary.deleteOnExit();
+		BinaryAST.write(Parser.parse(source, Backend.PRATT), binary);
+		System.out.println("Input: " + statements + " statements, " + source.length() / 1024 + " KB, "
+				+ binary.length() / 1024 + " KB encoded");
+
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			Program parsed = Parser.parse(source, Backend.PRATT);
+			long parse = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			Program loaded = BinaryAST.read(binary);
+			long load = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			BinaryAST.write(parsed, binary);
+			long write = System.nanoTime() - start;
+
+			if (loaded.statements.size() != parsed.statements.size())
+				throw new Error("Wrong number of statements");
+			System.out.printf("parse %8.2f ms   load %8.2f ms   write %8.2f ms%n", parse / 1e6, load / 1e6, write / 1e6);
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package test.bench;
+
+import java.util.List;
+import java.util.Random;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.AST;
+import ast.Assign;
+import ast.BooleanType;
+import ast.Conditional;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.FunctionType;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.IntegerType;
+import ast.LessThan;
+import ast.Minus;
+import ast.NodeList;
+import ast.Not;
+import ast.Param;
+import ast.Plus;
+import ast.Print;
+import ast.Program;
+import ast.Times;
+import ast.UnknownType;
+import visitor.SwitchVisitor;
+
+/**
+ * Compares double dispatch (n.accept(this)) against
+ * {@link SwitchVisitor#dispatch(AST)}, walking a large generated program and
+ * a set of deep random expressions, which mix all the kinds of expressions
+ * so the call sites see many classes.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate and the depth of the expressions.
+ */
+public class DispatchBenchmark {
+
+	private static final int WARMUP = 10;
+	private static final int RUNS = 10;
+	private static final int TREES = 200;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		final int depth = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		final Program program = Parser.parse(ProgramGenerator.generate(statements, 42), Backend.PRATT);
+		final Expression[] trees = new Expression[TREES];
+		Random random = new Random(42);
+		for (int i = 0; i < TREES; i++)
+			trees[i] = deep(random, depth);
+
+		// Deep trees need a deep stack, the visitors recurse
+		Thread thread = new Thread(null, new Runnable() {
+			public void run() {
+				System.out.println("Program: " + program.statements.size() + " statements");
+				measure(program);
+				System.out.println("Deep trees: " + TREES + " of depth " + depth);
+				measure(trees);
+			}
+		}, "bench", 1 << 28);
+		thread.start();
+		thread.join();
+	}
+
+	private static void measure(AST... roots) {
+		Counter accept = new Counter(false), dispatch = new Counter(true);
+		for (int i = 0; i < WARMUP; i++) {
+			accept.count(roots);
+			dispatch.count(roots);
+		}
+		long acceptTime = 0, dispatchTime = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			long a = accept.count(roots);
+			acceptTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			long d = dispatch.count(roots);
+			dispatchTime += System.nanoTime() - start;
+			if (a != d)
+				throw new Error("Different counts");
+		}
+		System.out.printf("accept   %8.2f ms%ndispatch %8.2f ms%n", acceptTime / 1e6 / RUNS, dispatchTime / 1e6 / RUNS);
+	}
+
+	/**
+	 * @return An expression of the given depth, with a random kind of node at
+	 * each level and small subtrees on the side.
+	 */
+	private static Expression deep(Random random, int depth) {
+		Expression e = new IdentifierExp("x", 0);
+		for (int i = 0; i < depth; i++) {
+			Expression side = random.nextBoolean() ? new IntegerLiteral(i) : new Not(new IdentifierExp("y", 1));
+			switch (random.nextInt(6)) {
+			case 0:
+				e = new Plus(e, side);
+				break;
+			case 1:
+				e = new Minus(side, e);
+				break;
+			case 2:
+				e = new Times(e, side);
+				break;
+			case 3:
+				e = new LessThan(side, e);
+				break;
+			case 4:
+				e = new Not(e);
+				break;
+			default:
+				e = new Conditional(side, e, new IntegerLiteral(i));
+			}
+		}
+		return e;
+	}
+
+	/**
+	 * Weighs the nodes of a tree, walking it with accept or with dispatch.
+	 * The weights differ by kind, so the walk can't be folded away.
+	 */
+	private static class Counter extends SwitchVisitor<Void> {
+
+		private final boolean dispatch;
+		private long weight;
+
+		Counter(boolean dispatch) {
+			this.dispatch = dispatch;
+		}
+
+		long count(AST[] roots) {
+			weight = 0;
+			for (AST root : roots)
+				go(root);
+			return weight;
+		}
+
+		private void go(AST n) {
+			if (dispatch)
+				dispatch(n);
+			else
+				n.accept(this);
+		}
+
+		public <T extends AST> Void visit(NodeList<T> ns) {
+			for (int i = 0; i < ns.size(); i++)
+				go(ns.elementAt(i));
+			return null;
+		}
+
+		public Void visit(Program n) {
+			go(n.statements);
+			go(n.print);
+			return null;
+		}
+
+		public Void visit(Print n) {
+			go(n.exp);
+			return null;
+		}
+
+		public Void visit(Assign n) {
+			weight += 1;
+			go(n.value);
+			return null;
+		}
+
+		public Void visit(LessThan n) {
+			weight += 2;
+			go(n.e1);
+			go(n.e2);
+			return null;
+		}
+
+		public Void visit(Conditional n) {
+			weight += 3;
+			go(n.e1);
+			go(n.e2);
+			go(n.e3);
+			return null;
+		}
+
+		public Void visit(Plus n) {
+			weight += 4;
+			go(n.e1);
+			go(n.e2);
+			return null;
+		}
+
+		public Void visit(Minus n) {
+			weight += 5;
+			go(n.e1);
+			go(n.e2);
+			return null;
+		}
+
+		public Void visit(Times n) {
+			weight += 6;
+			go(n.e1);
+			go(n.e2);
+			return null;
+		}
+
+		public Void visit(IntegerLiteral n) {
+			weight += 7;
+			return null;
+		}
+
+		public Void visit(IdentifierExp n) {
+			weight += 8;
+			return null;
+		}
+
+		public Void visit(Not n) {
+			weight += 9;
+			go(n.e);
+			return null;
+		}
+
+		public Void visit(IntegerType n) {
+			return null;
+		}
+
+		public Void visit(BooleanType n) {
+			return null;
+		}
+
+		public Void visit(UnknownType n) {
+			return null;
+		}
+
+		public Void visit(FunctionType n) {
+			return null;
+		}
+
+		public Void visit(FunctionDeclaration n) {
+			weight += 10;
+			go(n.assign);
+			go(n.ret);
+			return null;
+		}
+
+		public Void visit(List<Param> n) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package test.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Attributes;
+import ast.Program;
+import typechecker.BufferedErrorSink;
+import typechecker.ErrorSink;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+
+/**
+ * Type checks a program with an error in every statement, sending the
+ * messages to the console (System.out, redirected to a file here), to a
+ * {@link BufferedErrorSink} printed to the same file at the end, or nowhere,
+ * and stopping at the first error to the console.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class ErrorReportBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		StringBuilder input = new StringBuilder("b = 1 < 2;\n");
+		for (int i = 0; i < statements; i++)
+			input.append("v").append(i).append(" = (b + ").append(i).append(") * (b < ").append(i).append(");\n");
+		input.append("print b");
+		Program program = Parser.parse(input.toString(), Backend.PRATT);
+
+		File file = File.createTempFile("errors", ".txt");
+		file.deleteOnExit();
+		PrintStream console = System.out;
+		PrintStream out = new PrintStream(new FileOutputStream(file), false);
+		System.setOut(out);
+		String[] sinks = { "console", "buffered", "discard", "failfast" };
+		long[] times = new long[sinks.length];
+		try {
+			for (int s = 0; s < sinks.length; s++) {
+				for (int i = 0; i < WARMUP; i++)
+					check(program, sinks[s], out);
+				long start = System.nanoTime();
+				for (int i = 0; i < RUNS; i++)
+					check(program, sinks[s], out);
+				times[s] = System.nanoTime() - start;
+			}
+		}
+		finally {
+			System.setOut(console);
+			out.close();
+		}
+		System.out.println("Input: " + statements + " statements, " + 3 * statements + " errors");
+		for (int s = 0; s < sinks.length; s++)
+			System.out.printf("%-9s %8.2f ms/check%n", sinks[s], times[s] / 1e6 / RUNS);
+	}
+
+	private static void check(Program program, String sink, PrintStream out) {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		BufferedErrorSink buffer = new BufferedErrorSink();
+		if (sink.equals("buffered"))
+			checker.setErrorSink(buffer);
+		else if (sink.equals("discard"))
+			checker.setErrorSink(ErrorSink.DISCARD);
+		else if (sink.equals("failfast"))
+			checker.setMaxErrors(1);
+		try {
+			checker.typeCheck();
+			throw new Error("Expected type errors");
+		}
+		catch (TypeCheckerException expected) {
+		}
+		buffer.printTo(out);
+	}
+
+}
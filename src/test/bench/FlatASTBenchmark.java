@@ -0,0 +1,117 @@
+package test.bench;
+
+import java.io.File;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.Conditional;
+import ast.Expression;
+import ast.FlatAST;
+import ast.FunctionDeclaration;
+import ast.IntegerLiteral;
+import ast.Program;
+import ast.Statement;
+import visitor.ExpressionWalker;
+
+/**
+ * Compares a large generated program as a tree of objects against a
+ * {@link FlatAST}: the heap they take (still in use after a garbage
+ * collection), and the time to walk all their nodes, counting the integer
+ * literals and conditionals.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class FlatASTBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		File file = ProgramGenerator.generateFile(statements, 42);
+
+		long before = usedHeap();
+		Program program = Parser.parse(file, Backend.PRATT);
+		long tree = usedHeap() - before;
+		before = usedHeap();
+		FlatAST flat = Parser.parseFlat(file);
+		long flatHeap = usedHeap() - before;
+		System.out.println("Input: " + statements + " statements, " + flat.count + " nodes");
+		long arrays = flat.kind.length + 4L * (flat.first.length + flat.second.length + flat.lists.length + flat.statements.length);
+		System.out.printf("objects %8d KB%nflat    %8d KB, of which %d KB in the arrays, the rest is the Symbols%n",
+				tree / 1024, flatHeap / 1024, arrays / 1024);
+
+		Counter counter = new Counter();
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			counter.count(program);
+			long objects = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int literals = 0, conditionals = 0;
+			byte[] kind = flat.kind;
+			for (int node = 0; node < flat.count; node++) {
+				if (kind[node] == FlatAST.INTEGER)
+					literals++;
+				else if (kind[node] == FlatAST.CONDITIONAL)
+					conditionals++;
+			}
+			long flatTime = System.nanoTime() - start;
+			if (counter.literals != literals || counter.conditionals != conditionals)
+				throw new Error("Different counts");
+
+			System.out.printf("objects %8.2f ms   flat %8.2f ms%n", objects / 1e6, flatTime / 1e6);
+		}
+	}
+
+	/**
+	 * Counts over the tree of objects, walking the expressions of each
+	 * statement.
+	 */
+	private static class Counter extends ExpressionWalker<Void> {
+
+		int literals, conditionals;
+
+		void count(Program program) {
+			literals = conditionals = 0;
+			for (int i = 0; i < program.statements.size(); i++)
+				count(program.statements.elementAt(i));
+			walk(program.print.exp);
+		}
+
+		private void count(Statement statement) {
+			if (statement instanceof Assign)
+				walk(((Assign) statement).value);
+			else {
+				FunctionDeclaration function = (FunctionDeclaration) statement;
+				for (int i = 0; i < function.assign.size(); i++)
+					count(function.assign.elementAt(i));
+				walk(function.ret);
+			}
+		}
+
+		@Override
+		protected void enter(Expression n) {
+			if (n instanceof IntegerLiteral)
+				literals++;
+			else if (n instanceof Conditional)
+				conditionals++;
+		}
+
+		@Override
+		protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+			return null;
+		}
+
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
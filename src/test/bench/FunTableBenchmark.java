@@ -0,0 +1,140 @@
+package test.bench;
+
+import java.util.Random;
+
+import util.FunTable;
+import util.HamtFunTable;
+
+/**
+ * Compares {@link FunTable}, a chain of bindings, against
+ * {@link HamtFunTable} at 1k, 100k and 1M bindings: building a table one
+ * insert at a time, looking up names in it, merging two tables that have
+ * half of their names in common, and merging a table with the one it was
+ * made from by a few more inserts.
+ * <p>
+ * Looking a name up in the chain takes time proportional to the size of
+ * the table, so only a sample of lookups is timed for it, and the time per
+ * operation reported. Merging chains recurses once per binding, it is not
+ * timed for the largest size.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the sizes to measure.
+ */
+public class FunTableBenchmark {
+
+	private static final int RUNS = 5;
+
+	/**
+	 * How many lookups to time in a chain of bindings.
+	 */
+	private static final int CHAIN_LOOKUPS = 1000;
+
+	/**
+	 * The largest chains to merge.
+	 */
+	private static final int CHAIN_MERGE_LIMIT = 100000;
+
+	/**
+	 * How many more names the table merged with the one it was made from has.
+	 */
+	private static final int EXTRA = 10;
+
+	public static void main(final String[] args) throws Exception {
+		// Merging chains recurses through the whole chain
+		Thread thread = new Thread(null, new Runnable() {
+			public void run() {
+				int[] sizes = { 1000, 100000, 1000000 };
+				if (args.length > 0) {
+					sizes = new int[args.length];
+					for (int i = 0; i < args.length; i++)
+						sizes[i] = Integer.parseInt(args[i]);
+				}
+				System.out.printf("%-8s %9s %14s %14s %12s %12s%n", "", "bindings", "insert ns/op", "lookup ns/op",
+						"merge ms", "shared ms");
+				for (int size : sizes)
+					measure(size);
+			}
+		}, "bench", 1L << 30);
+		thread.start();
+		thread.join();
+	}
+
+	private static void measure(int size) {
+		String[] names = new String[size];
+		for (int i = 0; i < size; i++)
+			names[i] = "v" + i;
+		Random random = new Random(42);
+		int[] lookups = new int[size];
+		for (int i = 0; i < size; i++)
+			lookups[i] = random.nextInt(size);
+
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			FunTable<Integer> chain = FunTable.theEmpty();
+			for (int i = 0; i < size; i++)
+				chain = chain.insert(names[i], i);
+			long chainInsert = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			HamtFunTable<Integer> hamt = HamtFunTable.theEmpty();
+			for (int i = 0; i < size; i++)
+				hamt = hamt.insert(names[i], i);
+			long hamtInsert = System.nanoTime() - start;
+
+			int chainLookups = Math.min(size, CHAIN_LOOKUPS);
+			long found = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < chainLookups; i++)
+				found += chain.lookup(names[lookups[i]]);
+			long chainLookup = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < size; i++)
+				found -= hamt.lookup(names[lookups[i]]);
+			long hamtLookup = System.nanoTime() - start;
+			if (size == chainLookups && found != 0)
+				throw new Error("Different values");
+
+			// Two tables with the names 0..size/2 and size/4..3*size/4
+			FunTable<Integer> chain1 = FunTable.theEmpty(), chain2 = FunTable.theEmpty();
+			HamtFunTable<Integer> hamt1 = HamtFunTable.theEmpty(), hamt2 = HamtFunTable.theEmpty();
+			for (int i = 0; i < size / 2; i++) {
+				hamt1 = hamt1.insert(names[i], i);
+				hamt2 = hamt2.insert(names[i + size / 4], -i);
+				if (size <= CHAIN_MERGE_LIMIT) {
+					chain1 = chain1.insert(names[i], i);
+					chain2 = chain2.insert(names[i + size / 4], -i);
+				}
+			}
+			String chainMerge = "-", chainShared = "-";
+			if (size <= CHAIN_MERGE_LIMIT) {
+				start = System.nanoTime();
+				chain1.merge(chain2);
+				chainMerge = String.format("%.3f", (System.nanoTime() - start) / 1e6);
+				FunTable<Integer> extended = chain1;
+				for (int i = 0; i < EXTRA; i++)
+					extended = extended.insert("extra" + i, i);
+				start = System.nanoTime();
+				extended.merge(chain1);
+				chainShared = String.format("%.3f", (System.nanoTime() - start) / 1e6);
+			}
+			start = System.nanoTime();
+			HamtFunTable<Integer> merged = hamt1.merge(hamt2);
+			long hamtMerge = System.nanoTime() - start;
+			if (merged.lookup(names[size / 4]) != size / 4 || merged.lookup(names[size / 2]) != -size / 4)
+				throw new Error("Wrong merge");
+			HamtFunTable<Integer> extended = hamt1;
+			for (int i = 0; i < EXTRA; i++)
+				extended = extended.insert("extra" + i, i);
+			start = System.nanoTime();
+			extended.merge(hamt1);
+			long hamtShared = System.nanoTime() - start;
+
+			System.out.printf("%-8s %9d %14.1f %14.1f %12s %12s%n", "chain", size, (double) chainInsert / size,
+					(double) chainLookup / chainLookups, chainMerge, chainShared);
+			System.out.printf("%-8s %9d %14.1f %14.1f %12.3f %12.3f%n", "hamt", size, (double) hamtInsert / size,
+					(double) hamtLookup / size, hamtMerge / 1e6, hamtShared / 1e6);
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package test.bench;
+
+import java.io.File;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.HashConsingNodeFactory;
+import ast.Program;
+
+/**
+ * Compares the heap taken by a large generated program (still in use after a
+ * garbage collection) parsed into a tree of new nodes against one parsed
+ * with a {@link HashConsingNodeFactory}, which shares the repeated
+ * subexpressions, and the time both parses take.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class HashConsingBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		File file = ProgramGenerator.generateFile(statements, 42);
+
+		long before = usedHeap();
+		Program program = Parser.parse(file, Backend.PRATT);
+		long tree = usedHeap() - before;
+		HashConsingNodeFactory factory = new HashConsingNodeFactory();
+		before = usedHeap();
+		Program shared = Parser.parse(file, factory);
+		long sharedHeap = usedHeap() - before;
+		if (!program.dump().equals(shared.dump()))
+			throw new Error("Different trees");
+		System.out.println("Input: " + statements + " statements, " + factory.requests() + " expression nodes, "
+				+ factory.size() + " distinct");
+		System.out.printf("new nodes    %8d KB%nhash-consed  %8d KB%n", tree / 1024, sharedHeap / 1024);
+
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			Parser.parse(file, Backend.PRATT);
+			long plain = System.nanoTime() - start;
+			start = System.nanoTime();
+			Parser.parse(file, new HashConsingNodeFactory());
+			long consed = System.nanoTime() - start;
+			System.out.printf("new nodes %8.2f ms   hash-consed %8.2f ms%n", plain / 1e6, consed / 1e6);
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,73 @@
+package test.bench;
+
+import java.util.Random;
+
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Program;
+
+/**
+ * Compares the latency of parsing a large generated program from scratch
+ * after each keystroke against reparsing it with an
+ * {@link IncrementalParser}.
+ * <p>
+ * Each edit types one digit into an integer literal, somewhere in the
+ * program, so the program stays valid.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class IncrementalParserBenchmark {
+
+	private static final int EDITS = 200;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		String text = ProgramGenerator.generate(statements, 42);
+		System.out.println("Input: " + statements + " statements, " + text.length() / 1024 + " KB");
+
+		for (int run = 0; run < RUNS; run++) {
+			Random random = new Random(run);
+			IncrementalParser parser = new IncrementalParser();
+			Program program = parser.parse(text);
+			String current = text;
+			long full = 0, incremental = 0;
+			for (int i = 0; i < EDITS; i++) {
+				int at = digitAt(current, random.nextInt(current.length()));
+				String edited = current.substring(0, at) + "1" + current.substring(at);
+
+				long start = System.nanoTime();
+				Program expected = Parser.parse(edited, Backend.PRATT);
+				full += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				program = parser.reparse(program, current, at, at, "1");
+				incremental += System.nanoTime() - start;
+
+				if (program.statements.size() != expected.statements.size())
+					throw new Error("Wrong number of statements");
+				current = edited;
+			}
+			System.out.printf("full        %10.3f ms per edit%n", full / 1e6 / EDITS);
+			System.out.printf("incremental %10.3f ms per edit%n", incremental / 1e6 / EDITS);
+		}
+	}
+
+	/**
+	 * @return The offset of the first digit at or after from (wrapping
+	 * around), so that inserting a digit before it keeps the program valid.
+	 */
+	private static int digitAt(String text, int from) {
+		for (int i = 0; i < text.length(); i++) {
+			int at = (from + i) % text.length();
+			char c = text.charAt(at);
+			if (c >= '1' && c <= '9' && (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))))
+				return at;
+		}
+		throw new Error("No integer literal");
+	}
+
+}
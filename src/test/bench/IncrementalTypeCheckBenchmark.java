@@ -0,0 +1,104 @@
+package test.bench;
+
+import java.util.Random;
+
+import parser.IncrementalParser;
+
+import ast.Attributes;
+import ast.Program;
+
+import typechecker.BufferedErrorSink;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.IncrementalTypeChecker;
+import typechecker.implementation.TypeCheckerImplementation;
+import typechecker.implementation.TypeCheckerImplementation.Mode;
+
+/**
+ * Compares the latency of checking a large generated program from scratch
+ * after each keystroke against re-checking it with an
+ * {@link IncrementalTypeChecker}.
+ * <p>
+ * Each edit types one digit into an integer literal, somewhere in the
+ * program, and the program is reparsed with an {@link IncrementalParser},
+ * as an editor would.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class IncrementalTypeCheckBenchmark {
+
+	private static final int EDITS = 200;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		String text = ProgramGenerator.generate(statements, 42);
+		System.out.println("Input: " + statements + " statements, " + text.length() / 1024 + " KB");
+
+		for (int run = 0; run < RUNS; run++) {
+			Random random = new Random(run);
+			IncrementalParser parser = new IncrementalParser();
+			Program program = parser.parse(text);
+			IncrementalTypeChecker incremental = new IncrementalTypeChecker(new Attributes());
+			long start = System.nanoTime();
+			incremental.check(program);
+			long first = System.nanoTime() - start;
+			String current = text;
+			long fullTime = 0, incrementalTime = 0, checked = 0;
+			for (int i = 0; i < EDITS; i++) {
+				int at = digitAt(current, random.nextInt(current.length()));
+				program = parser.reparse(program, current, at, at, "1");
+				current = current.substring(0, at) + "1" + current.substring(at);
+
+				start = System.nanoTime();
+				int errors = fullCheck(program);
+				fullTime += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				incremental.recheck(program);
+				incrementalTime += System.nanoTime() - start;
+				checked += incremental.checked();
+
+				if (incremental.errors().size() != errors)
+					throw new Error("Different errors");
+			}
+			System.out.printf("first check %10.3f ms%n", first / 1e6);
+			System.out.printf("full        %10.3f ms per edit%n", fullTime / 1e6 / EDITS);
+			System.out.printf("incremental %10.3f ms per edit, %.1f statements checked%n",
+					incrementalTime / 1e6 / EDITS, (double) checked / EDITS);
+		}
+	}
+
+	/**
+	 * @return The number of errors found by a fused check of the whole
+	 * program.
+	 */
+	private static int fullCheck(Program program) {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		BufferedErrorSink sink = new BufferedErrorSink();
+		checker.setErrorSink(sink);
+		checker.setMode(Mode.FUSED);
+		try {
+			checker.typeCheck();
+		}
+		catch (TypeCheckerException e) {
+			// Counted below
+		}
+		return sink.messages().size();
+	}
+
+	/**
+	 * @return The offset of the first digit at or after from (wrapping
+	 * around), so that inserting a digit before it keeps the program valid.
+	 */
+	private static int digitAt(String text, int from) {
+		for (int i = 0; i < text.length(); i++) {
+			int at = (from + i) % text.length();
+			char c = text.charAt(at);
+			if (c >= '1' && c <= '9' && (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))))
+				return at;
+		}
+		throw new Error("No integer literal");
+	}
+
+}
@@ -0,0 +1,85 @@
+package test.bench;
+
+import java.io.StringReader;
+
+import parser.Lexer;
+import parser.TokenStream;
+import parser.TokenStreamTokenManager;
+import parser.jcc.JCCExpressionsParser;
+import parser.jcc.JCCExpressionsParserTokenManager;
+import parser.jcc.SimpleCharStream;
+
+/**
+ * Compares the JavaCC generated token manager against the hand written
+ * {@link Lexer}, first for lexing alone and then for a complete parse of a
+ * large generated program.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class LexerBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		String program = ProgramGenerator.generate(statements, 42);
+		System.out.println("Input: " + statements + " statements, " + program.length() / 1024 + " KB");
+
+		for (int i = 0; i < WARMUP; i++) {
+			lexJavaCC(program);
+			lexFast(program);
+			parseJavaCC(program);
+			parseFast(program);
+		}
+		long jcc = 0, fast = 0, jccParse = 0, fastParse = 0;
+		int tokens = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			tokens = lexJavaCC(program);
+			jcc += System.nanoTime() - start;
+			start = System.nanoTime();
+			lexFast(program);
+			fast += System.nanoTime() - start;
+			start = System.nanoTime();
+			parseJavaCC(program);
+			jccParse += System.nanoTime() - start;
+			start = System.nanoTime();
+			parseFast(program);
+			fastParse += System.nanoTime() - start;
+		}
+		System.out.println("Tokens: " + tokens);
+		ParserBenchmark.report("lex JavaCC", jcc);
+		ParserBenchmark.report("lex fast", fast);
+		ParserBenchmark.report("parse JavaCC", jccParse);
+		ParserBenchmark.report("parse fast", fastParse);
+	}
+
+	/**
+	 * Lex with the generated token manager, creating a Token for each token
+	 * (which is what the parser would ask for).
+	 */
+	private static int lexJavaCC(String program) {
+		JCCExpressionsParserTokenManager lexer =
+			new JCCExpressionsParserTokenManager(new SimpleCharStream(new StringReader(program)));
+		int count = 1;
+		while (lexer.getNextToken().kind != 0)
+			count++;
+		return count;
+	}
+
+	private static int lexFast(String program) {
+		TokenStream tokens = Lexer.lex(program);
+		return tokens.count;
+	}
+
+	private static void parseJavaCC(String program) throws Exception {
+		new JCCExpressionsParser(new StringReader(program)).Program();
+	}
+
+	private static void parseFast(String program) throws Exception {
+		TokenStreamTokenManager.parserOn(Lexer.lex(program)).Program();
+	}
+
+}
@@ -0,0 +1,58 @@
+package test.bench;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+
+import parser.AsciiCharSequence;
+import parser.ParallelParser;
+import parser.Parser;
+import parser.Parser.Backend;
+
+/**
+ * Compares parsing a large generated program in one piece against parsing
+ * it in chunks on several threads with the {@link ParallelParser}.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate and the number of threads.
+ */
+public class ParallelParserBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		File file = ProgramGenerator.generateFile(statements, 42);
+		System.out.println("Input: " + statements + " statements, " + file.length() / 1024 + " KB, "
+				+ threads + " threads");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		int chunkSize = Math.max(ParallelParser.MIN_CHUNK, (int) file.length() / (4 * threads));
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				Parser.parse(file, Backend.PRATT);
+				ParallelParser.parse(AsciiCharSequence.map(file), pool, chunkSize);
+			}
+			long sequential = 0, parallel = 0;
+			for (int i = 0; i < RUNS; i++) {
+				long start = System.nanoTime();
+				Parser.parse(file, Backend.PRATT);
+				sequential += System.nanoTime() - start;
+				start = System.nanoTime();
+				ParallelParser.parse(AsciiCharSequence.map(file), pool, chunkSize);
+				parallel += System.nanoTime() - start;
+			}
+			report("sequential", sequential);
+			report("parallel", parallel);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void report(String name, long nanos) {
+		System.out.printf("%-12s %8.2f ms/parse%n", name, nanos / 1e6 / RUNS);
+	}
+
+}
@@ -0,0 +1,62 @@
+package test.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Attributes;
+import ast.Program;
+import typechecker.implementation.TypeCheckerImplementation;
+
+/**
+ * Type checks a program made mostly of function declarations, checking the
+ * bodies in order with the rest of the program, and on pools of 1 up to as
+ * many threads as there are processors.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of functions to generate.
+ */
+public class ParallelTypeCheckBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int functions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < functions; i++) {
+			input.append("int f").append(i).append("(int a, boolean b) {\n");
+			for (int j = 0; j < 10; j++)
+				input.append("\tx").append(j).append(" = (a * ").append(j).append(" + 1 < a - 2 ? a : ").append(j).append(") * 3;\n");
+			input.append("\treturn b ? x9 + 1 : x0 - 1;\n}\n");
+			input.append("v").append(i).append(" = ").append(i).append(";\n");
+		}
+		Program program = Parser.parse(input.append("print 1").toString(), Backend.PRATT);
+		System.out.println("Input: " + functions + " functions");
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		measure(program, null, "in order");
+		for (int threads = 1; threads <= processors; threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			measure(program, pool, threads + " threads");
+			pool.shutdown();
+		}
+	}
+
+	private static void measure(Program program, ForkJoinPool pool, String name) throws Exception {
+		for (int i = 0; i < WARMUP; i++)
+			check(program, pool);
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++)
+			check(program, pool);
+		System.out.printf("%-10s %8.2f ms/check%n", name, (System.nanoTime() - start) / 1e6 / RUNS);
+	}
+
+	private static void check(Program program, ForkJoinPool pool) throws Exception {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		checker.setPool(pool);
+		checker.typeCheck();
+	}
+
+}
@@ -0,0 +1,51 @@
+package test.bench;
+
+import java.util.Random;
+
+import parser.ParseCache;
+import parser.Parser;
+import parser.Parser.Backend;
+
+/**
+ * Parses a batch of sources in which most sources were seen before, with
+ * and without a {@link ParseCache}.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of distinct sources and the size of the batch.
+ */
+public class ParseCacheBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int distinct = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		String[] sources = new String[distinct];
+		for (int i = 0; i < distinct; i++)
+			sources[i] = ProgramGenerator.generate(2000, i);
+		System.out.println("Input: " + batch + " parses of " + distinct + " sources, "
+				+ sources[0].length() / 1024 + " KB each");
+
+		for (int run = 0; run < RUNS; run++) {
+			Random random = new Random(run);
+			int[] order = new int[batch];
+			for (int i = 0; i < batch; i++)
+				order[i] = random.nextInt(distinct);
+
+			long start = System.nanoTime();
+			for (int i : order)
+				Parser.parse(sources[i], Backend.PRATT);
+			long uncached = System.nanoTime() - start;
+
+			ParseCache cache = new ParseCache(64L << 20);
+			start = System.nanoTime();
+			for (int i : order)
+				cache.parse(sources[i], Backend.PRATT);
+			long cached = System.nanoTime() - start;
+
+			System.out.printf("uncached %8.2f ms   cached %8.2f ms (%d hits, %d misses, %d KB)%n",
+					uncached / 1e6, cached / 1e6, cache.hits(), cache.misses(), cache.bytes() / 1024);
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package test.bench;
+
+import parser.Lexer;
+import parser.Parser;
+import parser.PrattParser;
+import parser.TokenStream;
+import parser.TokenStreamTokenManager;
+
+/**
+ * Compares the two parser backends selectable through {@link Parser}: the
+ * JavaCC generated parser and the hand written {@link PrattParser}. Both
+ * parse the same pre-lexed tokens, so only the parsing itself is measured.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class ParserBackendBenchmark {
+
+	private static final int WARMUP = 10;
+	private static final int RUNS = 20;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		TokenStream tokens = Lexer.lex(ProgramGenerator.generate(statements, 42));
+		System.out.println("Input: " + statements + " statements, " + tokens.count + " tokens");
+
+		for (int i = 0; i < WARMUP; i++) {
+			TokenStreamTokenManager.parserOn(tokens).Program();
+			new PrattParser(tokens).Program();
+		}
+		long javacc = 0, pratt = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			TokenStreamTokenManager.parserOn(tokens).Program();
+			javacc += System.nanoTime() - start;
+			start = System.nanoTime();
+			new PrattParser(tokens).Program();
+			pratt += System.nanoTime() - start;
+		}
+		report("JavaCC", javacc);
+		report("Pratt", pratt);
+	}
+
+	private static void report(String name, long nanos) {
+		System.out.printf("%-12s %8.2f ms/parse%n", name, nanos / 1e6 / RUNS);
+	}
+
+}
@@ -0,0 +1,59 @@
+package test.bench;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+
+import parser.Parser;
+import parser.jcc.JCCExpressionsParser;
+
+/**
+ * Compares parsing large generated programs from a file through the memory
+ * mapped input path used by {@link Parser#parse(File)}, against the original
+ * path that fed a FileReader into the generated SimpleCharStream.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class ParserBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		File file = ProgramGenerator.generateFile(statements, 42);
+		System.out.println("Input: " + statements + " statements, " + file.length() / 1024 + " KB");
+
+		for (int i = 0; i < WARMUP; i++) {
+			parseWithReader(file);
+			Parser.parse(file);
+		}
+		long reader = 0, mapped = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			parseWithReader(file);
+			reader += System.nanoTime() - start;
+			start = System.nanoTime();
+			Parser.parse(file);
+			mapped += System.nanoTime() - start;
+		}
+		report("FileReader", reader);
+		report("mapped", mapped);
+	}
+
+	private static void parseWithReader(File file) throws Exception {
+		Reader input = new FileReader(file);
+		try {
+			new JCCExpressionsParser(input).Program();
+		}
+		finally {
+			input.close();
+		}
+	}
+
+	static void report(String name, long nanos) {
+		System.out.printf("%-12s %8.2f ms/parse%n", name, nanos / 1e6 / RUNS);
+	}
+
+}
@@ -0,0 +1,76 @@
+package test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import parser.Lexer;
+import parser.Parser;
+import parser.TokenStreamTokenManager;
+
+/**
+ * Measures the throughput of parsing many small programs from several
+ * threads, with the pooled parsers used by {@link Parser#parse(String)}
+ * against creating a new parser for every program.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of threads.
+ */
+public class ParserPoolBenchmark {
+
+	private static final int PROGRAMS = 200;
+	private static final int PARSES_PER_THREAD = 100000;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0])
+				: Runtime.getRuntime().availableProcessors();
+		List<String> programs = new ArrayList<String>();
+		for (int i = 0; i < PROGRAMS; i++)
+			programs.add(ProgramGenerator.generate(5 + i % 20, i));
+		System.out.println("Threads: " + threads);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < RUNS; i++) {
+				report("unpooled", run(executor, threads, programs, false), threads);
+				report("pooled", run(executor, threads, programs, true), threads);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static long run(ExecutorService executor, int threads, final List<String> programs,
+			final boolean pooled) throws Exception {
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			results.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					for (int i = 0; i < PARSES_PER_THREAD; i++) {
+						String program = programs.get(i % programs.size());
+						if (pooled)
+							Parser.parse(program);
+						else
+							TokenStreamTokenManager.parserOn(Lexer.lex(program)).Program();
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> result : results)
+			result.get();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String name, long nanos, int threads) {
+		double parses = (double) PARSES_PER_THREAD * threads;
+		System.out.printf("%-10s %10.0f parses/s%n", name, parses / (nanos / 1e9));
+	}
+
+}
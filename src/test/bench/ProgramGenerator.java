@@ -0,0 +1,135 @@
+package test.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Generates large, type correct Expression programs for the benchmarks.
+ * <p>
+ * The programs are a long list of assignments to fresh variables whose values
+ * are random expressions over the variables defined before them, followed by
+ * a print statement. Every so often a function declaration is thrown in.
+ */
+public class ProgramGenerator {
+
+	private final Random random;
+	private final StringBuilder out = new StringBuilder();
+	private int vars = 0;
+
+	private ProgramGenerator(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generate a program with the given number of statements.
+	 */
+	public static String generate(int statements, long seed) {
+		return new ProgramGenerator(seed).program(statements);
+	}
+
+	/**
+	 * Generate a program and write it to a temporary file, which is deleted
+	 * when the VM exits.
+	 */
+	public static File generateFile(int statements, long seed) throws IOException {
+		File file = File.createTempFile("generated", ".exp");
+		file.deleteOnExit();
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write(generate(statements, seed));
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private String program(int statements) {
+		out.append("// generated program\n");
+		for (int i = 0; i < statements; i++) {
+			if (i % 50 == 49)
+				function();
+			else
+				assign();
+		}
+		out.append("print ");
+		intExp(3);
+		out.append('\n');
+		return out.toString();
+	}
+
+	private void assign() {
+		out.append('v').append(vars).append(" = ");
+		intExp(3);
+		out.append(";\n");
+		vars++;
+	}
+
+	private void function() {
+		out.append("int f").append(vars).append("(int a, boolean b) {\n");
+		out.append("\tx = a * 2;\n");
+		out.append("\treturn b ? x + 1 : x - 1;\n");
+		out.append("}\n");
+	}
+
+	private void intExp(int depth) {
+		int choice = depth == 0 ? random.nextInt(2) : random.nextInt(7);
+		switch (choice) {
+		case 0:
+			out.append(random.nextInt(1000));
+			break;
+		case 1:
+			if (vars == 0)
+				out.append(random.nextInt(1000));
+			else
+				out.append('v').append(random.nextInt(vars));
+			break;
+		case 2:
+			binary(" + ", depth);
+			break;
+		case 3:
+			binary(" - ", depth);
+			break;
+		case 4:
+			binary(" * ", depth);
+			break;
+		case 5:
+			out.append('(');
+			boolExp(depth - 1);
+			out.append(" ? ");
+			intExp(depth - 1);
+			out.append(" : ");
+			intExp(depth - 1);
+			out.append(')');
+			break;
+		default:
+			out.append('(');
+			intExp(depth - 1);
+			out.append(')');
+		}
+	}
+
+	private void binary(String op, int depth) {
+		intExp(depth - 1);
+		out.append(op);
+		intExp(depth - 1);
+	}
+
+	private void boolExp(int depth) {
+		if (depth > 0 && random.nextInt(4) == 0) {
+			out.append('!');
+			out.append('(');
+			boolExp(depth - 1);
+			out.append(')');
+		}
+		else {
+			intExp(Math.max(0, depth - 1));
+			out.append(" < ");
+			intExp(Math.max(0, depth - 1));
+		}
+	}
+
+}
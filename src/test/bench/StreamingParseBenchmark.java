@@ -0,0 +1,63 @@
+package test.bench;
+
+import java.io.File;
+
+import parser.Parser;
+import parser.Parser.Backend;
+import parser.StatementSink;
+
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+
+/**
+ * Compares parsing a large generated program into a whole Program against
+ * streaming its statements to a {@link StatementSink} that drops them, in
+ * time and in the heap that is still in use after a garbage collection.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class StreamingParseBenchmark {
+
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		final int statements = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		File file = ProgramGenerator.generateFile(statements, 42);
+		System.out.println("Input: " + statements + " statements, " + file.length() / 1024 + " KB");
+
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			Program program = Parser.parse(file, Backend.PRATT);
+			long whole = System.nanoTime() - start;
+			long wholeHeap = usedHeap();
+			if (program.statements.size() != statements)
+				throw new Error("Wrong number of statements");
+			program = null;
+
+			final long[] streamedHeap = new long[1];
+			start = System.nanoTime();
+			Parser.parse(file, new StatementSink() {
+				int count = 0;
+				public void statement(Statement statement) {
+					if (++count == statements / 2)
+						streamedHeap[0] = usedHeap();
+				}
+				public void print(Print print) {
+				}
+			});
+			long streamed = System.nanoTime() - start;
+
+			System.out.printf("whole    %8.2f ms %8d KB%n", whole / 1e6, wholeHeap / 1024);
+			System.out.printf("streamed %8.2f ms %8d KB (including one gc)%n", streamed / 1e6, streamedHeap[0] / 1024);
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,62 @@
+package test.bench;
+
+import java.lang.management.ManagementFactory;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Attributes;
+import ast.FlatAST;
+import ast.Program;
+import typechecker.implementation.TypeCheckerImplementation;
+import typechecker.implementation.TypeCheckerImplementation.Mode;
+
+/**
+ * Type checks a large generated program, in two phases and in a single
+ * fused walk, and reports the time and the bytes allocated by each check,
+ * per node. Types are canonical
+ * instances compared by id and the results go into arrays, so a check
+ * should allocate little besides its tables.
+ * <p>
+ * This is not a unit test. Run it as a Java application, optionally passing
+ * the number of statements to generate.
+ */
+public class TypeCheckBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		Program program = Parser.parse(ProgramGenerator.generate(statements, 42), Backend.PRATT);
+		int nodes = FlatAST.from(program).count;
+		System.out.println("Input: " + program.statements.size() + " statements, " + nodes + " nodes");
+
+		for (Mode mode : Mode.values()) {
+			for (int i = 0; i < WARMUP; i++)
+				check(program, mode);
+			long time = 0, allocated = 0;
+			for (int i = 0; i < RUNS; i++) {
+				long bytes = allocatedBytes();
+				long start = System.nanoTime();
+				check(program, mode);
+				time += System.nanoTime() - start;
+				allocated += allocatedBytes() - bytes;
+			}
+			System.out.printf("%-9s %8.2f ms/check, %8d KB allocated/check, %.1f bytes/node%n",
+					mode, time / 1e6 / RUNS, allocated / 1024 / RUNS, (double) allocated / RUNS / nodes);
+		}
+	}
+
+	private static void check(Program program, Mode mode) throws Exception {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		checker.setMode(mode);
+		checker.typeCheck();
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
@@ -0,0 +1,28 @@
+package test.parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import parser.AsciiCharSequence;
+import parser.Lexer;
+import parser.TokenStreamTokenManager;
+import parser.jcc.JCCExpressionsParser;
+
+/**
+ * Runs the same tests as {@link Test2LexInternal}, but with the tokens
+ * produced by the hand written {@link Lexer} rather than by the JavaCC
+ * generated token manager.
+ */
+public class Test2LexFast extends Test2LexInternal {
+
+	@Override
+	protected JCCExpressionsParser parserOn(String inputString) {
+		return TokenStreamTokenManager.parserOn(Lexer.lex(inputString));
+	}
+
+	@Override
+	protected JCCExpressionsParser parserOn(File file) throws IOException {
+		return TokenStreamTokenManager.parserOn(Lexer.lex(AsciiCharSequence.map(file)));
+	}
+
+}
@@ -4,8 +4,8 @@ import static parser.jcc.JCCExpressionsParserConstants.EOF;
 import static parser.jcc.JCCExpressionsParserConstants.IDENTIFIER;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.StringReader;
 
 
@@ -48,10 +48,10 @@ import util.SampleCode;
  */
 public class Test2LexInternal {
 	
-	private JCCExpressionsParser parserOn(String inputString) {
+	protected JCCExpressionsParser parserOn(String inputString) {
 		return new JCCExpressionsParser(new StringReader(inputString));
 	}
-	private JCCExpressionsParser parserOn(File file) throws FileNotFoundException {
+	protected JCCExpressionsParser parserOn(File file) throws IOException {
 		return new JCCExpressionsParser(new FileReader(file));
 	}
 	
@@ -98,7 +98,7 @@ public class Test2LexInternal {
 			new int[0] );
 	}
 	
-	@Test public void sampleCode() throws FileNotFoundException {
+	@Test public void sampleCode() throws IOException {
 		//Read all the sample code. It should contain only valid tokens.
 		File[] files = SampleCode.sampleFiles("exp");
 		for (int i = 0; i < files.length; i++) {
@@ -27,6 +27,14 @@ import util.SampleCode;
  * @author kdvolder
  */
 public class Test3Parse {
+
+	/**
+	 * The parser backend the tests run against. Subclasses override this to
+	 * run the same tests against another backend.
+	 */
+	protected Parser.Backend backend() {
+		return Parser.Backend.JAVACC;
+	}
 	
 	/**
 	 * All testing is supposed to go through calling this method to one of the
@@ -36,14 +44,14 @@ public class Test3Parse {
 	 */
 	protected void accept(String input) throws Exception {
 		System.out.println("parsing string: "+ input);
-		Program p = Parser.parse(input);
+		Program p = Parser.parse(input, backend());
 		System.out.println("Parse tree:");
 		System.out.println(p.dump());
 	}
 	
 	protected void accept(File file) throws Exception {
 		System.out.println("parsing file: "+file);
-		Program p = Parser.parse(file);
+		Program p = Parser.parse(file, backend());
 		System.out.println("Parse tree:");
 		System.out.println(p.dump());
 	}
@@ -55,6 +55,7 @@ public class Test4Parse extends Test3Parse {
 	private static int testNumber = 0;
 	
 	@BeforeClass public static void openTranscript() throws IOException {
+		testNumber = 0; // The transcript is verified again for each backend
 		if (verifyTanscript)
 			transcript = new TranscriptWriter(new File("Test4Parse.log"));
 		else {
@@ -79,14 +80,14 @@ public class Test4Parse extends Test3Parse {
 	protected void accept(String input) throws Exception {
 		transcript.println("---------------");
 		transcript.println(input);
-		AST result = Parser.parse(input);
+		AST result = Parser.parse(input, backend());
 		verifyAST(result);
 	}
 	@Override
 	protected void accept(File input) throws Exception {
 		transcript.println("---------------");
 		transcript.println("File: " + input);
-		AST result = Parser.parse(input);
+		AST result = Parser.parse(input, backend());
 		verifyAST(result);
 	}
 	private void verifyAST(AST result) throws Exception {
@@ -96,7 +97,7 @@ public class Test4Parse extends Test3Parse {
 		//As an extra safety against possible human error in verifying that the
 		//captured transcript output is actually correct, we also double check that the
 		//the pretty printed output can be parsed again and results in the same parse tree.
-		AST parsedAgain = Parser.parse(pretty);
+		AST parsedAgain = Parser.parse(pretty, backend());
 		Assert.assertEquals(pretty, Parser.unparse(parsedAgain));
 	}
 		
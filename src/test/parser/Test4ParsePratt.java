@@ -0,0 +1,17 @@
+package test.parser;
+
+import parser.Parser;
+import parser.PrattParser;
+
+/**
+ * Runs the same tests as {@link Test4Parse}, but with the hand written
+ * {@link PrattParser} rather than the JavaCC generated parser.
+ */
+public class Test4ParsePratt extends Test4Parse {
+
+	@Override
+	protected Parser.Backend backend() {
+		return Parser.Backend.PRATT;
+	}
+
+}
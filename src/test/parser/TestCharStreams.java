@@ -0,0 +1,83 @@
+package test.parser;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.jcc.JCCExpressionsParserTokenManager;
+import parser.jcc.SimpleCharStream;
+import parser.jcc.Token;
+import parser.jcc.TokenMgrError;
+
+/**
+ * SimpleCharStream computes line and column numbers from a
+ * {@link parser.LineMap} rather than keeping them for every char. These
+ * tests check that the tokens, their positions and lexical error messages
+ * are the ones the generated class produced, whatever the size of its
+ * buffer. ({@link TestLexer} also compares it with the hand written lexer.)
+ */
+public class TestCharStreams {
+
+	private String tokens(SimpleCharStream input) {
+		JCCExpressionsParserTokenManager lexer = new JCCExpressionsParserTokenManager(input);
+		StringBuilder result = new StringBuilder();
+		try {
+			Token t;
+			do {
+				t = lexer.getNextToken();
+				result.append(t.kind).append(':').append(t.image)
+					.append('@').append(t.beginLine).append(',').append(t.beginColumn)
+					.append('-').append(t.endLine).append(',').append(t.endColumn).append('\n');
+			} while (t.kind != 0);
+		}
+		catch (TokenMgrError e) {
+			result.append(e.getMessage());
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Line and column numbers that the original generated SimpleCharStream
+	 * produced, which ParseException messages depend on.
+	 */
+	@Test public void knownPositions() {
+		Assert.assertEquals(
+				"23:x@1,1-1,1\n13:=@1,3-1,3\n22:1@1,5-1,5\n21:;@1,6-1,6\n" +
+				"23:y@2,9-2,9\n23:z@3,1-3,1\n7:print@5,1-5,5\n23:z@5,9-5,9\n0:@5,9-5,9\n",
+				tokens(new SimpleCharStream(new StringReader("x = 1;\n\ty\r\nz\r\rprint\tz"))));
+		Assert.assertEquals(
+				"23:x@1,1-1,1\nLexical error at line 1, column 10.  Encountered: \"#\" (35), after : \"\"",
+				tokens(new SimpleCharStream(new StringReader("x\t # y"))));
+	}
+
+	private void test(String input) {
+		String expected = tokens(new SimpleCharStream(new StringReader(input)));
+		for (int size = 1; size < 20; size++)
+			Assert.assertEquals(input, expected, tokens(new SimpleCharStream(new StringReader(input), 1, 1, size)));
+	}
+
+	/**
+	 * Small buffers make SimpleCharStream wrap around and expand its buffer
+	 * while reading a token.
+	 */
+	@Test public void smallBuffers() {
+		test("abcdefghijklmnopqrstuvwxyz = 1234567890;\n\t/* a\r\ncomment */ print x");
+		test("x = 1;\n\ty = x;\r\nz = y;\r\rprint\tz");
+	}
+
+	@Test public void randomInputs() {
+		String[] parts = { "x", "\t", "\n", "\r", "\r\n", " ", "12", "/* c\n\t */",
+				"// c\n", "abc", "(", "print", "int", "#", "boolean", "<" };
+		Random random = new Random(1234);
+		for (int i = 0; i < 500; i++) {
+			StringBuilder input = new StringBuilder();
+			int n = random.nextInt(12);
+			for (int j = 0; j < n; j++)
+				input.append(parts[random.nextInt(parts.length)]);
+			test(input.toString());
+		}
+	}
+
+}
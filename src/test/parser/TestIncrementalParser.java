@@ -0,0 +1,149 @@
+package test.parser;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.Parser.Backend;
+import parser.jcc.ParseException;
+import parser.jcc.TokenMgrError;
+
+import ast.Program;
+
+import test.bench.ProgramGenerator;
+
+/**
+ * After any sequence of edits, the {@link IncrementalParser} should build
+ * the same Program as parsing the edited text from scratch, and report the
+ * same errors.
+ */
+public class TestIncrementalParser {
+
+	private static final String[] parts = { "x", "y1", "1", "42", "print", "int", "boolean",
+			"return", "(", ")", "=", "?", ":", "+", "-", "*", "<", "!", ";", ",", "{", "}",
+			" ", "\n", "\t", "//", "/*", "*/", "#" };
+
+	private interface Parse {
+		Program parse() throws ParseException;
+	}
+
+	private static String result(Parse parse) {
+		try {
+			return parse.parse().dump();
+		}
+		catch (ParseException e) {
+			return e.getMessage();
+		}
+		catch (TokenMgrError e) {
+			return e.getMessage();
+		}
+		catch (NumberFormatException e) {
+			return e.getMessage();
+		}
+	}
+
+	/**
+	 * Edit the text at random, and check each incremental parse against a
+	 * full one.
+	 */
+	private void edit(String text, long seed, int edits) {
+		Random random = new Random(seed);
+		final IncrementalParser parser = new IncrementalParser();
+		final String[] current = { text };
+		final Program[] program = new Program[1];
+		result(new Parse() {
+			public Program parse() throws ParseException {
+				return program[0] = parser.parse(current[0]);
+			}
+		});
+		for (int i = 0; i < edits; i++) {
+			final String old = current[0];
+			final int start = random.nextInt(old.length() + 1);
+			final int end = Math.min(old.length(), start + random.nextInt(4) * random.nextInt(4));
+			StringBuilder replacement = new StringBuilder();
+			int n = random.nextInt(3);
+			for (int j = 0; j < n; j++)
+				replacement.append(parts[random.nextInt(parts.length)]);
+			final String inserted = replacement.toString();
+			final String edited = old.substring(0, start) + inserted + old.substring(end);
+
+			final Program previous = program[0];
+			program[0] = null;
+			String actual = result(new Parse() {
+				public Program parse() throws ParseException {
+					return program[0] = parser.reparse(previous, old, start, end, inserted);
+				}
+			});
+			String expected = result(new Parse() {
+				public Program parse() throws ParseException {
+					return Parser.parse(edited, Backend.PRATT);
+				}
+			});
+			Assert.assertEquals(edited, expected, actual);
+			current[0] = edited;
+		}
+	}
+
+	@Test public void randomEdits() {
+		edit("x = 1; y = x + 1; print y", 1, 500);
+		edit("int f(int a) { a = a + 1; return a; } x = f(1); /* c */ y = 2; // d\nprint x", 2, 500);
+		for (int i = 0; i < 20; i++)
+			edit(ProgramGenerator.generate(5 + i, i), 100 + i, 200);
+	}
+
+	@Test public void reusesUntouchedStatements() throws ParseException {
+		String text = ProgramGenerator.generate(100, 7);
+		IncrementalParser parser = new IncrementalParser();
+		Program before = parser.parse(text);
+
+		// Insert a statement: all the others are reused
+		int at = text.indexOf(';', text.length() / 2) + 1;
+		String inserted = text.substring(0, at) + " z = 1;" + text.substring(at);
+		Program after = parser.reparse(before, text, at, at, " z = 1;");
+		Assert.assertEquals(Parser.parse(inserted, Backend.PRATT).dump(), after.dump());
+		Assert.assertEquals(before.statements.size() + 1, after.statements.size());
+		int index = 0;
+		for (int i = 0; i < before.statements.size(); i++) {
+			if (after.statements.elementAt(index) != before.statements.elementAt(i))
+				index++;
+			Assert.assertSame(before.statements.elementAt(i), after.statements.elementAt(index++));
+		}
+		Assert.assertSame(before.print, after.print);
+
+		// Edit inside of a statement: only that one is parsed again
+		int edit = inserted.indexOf('=', at + 10) + 1;
+		String edited = inserted.substring(0, edit) + " 1 +" + inserted.substring(edit);
+		Program again = parser.reparse(after, inserted, edit, edit, " 1 +");
+		Assert.assertEquals(Parser.parse(edited, Backend.PRATT).dump(), again.dump());
+		int changed = 0;
+		for (int i = 0; i < after.statements.size(); i++) {
+			if (again.statements.elementAt(i) != after.statements.elementAt(i))
+				changed++;
+		}
+		Assert.assertEquals(1, changed);
+		Assert.assertSame(before.print, again.print);
+	}
+
+	@Test public void afterErrors() throws ParseException {
+		IncrementalParser parser = new IncrementalParser();
+		Program program = parser.parse("x = 1; y = 2; print x");
+		try {
+			parser.reparse(program, "x = 1; y = 2; print x", 5, 6, "");
+			Assert.fail();
+		}
+		catch (ParseException e) {
+			Assert.assertEquals(result(new Parse() {
+				public Program parse() throws ParseException {
+					return Parser.parse("x = 1 y = 2; print x", Backend.PRATT);
+				}
+			}), e.getMessage());
+		}
+		// The last parse failed, so this one starts from scratch
+		program = parser.reparse(program, "x = 1 y = 2; print x", 5, 5, ";");
+		Assert.assertEquals(Parser.parse("x = 1; y = 2; print x", Backend.PRATT).dump(), program.dump());
+	}
+
+}
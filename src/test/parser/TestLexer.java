@@ -0,0 +1,122 @@
+package test.parser;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.AsciiCharSequence;
+import parser.Lexer;
+import parser.TokenStream;
+import parser.TokenStreamTokenManager;
+import parser.jcc.JCCExpressionsParserTokenManager;
+import parser.jcc.SimpleCharStream;
+import parser.jcc.Token;
+import parser.jcc.TokenMgrError;
+
+import util.SampleCode;
+
+/**
+ * The hand written {@link Lexer} should produce exactly the same tokens as
+ * the JavaCC generated token manager, including line and column numbers and
+ * lexical error messages.
+ */
+public class TestLexer {
+
+	private String tokens(JCCExpressionsParserTokenManager lexer) {
+		StringBuilder result = new StringBuilder();
+		try {
+			Token t;
+			do {
+				t = lexer.getNextToken();
+				result.append(t.kind).append(':').append(t.image)
+					.append('@').append(t.beginLine).append(',').append(t.beginColumn)
+					.append('-').append(t.endLine).append(',').append(t.endColumn).append('\n');
+			} while (t.kind != 0);
+		}
+		catch (TokenMgrError e) {
+			result.append(e.getMessage());
+		}
+		return result.toString();
+	}
+
+	private void test(String input) {
+		Assert.assertEquals(input,
+				tokens(new JCCExpressionsParserTokenManager(new SimpleCharStream(new StringReader(input)))),
+				tokens(new TokenStreamTokenManager(Lexer.lex(input))));
+	}
+
+	@Test public void positions() {
+		test("");
+		test(" ");
+		test("\n");
+		test("print 1");
+		test("x = 1;\n\ty = x;\r\nz = y;\r\rprint\tz");
+		test("/* a\n\tcomment */ x\t\t= 10 // another\n  ; print x");
+		test("int f(int a, boolean b) { return a }");
+		test("x_1 = 007 < 12 ? !b : a * (b - c)");
+	}
+
+	@Test public void errors() {
+		test("x = 1; # print x");
+		test("#");
+		test("x /");
+		test("x / y");
+		test("/* not closed");
+		test("/* not closed\n");
+		test("x = 1;\n/");
+		test("_x");
+	}
+
+	@Test public void randomInputs() {
+		String[] parts = { "x", "\t", "\n", "\r", "\r\n", " ", "12", "/* c\n\t */",
+				"// c\n", "// c", "abc", "(", "print", "int", "#", "boolean", "<", "/",
+				"/*", "_", "return", "{", ",", "}", "?", "9", "printx", "in" };
+		Random random = new Random(4321);
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder input = new StringBuilder();
+			int n = random.nextInt(12);
+			for (int j = 0; j < n; j++)
+				input.append(parts[random.nextInt(parts.length)]);
+			test(input.toString());
+		}
+	}
+
+	/**
+	 * Every identifier gets the id of its name, however many other names
+	 * are seen in between, and names with the same hash get different ones.
+	 */
+	@Test public void symbolIds() {
+		StringBuilder input = new StringBuilder("Aa BB AaAa BBBB AaBB BBAa Aa BB ");
+		Random random = new Random(1234);
+		for (int i = 0; i < 20000; i++)
+			input.append('v').append(random.nextInt(3000)).append(i % 7 == 0 ? "\n" : " ");
+		TokenStream tokens = Lexer.lex(input);
+		Set<String> names = new HashSet<String>();
+		for (int i = 0; i < tokens.count - 1; i++) {
+			String name = input.substring(tokens.start[i], tokens.start[i] + tokens.length[i]);
+			Assert.assertEquals(name, tokens.symbols.lookup(name), tokens.value[i]);
+			names.add(name);
+		}
+		Assert.assertEquals(names.size(), tokens.symbols.size());
+		Assert.assertEquals(tokens.value[0], tokens.value[6]);
+		Assert.assertEquals(tokens.value[1], tokens.value[7]);
+		Assert.assertFalse(tokens.value[0] == tokens.value[1]);
+	}
+
+	@Test public void sampleCode() throws IOException {
+		File[] files = SampleCode.sampleFiles("exp");
+		for (File file : files) {
+			Assert.assertEquals(
+					tokens(new JCCExpressionsParserTokenManager(new SimpleCharStream(new FileReader(file)))),
+					tokens(new TokenStreamTokenManager(Lexer.lex(AsciiCharSequence.map(file)))));
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package test.parser;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.AsciiCharSequence;
+import parser.ParallelParser;
+import parser.Parser;
+import parser.Parser.Backend;
+import parser.jcc.ParseException;
+import parser.jcc.TokenMgrError;
+
+import test.bench.ProgramGenerator;
+
+/**
+ * The {@link ParallelParser} should build the same Program as a sequential
+ * parse, with the same ids for the identifiers, and report the same errors
+ * at the same positions, wherever the input is split.
+ */
+public class TestParallelParser {
+
+	private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@AfterClass public static void shutdown() {
+		pool.shutdown();
+	}
+
+	private interface Parse {
+		ast.Program parse(String input) throws ParseException;
+	}
+
+	private String result(String input, Parse parse) {
+		try {
+			ast.Program program = parse.parse(input);
+			StringBuilder ids = new StringBuilder();
+			for (int id = 0; id < program.symbols.size(); id++)
+				ids.append(program.symbols.name(id)).append(' ');
+			return program.dump() + ids;
+		}
+		catch (ParseException e) {
+			return e.getMessage();
+		}
+		catch (TokenMgrError e) {
+			return e.getMessage();
+		}
+		catch (NumberFormatException e) {
+			return e.getMessage();
+		}
+	}
+
+	private void test(String input) {
+		String expected = result(input, new Parse() {
+			public ast.Program parse(String input) throws ParseException {
+				return Parser.parse(input, Backend.PRATT);
+			}
+		});
+		for (final int chunkSize : new int[] { 1, 5, 40, 1000 }) {
+			Assert.assertEquals(input + " (chunks of " + chunkSize + ")", expected, result(input, new Parse() {
+				public ast.Program parse(String input) throws ParseException {
+					return ParallelParser.parse(input, pool, chunkSize);
+				}
+			}));
+		}
+	}
+
+	@Test public void programs() {
+		test("print 1");
+		test("x = 1; y = x + 1; print y");
+		test("int f(int a) { a = a + 1; return a; } int g() { return 1; } x = 1; print x");
+		test("x = 1; // a comment; y = 2;\ny = 3; /* z = 1; { */ z = 2; print x");
+		test("x = 1;\r\n\ty = 2;\r\t z = 3;\n\t\tprint\tx");
+		for (int i = 0; i < 50; i++)
+			test(ProgramGenerator.generate(1 + i, i));
+	}
+
+	@Test public void errors() {
+		test("");
+		test("x = 1;");
+		test("x = 1; print 1; y = 2; print 2");
+		test("x = 1; y = 2 print 2");
+		test("x = 1;\n\ty = 2 +;\n\tprint 2");
+		test("x = 1;\n\t y = #;\n\tprint 2");
+		test("x = 1 /; y = 2; print 3");
+		test("x = 1; y = 99999999999; z = 1; print 3");
+		test("int f() { return 1; ; } print 1");
+		test("x = 1; } y = 1; print 1");
+		test("x = 1; /* not closed; y = 2;");
+	}
+
+	@Test public void randomTokens() {
+		String[] parts = { "x", "y1", "1", "print", "int", "boolean", "return", "(", ")",
+				"=", "?", ":", "+", "-", "*", "<", "!", ";", ";", ";", ",", "{", "}", "#",
+				"\n", "\t", "/", "//", "/*", "*/", "\r" };
+		Random random = new Random(2468);
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder input = new StringBuilder();
+			int n = random.nextInt(16);
+			for (int j = 0; j < n; j++)
+				input.append(parts[random.nextInt(parts.length)]).append(' ');
+			test(input.toString());
+		}
+	}
+
+	@Test public void file() throws Exception {
+		File file = ProgramGenerator.generateFile(20000, 11);
+		ast.Program expected = Parser.parse(file, Backend.PRATT);
+		ast.Program parallel = ParallelParser.parse(AsciiCharSequence.map(file), pool, 10000);
+		Assert.assertEquals(expected.dump(), parallel.dump());
+		Assert.assertEquals(expected.symbols.size(), parallel.symbols.size());
+		Assert.assertEquals(expected.dump(), Parser.parseParallel(file).dump());
+	}
+
+}
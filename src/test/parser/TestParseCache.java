@@ -0,0 +1,210 @@
+package test.parser;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.ParseCache;
+import parser.Parser;
+import parser.Parser.Backend;
+import parser.jcc.ParseException;
+
+import ast.Assign;
+import ast.Attributes;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.IntegerLiteral;
+import ast.IntegerType;
+import ast.Print;
+import ast.Program;
+
+import test.bench.ProgramGenerator;
+import typechecker.implementation.TypeCheckerImplementation;
+
+/**
+ * The {@link ParseCache} should return the same trees as {@link Parser},
+ * frozen so that callers can share them, and stay within its size.
+ */
+public class TestParseCache {
+
+	@Test public void hits() throws Exception {
+		ParseCache cache = new ParseCache(1 << 20);
+		String input = "x = 1; y = x + 2; print y < 3 ? x : y";
+		Program first = cache.parse(input, Backend.PRATT);
+		Program second = cache.parse(input, Backend.JAVACC);
+		Program third = cache.parse(new String(input));
+		Assert.assertEquals(Parser.parse(input).dump(), first.dump());
+		Assert.assertEquals(first.dump(), second.dump());
+		Assert.assertEquals(first.dump(), third.dump());
+		Assert.assertEquals(1, cache.misses());
+		Assert.assertEquals(2, cache.hits());
+		Assert.assertEquals(1, cache.size());
+
+		cache.parse(input + " ");
+		Assert.assertEquals(2, cache.misses());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test public void shared() throws Exception {
+		ParseCache cache = new ParseCache(1 << 20);
+		String input = "x = 1; y = x + 2; print y < 3 ? x : y";
+		Program first = cache.parse(input);
+		Program second = cache.parse(input);
+		Assert.assertSame(first, second);
+		// Each check keeps the types in Attributes of its own
+		Attributes a1 = new TypeCheckerImplementation(first).typeCheck().getAttributes();
+		Attributes a2 = new TypeCheckerImplementation(second).typeCheck().getAttributes();
+		Assert.assertNotSame(a1, a2);
+		Expression plus = ((Assign) first.statements.elementAt(1)).value;
+		Assert.assertSame(IntegerType.INSTANCE, a1.type(plus));
+		Assert.assertSame(IntegerType.INSTANCE, a2.type(plus));
+	}
+
+	/**
+	 * A caller can't change the Program it shares with the others.
+	 */
+	@Test public void frozen() throws Exception {
+		ParseCache cache = new ParseCache(1 << 20);
+		String input = "int f(int a) { b = a; return b; } x = 1; print x";
+		Program program = cache.parse(input);
+		String dump = program.dump();
+		try {
+			program.statements.add(new Print(new IntegerLiteral(1)));
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		FunctionDeclaration f = (FunctionDeclaration) program.statements.elementAt(0);
+		try {
+			f.assign.add(new Print(new IntegerLiteral(1)));
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		try {
+			f.formal.clear();
+			Assert.fail();
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+		Assert.assertEquals(program.symbols.lookup("x"), program.symbols.intern("x"));
+		try {
+			program.symbols.intern("y");
+			Assert.fail();
+		}
+		catch (IllegalStateException expected) {
+		}
+		Assert.assertEquals(dump, cache.parse(input).dump());
+		Assert.assertEquals(Parser.parse(input).dump(), dump);
+		Assert.assertFalse(Parser.parse(input).statements.isFrozen());
+	}
+
+	@Test public void errorsAreNotCached() throws Exception {
+		String expected = null;
+		try {
+			Parser.parse("x = 1 print x");
+		}
+		catch (ParseException e) {
+			expected = e.getMessage();
+		}
+		ParseCache cache = new ParseCache(1 << 20);
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.parse("x = 1 print x");
+				Assert.fail();
+			}
+			catch (ParseException e) {
+				Assert.assertEquals(expected, e.getMessage());
+			}
+		}
+		Assert.assertEquals(2, cache.misses());
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.bytes());
+	}
+
+	@Test public void evictions() throws Exception {
+		String[] inputs = new String[20];
+		for (int i = 0; i < inputs.length; i++)
+			inputs[i] = ProgramGenerator.generate(50, i);
+		ParseCache unbounded = new ParseCache(Long.MAX_VALUE);
+		for (String input : inputs)
+			unbounded.parse(input);
+		long total = unbounded.bytes();
+
+		ParseCache cache = new ParseCache(total / 4);
+		for (String input : inputs) {
+			cache.parse(input);
+			Assert.assertTrue(cache.bytes() <= total / 4);
+		}
+		Assert.assertTrue(cache.evictions() > 0);
+		Assert.assertEquals(inputs.length, cache.size() + cache.evictions());
+
+		// The most recently used entries are kept
+		long misses = cache.misses();
+		cache.parse(inputs[inputs.length - 1]);
+		Assert.assertEquals(misses, cache.misses());
+		cache.parse(inputs[0]);
+		Assert.assertEquals(misses + 1, cache.misses());
+
+		// Programs bigger than the whole cache are not cached
+		ParseCache tiny = new ParseCache(10);
+		tiny.parse(inputs[0]);
+		Assert.assertEquals(0, tiny.size());
+		Assert.assertEquals(0, tiny.evictions());
+	}
+
+	@Test public void files() throws Exception {
+		String input = ProgramGenerator.generate(100, 5);
+		File file = File.createTempFile("program", ".exp");
+		try {
+			FileWriter out = new FileWriter(file);
+			out.write(input);
+			out.close();
+			ParseCache cache = new ParseCache(1 << 20);
+			Program fromFile = cache.parse(file);
+			Program fromString = cache.parse(input);
+			Assert.assertEquals(fromFile.dump(), fromString.dump());
+			Assert.assertEquals(1, cache.hits());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test public void threads() throws Exception {
+		final ParseCache cache = new ParseCache(1 << 16);
+		final String[] inputs = new String[10];
+		final String[] expected = new String[inputs.length];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = ProgramGenerator.generate(20, i);
+			expected[i] = Parser.parse(inputs[i]).dump();
+		}
+		final Throwable[] error = new Throwable[1];
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 200; i++) {
+							int j = (i * 7 + seed) % inputs.length;
+							Assert.assertEquals(expected[j], cache.parse(inputs[j]).dump());
+						}
+					}
+					catch (Throwable e) {
+						error[0] = e;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		Assert.assertNull(error[0]);
+		Assert.assertEquals(800, cache.hits() + cache.misses());
+	}
+
+}
@@ -0,0 +1,84 @@
+package test.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Lexer;
+import parser.Parser;
+import parser.TokenStreamTokenManager;
+import parser.jcc.ParseException;
+import test.bench.ProgramGenerator;
+
+/**
+ * Parsing through {@link Parser} reuses a pooled parser per thread. Check that
+ * this gives the same ASTs as a new parser would, also after errors and when
+ * many threads parse at once.
+ */
+public class TestParserPool {
+
+	private String unpooled(String program) throws ParseException {
+		return TokenStreamTokenManager.parserOn(Lexer.lex(program)).Program().dump();
+	}
+
+	@Test public void reuseAfterErrors() throws Exception {
+		String good = "x = 1; y = x + 2; print x < y";
+		String expected = unpooled(good);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(expected, Parser.parse(good).dump());
+			try {
+				Parser.parse("x = ; print x");
+				Assert.fail("Should have a parse error");
+			}
+			catch (ParseException e) {
+			}
+			try {
+				Parser.parse("x = 1 # 2; print x");
+				Assert.fail("Should have a lexical error");
+			}
+			catch (Error e) {
+			}
+		}
+		Assert.assertEquals(expected, Parser.parse(good).dump());
+		Assert.assertEquals(
+				TokenStreamTokenManager.parserOn(Lexer.lex("x+1")).Expression().dump(),
+				Parser.parseExp("x+1").dump());
+	}
+
+	@Test public void manyThreads() throws Exception {
+		final List<String> programs = new ArrayList<String>();
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 40; i++) {
+			String program = ProgramGenerator.generate(20 + i, i);
+			programs.add(program);
+			expected.add(unpooled(program));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int t = 0; t < 8; t++) {
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						for (int round = 0; round < 5; round++) {
+							for (int i = 0; i < programs.size(); i++)
+								Assert.assertEquals(expected.get(i), Parser.parse(programs.get(i)).dump());
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results)
+				result.get();
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+package test.parser;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+import parser.PrattParser;
+import parser.jcc.ParseException;
+import parser.jcc.TokenMgrError;
+
+import ast.Assign;
+import ast.Expression;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.Not;
+import ast.Program;
+
+import test.bench.ProgramGenerator;
+import util.SampleCode;
+
+/**
+ * The {@link PrattParser} should build exactly the same ASTs as the JavaCC
+ * generated parser, and reject the same inputs at the same token.
+ */
+public class TestPrattParser {
+
+	/**
+	 * @return The dump of the AST for the input, or a description of the
+	 * error.
+	 */
+	private String parse(String input, Backend backend) {
+		try {
+			return Parser.parse(input, backend).dump();
+		}
+		catch (ParseException e) {
+			return "ParseException at " + e.currentToken.next.beginLine + ","
+				+ e.currentToken.next.beginColumn + ": " + e.currentToken.next.image;
+		}
+		catch (TokenMgrError e) {
+			return e.getMessage();
+		}
+		catch (NumberFormatException e) {
+			return e.getMessage();
+		}
+	}
+
+	private void test(String input) {
+		Assert.assertEquals(input, parse(input, Backend.JAVACC), parse(input, Backend.PRATT));
+	}
+
+	@Test public void expressions() {
+		test("print 1");
+		test("print 1 + 2 * 3 - 4");
+		test("print 1 - 2 - 3");
+		test("print a * b * !c");
+		test("print !!a < b + 1");
+		test("print a < b ? c ? 1 : 2 : d ? 3 : 4");
+		test("print (a < b) < c");
+		test("print ((((1))))");
+		test("print 2147483647");
+	}
+
+	@Test public void statements() {
+		test("x = 1; y = x + 1; print y");
+		test("int f() { return 1; } print 1");
+		test("boolean f(int x) { return x < 1; } print 1");
+		test("int f(int a, boolean b) { a = a + 1; return b ? a : 0; } x = 1; print x");
+	}
+
+	@Test public void errors() {
+		test("");
+		test("print");
+		test("print 1 2");
+		test("print a < b < c");
+		test("print (1");
+		test("print 1 ? 2");
+		test("x = 1 print x");
+		test("int f( { return 1; } print 1");
+		test("int f(int a,) { return 1; } print 1");
+		test("int f(int) { return 1; } print 1");
+		test("int f() { x = 1; } print 1");
+		test("int f() return 1; print 1");
+		test("boolean = 1; print 1");
+		test("print 2147483648");
+		test("print 1 # 2");
+		test("x = # ; print 1");
+	}
+
+	@Test public void randomTokens() {
+		String[] parts = { "x", "1", "print", "int", "boolean", "return", "(", ")",
+				"=", "?", ":", "+", "-", "*", "<", "!", ";", ",", "{", "}", "#" };
+		Random random = new Random(1234);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder input = new StringBuilder();
+			if (random.nextBoolean())
+				input.append("print ");
+			int n = random.nextInt(10);
+			for (int j = 0; j < n; j++)
+				input.append(parts[random.nextInt(parts.length)]).append(' ');
+			test(input.toString());
+		}
+	}
+
+	private static String repeat(String s, int times) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < times; i++)
+			result.append(s);
+		return result.toString();
+	}
+
+	/**
+	 * Expressions nested deeper than the PrattParser recurses. The JavaCC
+	 * parser does recurse, so this runs in a thread with a big stack.
+	 */
+	@Test public void deeplyNested() throws Throwable {
+		final Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					int n = 1500;
+					test("print " + repeat("(", n) + "1" + repeat(")", n));
+					test("print " + repeat("!", n) + "x");
+					test("print " + repeat("!(", n) + "x" + repeat(")", n));
+					test("print " + repeat("a ? ", n) + "1" + repeat(" : 2", n));
+					test("print " + repeat("a ? 1 : ", n) + "2");
+					test("print " + repeat("(a < b) + (", n) + "1" + repeat(") * 2", n));
+					test("print " + repeat("(a ? 1 : ", n) + "2" + repeat(") < 1", n));
+					test("print " + repeat("(", n) + "1" + repeat(")", n - 1));
+					test("print " + repeat("a ? ", n) + "1" + repeat(" : 2", n - 1));
+					test("print " + repeat("(", n) + "a < b < c" + repeat(")", n));
+					test("x = " + repeat("(", n) + "1" + repeat(")", n) + "; print x");
+
+					String[] parts = { "x", "1", "(", ")", "?", ":", "+", "-", "*", "<", "!", ";", "#" };
+					Random random = new Random(4321);
+					for (int i = 0; i < 2000; i++) {
+						StringBuilder input = new StringBuilder("print ");
+						input.append(repeat("(", 600));
+						int length = random.nextInt(12);
+						for (int j = 0; j < length; j++)
+							input.append(parts[random.nextInt(parts.length)]).append(' ');
+						input.append(repeat(")", 600));
+						test(input.toString());
+					}
+				}
+				catch (Throwable e) {
+					failure[0] = e;
+				}
+			}
+		}, "deeplyNested", 1L << 29);
+		thread.start();
+		thread.join();
+		if (failure[0] != null)
+			throw failure[0];
+	}
+
+	/**
+	 * The methods that don't take a backend use the PrattParser, so they
+	 * don't run out of stack on deep input however the thread was started.
+	 */
+	@Test public void defaultBackend() throws Exception {
+		Assert.assertEquals(Backend.PRATT, Parser.getDefaultBackend());
+		int n = 50000;
+		Program program = Parser.parse("print " + repeat("!(", n) + "x" + repeat(")", n));
+		Expression e = program.print.exp;
+		for (int i = 0; i < n; i++)
+			e = ((Not) e).e;
+		Assert.assertEquals("x", ((IdentifierExp) e).name);
+		program = Parser.parse("x = " + repeat("(", n) + "1" + repeat(")", n) + "; print x");
+		Assert.assertEquals(1, ((IntegerLiteral) ((Assign) program.statements.elementAt(0)).value).value);
+	}
+
+	@Test public void generatedPrograms() {
+		for (int i = 0; i < 200; i++)
+			test(ProgramGenerator.generate(1 + i % 30, i));
+	}
+
+	@Test public void sampleCode() throws Exception {
+		File[] files = SampleCode.sampleFiles("exp");
+		for (File file : files) {
+			Assert.assertEquals(file.toString(),
+					Parser.parse(file, Backend.JAVACC).dump(),
+					Parser.parse(file, Backend.PRATT).dump());
+		}
+	}
+
+}
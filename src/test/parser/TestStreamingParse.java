@@ -0,0 +1,146 @@
+package test.parser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+import parser.PrattParser;
+import parser.StatementSink;
+import parser.jcc.ParseException;
+import parser.jcc.TokenMgrError;
+
+import ast.NodeList;
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+import ast.Symbols;
+
+import test.bench.ProgramGenerator;
+
+/**
+ * Parsing with a {@link StatementSink} should produce the same statements,
+ * in the same order, as parsing a whole Program, and report the same errors,
+ * whatever the size of the chunks the input is lexed in.
+ */
+public class TestStreamingParse {
+
+	/**
+	 * Collects the statements it receives, and checks that the parser doesn't
+	 * hold on to the tokens of the statements before.
+	 */
+	private static class Collector implements StatementSink {
+		final NodeList<Statement> statements = new NodeList<Statement>();
+		Print print;
+		PrattParser parser;
+		int maxTokens = 0;
+
+		public void statement(Statement statement) {
+			statements.add(statement);
+			if (parser != null)
+				maxTokens = Math.max(maxTokens, parser.getTokens().count);
+		}
+
+		public void print(Print print) {
+			this.print = print;
+		}
+	}
+
+	private String streamed(String input, int chunk) {
+		PrattParser parser = PrattParser.streaming(input, chunk);
+		Collector collector = new Collector();
+		try {
+			parser.Program(collector);
+			return new Program(collector.statements, collector.print, parser.getTokens().symbols).dump();
+		}
+		catch (ParseException e) {
+			return "ParseException at " + e.currentToken.next.beginLine + ","
+				+ e.currentToken.next.beginColumn + ": " + e.currentToken.next.image;
+		}
+		catch (TokenMgrError e) {
+			return e.getMessage();
+		}
+	}
+
+	private String whole(String input) {
+		try {
+			return Parser.parse(input, Backend.PRATT).dump();
+		}
+		catch (ParseException e) {
+			return "ParseException at " + e.currentToken.next.beginLine + ","
+				+ e.currentToken.next.beginColumn + ": " + e.currentToken.next.image;
+		}
+		catch (TokenMgrError e) {
+			return e.getMessage();
+		}
+	}
+
+	private void test(String input) {
+		String expected = whole(input);
+		for (int chunk : new int[] { 1, 2, 3, 7, 1024 })
+			Assert.assertEquals(input + " (chunk " + chunk + ")", expected, streamed(input, chunk));
+	}
+
+	@Test public void programs() {
+		test("print 1");
+		test("x = 1; y = x + 1; print y");
+		test("int f(int a, boolean b) { a = a + 1; return b ? a : 0; } x = 1; print x");
+		for (int i = 0; i < 50; i++)
+			test(ProgramGenerator.generate(1 + i, i));
+	}
+
+	@Test public void errors() {
+		test("");
+		test("x = 1; y = 2 print y");
+		test("x = 1;\n y = 2;\n print # y");
+		test("x = 1; /* not closed");
+		test("int f( { return 1; } print 1");
+	}
+
+	@Test public void randomTokens() {
+		String[] parts = { "x", "1", "print", "int", "boolean", "return", "(", ")",
+				"=", "?", ":", "+", "-", "*", "<", "!", ";", ",", "{", "}", "#", "\n" };
+		Random random = new Random(5678);
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder input = new StringBuilder();
+			int n = random.nextInt(12);
+			for (int j = 0; j < n; j++)
+				input.append(parts[random.nextInt(parts.length)]).append(' ');
+			test(input.toString());
+		}
+	}
+
+	@Test public void tokensAreDropped() throws Exception {
+		String input = ProgramGenerator.generate(2000, 7);
+		PrattParser parser = PrattParser.streaming(input, 64);
+		Collector collector = new Collector();
+		collector.parser = parser;
+		parser.Program(collector);
+		Assert.assertEquals(2000, collector.statements.size());
+		// Only the current statement and one chunk are kept
+		Assert.assertTrue("" + collector.maxTokens, collector.maxTokens < 1000);
+	}
+
+	@Test public void file() throws Exception {
+		File file = ProgramGenerator.generateFile(500, 3);
+		final List<Statement> statements = new ArrayList<Statement>();
+		Symbols symbols = Parser.parse(file, new StatementSink() {
+			public void statement(Statement statement) {
+				statements.add(statement);
+			}
+			public void print(Print print) {
+			}
+		});
+		Program expected = Parser.parse(file, Backend.PRATT);
+		Assert.assertEquals(expected.statements.size(), statements.size());
+		for (int i = 0; i < statements.size(); i++)
+			Assert.assertEquals(expected.statements.elementAt(i).dump(), statements.get(i).dump());
+		Assert.assertEquals(expected.symbols.size(), symbols.size());
+	}
+
+}
@@ -12,10 +12,15 @@ import junit.framework.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import parser.Parser;
 import util.SampleCode;
+import ast.HashConsingNodeFactory;
+import ast.Program;
 import translate.Fragments;
 import translate.Translator;
+import translate.implementation.TranslateImplementation;
 import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
 import util.Utils;
 
 
@@ -145,6 +150,20 @@ public class TestTranslate {
 				"print 9999");
 	}
 
+	@Test public void sharedSubexpressions() throws Exception {
+		// Each "x * 2" and "1" is one node, used in several places
+		Program program = Parser.parse(
+				"x = 3;\n" +
+				"y = x * 2 + 1;\n" +
+				"z = x * 2 < y ? x * 2 : 1;\n" +
+				"print x * 2 + z",
+				new HashConsingNodeFactory());
+		Fragments translated = new TranslateImplementation(architecture,
+				new TypeCheckerImplementation(program).typeCheck()).translate();
+		if (getSimulationMode() != null)
+			Assert.assertEquals("12\n", new Interp(translated, getSimulationMode()).run());
+	}
+
 	//////////////// Sample code //////////////////////////////////
 	
 	@Test
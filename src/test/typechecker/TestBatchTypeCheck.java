@@ -0,0 +1,112 @@
+package test.typechecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.jcc.ParseException;
+
+import test.bench.ProgramGenerator;
+import typechecker.CheckResult;
+import typechecker.ErrorMessage;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeChecker;
+
+/**
+ * Checking a batch of programs on an executor should give, for each, what
+ * checking it alone would, without printing anything.
+ */
+public class TestBatchTypeCheck {
+
+	private static List<String> sources() {
+		List<String> sources = new ArrayList<String>();
+		for (int i = 0; i < 300; i++) {
+			switch (i % 6) {
+			case 0:
+				sources.add(ProgramGenerator.generate(5 + i % 60, i));
+				break;
+			case 1:
+				sources.add("x = 1; y = x < " + i + "; print y + x");
+				break;
+			case 2:
+				sources.add("x = 1; x = " + i + "; print z");
+				break;
+			case 3:
+				sources.add("int f(int a, int a) { b = a < 1; return b; } print " + i);
+				break;
+			case 4:
+				sources.add("x = ; print " + i);
+				break;
+			default:
+				sources.add("print # " + i);
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * @return The first error of checking a program alone, or null.
+	 */
+	private static ErrorMessage alone(String source) throws Exception {
+		try {
+			TypeChecker.parseAndCheck(source);
+			return null;
+		}
+		catch (TypeCheckerException e) {
+			return e.getFirstMessage();
+		}
+	}
+
+	@Test public void sameAsAlone() throws Exception {
+		List<String> sources = sources();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		PrintStream out = System.out;
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(console));
+		List<CheckResult> results;
+		try {
+			results = TypeChecker.checkAll(sources, executor);
+			Assert.assertEquals(0, console.size());
+			Assert.assertEquals(sources.size(), results.size());
+			for (int i = 0; i < sources.size(); i++) {
+				CheckResult result = results.get(i);
+				if (result.failure() != null) {
+					Assert.assertTrue(result.failure() instanceof ParseException);
+					Assert.assertTrue(i % 6 >= 4);
+					continue;
+				}
+				ErrorMessage first = alone(sources.get(i));
+				Assert.assertEquals(first == null, result.ok());
+				if (first != null)
+					Assert.assertEquals(first, result.errors().get(0));
+			}
+		}
+		finally {
+			System.setOut(out);
+			executor.shutdown();
+		}
+		Assert.assertEquals(3, results.get(2).errors().size());
+		Assert.assertEquals(ErrorMessage.duplicateDefinition("x"), results.get(2).errors().get(0));
+		Assert.assertEquals(ErrorMessage.undefinedId("z"), results.get(2).errors().get(1));
+	}
+
+	@Test public void failFast() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<CheckResult> results = TypeChecker.checkAll(sources(), executor, TypeChecker.FAIL_FAST);
+			for (CheckResult result : results)
+				Assert.assertTrue(result.errors().size() <= 1);
+			Assert.assertEquals(1, results.get(2).errors().size());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+}
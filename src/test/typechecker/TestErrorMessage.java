@@ -0,0 +1,137 @@
+package test.typechecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.AST;
+import ast.Attributes;
+import ast.BooleanType;
+import ast.Expression;
+import ast.IntegerType;
+import ast.Type;
+import ast.TypeTable;
+import typechecker.BufferedErrorSink;
+import typechecker.ErrorMessage;
+import typechecker.ErrorReport;
+import typechecker.ErrorSink;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+import visitor.Visitor;
+
+/**
+ * Error messages only make their text when it is asked for, and an
+ * {@link ErrorReport} sends them to its {@link ErrorSink}.
+ */
+public class TestErrorMessage {
+
+	/**
+	 * The int type, counting how many times it is printed.
+	 */
+	private static class CountingType extends Type {
+
+		int printed = 0;
+
+		CountingType() {
+			super(AST.OTHER);
+		}
+
+		@Override
+		public int id() {
+			return TypeTable.INT;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> v) {
+			return v.visit(IntegerType.INSTANCE);
+		}
+
+		@Override
+		public String toString() {
+			printed++;
+			return "int";
+		}
+	}
+
+	@Test public void text() throws Exception {
+		Expression e = Parser.parseExp("x + 1");
+		Assert.assertEquals("ERROR -- Unbound Identifier: x", ErrorMessage.undefinedId("x").toString());
+		Assert.assertEquals("ERROR -- Multiply defined Identifier: y", ErrorMessage.duplicateDefinition("y").toString());
+		Assert.assertEquals("ERROR -- (x + 1) has type boolean expected int",
+				ErrorMessage.typeError(e, IntegerType.INSTANCE, BooleanType.INSTANCE).toString());
+	}
+
+	@Test public void equality() throws Exception {
+		ErrorMessage m1 = ErrorMessage.typeError(Parser.parseExp("x + 1"), IntegerType.INSTANCE, IntegerType.INSTANCE);
+		ErrorMessage m2 = ErrorMessage.typeError(Parser.parseExp("x + 1"), new IntegerType(), IntegerType.INSTANCE);
+		Assert.assertEquals(m1, m2);
+		Assert.assertEquals(m1.hashCode(), m2.hashCode());
+		Assert.assertFalse(m1.equals(ErrorMessage.typeError(Parser.parseExp("x + 2"), IntegerType.INSTANCE, IntegerType.INSTANCE)));
+		Assert.assertFalse(ErrorMessage.undefinedId("x").equals(ErrorMessage.duplicateDefinition("x")));
+		Assert.assertEquals(ErrorMessage.undefinedId("x"), ErrorMessage.undefinedId("x"));
+	}
+
+	@Test public void lazy() throws Exception {
+		CountingType type = new CountingType();
+		ErrorReport report = new ErrorReport(ErrorSink.DISCARD);
+		report.typeError(Parser.parseExp("x + 1"), type, type);
+		Assert.assertEquals(0, type.printed);
+		try {
+			report.close();
+			Assert.fail();
+		}
+		catch (TypeCheckerException e) {
+			Assert.assertEquals(ErrorMessage.Kind.TYPE_ERROR, e.getFirstMessage().getKind());
+			Assert.assertEquals(0, type.printed);
+			e.getFirstMessage().toString();
+			e.getFirstMessage().toString();
+			Assert.assertEquals(2, type.printed);
+		}
+	}
+
+	/**
+	 * A buffered sink gets what would have been printed, and nothing is.
+	 */
+	@Test public void buffered() throws Exception {
+		String input = "x = 1 < 2; y = x + 1; z = !y; w = q; x = 3; print y";
+		PrintStream out = System.out;
+		ByteArrayOutputStream console = new ByteArrayOutputStream();
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(console));
+		BufferedErrorSink sink = new BufferedErrorSink();
+		try {
+			check(input, null);
+			Assert.assertTrue(console.size() > 0);
+			console.reset();
+			check(input, sink);
+			Assert.assertEquals(0, console.size());
+		}
+		finally {
+			System.setOut(out);
+		}
+		Assert.assertEquals(4, sink.messages().size());
+		Assert.assertEquals(ErrorMessage.undefinedId("q"), sink.messages().get(0));
+		sink.printTo(new PrintStream(printed));
+		Assert.assertEquals(sink.messages().get(0) + System.lineSeparator(), printed.toString().substring(0,
+				printed.toString().indexOf('\n') + 1));
+	}
+
+	private static void check(String input, ErrorSink sink) throws Exception {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(Parser.parse(input, Backend.PRATT),
+				new Attributes());
+		if (sink != null)
+			checker.setErrorSink(sink);
+		try {
+			checker.typeCheck();
+			Assert.fail();
+		}
+		catch (TypeCheckerException expected) {
+		}
+	}
+
+}
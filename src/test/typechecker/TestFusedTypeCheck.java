@@ -0,0 +1,95 @@
+package test.typechecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Attributes;
+import ast.Program;
+
+import test.bench.ProgramGenerator;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+import typechecker.implementation.TypeCheckerImplementation.Mode;
+import visitor.ExpressionWalker;
+
+/**
+ * The fused checker should report exactly the same errors, in the same
+ * order, and end up with the same symbol table as the two phases.
+ */
+public class TestFusedTypeCheck {
+
+	/**
+	 * How deep the checkers recurse into expressions.
+	 */
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+
+	/**
+	 * @return The errors printed while checking a program, the exception
+	 * raised if any, and the symbol table.
+	 */
+	private String check(String input, Mode mode) throws Exception {
+		Program program = Parser.parse(input, Backend.PRATT);
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		checker.setMode(mode);
+		checker.setRecursionLimit(recursionLimit);
+		PrintStream out = System.out;
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(errors));
+		String result;
+		try {
+			checker.typeCheck();
+			result = "OK";
+		}
+		catch (TypeCheckerException e) {
+			result = e.getMessage();
+		}
+		finally {
+			System.setOut(out);
+		}
+		return result + "\n" + errors + checker.getTable();
+	}
+
+	private void test(String input) throws Exception {
+		Assert.assertEquals(input, check(input, Mode.TWO_PHASE), check(input, Mode.FUSED));
+	}
+
+	@Test public void good() throws Exception {
+		test("x = 1; y = x < 2; print y ? x : 3");
+		test("int f(int a, boolean b) { x = a * 2; return b ? x + 1 : x - 1; } x = 1; print x");
+		for (int i = 0; i < 20; i++)
+			test(ProgramGenerator.generate(10 + i * 10, i));
+	}
+
+	/**
+	 * The errors about definitions come first, even when a type error was
+	 * found before them.
+	 */
+	@Test public void errorOrder() throws Exception {
+		test("x = 1 + (2 < 3); y = z; print x");
+		test("x = !1; x = 2; print y");
+		test("x = 1; y = x < 2; x = y; print x + 1");
+		test("x = 1; print x + y + (x < 1) + z");
+		test("y = x; x = 1 < 2; print x + 1");
+	}
+
+	@Test public void functions() throws Exception {
+		test("int f(int a, int a) { return a; } print 1");
+		test("int f(int a) { a = 1 < 2; return b; } print 1");
+		test("int f(int a) { return a < 1; } f = 2; print f");
+		test("x = 1; boolean f(int a) { return x; } int f() { return 1 < 2; } print f");
+		test("int f(int a) { b = a + c; b = 1; return b; } print q");
+	}
+
+	@Test public void deep() throws Exception {
+		recursionLimit = 2;
+		errorOrder();
+		functions();
+	}
+
+}
@@ -0,0 +1,200 @@
+package test.typechecker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.IncrementalParser;
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Attributes;
+import ast.Program;
+
+import typechecker.BufferedErrorSink;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.IncrementalTypeChecker;
+import typechecker.implementation.TypeCheckerImplementation;
+import typechecker.implementation.TypeCheckerImplementation.Mode;
+
+/**
+ * After any sequence of edits, the {@link IncrementalTypeChecker} should find
+ * the same errors, in the same order, and the same symbol table as checking
+ * the edited program from scratch, while only checking the statements the
+ * edit can change.
+ */
+public class TestIncrementalTypeCheck {
+
+	private static final String[] statements = { "x = 1;", "x = 1 < 2;", "x = z;", "y = x + 1;", "y = !x;",
+			"z = y ? x : 3;", "z = q;", "q = x * y;", "f = 3;", "y = f;", "x = f < 1;",
+			"int f(int a) { b = a; return b; }", "boolean f(int a, int a) { return a < x; }",
+			"int g() { return 1 < 2; }", "g = x;" };
+
+	private static final String[] prints = { "print x", "print y", "print f", "print z + q" };
+
+	/**
+	 * A text made of one statement per line and a print statement, edited a
+	 * line at a time.
+	 */
+	private static class Document {
+		final List<String> lines = new ArrayList<String>();
+		String print;
+		final IncrementalParser parser = new IncrementalParser();
+		Program program;
+
+		String text() {
+			StringBuilder text = new StringBuilder();
+			for (String line : lines)
+				text.append(line).append('\n');
+			return text.append(print).toString();
+		}
+
+		int offset(int line) {
+			int offset = 0;
+			for (int i = 0; i < line; i++)
+				offset += lines.get(i).length() + 1;
+			return offset;
+		}
+
+		/**
+		 * Replace count lines from line on with the given ones. The newlines
+		 * around them are left alone where possible, so the parser reuses
+		 * the statements next to them.
+		 */
+		void edit(int line, int count, String... replacement) throws Exception {
+			String old = text();
+			int start = offset(line), end = offset(line + count);
+			StringBuilder inserted = new StringBuilder();
+			for (String s : replacement)
+				inserted.append(inserted.length() == 0 ? "" : "\n").append(s);
+			if (replacement.length == 0)
+				inserted.setLength(0);
+			else if (count > 0)
+				end--;
+			else if (line > 0) {
+				start = end = start - 1;
+				inserted.insert(0, '\n');
+			}
+			else
+				inserted.append('\n');
+			for (int i = 0; i < count; i++)
+				lines.remove(line);
+			for (int i = 0; i < replacement.length; i++)
+				lines.add(line + i, replacement[i]);
+			program = parser.reparse(program, old, start, end, inserted.toString());
+		}
+
+		void editPrint(String print) throws Exception {
+			String old = text();
+			int start = offset(lines.size());
+			this.print = print;
+			program = parser.reparse(program, old, start, old.length(), print);
+		}
+	}
+
+	/**
+	 * @return The errors and the table of a full fused check of a program.
+	 */
+	private static String fullCheck(Program program) {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		BufferedErrorSink sink = new BufferedErrorSink();
+		checker.setErrorSink(sink);
+		checker.setMode(Mode.FUSED);
+		try {
+			checker.typeCheck();
+		}
+		catch (TypeCheckerException e) {
+			// The errors are in the sink
+		}
+		return sink.messages() + "\n" + checker.getTable();
+	}
+
+	private static String result(IncrementalTypeChecker checker) {
+		return checker.errors() + "\n" + checker.getTable();
+	}
+
+	@Test public void randomEdits() throws Exception {
+		for (long seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			Document doc = new Document();
+			for (int i = 0; i < 10; i++)
+				doc.lines.add(statements[random.nextInt(statements.length)]);
+			doc.print = prints[0];
+			doc.program = doc.parser.parse(doc.text());
+			IncrementalTypeChecker checker = new IncrementalTypeChecker(new Attributes());
+			checker.check(doc.program);
+			Assert.assertEquals(fullCheck(doc.program), result(checker));
+			for (int e = 0; e < 50; e++) {
+				if (random.nextInt(10) == 0)
+					doc.editPrint(prints[random.nextInt(prints.length)]);
+				else {
+					int line = random.nextInt(doc.lines.size() + 1);
+					int count = Math.min(doc.lines.size() - line, random.nextInt(3));
+					String[] replacement = new String[doc.lines.size() > 20 ? 0 : random.nextInt(3)];
+					for (int i = 0; i < replacement.length; i++)
+						replacement[i] = statements[random.nextInt(statements.length)];
+					doc.edit(line, count, replacement);
+				}
+				checker.recheck(doc.program);
+				Assert.assertEquals(doc.text(), fullCheck(doc.program), result(checker));
+			}
+		}
+	}
+
+	/**
+	 * A chain of variables, each defined from the one before it: changing one
+	 * only checks the statements that see a different type.
+	 */
+	@Test public void onlyAffected() throws Exception {
+		Document doc = new Document();
+		doc.lines.add("v0 = 1;");
+		for (int i = 1; i < 1000; i++)
+			doc.lines.add("v" + i + " = v" + (i - 1) + " + 1;");
+		doc.print = "print v999";
+		doc.program = doc.parser.parse(doc.text());
+		IncrementalTypeChecker checker = new IncrementalTypeChecker(new Attributes());
+		checker.check(doc.program);
+		Assert.assertEquals(1001, checker.checked());
+
+		// Same type: only the statement itself
+		doc.edit(500, 1, "v500 = v499 * 2;");
+		checker.recheck(doc.program);
+		Assert.assertEquals(1, checker.checked());
+		Assert.assertEquals(fullCheck(doc.program), result(checker));
+
+		// Another type: the statement using it too, which still is an int
+		doc.edit(500, 1, "v500 = v499 < 2;");
+		checker.recheck(doc.program);
+		Assert.assertEquals(2, checker.checked());
+		Assert.assertEquals(fullCheck(doc.program), result(checker));
+
+		// No definition at all
+		doc.edit(500, 1);
+		checker.recheck(doc.program);
+		Assert.assertEquals(1, checker.checked());
+		Assert.assertEquals(fullCheck(doc.program), result(checker));
+
+		// A duplicate definition far from its uses
+		doc.edit(10, 0, "v900 = 1 < 2;");
+		checker.recheck(doc.program);
+		Assert.assertEquals(2, checker.checked());
+		Assert.assertEquals(fullCheck(doc.program), result(checker));
+	}
+
+	/**
+	 * A program from elsewhere is checked from scratch.
+	 */
+	@Test public void otherProgram() throws Exception {
+		IncrementalTypeChecker checker = new IncrementalTypeChecker(new Attributes());
+		Program first = Parser.parse("x = 1; y = x < 2; print y", Backend.PRATT);
+		checker.check(first);
+		Program second = Parser.parse("x = 1 < 2; y = x + 1; print q", Backend.PRATT);
+		checker.recheck(second);
+		Assert.assertEquals(3, checker.checked());
+		Assert.assertEquals(fullCheck(second), result(checker));
+	}
+
+}
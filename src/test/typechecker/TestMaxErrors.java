@@ -0,0 +1,142 @@
+package test.typechecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.Attributes;
+import ast.BooleanType;
+import ast.IntegerType;
+import ast.Program;
+import typechecker.ErrorMessage;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeChecker;
+import typechecker.implementation.TypeCheckerImplementation;
+import typechecker.implementation.TypeCheckerImplementation.Mode;
+
+/**
+ * Checking can stop after a number of errors, or at the first one.
+ */
+public class TestMaxErrors {
+
+	/**
+	 * @return The errors printed while checking, after the first message of
+	 * the exception.
+	 */
+	private static String check(String input, int maxErrors) throws Exception {
+		return check(input, maxErrors, null);
+	}
+
+	/**
+	 * Like {@link #check(String, int)}, in the given mode (the default if
+	 * null).
+	 */
+	private static String check(String input, int maxErrors, Mode mode) throws Exception {
+		PrintStream out = System.out;
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(errors));
+		try {
+			if (mode == null)
+				TypeChecker.parseAndCheck(input, maxErrors);
+			else {
+				TypeCheckerImplementation checker = new TypeCheckerImplementation(Parser.parse(input));
+				checker.setMode(mode);
+				checker.setMaxErrors(maxErrors);
+				checker.typeCheck();
+			}
+			return "OK";
+		}
+		catch (TypeCheckerException e) {
+			return e.getFirstMessage() + "\n" + errors;
+		}
+		finally {
+			System.setOut(out);
+		}
+	}
+
+	private static int lines(String s) {
+		return s.split("\n").length;
+	}
+
+	@Test public void correct() throws Exception {
+		Assert.assertEquals("OK", check("x = 1; print x < 2", TypeChecker.FAIL_FAST));
+		Assert.assertEquals("OK", check("x = 1; print x < 2", 3));
+	}
+
+	/**
+	 * The first error is the first one of a full report: by default the
+	 * errors about definitions come first.
+	 */
+	@Test public void failFast() throws Exception {
+		String input = "x = 1; y = x < 2; z = y + 1; w = !x; print q";
+		String result = check(input, TypeChecker.FAIL_FAST);
+		Assert.assertEquals(2, lines(result));
+		Assert.assertEquals(ErrorMessage.undefinedId("q").toString(), result.split("\n")[0]);
+		Assert.assertEquals(check(input, TypeChecker.ALL_ERRORS).split("\n")[0], result.split("\n")[0]);
+		result = check("x = 1; y = x < 2; z = y + 1; w = !x; print 1", TypeChecker.FAIL_FAST);
+		Assert.assertEquals(ErrorMessage.typeError(Parser.parseExp("y"), IntegerType.INSTANCE, BooleanType.INSTANCE)
+				.toString(), result.split("\n")[0]);
+	}
+
+	@Test public void limit() throws Exception {
+		String input = "x = 1 < 2; a = x + 1; b = x + 2; c = x + 3; d = x + 4; print 1";
+		Assert.assertEquals(5, lines(check(input, TypeChecker.ALL_ERRORS)));
+		Assert.assertEquals(4, lines(check(input, 3)));
+		Assert.assertEquals(5, lines(check(input, 4)));
+		Assert.assertEquals(check(input, TypeChecker.ALL_ERRORS), check(input, 4));
+	}
+
+	/**
+	 * A fused check reports errors about definitions first, even if a type
+	 * error was found before them: it reports the same first errors as a
+	 * full report.
+	 */
+	@Test public void order() throws Exception {
+		String input = "x = 1 + (2 < 3); y = z; w = q; print x";
+		String full = check(input, TypeChecker.ALL_ERRORS, Mode.FUSED);
+		Assert.assertEquals(ErrorMessage.undefinedId("z").toString(),
+				check(input, TypeChecker.FAIL_FAST, Mode.FUSED).split("\n")[0]);
+		full = full.substring(full.indexOf('\n') + 1);
+		for (int maxErrors = 1; maxErrors <= lines(full); maxErrors++) {
+			String result = check(input, maxErrors, Mode.FUSED);
+			String errors = result.substring(result.indexOf('\n') + 1);
+			Assert.assertEquals(maxErrors, lines(errors));
+			Assert.assertTrue(errors, full.startsWith(errors));
+		}
+	}
+
+	/**
+	 * Nothing after the error that stops the check is looked at. A fused
+	 * check only stops at an error about a definition.
+	 */
+	@Test public void stops() throws Exception {
+		for (Mode mode : Mode.values()) {
+			String input = mode == Mode.FUSED ? "x = 1 < 2; y = q; z = 3 + 4; print z"
+					: "x = 1 < 2; y = x + 1; z = 3 + 4; print z";
+			Program program = Parser.parse(input, Backend.PRATT);
+			Attributes attributes = new Attributes();
+			TypeCheckerImplementation checker = new TypeCheckerImplementation(program, attributes);
+			checker.setMode(mode);
+			checker.setMaxErrors(1);
+			PrintStream out = System.out;
+			System.setOut(new PrintStream(new ByteArrayOutputStream()));
+			try {
+				checker.typeCheck();
+				Assert.fail();
+			}
+			catch (TypeCheckerException expected) {
+			}
+			finally {
+				System.setOut(out);
+			}
+			Assert.assertNull(attributes.type(((Assign) program.statements.elementAt(2)).value));
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package test.typechecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.Attributes;
+import ast.FunctionDeclaration;
+import ast.Program;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+import typechecker.implementation.TypeCheckerImplementation.Mode;
+
+/**
+ * Checking the bodies of functions on a pool should report the same errors
+ * in the same order, and record the same types, as checking them in order.
+ */
+public class TestParallelTypeCheck {
+
+	private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@AfterClass public static void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * @return A program with many functions, some of them with errors, and
+	 * statements with errors between them.
+	 */
+	private static String program(int functions, int seed) {
+		Random random = new Random(seed);
+		String[] bodies = {
+			"int f%d(int a, boolean b) { x = a * 2; return b ? x + 1 : x - 1; }",
+			"int f%d(int a, int a) { return a; }",
+			"boolean f%d(int a) { x = a + q; return x; }",
+			"int f%d(int a) { a = 1 < 2; return a; }",
+			"int f%d(boolean b) { x = !b; x = b + 1; return x < 2; }",
+			"boolean f%d(int a) { return a; }",
+		};
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < functions; i++) {
+			out.append(String.format(bodies[random.nextInt(bodies.length)], i)).append('\n');
+			if (random.nextInt(4) == 0)
+				out.append("v").append(i).append(" = ").append(random.nextBoolean() ? "(1 < 2) + 1" : "w").append(";\n");
+		}
+		return out.append("print 1").toString();
+	}
+
+	private static String check(Program program, Mode mode, ForkJoinPool pool, int maxErrors, Attributes attributes)
+			throws Exception {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, attributes);
+		checker.setMode(mode);
+		checker.setPool(pool);
+		checker.setMaxErrors(maxErrors);
+		PrintStream out = System.out;
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(errors));
+		String result;
+		try {
+			checker.typeCheck();
+			result = "OK";
+		}
+		catch (TypeCheckerException e) {
+			result = e.toString();
+		}
+		finally {
+			System.setOut(out);
+		}
+		return result + "\n" + errors;
+	}
+
+	@Test public void sameErrors() throws Exception {
+		for (int seed = 0; seed < 5; seed++) {
+			Program program = Parser.parse(program(300, seed), Backend.PRATT);
+			for (Mode mode : Mode.values()) {
+				for (int maxErrors : new int[] { 1, 7, 100, Integer.MAX_VALUE }) {
+					String expected = check(program, mode, null, maxErrors, new Attributes());
+					Assert.assertEquals(expected, check(program, mode, pool, maxErrors, new Attributes()));
+				}
+			}
+		}
+	}
+
+	@Test public void sameTypes() throws Exception {
+		Program program = Parser.parse(program(500, 42), Backend.PRATT);
+		Attributes sequential = new Attributes(), parallel = new Attributes();
+		check(program, Mode.FUSED, null, Integer.MAX_VALUE, sequential);
+		check(program, Mode.FUSED, pool, Integer.MAX_VALUE, parallel);
+		for (int i = 0; i < program.statements.size(); i++) {
+			if (program.statements.elementAt(i) instanceof FunctionDeclaration) {
+				FunctionDeclaration f = (FunctionDeclaration) program.statements.elementAt(i);
+				Assert.assertSame(sequential.type(f.ret), parallel.type(f.ret));
+				Assert.assertEquals(sequential.isConstant(f.ret), parallel.isConstant(f.ret));
+			}
+		}
+	}
+
+	/**
+	 * A check that stops at the first error waits for the bodies that are
+	 * being checked on the pool, so nothing changes in its Attributes after
+	 * it returns.
+	 */
+	@Test public void stopsBodies() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			input.append("int f").append(i).append("(int a, boolean b) { x = a * 2;");
+			for (int j = 0; j < 200; j++)
+				input.append(" y").append(j).append(" = (a < x ? a : x) * ").append(j).append(';');
+			input.append(" return b ? x + 1 : x - 1; }\n");
+			if (i == 0)
+				input.append("v = (1 < 2) + 1;\n");
+		}
+		Program program = Parser.parse(input.append("print 1").toString(), Backend.PRATT);
+		for (int run = 0; run < 5; run++) {
+			Attributes attributes = new Attributes();
+			Assert.assertFalse(check(program, Mode.TWO_PHASE, pool, 1, attributes).startsWith("OK"));
+			StringBuilder before = new StringBuilder(), after = new StringBuilder();
+			types(program, attributes, before);
+			pool.awaitQuiescence(10, TimeUnit.SECONDS);
+			types(program, attributes, after);
+			Assert.assertEquals(before.toString(), after.toString());
+		}
+	}
+
+	private static void types(Program program, Attributes attributes, StringBuilder out) {
+		for (int i = 0; i < program.statements.size(); i++) {
+			if (program.statements.elementAt(i) instanceof FunctionDeclaration) {
+				FunctionDeclaration f = (FunctionDeclaration) program.statements.elementAt(i);
+				out.append(attributes.type(((Assign) f.assign.elementAt(0)).value)).append(' ');
+			}
+		}
+	}
+
+	/**
+	 * Programs with few functions are checked in order, without tasks.
+	 */
+	@Test public void fewFunctions() throws Exception {
+		ForkJoinPool idle = new ForkJoinPool(2);
+		try {
+			Program program = Parser.parse(program(20, 1), Backend.PRATT);
+			Assert.assertEquals(check(program, Mode.FUSED, null, Integer.MAX_VALUE, new Attributes()),
+					check(program, Mode.FUSED, idle, Integer.MAX_VALUE, new Attributes()));
+			Assert.assertEquals(0, idle.getStealCount() + idle.getQueuedSubmissionCount() + idle.getPoolSize());
+		}
+		finally {
+			idle.shutdown();
+		}
+	}
+
+	@Test public void correct() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			input.append("int f").append(i).append("(int a, boolean b) { x = a * 2; return b ? x + 1 : x - 1; }\n");
+		Program program = Parser.parse(input.append("print 1").toString(), Backend.PRATT);
+		Assert.assertEquals("OK\n", check(program, Mode.FUSED, pool, Integer.MAX_VALUE, new Attributes()));
+	}
+
+}
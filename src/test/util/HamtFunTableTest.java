@@ -0,0 +1,160 @@
+package test.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import util.HamtFunTable;
+
+/**
+ * The same tests as {@link FunTableTest}, and random ones against a HashMap,
+ * for {@link HamtFunTable}.
+ */
+public class HamtFunTableTest {
+
+	@Test public void testEmptyTable() {
+		HamtFunTable<Integer> tab = HamtFunTable.theEmpty();
+		Assert.assertTrue(tab.isEmpty());
+		Assert.assertNull(tab.lookup("something"));
+	}
+
+	@Test public void testOneInsert() {
+		HamtFunTable<Integer> tab = HamtFunTable.theEmpty();
+		tab = tab.insert("x", 10);
+		Assert.assertFalse(tab.isEmpty());
+		Integer found = tab.lookup("x");
+		Assert.assertNotNull(found);
+		Assert.assertEquals(10, (int)found);
+	}
+
+	@Test public void testMultipleInsert() {
+		HamtFunTable<Integer> tab = HamtFunTable.theEmpty();
+		tab = tab.insert("x", 10);
+		tab = tab.insert("y", 20);
+		tab = tab.insert("z", 30);
+		Assert.assertFalse(tab.isEmpty());
+
+		Assert.assertEquals(10, (int)tab.lookup("x"));
+		Assert.assertEquals(20, (int)tab.lookup("y"));
+		Assert.assertEquals(30, (int)tab.lookup("z"));
+
+		Assert.assertNull(tab.lookup("X"));
+	}
+
+	@Test public void testMultipleInsertOfSame() {
+		HamtFunTable<Integer> tab = HamtFunTable.theEmpty();
+		tab = tab.insert("x", 10);
+		tab = tab.insert("y", 20);
+		tab = tab.insert("x", 30);
+		Assert.assertFalse(tab.isEmpty());
+
+		Assert.assertEquals(30, (int)tab.lookup("x"));
+		Assert.assertEquals(20, (int)tab.lookup("y"));
+	}
+
+	@Test public void testMerge() {
+		HamtFunTable<Integer> tab = HamtFunTable.theEmpty();
+		tab = tab.insert("x", 10);
+		tab = tab.insert("y", 20);
+		tab = tab.insert("x", 30);
+
+		HamtFunTable<Integer> superTab = HamtFunTable.theEmpty();
+		superTab = superTab.insert("a", 100);
+		superTab = superTab.insert("y", 200);
+		superTab = superTab.insert("a", 300);
+
+		tab = tab.merge(superTab);
+
+		Assert.assertEquals(30, (int)tab.lookup("x"));
+		Assert.assertEquals(20, (int)tab.lookup("y")); // tab "overrides" superTab
+		Assert.assertEquals(300, (int)tab.lookup("a"));
+	}
+
+	/**
+	 * Names with the same hash code ("Aa" and "BB" do, and so do all the
+	 * strings made of them) end up in the same collision node.
+	 */
+	@Test public void testCollisions() {
+		String[] names = { "AaAa", "AaBB", "BBAa", "BBBB" };
+		HamtFunTable<Integer> tab = HamtFunTable.theEmpty();
+		for (int i = 0; i < names.length; i++)
+			tab = tab.insert(names[i], i);
+		tab = tab.insert("AaBB", 10).insert("x", 20);
+		Assert.assertEquals(0, (int)tab.lookup("AaAa"));
+		Assert.assertEquals(10, (int)tab.lookup("AaBB"));
+		Assert.assertEquals(3, (int)tab.lookup("BBBB"));
+		Assert.assertEquals(20, (int)tab.lookup("x"));
+		Assert.assertNull(tab.lookup("AaAaAa"));
+
+		HamtFunTable<Integer> other = HamtFunTable.<Integer>theEmpty().insert("BBBB", 30).insert("AaAaAa", 40);
+		HamtFunTable<Integer> merged = other.merge(tab);
+		Assert.assertEquals(30, (int)merged.lookup("BBBB"));
+		Assert.assertEquals(40, (int)merged.lookup("AaAaAa"));
+		Assert.assertEquals(10, (int)merged.lookup("AaBB"));
+		merged = tab.merge(other);
+		Assert.assertEquals(3, (int)merged.lookup("BBBB"));
+		Assert.assertEquals(40, (int)merged.lookup("AaAaAa"));
+	}
+
+	/**
+	 * Random inserts and merges, checking every version made against a
+	 * HashMap: a table never changes once made.
+	 */
+	@Test public void testRandom() {
+		Random random = new Random(42);
+		List<HamtFunTable<Integer>> tables = new ArrayList<HamtFunTable<Integer>>();
+		List<Map<String, Integer>> expected = new ArrayList<Map<String, Integer>>();
+		tables.add(HamtFunTable.<Integer>theEmpty());
+		expected.add(new HashMap<String, Integer>());
+		for (int step = 0; step < 500; step++) {
+			int from = random.nextInt(tables.size());
+			HamtFunTable<Integer> tab = tables.get(from);
+			Map<String, Integer> map = new HashMap<String, Integer>(expected.get(from));
+			if (random.nextInt(20) == 0) {
+				int other = random.nextInt(tables.size());
+				tab = tab.merge(tables.get(other));
+				for (Map.Entry<String, Integer> e : expected.get(other).entrySet()) {
+					if (!map.containsKey(e.getKey()))
+						map.put(e.getKey(), e.getValue());
+				}
+			}
+			else {
+				for (int i = random.nextInt(50); i >= 0; i--) {
+					String name = name(random);
+					tab = tab.insert(name, step);
+					map.put(name, step);
+				}
+			}
+			tables.add(tab);
+			expected.add(map);
+		}
+		for (int t = 0; t < tables.size(); t++) {
+			Assert.assertEquals(expected.get(t).isEmpty(), tables.get(t).isEmpty());
+			for (int i = 0; i < 300; i++) {
+				String name = name(random);
+				Assert.assertEquals(expected.get(t).get(name), tables.get(t).lookup(name));
+			}
+			for (Map.Entry<String, Integer> e : expected.get(t).entrySet())
+				Assert.assertEquals(e.getValue(), tables.get(t).lookup(e.getKey()));
+		}
+	}
+
+	/**
+	 * @return One of about a thousand names, some of them with the same hash.
+	 */
+	private static String name(Random random) {
+		if (random.nextInt(10) == 0) {
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < 3; i++)
+				s.append(random.nextBoolean() ? "Aa" : "BB");
+			return s.toString();
+		}
+		return "v" + random.nextInt(1000);
+	}
+
+}
@@ -0,0 +1,109 @@
+package test.visitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Program;
+
+import test.bench.ProgramGenerator;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+import visitor.ExpressionWalker;
+import visitor.PrettyPrintVisitor;
+import visitor.StructurePrintVisitor;
+
+/**
+ * The visitors should do exactly the same when they walk expressions with an
+ * {@link ExpressionWalker} as when they recurse, and they should not run out
+ * of stack on very deeply nested expressions.
+ */
+public class TestExpressionWalker {
+
+	private static String repeat(String s, int times) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < times; i++)
+			result.append(s);
+		return result.toString();
+	}
+
+	/**
+	 * @return Everything the visitors produce for a program, when they walk
+	 * expressions from the given depth on: the pretty printed and structure
+	 * printed program, and the type errors.
+	 */
+	private String visit(String input, int recursionLimit) throws Exception {
+		Program program = Parser.parse(input, Backend.PRATT);
+		StringBuilder result = new StringBuilder();
+		StringWriter printed = new StringWriter();
+		PrettyPrintVisitor printer = new PrettyPrintVisitor(new PrintWriter(printed));
+		printer.setRecursionLimit(recursionLimit);
+		program.accept(printer);
+		StringWriter dumped = new StringWriter();
+		StructurePrintVisitor dumper = new StructurePrintVisitor(new PrintWriter(dumped));
+		dumper.setRecursionLimit(recursionLimit);
+		program.accept(dumper);
+		result.append(printed).append(dumped);
+		PrintStream out = System.out;
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(errors));
+		try {
+			TypeCheckerImplementation checker = new TypeCheckerImplementation(program);
+			checker.setRecursionLimit(recursionLimit);
+			checker.typeCheck();
+		}
+		catch (TypeCheckerException e) {
+			result.append(e.getMessage());
+		}
+		finally {
+			System.setOut(out);
+		}
+		return result.append(errors).toString();
+	}
+
+	private void test(String input) throws Exception {
+		String recursive = visit(input, ExpressionWalker.RECURSION_LIMIT);
+		for (int walkFrom : new int[] { 0, 1, 2 })
+			Assert.assertEquals(input, recursive, visit(input, walkFrom));
+	}
+
+	@Test public void sameAsRecursive() throws Exception {
+		test("print 1");
+		test("x = 1; y = !(x < 2) ? x * 3 - 1 : x + 2; print y");
+		test("x = 1 < 2; y = x + 1; z = !y; print x ? y : z < 1");
+		test("print a ? b ? 1 : 2 : c < d");
+		for (int i = 0; i < 50; i++)
+			test(ProgramGenerator.generate(1 + i * 3, i));
+	}
+
+	@Test public void deeplyNested() throws Exception {
+		int n = 100000;
+		String[] inputs = {
+			"print " + repeat("(", n) + "1" + repeat(")", n),
+			"x = 1 < 2; print " + repeat("!", n) + "x",
+			"x = 1 < 2; print " + repeat("x ? ", n) + "1" + repeat(" : 2", n),
+			"x = 1 < 2; print " + repeat("x ? 1 : ", n) + "2",
+			"print 1" + repeat(" + 1", n),
+			"print " + repeat("1 - (", n) + "1" + repeat(")", n),
+			"x = 1; print " + repeat("(x < 1) + (", n) + "1" + repeat(")", n),
+		};
+		for (String input : inputs) {
+			Program program = Parser.parse(input, Backend.PRATT);
+			program.toString();
+			try {
+				new TypeCheckerImplementation(program).typeCheck();
+			}
+			catch (TypeCheckerException e) {
+				// Some of these have type errors, just checking they don't overflow
+			}
+		}
+	}
+
+}
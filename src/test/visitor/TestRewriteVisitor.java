@@ -0,0 +1,295 @@
+package test.visitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.Assign;
+import ast.Conditional;
+import ast.Expression;
+import ast.HashConsingNodeFactory;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.LessThan;
+import ast.Minus;
+import ast.Not;
+import ast.Plus;
+import ast.Program;
+import ast.Times;
+
+import test.bench.ProgramGenerator;
+import typechecker.TypeChecked;
+import typechecker.TypeCheckerException;
+import typechecker.implementation.TypeCheckerImplementation;
+import visitor.ConstantFoldingVisitor;
+import visitor.DoubleNegationVisitor;
+import visitor.RewriteVisitor;
+
+/**
+ * Rewriting should give the expected trees, share everything it didn't
+ * rewrite, and not change what programs compute.
+ */
+public class TestRewriteVisitor {
+
+	private static RewriteVisitor passes() {
+		return RewriteVisitor.combine(new ConstantFoldingVisitor(), new DoubleNegationVisitor());
+	}
+
+	/**
+	 * @return The passes for a program that was checked, which fold
+	 * conditionals as well.
+	 */
+	private static RewriteVisitor passes(Program program) throws Exception {
+		TypeChecked checked = new TypeCheckerImplementation(program).typeCheck();
+		return RewriteVisitor.combine(new ConstantFoldingVisitor(checked), new DoubleNegationVisitor());
+	}
+
+	/**
+	 * Rewrite input, printed by a program in which x and y are ints.
+	 */
+	private static Expression rewrite(String input) throws Exception {
+		Program program = Parser.parse("x = 1; y = 2; print " + input, Backend.PRATT);
+		return passes(program).rewrite(program).print.exp;
+	}
+
+	private static void test(String input, String expected) throws Exception {
+		Assert.assertEquals(Parser.parseExp(expected, Backend.PRATT).dump(), rewrite(input).dump());
+	}
+
+	@Test public void rewrites() throws Exception {
+		test("1 + 2", "3");
+		test("x + 2 * 3", "x + 6");
+		test("1 + 2 + x", "3 + x");
+		test("x + 1 + 2", "x + 1 + 2");
+		test("!!(x < 1)", "x < 1");
+		test("!!!(x < 1)", "!(x < 1)");
+		test("!!!!(x < 1)", "x < 1");
+		test("1 < 2 ? x : y", "x");
+		test("!(1 < 2) ? x : y", "y");
+		test("x < 2 ? 1 : 2", "x < 2 ? 1 : 2");
+		// Folding makes a condition constant, which picks a branch to fold
+		test("!!(1 + 1 < 3 * 1) ? (2 < 1 ? y : 4 + 5) : x", "9");
+		test("(1 < 2 ? x : y) + (2 - 1)", "x + 1");
+		Assert.assertEquals(-3, value("(1 < 2 ? 3 : 4) * (5 - 6)"));
+		Assert.assertEquals(Integer.MIN_VALUE, value("2147483647 + 1"));
+	}
+
+	private static int value(String input) throws Exception {
+		return ((IntegerLiteral) rewrite(input)).value;
+	}
+
+	/**
+	 * Without a check, what a rewrite would drop may have errors, which
+	 * must still be found.
+	 */
+	@Test public void unchecked() throws Exception {
+		String[] inputs = { "1 < 2 ? 5 : !3", "!!3", "!!(x ? 1 : 2)" };
+		for (String input : inputs) {
+			Program program = Parser.parse("x = 1; print " + input, Backend.PRATT);
+			Program rewritten = passes().rewrite(program);
+			Assert.assertSame(program, rewritten);
+			try {
+				new TypeCheckerImplementation(rewritten).typeCheck();
+				Assert.fail(input);
+			}
+			catch (TypeCheckerException expected) {
+			}
+		}
+		Assert.assertEquals(Parser.parseExp("1 < 2 ? 5 : 7", Backend.PRATT).dump(),
+				passes().rewrite(Parser.parseExp("1 < 2 ? 5 : 3 + 4", Backend.PRATT)).dump());
+	}
+
+	@Test public void sharing() throws Exception {
+		Program program = Parser.parse("x = 1; y = x * (x + 2); z = y + (1 + 1); print !!(y < z)", Backend.PRATT);
+		RewriteVisitor passes = passes(program);
+		Program rewritten = passes.rewrite(program);
+		Assert.assertNotSame(program, rewritten);
+		Assert.assertSame(program.statements.elementAt(0), rewritten.statements.elementAt(0));
+		Assert.assertSame(program.statements.elementAt(1), rewritten.statements.elementAt(1));
+		Plus z = (Plus) ((Assign) program.statements.elementAt(2)).value;
+		Plus rewrittenZ = (Plus) ((Assign) rewritten.statements.elementAt(2)).value;
+		Assert.assertNotSame(z, rewrittenZ);
+		Assert.assertSame(z.e1, rewrittenZ.e1);
+		Assert.assertEquals(2, ((IntegerLiteral) rewrittenZ.e2).value);
+		Assert.assertSame(((Not) ((Not) program.print.exp).e).e, rewritten.print.exp);
+		Assert.assertEquals(2, passes.rewrites());
+
+		// Nothing to rewrite: the same program comes back
+		Assert.assertSame(rewritten, passes.rewrite(rewritten));
+		Assert.assertEquals(2, passes.rewrites());
+	}
+
+	@Test public void functions() throws Exception {
+		Program program = Parser.parse("int f(int a, boolean b) { c = 2 * 3; return b ? a : c; } "
+				+ "int g() { return 1; } print 1", Backend.PRATT);
+		Program rewritten = passes(program).rewrite(program);
+		Assert.assertEquals(Parser.parse("int f(int a, boolean b) { c = 6; return b ? a : c; } int g() { return 1; } print 1",
+				Backend.PRATT).dump(), rewritten.dump());
+		Assert.assertSame(program.statements.elementAt(1), rewritten.statements.elementAt(1));
+		Assert.assertSame(program.print, rewritten.print);
+	}
+
+	/**
+	 * The nodes a pass makes are rewritten again, those it takes from the
+	 * tree it was given are not.
+	 */
+	@Test public void fixpoint() throws Exception {
+		final int[] visits = new int[1];
+		RewriteVisitor passes = RewriteVisitor.combine(new RewriteVisitor() {
+			@Override
+			protected Expression visit(Plus n) {
+				visits[0]++;
+				// (a + b) + c => a + (b + c)
+				if (n.e1 instanceof Plus)
+					return factory().plus(((Plus) n.e1).e1, factory().plus(((Plus) n.e1).e2, n.e2));
+				return n;
+			}
+		}, new ConstantFoldingVisitor());
+		Expression e = passes.rewrite(Parser.parseExp("x + 1 + 2 + 3", Backend.PRATT));
+		Assert.assertEquals(Parser.parseExp("x + 6", Backend.PRATT).dump(), e.dump());
+		int first = visits[0];
+		Assert.assertTrue(first < 12);
+		Assert.assertSame(e, passes.rewrite(e));
+		Assert.assertEquals(first + 1, visits[0]);
+	}
+
+	/**
+	 * The passes of a combined pass make their nodes with its factory.
+	 */
+	@Test public void combinedFactory() throws Exception {
+		Expression x = new IdentifierExp("x", 0);
+		Expression e = new LessThan(new Plus(x, new Plus(new IntegerLiteral(1), new IntegerLiteral(2))),
+				new Plus(x, new Plus(new IntegerLiteral(2), new IntegerLiteral(1))));
+		RewriteVisitor passes = passes();
+		passes.setNodeFactory(new HashConsingNodeFactory());
+		LessThan rewritten = (LessThan) passes.rewrite(e);
+		Assert.assertEquals(Parser.parseExp("x + 3", Backend.PRATT).dump(), rewritten.e1.dump());
+		Assert.assertSame(rewritten.e1, rewritten.e2);
+	}
+
+	/**
+	 * Whether a node is new to a rewrite doesn't depend on the thread that
+	 * made the tree or the one that rewrites it: a subtree taken from the
+	 * tree is not walked again, and the nodes a pass makes are.
+	 */
+	@Test public void otherThreads() throws Exception {
+		final Expression[] tree = new Expression[1];
+		final int depth = 2000, terms = 100;
+		// Conditionals nested depth deep, each picking the one below it, over
+		// a sum of x + 1 + 2, which the second pass turns into x + 3
+		Thread builder = new Thread() {
+			public void run() {
+				Expression x = new IdentifierExp("x", 0);
+				Expression sum = x;
+				for (int i = 0; i < terms; i++)
+					sum = new Plus(sum, x);
+				Expression e = new Plus(new Plus(sum, new IntegerLiteral(1)), new IntegerLiteral(2));
+				for (int i = 0; i < depth; i++)
+					e = new Conditional(new LessThan(x, x), e, x);
+				tree[0] = e;
+			}
+		};
+		builder.start();
+		builder.join();
+
+		final int[] visits = new int[1];
+		final Expression[] rewritten = new Expression[1];
+		Thread rewriter = new Thread() {
+			public void run() {
+				RewriteVisitor passes = RewriteVisitor.combine(new RewriteVisitor() {
+					@Override
+					protected Expression visit(Conditional n) {
+						return n.e2;
+					}
+
+					@Override
+					protected Expression visit(Plus n) {
+						visits[0]++;
+						// (a + 1) + 2 => a + (1 + 2)
+						if (n.e1 instanceof Plus && ((Plus) n.e1).e2 instanceof IntegerLiteral
+								&& n.e2 instanceof IntegerLiteral)
+							return factory().plus(((Plus) n.e1).e1, factory().plus(((Plus) n.e1).e2, n.e2));
+						return n;
+					}
+				}, new ConstantFoldingVisitor());
+				rewritten[0] = passes.rewrite(tree[0]);
+			}
+		};
+		rewriter.start();
+		rewriter.join();
+
+		Plus plus = (Plus) rewritten[0];
+		Assert.assertEquals(3, ((IntegerLiteral) plus.e2).value);
+		// Each Plus of the sum once, the two above it, and the two the pass
+		// made: 1 + 2, then the sum + 3
+		Assert.assertEquals(terms + 4, visits[0]);
+	}
+
+	@Test public void deeplyNested() throws Exception {
+		Expression e = new IntegerLiteral(0);
+		Expression x = new IdentifierExp("x", 0);
+		int depth = 100000;
+		for (int i = 1; i <= depth; i++)
+			e = new Plus(e, new IntegerLiteral(i));
+		Expression folded = passes().rewrite(e);
+		Assert.assertEquals((int) (depth * (depth + 1L) / 2), ((IntegerLiteral) folded).value);
+
+		e = new LessThan(x, x);
+		for (int i = 0; i < depth; i++)
+			e = new Conditional(new LessThan(x, new IntegerLiteral(i)), new Not(new Not(new Not(e))), new IntegerLiteral(i));
+		RewriteVisitor passes = passes();
+		Expression rewritten = passes.rewrite(e);
+		Assert.assertEquals(depth, passes.rewrites());
+		for (int i = depth - 1; i >= 0; i--) {
+			Conditional c = (Conditional) rewritten;
+			Assert.assertEquals(i, ((IntegerLiteral) c.e3).value);
+			rewritten = ((Not) c.e2).e;
+		}
+		Assert.assertTrue(rewritten instanceof LessThan);
+	}
+
+	/**
+	 * Rewritten generated programs should print the same as the originals.
+	 */
+	@Test public void sameResults() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			Program program = Parser.parse(ProgramGenerator.generate(40, i), Backend.PRATT);
+			Program rewritten = passes(program).rewrite(program);
+			Assert.assertEquals(run(program), run(rewritten));
+		}
+	}
+
+	private static int run(Program program) {
+		Map<Integer, Integer> variables = new HashMap<Integer, Integer>();
+		for (int i = 0; i < program.statements.size(); i++) {
+			Assign assign = (Assign) program.statements.elementAt(i);
+			variables.put(assign.id, eval(assign.value, variables));
+		}
+		return eval(program.print.exp, variables);
+	}
+
+	private static int eval(Expression e, Map<Integer, Integer> variables) {
+		if (e instanceof IntegerLiteral)
+			return ((IntegerLiteral) e).value;
+		if (e instanceof IdentifierExp)
+			return variables.get(((IdentifierExp) e).id);
+		if (e instanceof Plus)
+			return eval(((Plus) e).e1, variables) + eval(((Plus) e).e2, variables);
+		if (e instanceof Minus)
+			return eval(((Minus) e).e1, variables) - eval(((Minus) e).e2, variables);
+		if (e instanceof Times)
+			return eval(((Times) e).e1, variables) * eval(((Times) e).e2, variables);
+		if (e instanceof LessThan)
+			return eval(((LessThan) e).e1, variables) < eval(((LessThan) e).e2, variables) ? 1 : 0;
+		if (e instanceof Not)
+			return 1 - eval(((Not) e).e, variables);
+		Conditional c = (Conditional) e;
+		return eval(c.e1, variables) != 0 ? eval(c.e2, variables) : eval(c.e3, variables);
+	}
+
+}
@@ -0,0 +1,184 @@
+package test.visitor;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import parser.Parser;
+import parser.Parser.Backend;
+
+import ast.AST;
+import ast.Assign;
+import ast.BooleanType;
+import ast.Conditional;
+import ast.FlatAST;
+import ast.FunctionDeclaration;
+import ast.FunctionType;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.IntegerType;
+import ast.LessThan;
+import ast.Minus;
+import ast.NodeList;
+import ast.Not;
+import ast.Param;
+import ast.Plus;
+import ast.Print;
+import ast.Program;
+import ast.Times;
+import ast.UnknownType;
+
+import test.bench.ProgramGenerator;
+import visitor.SwitchVisitor;
+
+/**
+ * {@link SwitchVisitor#dispatch(AST)} should call the same visit method as
+ * accept does, for every kind of node.
+ */
+public class TestSwitchVisitor {
+
+	/**
+	 * Names the visit method called for every node of a tree, going down the
+	 * tree with dispatch or with accept.
+	 */
+	private static class Names extends SwitchVisitor<String> {
+
+		private final boolean dispatch;
+
+		Names(boolean dispatch) {
+			this.dispatch = dispatch;
+		}
+
+		private String go(AST n) {
+			return dispatch ? dispatch(n) : n.accept(this);
+		}
+
+		public <T extends AST> String visit(NodeList<T> ns) {
+			StringBuilder s = new StringBuilder("NodeList(");
+			for (int i = 0; i < ns.size(); i++)
+				s.append(go(ns.elementAt(i))).append(' ');
+			return s.append(')').toString();
+		}
+
+		public String visit(Program n) {
+			return "Program(" + go(n.statements) + " " + go(n.print) + ")";
+		}
+
+		public String visit(Print n) {
+			return "Print(" + go(n.exp) + ")";
+		}
+
+		public String visit(Assign n) {
+			return "Assign(" + go(n.value) + ")";
+		}
+
+		public String visit(LessThan n) {
+			return "LessThan(" + go(n.e1) + " " + go(n.e2) + ")";
+		}
+
+		public String visit(Conditional n) {
+			return "Conditional(" + go(n.e1) + " " + go(n.e2) + " " + go(n.e3) + ")";
+		}
+
+		public String visit(Plus n) {
+			return "Plus(" + go(n.e1) + " " + go(n.e2) + ")";
+		}
+
+		public String visit(Minus n) {
+			return "Minus(" + go(n.e1) + " " + go(n.e2) + ")";
+		}
+
+		public String visit(Times n) {
+			return "Times(" + go(n.e1) + " " + go(n.e2) + ")";
+		}
+
+		public String visit(IntegerLiteral n) {
+			return "IntegerLiteral";
+		}
+
+		public String visit(IdentifierExp n) {
+			return "IdentifierExp";
+		}
+
+		public String visit(Not n) {
+			return "Not(" + go(n.e) + ")";
+		}
+
+		public String visit(IntegerType n) {
+			return "IntegerType";
+		}
+
+		public String visit(BooleanType n) {
+			return "BooleanType";
+		}
+
+		public String visit(UnknownType n) {
+			return "UnknownType";
+		}
+
+		public String visit(FunctionType n) {
+			return "FunctionType(" + go(n.result) + ")";
+		}
+
+		public String visit(FunctionDeclaration n) {
+			return "FunctionDeclaration(" + go(n.type) + " " + visit(n.formal) + " " + go(n.assign) + " "
+					+ go(n.ret) + " " + go(n.signature) + ")";
+		}
+
+		public String visit(List<Param> n) {
+			StringBuilder s = new StringBuilder("Params(");
+			for (Param p : n)
+				s.append(go(p.type)).append(' ');
+			return s.append(')').toString();
+		}
+	}
+
+	private static void test(String input) throws Exception {
+		Program program = Parser.parse(input, Backend.PRATT);
+		String expected = program.accept(new Names(false));
+		Assert.assertEquals(expected, new Names(true).dispatch(program));
+	}
+
+	@Test public void sameVisits() throws Exception {
+		test("x = 1 + 2 * 3 - 4; y = !(x < 2); print y ? x : 0");
+		test("int f(int a, boolean b) { c = a + 1; return b ? c : a; } print 1");
+		for (int i = 0; i < 10; i++)
+			test(ProgramGenerator.generate(60 + i * 20, i));
+	}
+
+	@Test public void types() throws Exception {
+		Names names = new Names(true);
+		Assert.assertEquals("IntegerType", names.dispatch(new IntegerType()));
+		Assert.assertEquals("BooleanType", names.dispatch(BooleanType.INSTANCE));
+		Assert.assertEquals("UnknownType", names.dispatch(new UnknownType()));
+	}
+
+	@Test public void distinctKinds() throws Exception {
+		AST[] nodes = { new IntegerLiteral(1), new IdentifierExp("x", 0), new Not(new IntegerLiteral(1)),
+				new Plus(new IntegerLiteral(1), new IntegerLiteral(2)),
+				new Minus(new IntegerLiteral(1), new IntegerLiteral(2)),
+				new Times(new IntegerLiteral(1), new IntegerLiteral(2)),
+				new LessThan(new IntegerLiteral(1), new IntegerLiteral(2)),
+				new Conditional(new IntegerLiteral(1), new IntegerLiteral(2), new IntegerLiteral(3)),
+				IntegerType.INSTANCE, BooleanType.INSTANCE, UnknownType.INSTANCE, new NodeList<AST>(),
+				new Print(new IntegerLiteral(1)) };
+		for (int i = 0; i < nodes.length; i++) {
+			Assert.assertFalse(nodes[i].kind() == AST.OTHER);
+			for (int j = 0; j < i; j++)
+				Assert.assertFalse(nodes[i].kind() == nodes[j].kind());
+		}
+	}
+
+	/**
+	 * A FlatAST has no kind of its own, it is visited through accept, as the
+	 * Program it makes.
+	 */
+	@Test public void flatAST() throws Exception {
+		Program program = Parser.parse("x = 1 + 2; print x < 3 ? x : 4", Backend.PRATT);
+		FlatAST flat = FlatAST.from(program);
+		Assert.assertEquals(AST.OTHER, flat.kind());
+		Assert.assertEquals(program.accept(new Names(false)), new Names(true).dispatch(flat));
+	}
+
+}
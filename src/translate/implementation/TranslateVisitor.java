@@ -17,6 +17,7 @@ import ast.BooleanType;
 import ast.Conditional;
 import ast.Expression;
 import ast.FunctionDeclaration;
+import ast.FunctionType;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -43,9 +44,9 @@ import ir.tree.CJUMP.RelOp;
 import translate.Fragments;
 import translate.ProcFragment;
 import translate.Translator;
-import util.FunTable;
 import util.Lookup;
-import visitor.Visitor;
+import visitor.ExpressionWalker;
+import visitor.SwitchVisitor;
 
 
 /**
@@ -58,7 +59,7 @@ import visitor.Visitor;
  * 
  * @author kdvolder
  */
-public class TranslateVisitor implements Visitor<TRExp> {
+public class TranslateVisitor extends SwitchVisitor<TRExp> {
 
 	/**
 	 * We build up a list of Fragment (pieces of stuff to be converted into
@@ -72,13 +73,33 @@ public class TranslateVisitor implements Visitor<TRExp> {
 	 */
 	private Frame frameFactory;
 	private Frame frame;
-	private FunTable<Access> currentEnv;
+	/**
+	 * The Access of each variable, indexed by its id in the Program's Symbols.
+	 */
+	private Access[] currentEnv;
+
+	/**
+	 * How deep we are inside of an expression, how deep to recurse, and the
+	 * walker used for expressions that are nested deeper.
+	 */
+	private int depth = 0;
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+	private Walker walker;
 
 	public TranslateVisitor(Lookup<Type> table, Frame frameFactory) {
 		this.frags = new Fragments(frameFactory);
 		this.frameFactory = frameFactory;
 	}
 
+	/**
+	 * Walk expressions from the given depth on rather than from
+	 * {@link ExpressionWalker#RECURSION_LIMIT}, e.g. to test the walk on
+	 * small ones.
+	 */
+	public void setRecursionLimit(int limit) {
+		recursionLimit = limit;
+	}
+
 	/////// Helpers //////////////////////////////////////////////
 
 	/**
@@ -88,8 +109,47 @@ public class TranslateVisitor implements Visitor<TRExp> {
 		return frameFactory.newFrame(name, formals);
 	}
 
-	private void putEnv(String name, Access access) {
-		currentEnv = currentEnv.insert(name, access);
+	private void putEnv(int id, Access access) {
+		currentEnv[id] = access;
+	}
+
+	/**
+	 * Translate an expression. Expressions nested too deep to recurse into
+	 * are translated by a {@link Walker}.
+	 */
+	private TRExp translate(Expression e) {
+		if (depth >= recursionLimit) {
+			if (walker == null)
+				walker = new Walker();
+			return walker.walk(e);
+		}
+		depth++;
+		TRExp result = dispatch(e);
+		depth--;
+		return result;
+	}
+
+	/**
+	 * Translates expressions in the same way as the visitor methods below.
+	 */
+	private class Walker extends ExpressionWalker<TRExp> {
+
+		@Override
+		protected TRExp leave(Expression n, TRExp r1, TRExp r2, TRExp r3) {
+			if (n instanceof Conditional)
+				return conditional(r1, r2, r3);
+			if (n instanceof LessThan)
+				return lessThan(r1, r2);
+			if (n instanceof Plus)
+				return numericOp(Op.PLUS, r1, r2);
+			if (n instanceof Minus)
+				return numericOp(Op.MINUS, r1, r2);
+			if (n instanceof Times)
+				return numericOp(Op.MUL, r1, r2);
+			if (n instanceof Not)
+				return not(r1);
+			return dispatch(n);
+		}
 	}
 
 	////// Visitor ///////////////////////////////////////////////
@@ -99,7 +159,7 @@ public class TranslateVisitor implements Visitor<TRExp> {
 		IRStm result = IR.NOP;
 		for (int i = 0; i < ns.size(); i++) {
 			AST nextStm = ns.elementAt(i);
-			result = IR.SEQ(result, nextStm.accept(this).unNx());
+			result = IR.SEQ(result, dispatch(nextStm).unNx());
 		}
 		return new Nx(result);
 	}
@@ -107,9 +167,9 @@ public class TranslateVisitor implements Visitor<TRExp> {
 	@Override
 	public TRExp visit(Program n) {
 		frame = newFrame(L_MAIN, 0);
-		currentEnv = FunTable.theEmpty();
-		TRExp statements = n.statements.accept(this);
-		TRExp print = n.print.accept(this);
+		currentEnv = new Access[n.symbols.size()];
+		TRExp statements = dispatch(n.statements);
+		TRExp print = dispatch(n.print);
 		IRStm body = IR.SEQ(
 				statements.unNx(),
 				print.unNx());
@@ -133,25 +193,33 @@ public class TranslateVisitor implements Visitor<TRExp> {
 		throw new Error("Not implemented");
 	}
 
+	@Override
+	public TRExp visit(FunctionType n) {
+		throw new Error("Not implemented");
+	}
+
 	@Override
 	public TRExp visit(Print n) {
-		TRExp arg = n.exp.accept(this);
+		TRExp arg = translate(n.exp);
 		return new Ex(IR.CALL(Translator.L_PRINT, arg.unEx()));
 	}
 
 	@Override
 	public TRExp visit(Assign n) {
 		Access var = frame.allocLocal(false);
-		putEnv(n.name, var);
-		TRExp val = n.value.accept(this);
+		putEnv(n.id, var);
+		TRExp val = translate(n.value);
 		return new Nx(IR.MOVE(var.exp(frame.FP()), val.unEx()));
 	}
 
 	@Override
 	public TRExp visit(LessThan n) {
-		TRExp l = n.e1.accept(this);
-		TRExp r = n.e2.accept(this);
+		TRExp l = translate(n.e1);
+		TRExp r = translate(n.e2);
+		return lessThan(l, r);
+	}
 
+	private TRExp lessThan(TRExp l, TRExp r) {
 		TEMP v = TEMP(new Temp());
 		return new Ex(ESEQ( SEQ( 
 				MOVE(v, FALSE),
@@ -162,8 +230,12 @@ public class TranslateVisitor implements Visitor<TRExp> {
 	//////////////////////////////////////////////////////////////
 
 	private TRExp numericOp(Op op, Expression e1, Expression e2) {
-		TRExp l = e1.accept(this);
-		TRExp r = e2.accept(this);
+		TRExp l = translate(e1);
+		TRExp r = translate(e2);
+		return numericOp(op, l, r);
+	}
+
+	private TRExp numericOp(Op op, TRExp l, TRExp r) {
 		return new Ex(IR.BINOP(op, l.unEx(), r.unEx()));
 	}
 
@@ -191,13 +263,17 @@ public class TranslateVisitor implements Visitor<TRExp> {
 
 	@Override
 	public TRExp visit(IdentifierExp n) {
-		Access var = currentEnv.lookup(n.name);
+		Access var = currentEnv[n.id];
 		return new Ex(var.exp(frame.FP()));
 	}
 
 	@Override
 	public TRExp visit(Not n) {
-		final TRExp negated = n.e.accept(this);
+		final TRExp negated = translate(n.e);
+		return not(negated);
+	}
+
+	private TRExp not(TRExp negated) {
 		return new Ex(IR.BINOP(Op.MINUS, IR.CONST(1), negated.unEx()));
 //		return new Cx() {
 //			@Override
@@ -217,10 +293,13 @@ public class TranslateVisitor implements Visitor<TRExp> {
 
 	@Override
 	public TRExp visit(Conditional n) {
-		TRExp c = n.e1.accept(this);
-		TRExp t = n.e2.accept(this);
-		TRExp f = n.e3.accept(this);
+		TRExp c = translate(n.e1);
+		TRExp t = translate(n.e2);
+		TRExp f = translate(n.e3);
+		return conditional(c, t, f);
+	}
 
+	private TRExp conditional(TRExp c, TRExp t, TRExp f) {
 		TEMP v = TEMP(new Temp());
 		return new Ex(ESEQ( SEQ( 
 				MOVE(v, f.unEx()),
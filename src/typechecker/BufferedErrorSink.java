@@ -0,0 +1,41 @@
+package typechecker;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the messages it is sent, so they can be looked at or printed all at
+ * once later. Their text is only made when they are printed.
+ */
+public class BufferedErrorSink implements ErrorSink {
+
+	private final List<ErrorMessage> messages = new ArrayList<ErrorMessage>();
+
+	public void report(ErrorMessage msg) {
+		messages.add(msg);
+	}
+
+	/**
+	 * @return The messages so far, in the order they were reported.
+	 */
+	public List<ErrorMessage> messages() {
+		return messages;
+	}
+
+	public void clear() {
+		messages.clear();
+	}
+
+	/**
+	 * Print the messages, one per line, with a single write.
+	 */
+	public void printTo(PrintStream out) {
+		StringBuilder text = new StringBuilder();
+		for (ErrorMessage msg : messages)
+			text.append(msg).append('\n');
+		out.print(text);
+		out.flush();
+	}
+
+}
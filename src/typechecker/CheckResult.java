@@ -0,0 +1,58 @@
+package typechecker;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What checking one program of a batch found: that it is correct, the
+ * errors in it, or that it could not be checked at all (e.g. because it
+ * does not parse).
+ */
+public class CheckResult {
+
+	private final List<ErrorMessage> errors;
+	private final Exception failure;
+
+	public CheckResult(List<ErrorMessage> errors) {
+		this(errors, null);
+	}
+
+	public CheckResult(Exception failure) {
+		this(Collections.<ErrorMessage>emptyList(), failure);
+	}
+
+	private CheckResult(List<ErrorMessage> errors, Exception failure) {
+		this.errors = Collections.unmodifiableList(errors);
+		this.failure = failure;
+	}
+
+	/**
+	 * @return Whether the program was checked and has no errors.
+	 */
+	public boolean ok() {
+		return failure == null && errors.isEmpty();
+	}
+
+	/**
+	 * @return The type errors, in the order they would have been printed.
+	 */
+	public List<ErrorMessage> errors() {
+		return errors;
+	}
+
+	/**
+	 * @return Why the program could not be checked, e.g. a ParseException,
+	 * or null if it was.
+	 */
+	public Exception failure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		if (failure != null)
+			return "FAILED -- " + failure;
+		return ok() ? "OK" : errors.toString();
+	}
+
+}
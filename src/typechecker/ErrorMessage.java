@@ -18,46 +18,136 @@ import ast.Type;
  * the implementation of the ErrorMessage class produces similar error Strings.
  */
 public class ErrorMessage {
-	
+
+	/**
+	 * The kinds of messages there are.
+	 */
+	public enum Kind {
+		UNDEFINED_ID, DUPLICATE_DEFINITION, TYPE_ERROR
+	}
+
+	/**
+	 * What the message is about. The text is only made from these when it is
+	 * asked for (most messages are never read, only the first one is by the
+	 * unit tests), since printing an expression takes a visitor and a buffer.
+	 */
+	private final Kind kind;
+	/** The identifier, for UNDEFINED_ID and DUPLICATE_DEFINITION */
+	private final String name;
+	/** The expression, type expected and type found, for TYPE_ERROR */
+	private final Expression exp;
+	private final Type expected;
+	private final List<Type> expectedOneOf;
+	private final Type actual;
+
 	private String msg;
 
 	/**
 	 * Constructor is private so that you can't make messages that are
 	 * "arbitrarily formatted".
 	 */
-	private ErrorMessage(String msg) {
-		this.msg = msg;
+	private ErrorMessage(Kind kind, String name, Expression exp, Type expected, List<Type> expectedOneOf, Type actual) {
+		this.kind = kind;
+		this.name = name;
+		this.exp = exp;
+		this.expected = expected;
+		this.expectedOneOf = expectedOneOf;
+		this.actual = actual;
 	}
 
 	public static ErrorMessage undefinedId(String name) {
-		return new ErrorMessage("Unbound Identifier: "+name);
+		return new ErrorMessage(Kind.UNDEFINED_ID, name, null, null, null, null);
 	}
 	
 	public static ErrorMessage duplicateDefinition(String name) {
-		return new ErrorMessage("Multiply defined Identifier: "+name);
+		return new ErrorMessage(Kind.DUPLICATE_DEFINITION, name, null, null, null, null);
 	}
 	
 	public static ErrorMessage typeError(Expression exp, Type expected,
 			Type actual) {
-		return new ErrorMessage(exp+" has type "+actual+" expected "+expected);
+		return new ErrorMessage(Kind.TYPE_ERROR, null, exp, expected, null, actual);
 	}
 	
 	public static ErrorMessage typeError(Expression exp, List<Type> expected,
 			Type actual) {
-		return new ErrorMessage(exp+" has type "+actual+" expected one of " + expected);
+		return new ErrorMessage(Kind.TYPE_ERROR, null, exp, null, expected, actual);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return The identifier, or null for a TYPE_ERROR.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The expression of a TYPE_ERROR, null for other kinds.
+	 */
+	public Expression getExp() {
+		return exp;
+	}
+
+	/**
+	 * @return The type expected by a TYPE_ERROR, or null if one of several
+	 * was (see {@link #getExpectedOneOf()}).
+	 */
+	public Type getExpected() {
+		return expected;
+	}
+
+	/**
+	 * @return The types one of which was expected by a TYPE_ERROR, or null
+	 * if a single one was.
+	 */
+	public List<Type> getExpectedOneOf() {
+		return expectedOneOf;
+	}
+
+	/**
+	 * @return The type found by a TYPE_ERROR.
+	 */
+	public Type getActual() {
+		return actual;
+	}
+
+	/**
+	 * @return The text of the message, made the first time it is asked for.
+	 */
+	private String msg() {
+		if (msg == null) {
+			switch (kind) {
+			case UNDEFINED_ID:
+				msg = "Unbound Identifier: "+name;
+				break;
+			case DUPLICATE_DEFINITION:
+				msg = "Multiply defined Identifier: "+name;
+				break;
+			default:
+				if (expectedOneOf != null)
+					msg = exp+" has type "+actual+" expected one of " + expectedOneOf;
+				else
+					msg = exp+" has type "+actual+" expected "+expected;
+			}
+		}
+		return msg;
 	}
 
 	@Override
 	public String toString() {
-		return "ERROR -- "+msg;
+		return "ERROR -- "+msg();
 	}
 
+	/**
+	 * Messages are equal when their text is, e.g. for type errors about
+	 * different expressions that print the same.
+	 */
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((msg == null) ? 0 : msg.hashCode());
-		return result;
+		return msg().hashCode();
 	}
 
 	@Override
@@ -69,11 +159,6 @@ public class ErrorMessage {
 		if (getClass() != obj.getClass())
 			return false;
 		ErrorMessage other = (ErrorMessage) obj;
-		if (msg == null) {
-			if (other.msg != null)
-				return false;
-		} else if (!msg.equals(other.msg))
-			return false;
-		return true;
+		return kind == other.kind && msg().equals(other.msg());
 	}
 }
@@ -1,5 +1,6 @@
 package typechecker;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import ast.Expression;
@@ -14,19 +15,150 @@ import ast.Type;
 public class ErrorReport {
 	
 	private ErrorMessage firstError = null;
+
+	/**
+	 * Where the messages go.
+	 */
+	private final ErrorSink sink;
+
+	/**
+	 * The sink of a deferred report, which keeps its messages, and the
+	 * report it keeps them for.
+	 */
+	private BufferedErrorSink kept = null;
+	private ErrorReport target = null;
+
+	/**
+	 * Where a buffered report keeps its messages.
+	 */
+	private Log log = null;
+
+	/**
+	 * The number of errors reported so far, and how many to stop at.
+	 */
+	private int count = 0;
+	private int maxErrors = Integer.MAX_VALUE;
 	
-	public ErrorReport() {}
+	public ErrorReport() {
+		this(ErrorSink.CONSOLE);
+	}
+
+	public ErrorReport(ErrorSink sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Thrown by the report when it gets the last error it was allowed (see
+	 * {@link ErrorReport#setMaxErrors(int)}), to stop checking right away.
+	 * The checker should catch it and {@link ErrorReport#close()} the report.
+	 */
+	public static class TooManyErrors extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private TooManyErrors() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Stop at the given number of errors: the error that reaches it throws
+	 * {@link TooManyErrors}. 1 fails fast, at the first error.
+	 */
+	public void setMaxErrors(int maxErrors) {
+		if (maxErrors < 1)
+			throw new IllegalArgumentException("maxErrors must be at least 1: " + maxErrors);
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * @return A report that keeps its messages until they are passed on to
+	 * this one with {@link #reportTo(ErrorReport)}, e.g. to report them
+	 * after errors that are found later. They only count towards the limit
+	 * of this report once passed on, so the errors reported before it is
+	 * reached are the first ones in that order.
+	 */
+	public ErrorReport defer() {
+		BufferedErrorSink kept = new BufferedErrorSink();
+		ErrorReport report = new ErrorReport(kept);
+		report.kept = kept;
+		report.target = this;
+		return report;
+	}
+
+	/**
+	 * The messages sent to some buffered reports, in the order they came,
+	 * and which of the reports each was sent to.
+	 */
+	private static class Log {
+		final List<ErrorMessage> messages = new ArrayList<ErrorMessage>();
+		final List<Integer> reports = new ArrayList<Integer>();
+	}
+
+	/**
+	 * @return Reports that keep their messages together, in the order they
+	 * come, to be reported to other reports later with
+	 * {@link #replay(ErrorReport[], ErrorReport[])}, e.g. by a thread that
+	 * checks a part of the program on the side.
+	 */
+	public static ErrorReport[] buffered(int reports) {
+		final Log log = new Log();
+		ErrorReport[] buffered = new ErrorReport[reports];
+		for (int i = 0; i < reports; i++) {
+			final int report = i;
+			buffered[i] = new ErrorReport(new ErrorSink() {
+				public void report(ErrorMessage msg) {
+					log.messages.add(msg);
+					log.reports.add(report);
+				}
+			});
+			buffered[i].log = log;
+		}
+		return buffered;
+	}
+
+	/**
+	 * Report the messages of buffered reports, in the order they came, each
+	 * to the report at the same index in to, as if they were found now: they
+	 * count towards its limit.
+	 */
+	public static void replay(ErrorReport[] buffered, ErrorReport[] to) {
+		Log log = buffered[0].log;
+		for (int i = 0; i < log.messages.size(); i++)
+			to[log.reports.get(i)].report(log.messages.get(i));
+		log.messages.clear();
+		log.reports.clear();
+	}
+
+	/**
+	 * Report the messages kept by a deferred report to another report, in
+	 * the order they were reported, as if they were found now: they count
+	 * towards its limit.
+	 */
+	public void reportTo(ErrorReport other) {
+		List<ErrorMessage> messages = new ArrayList<ErrorMessage>(kept.messages());
+		kept.clear();
+		for (ErrorMessage msg : messages)
+			other.report(msg);
+	}
 
 	/**
 	 * Add an error to the ErrorReport.
 	 * <p>
-	 * In this implementation the msg is simply printed to System.out. Also, the first message
-	 * is saved, so it can be verified by unit tests.
+	 * The msg is sent to the sink of the report, which prints it to
+	 * System.out unless the report was given another one. Also, the first
+	 * message is saved, so it can be verified by unit tests.
 	 */
 	void report(ErrorMessage msg) {
+		add(msg);
+		if (target == null && ++count >= maxErrors)
+			throw new TooManyErrors();
+	}
+
+	private void add(ErrorMessage msg) {
 		if (firstError==null) 
 			firstError = msg;
-		System.out.println(msg);
+		sink.report(msg);
 	}
 	
 	/**
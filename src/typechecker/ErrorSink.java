@@ -0,0 +1,30 @@
+package typechecker;
+
+/**
+ * Where an {@link ErrorReport} sends the messages it gets: printed to the
+ * console right away, kept in a {@link BufferedErrorSink}, or dropped when
+ * only whether there were errors matters.
+ */
+public interface ErrorSink {
+
+	/**
+	 * Prints each message to System.out as it is reported. This is what an
+	 * ErrorReport does unless it is given another sink.
+	 */
+	public static final ErrorSink CONSOLE = new ErrorSink() {
+		public void report(ErrorMessage msg) {
+			System.out.println(msg);
+		}
+	};
+
+	/**
+	 * Drops the messages, without ever making their text.
+	 */
+	public static final ErrorSink DISCARD = new ErrorSink() {
+		public void report(ErrorMessage msg) {
+		}
+	};
+
+	public void report(ErrorMessage msg);
+
+}
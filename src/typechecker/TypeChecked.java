@@ -1,5 +1,7 @@
 package typechecker;
 
+import ast.Attributes;
+
 /**
  * An instance of this class represents a correctly TypeChecked expression program.
  * It may also contain other useful information computed by the type checker during
@@ -17,4 +19,10 @@ package typechecker;
  */
 public abstract class TypeChecked {
 
+	/**
+	 * @return What the type checker found out about the expressions of the
+	 * program, e.g. their types.
+	 */
+	public abstract Attributes getAttributes();
+
 }
@@ -4,6 +4,8 @@ import ast.AST;
 import ast.Assign;
 import ast.BooleanType;
 import ast.Conditional;
+import ast.Expression;
+import ast.FunctionDeclaration;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -11,31 +13,69 @@ import ast.LessThan;
 import ast.Minus;
 import ast.NodeList;
 import ast.Not;
+import ast.Param;
 import ast.Plus;
 import ast.Print;
 import ast.Program;
+import ast.SymbolMap;
 import ast.Times;
 import ast.Type;
 import ast.UnknownType;
 import typechecker.ErrorReport;
-import util.ImpTable;
-import util.ImpTable.DuplicateException;
 import visitor.DefaultVisitor;
+import visitor.ExpressionWalker;
 
 /**
  * This visitor implements Phase 1 of the TypeChecker. It constructs the symboltable.
  * 
  * @author norm
  */
-public class BuildSymbolTableVisitor extends DefaultVisitor<ImpTable<Type>> {
+public class BuildSymbolTableVisitor extends DefaultVisitor<SymbolMap<Type>> {
 	
-	private final ImpTable<Type> variables = new ImpTable<Type>();
+	private SymbolMap<Type> variables;
 	private final ErrorReport errors;
 	
+	/**
+	 * How deep we are inside of an expression, how deep to recurse, and the
+	 * walker used for expressions that are nested deeper.
+	 */
+	private int depth = 0;
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+	private ExpressionWalker<Void> walker;
+
 	public BuildSymbolTableVisitor(ErrorReport errors) {
 		this.errors = errors;
 	}
 
+	/**
+	 * Walk expressions from the given depth on rather than from
+	 * {@link ExpressionWalker#RECURSION_LIMIT}, e.g. to test the walk on
+	 * small ones.
+	 */
+	public void setRecursionLimit(int limit) {
+		recursionLimit = limit;
+	}
+
+	private void visitExpression(Expression e) {
+		if (depth >= recursionLimit) {
+			if (walker == null) {
+				walker = new ExpressionWalker<Void>() {
+					@Override
+					protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+						if (n instanceof IdentifierExp)
+							dispatch(n);
+						return null;
+					}
+				};
+			}
+			walker.walk(e);
+			return;
+		}
+		depth++;
+		dispatch(e);
+		depth--;
+	}
+
 	/////////////////// Phase 1 ///////////////////////////////////////////////////////
 	// In our implementation, Phase 1 builds up a single symbol table containing all the
 	// identifiers defined in an Expression program. 
@@ -43,99 +83,119 @@ public class BuildSymbolTableVisitor extends DefaultVisitor<ImpTable<Type>> {
 	// We also check for duplicate identifier definitions 
 
 	@Override
-	public ImpTable<Type> visit(Program n) {
-		n.statements.accept(this);
-		n.print.accept(this); // process all the "normal" classes.
+	public SymbolMap<Type> visit(Program n) {
+		variables = new SymbolMap<Type>(n.symbols);
+		dispatch(n.statements);
+		dispatch(n.print); // process all the "normal" classes.
 		return variables;
 	}
 	
 	@Override
-	public <T extends AST> ImpTable<Type> visit(NodeList<T> ns) {
+	public <T extends AST> SymbolMap<Type> visit(NodeList<T> ns) {
 		for (int i = 0; i < ns.size(); i++)
-			ns.elementAt(i).accept(this);
+			dispatch(ns.elementAt(i));
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(Assign n) {
-		n.value.accept(this);
-		def(variables, n.name, new UnknownType());
+	public SymbolMap<Type> visit(Assign n) {
+		visitExpression(n.value);
+		def(variables, n.id, n.name, UnknownType.INSTANCE);
 		return null;
 	}
 	
 
+	/**
+	 * The body of a function sees its parameters and its own variables, in
+	 * a table of its own. The function itself is defined afterwards, with
+	 * its signature as its type.
+	 */
 	@Override
-	public ImpTable<Type> visit(IdentifierExp n) {
-		if (variables.lookup(n.name) == null)
+	public SymbolMap<Type> visit(FunctionDeclaration n) {
+		SymbolMap<Type> outer = variables;
+		variables = new SymbolMap<Type>(outer.getSymbols(), 0);
+		// Duplicate parameters are reported by Phase 2
+		for (Param param : n.formal)
+			variables.put(param.id, param.type);
+		dispatch(n.assign);
+		visitExpression(n.ret);
+		variables = outer;
+		def(variables, n.id, n.name, n.signature);
+		return null;
+	}
+
+	@Override
+	public SymbolMap<Type> visit(IdentifierExp n) {
+		if (variables.lookup(n.id) == null)
 			errors.undefinedId(n.name);
 		return null;
 	}
 	
 	@Override
-	public ImpTable<Type> visit(BooleanType n) {
+	public SymbolMap<Type> visit(BooleanType n) {
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(IntegerType n) {
+	public SymbolMap<Type> visit(IntegerType n) {
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(Print n) {
-		n.exp.accept(this);
+	public SymbolMap<Type> visit(Print n) {
+		visitExpression(n.exp);
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(LessThan n) {
-		n.e1.accept(this);
-		n.e2.accept(this);
+	public SymbolMap<Type> visit(LessThan n) {
+		visitExpression(n.e1);
+		visitExpression(n.e2);
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(Conditional n) {
-		n.e1.accept(this);
-		n.e2.accept(this);
-		n.e3.accept(this);
+	public SymbolMap<Type> visit(Conditional n) {
+		visitExpression(n.e1);
+		visitExpression(n.e2);
+		visitExpression(n.e3);
 		return null;
 	}
 	
 	@Override
-	public ImpTable<Type> visit(Plus n) {
-		n.e1.accept(this);
-		n.e2.accept(this);
+	public SymbolMap<Type> visit(Plus n) {
+		visitExpression(n.e1);
+		visitExpression(n.e2);
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(Minus n) {
-		n.e1.accept(this);
-		n.e2.accept(this);
+	public SymbolMap<Type> visit(Minus n) {
+		visitExpression(n.e1);
+		visitExpression(n.e2);
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(Times n) {
-		n.e1.accept(this);
-		n.e2.accept(this);
+	public SymbolMap<Type> visit(Times n) {
+		visitExpression(n.e1);
+		visitExpression(n.e2);
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(IntegerLiteral n) {
+	public SymbolMap<Type> visit(IntegerLiteral n) {
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(Not not) {
-		not.e.accept(this);
+	public SymbolMap<Type> visit(Not not) {
+		visitExpression(not.e);
 		return null;
 	}
 
 	@Override
-	public ImpTable<Type> visit(UnknownType n) {
+	public SymbolMap<Type> visit(UnknownType n) {
 		return null;
 	}
 
@@ -146,12 +206,9 @@ public class BuildSymbolTableVisitor extends DefaultVisitor<ImpTable<Type>> {
 	 * If the name already existed before, the new definition is ignored and
 	 * an error is sent to the error report.
 	 */
-	private <V> void def(ImpTable<V> tab, String name, V value) {
-		try {
-			tab.put(name, value);
-		} catch (DuplicateException e) {
+	private <V> void def(SymbolMap<V> tab, int id, String name, V value) {
+		if (!tab.put(id, value))
 			errors.duplicateDefinition(name);
-		}
 	}
 
 }
\ No newline at end of file
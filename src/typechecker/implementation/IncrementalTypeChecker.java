@@ -0,0 +1,508 @@
+package typechecker.implementation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import ast.AST;
+import ast.Assign;
+import ast.Attributes;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.IdentifierExp;
+import ast.Print;
+import ast.Program;
+import ast.SymbolMap;
+import ast.Type;
+import typechecker.BufferedErrorSink;
+import typechecker.ErrorMessage;
+import typechecker.ErrorReport;
+import util.ImpTable;
+import visitor.ExpressionWalker;
+
+/**
+ * Checks a program over and over as it is being edited, re-checking only
+ * the statements an edit can change the outcome of.
+ * <p>
+ * What the checker finds in a statement of the program only depends on the
+ * statement itself and on the types the identifiers it uses and defines
+ * have right before it. Those come from the last statement before it that
+ * defines them: the type of an assignment's value, or the signature of a
+ * function, unless it was defined already. The bodies of functions have
+ * scopes of their own, they don't see the identifiers of the program.
+ * <p>
+ * So the checker keeps, for each statement, the identifiers it uses, the
+ * one it defines, the type that one has after it, and the errors found in
+ * it; and for each identifier, the statements that use or define it, in
+ * order. When statements change, only they are checked. If that changes the
+ * type an identifier has after them, the statements using it up to the next
+ * one that defines it are checked again, and so on as long as types keep
+ * changing. The checking done depends on the statements whose types depend
+ * on the edit, not on the size of the program; what is left is finding the
+ * edit and moving the records after it, a pass over arrays of pointers.
+ * <p>
+ * The errors and the symbol table are exactly those of a full check by
+ * {@link TypeCheckerImplementation} in {@link TypeCheckerImplementation.Mode#FUSED}
+ * mode. The types of the expressions go to the
+ * given {@link Attributes}, they don't depend on the identifiers, so those
+ * of the statements that are not checked again stay as they were.
+ * <p>
+ * Edits are found by comparing the statements of the new program with
+ * those of the last one: like with {@link parser.IncrementalParser}, which
+ * this is meant to be used with, the statements that were not touched
+ * should be the same objects, and the programs should share one Symbols
+ * table. Use one IncrementalTypeChecker for each document.
+ */
+public class IncrementalTypeChecker {
+
+	/**
+	 * A statement of the program (or its print statement, which comes last),
+	 * and what was found out when it was last checked.
+	 */
+	private static class Record {
+		final AST statement;
+		/** Where it is in the program */
+		int index;
+		/** The ids it uses, each once, and the one it defines or -1 */
+		final int[] uses;
+		final int defines;
+		/** The type of defines right after the statement */
+		Type after;
+		/** What would be reported to the definitions and to the errors */
+		List<ErrorMessage> definitionErrors = Collections.emptyList();
+		List<ErrorMessage> typeErrors = Collections.emptyList();
+		/** Whether it waits to be checked again */
+		boolean queued;
+
+		Record(AST statement, int[] uses, int defines) {
+			this.statement = statement;
+			this.uses = uses;
+			this.defines = defines;
+		}
+	}
+
+	/**
+	 * The statements that use or define an identifier, and those that define
+	 * it, in the order of the program.
+	 */
+	private static class Occurrences {
+		final ArrayList<Record> all = new ArrayList<Record>(2);
+		final ArrayList<Record> defs = new ArrayList<Record>(1);
+	}
+
+	private static final Comparator<Record> BY_INDEX = new Comparator<Record>() {
+		public int compare(Record r1, Record r2) {
+			return r1.index - r2.index;
+		}
+	};
+
+	private static final int[] NONE = new int[0];
+
+	private final Attributes attributes;
+
+	/**
+	 * The program last checked, and a record for each of its statements.
+	 */
+	private Program program;
+	private final ArrayList<Record> records = new ArrayList<Record>();
+	private Occurrences[] ids = new Occurrences[0];
+
+	/**
+	 * The statements in which errors were found.
+	 */
+	private final Map<Record, Boolean> withErrors = new IdentityHashMap<Record, Boolean>();
+
+	/**
+	 * The table the statement being checked sees: only the ids it uses and
+	 * defines are set, and only while it is checked.
+	 */
+	private SymbolMap<Type> scope;
+
+	/**
+	 * Checks the statements, with that scope, sending what it finds to the
+	 * sinks, which are emptied after each statement.
+	 */
+	private TypeCheckVisitor checker;
+	private final BufferedErrorSink definitions = new BufferedErrorSink(), errors = new BufferedErrorSink();
+
+	private final PriorityQueue<Record> queue = new PriorityQueue<Record>(16, BY_INDEX);
+
+	/**
+	 * Collects the ids used in an expression.
+	 */
+	private final IdCollector collector = new IdCollector();
+
+	/**
+	 * How many statements the last check looked at.
+	 */
+	private int checked;
+
+	public IncrementalTypeChecker(Attributes attributes) {
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Check a whole program from scratch.
+	 */
+	public void check(Program program) {
+		scope = new SymbolMap<Type>(program.symbols);
+		checker = TypeCheckVisitor.fused(scope, new ErrorReport(definitions), new ErrorReport(errors), attributes);
+		checked = 0;
+		update(program, 0, records.size(), program.statements.size() + 1);
+	}
+
+	/**
+	 * Check a program after it was edited: program should be the last one
+	 * checked, with some of its statements replaced, inserted or removed.
+	 * Otherwise, e.g. if its ids are from another Symbols table, it is
+	 * checked from scratch.
+	 */
+	public void recheck(Program program) {
+		if (this.program == null || program.symbols != this.program.symbols) {
+			check(program);
+			return;
+		}
+		checked = 0;
+		int size = program.statements.size() + 1, oldSize = records.size();
+		int prefix = 0;
+		while (prefix < size && prefix < oldSize && statement(program, prefix) == statement(this.program, prefix))
+			prefix++;
+		int suffix = 0;
+		while (suffix < size - prefix && suffix < oldSize - prefix
+				&& statement(program, size - 1 - suffix) == statement(this.program, oldSize - 1 - suffix))
+			suffix++;
+		update(program, prefix, oldSize - suffix, size - suffix);
+	}
+
+	/**
+	 * @return The i-th statement of a program, or its print statement after
+	 * the last one.
+	 */
+	private static AST statement(Program program, int i) {
+		return i < program.statements.size() ? program.statements.elementAt(i) : program.print;
+	}
+
+	/**
+	 * Replace the records from..oldTo with ones for the statements from..to
+	 * of program, check those, and then the ones they may change.
+	 */
+	private void update(Program program, int from, int oldTo, int to) {
+		this.program = program;
+		int size = program.symbols.size();
+		if (size > ids.length) {
+			Occurrences[] bigger = new Occurrences[Math.max(size, ids.length * 2)];
+			System.arraycopy(ids, 0, bigger, 0, ids.length);
+			ids = bigger;
+		}
+		List<Record> added = new ArrayList<Record>(to - from);
+		for (int i = from; i < to; i++)
+			added.add(record(statement(program, i)));
+
+		if (from == 0 && oldTo == records.size()) {
+			// Nothing is kept: check the statements in order, like a full
+			// check does, in a scope that keeps the ids they define
+			records.clear();
+			ids = new Occurrences[ids.length];
+			withErrors.clear();
+			for (int i = 0; i < to; i++) {
+				Record r = added.get(i);
+				r.index = i;
+				records.add(r);
+				add(r, true);
+				run(r);
+			}
+			for (Record r : added) {
+				if (r.defines >= 0)
+					scope.set(r.defines, null);
+			}
+			return;
+		}
+
+		// The ids defined in the range, and their types after it as it was
+		Map<Integer, Type> before = new HashMap<Integer, Type>();
+		for (int i = from; i < oldTo; i++)
+			definedIn(records.get(i), oldTo, before);
+		for (Record r : added)
+			definedIn(r, oldTo, before);
+
+		// Swap the new records in
+		for (int i = from; i < oldTo; i++)
+			remove(records.get(i));
+		records.subList(from, oldTo).clear();
+		records.addAll(from, added);
+		if (to != oldTo) {
+			for (int i = to; i < records.size(); i++)
+				records.get(i).index = i;
+		}
+		for (int i = from; i < to; i++) {
+			Record r = records.get(i);
+			r.index = i;
+			add(r, to == records.size());
+		}
+
+		for (Record r : added)
+			check(r);
+		for (Map.Entry<Integer, Type> e : before.entrySet()) {
+			if (!same(e.getValue(), typeBefore(e.getKey(), to)))
+				changed(e.getKey(), to);
+		}
+		while (!queue.isEmpty()) {
+			Record r = queue.poll();
+			r.queued = false;
+			Type after = r.after;
+			check(r);
+			if (r.defines >= 0 && !same(after, r.after))
+				changed(r.defines, r.index + 1);
+		}
+	}
+
+	/**
+	 * Note the id r defines, if any and not noted yet, with its type before
+	 * index.
+	 */
+	private void definedIn(Record r, int index, Map<Integer, Type> before) {
+		if (r.defines >= 0 && !before.containsKey(r.defines))
+			before.put(r.defines, typeBefore(r.defines, index));
+	}
+
+	/**
+	 * The type of an id changed from index on: check the statements that
+	 * use it again, up to the next one that defines it.
+	 */
+	private void changed(int id, int index) {
+		ArrayList<Record> all = occurrences(id).all;
+		for (int i = firstAtOrAfter(all, index); i < all.size(); i++) {
+			Record r = all.get(i);
+			if (!r.queued) {
+				r.queued = true;
+				queue.add(r);
+			}
+			if (r.defines == id)
+				break;
+		}
+	}
+
+	private static boolean same(Type t1, Type t2) {
+		return t1 == null ? t2 == null : t1.equals(t2);
+	}
+
+	//// Checking a statement /////////////
+
+	private Record record(AST statement) {
+		int defines = -1;
+		Expression exp = null;
+		if (statement instanceof Assign) {
+			defines = ((Assign) statement).id;
+			exp = ((Assign) statement).value;
+		}
+		else if (statement instanceof FunctionDeclaration)
+			defines = ((FunctionDeclaration) statement).id;
+		else
+			exp = ((Print) statement).exp;
+		return new Record(statement, exp == null ? NONE : collector.collect(exp), defines);
+	}
+
+	/**
+	 * Check a statement with the types its ids have before it.
+	 */
+	private void check(Record r) {
+		for (int id : r.uses)
+			scope.set(id, typeBefore(id, r.index));
+		if (r.defines >= 0)
+			scope.set(r.defines, typeBefore(r.defines, r.index));
+		run(r);
+		if (r.defines >= 0)
+			scope.set(r.defines, null);
+		for (int id : r.uses)
+			scope.set(id, null);
+	}
+
+	/**
+	 * Check a statement with the types in the scope, and keep what was found.
+	 */
+	private void run(Record r) {
+		checked++;
+		checker.dispatch(r.statement);
+		if (r.defines >= 0)
+			r.after = scope.lookup(r.defines);
+		r.definitionErrors = found(definitions);
+		r.typeErrors = found(errors);
+		if (r.definitionErrors.isEmpty() && r.typeErrors.isEmpty())
+			withErrors.remove(r);
+		else
+			withErrors.put(r, Boolean.TRUE);
+	}
+
+	/**
+	 * @return The messages a sink got, which it then forgets.
+	 */
+	private static List<ErrorMessage> found(BufferedErrorSink sink) {
+		if (sink.messages().isEmpty())
+			return Collections.emptyList();
+		List<ErrorMessage> messages = new ArrayList<ErrorMessage>(sink.messages());
+		sink.clear();
+		return messages;
+	}
+
+	/**
+	 * @return The type an id has right before the statement at index, null
+	 * if it isn't defined yet.
+	 */
+	private Type typeBefore(int id, int index) {
+		if (ids[id] == null)
+			return null;
+		ArrayList<Record> defs = ids[id].defs;
+		int i = firstAtOrAfter(defs, index);
+		return i == 0 ? null : defs.get(i - 1).after;
+	}
+
+	//// The occurrences of ids ////////////
+
+	private Occurrences occurrences(int id) {
+		Occurrences o = ids[id];
+		if (o == null)
+			o = ids[id] = new Occurrences();
+		return o;
+	}
+
+	/**
+	 * @return The position of the first record at or after index in a list
+	 * in the order of the program.
+	 */
+	private static int firstAtOrAfter(ArrayList<Record> list, int index) {
+		int lo = 0, hi = list.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (list.get(mid).index < index)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Add a record to the occurrences of its ids. If append, it comes after
+	 * all the records there already.
+	 */
+	private void add(Record r, boolean append) {
+		for (int id : r.uses)
+			insert(occurrences(id).all, r, append);
+		if (r.defines >= 0) {
+			Occurrences o = occurrences(r.defines);
+			if (!contains(r.uses, r.defines))
+				insert(o.all, r, append);
+			insert(o.defs, r, append);
+		}
+	}
+
+	private void remove(Record r) {
+		for (int id : r.uses)
+			delete(occurrences(id).all, r);
+		if (r.defines >= 0) {
+			Occurrences o = occurrences(r.defines);
+			if (!contains(r.uses, r.defines))
+				delete(o.all, r);
+			delete(o.defs, r);
+		}
+		withErrors.remove(r);
+	}
+
+	private static void insert(ArrayList<Record> list, Record r, boolean append) {
+		if (append)
+			list.add(r);
+		else
+			list.add(firstAtOrAfter(list, r.index), r);
+	}
+
+	private static void delete(ArrayList<Record> list, Record r) {
+		list.remove(firstAtOrAfter(list, r.index));
+	}
+
+	private static boolean contains(int[] ids, int id) {
+		for (int i : ids) {
+			if (i == id)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the ids of the identifiers in an expression, each once.
+	 */
+	private static class IdCollector extends ExpressionWalker<Void> {
+
+		private int[] found = new int[8];
+		private int count;
+
+		int[] collect(Expression exp) {
+			count = 0;
+			walk(exp);
+			int[] result = new int[count];
+			System.arraycopy(found, 0, result, 0, count);
+			return result;
+		}
+
+		@Override
+		protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+			if (n instanceof IdentifierExp) {
+				int id = ((IdentifierExp) n).id;
+				for (int i = 0; i < count; i++) {
+					if (found[i] == id)
+						return null;
+				}
+				if (count == found.length) {
+					int[] bigger = new int[count * 2];
+					System.arraycopy(found, 0, bigger, 0, count);
+					found = bigger;
+				}
+				found[count++] = id;
+			}
+			return null;
+		}
+	}
+
+	//// Results ///////////////////////////
+
+	/**
+	 * @return The errors in the program, in the order a full check reports
+	 * them: those about definitions first, then the type errors.
+	 */
+	public List<ErrorMessage> errors() {
+		List<Record> found = new ArrayList<Record>(withErrors.keySet());
+		Collections.sort(found, BY_INDEX);
+		List<ErrorMessage> messages = new ArrayList<ErrorMessage>();
+		for (Record r : found)
+			messages.addAll(r.definitionErrors);
+		for (Record r : found)
+			messages.addAll(r.typeErrors);
+		return messages;
+	}
+
+	/**
+	 * @return The types of the identifiers at the end of the program.
+	 */
+	public ImpTable<Type> getTable() {
+		ImpTable<Type> table = new ImpTable<Type>();
+		for (int id = 0; id < ids.length; id++) {
+			Type type = typeBefore(id, records.size());
+			if (type != null)
+				table.set(program.symbols.name(id), type);
+		}
+		return table;
+	}
+
+	/**
+	 * @return How many statements the last call to check or recheck looked
+	 * at, counting the print statement.
+	 */
+	public int checked() {
+		return checked;
+	}
+
+}
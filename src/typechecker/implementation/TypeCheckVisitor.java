@@ -2,14 +2,20 @@ package typechecker.implementation;
 
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import ast.AST;
 import ast.Assign;
+import ast.Attributes;
 import ast.BooleanType;
 import ast.Conditional;
 import ast.Expression;
 import ast.FunctionDeclaration;
+import ast.FunctionType;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -21,19 +27,25 @@ import ast.Param;
 import ast.Plus;
 import ast.Print;
 import ast.Program;
+import ast.Statement;
+import ast.SymbolMap;
 import ast.Times;
 import ast.Type;
+import ast.TypeTable;
 import ast.UnknownType;
 import typechecker.ErrorReport;
-import util.ImpTable;
-import util.ImpTable.DuplicateException;
-import visitor.Visitor;
+import visitor.ExpressionWalker;
+import visitor.SwitchVisitor;
 
 /**
  * This class implements Phase 2 of the Type Checker. This phase
  * assumes that we have already constructed the program's symbol table in
  * Phase1.
  * <p>
+ * A checker made with {@link #fused} does the work of Phase 1 as well, in
+ * the same walk: identifiers have to be defined before they are used, so
+ * the table can be filled in as it goes.
+ * <p>
  * Phase 2 checks for the use of undefined identifiers and type errors.
  * <p>
  * Visitors may return a Type as a result. Generally, only visiting 
@@ -43,29 +55,135 @@ import visitor.Visitor;
  * 
  * @author kdvolder
  */
-public class TypeCheckVisitor implements Visitor<Type> {
+public class TypeCheckVisitor extends SwitchVisitor<Type> {
 
 	/**
 	 * The place to send error messages to.
 	 */
 	private ErrorReport errors;
 
+	/**
+	 * Where a fused checker reports the errors that Phase 1 would have
+	 * found (undefined and duplicate identifiers). The type errors go to a
+	 * deferred report until the end, so they come after these, like when
+	 * the phases run one after the other, and only count towards the error
+	 * limit then. Null when Phase 1 built the table.
+	 */
+	private ErrorReport definitions;
+
 	/**
 	 * The symbol table from Phase 1. 
 	 */
-	private ImpTable<Type> variables;
+	private SymbolMap<Type> variables;
 	
 	/**
 	 * The function table computed by phase 2:
 	 */
-	private ImpTable<FunctionDeclaration> functionExps;
+	private SymbolMap<FunctionDeclaration> functionExps;
 
+	/**
+	 * Where the types and constant values of expressions are recorded.
+	 */
+	private Attributes attributes;
+
+	/**
+	 * How deep we are inside of an expression, how deep to recurse, and the
+	 * walker used for expressions that are nested deeper.
+	 */
+	private int depth = 0;
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+	private Walker walker;
 
-	public TypeCheckVisitor(ImpTable<Type> variables, 
-			ImpTable<FunctionDeclaration> functionExps, ErrorReport errors) {
+	/**
+	 * The pool to check the bodies of functions on, while the statements of
+	 * the program are checked in order. Null to check them in the walk.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * How many function bodies a task on the pool checks: they are mostly
+	 * small, one task each would cost more than checking them.
+	 */
+	private static final int FUNCTIONS_PER_TASK = 32;
+
+	/**
+	 * The checks of function bodies started on the pool, and the index of
+	 * each function in them.
+	 */
+	private Bodies[] bodies;
+	private Map<FunctionDeclaration, Integer> bodyIndex;
+
+	/**
+	 * Set when the checks of bodies are not needed anymore, the tasks look
+	 * at it before each function.
+	 */
+	private volatile boolean stopped;
+
+
+	/**
+	 * A checker that records the types it finds in Attributes of its own,
+	 * see {@link #getAttributes()}.
+	 */
+	public TypeCheckVisitor(SymbolMap<Type> variables, 
+			SymbolMap<FunctionDeclaration> functionExps, ErrorReport errors) {
+		this(variables, functionExps, errors, new Attributes());
+	}
+
+	public TypeCheckVisitor(SymbolMap<Type> variables,
+			SymbolMap<FunctionDeclaration> functionExps, ErrorReport errors, Attributes attributes) {
 		this.variables = variables;
 		this.functionExps = functionExps;
 		this.errors = errors;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * @return Where the types and constant values of the expressions are
+	 * recorded.
+	 */
+	public Attributes getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * Walk expressions from the given depth on rather than from
+	 * {@link ExpressionWalker#RECURSION_LIMIT}, e.g. to test the walk on
+	 * small ones.
+	 */
+	public void setRecursionLimit(int limit) {
+		recursionLimit = limit;
+	}
+
+	/**
+	 * @return A checker that builds the symbol table as well, starting from
+	 * an empty one.
+	 */
+	public static TypeCheckVisitor fused(SymbolMap<Type> variables,
+			SymbolMap<FunctionDeclaration> functionExps, ErrorReport errors, Attributes attributes) {
+		TypeCheckVisitor checker = new TypeCheckVisitor(variables, functionExps, errors.defer(), attributes);
+		checker.definitions = errors;
+		return checker;
+	}
+
+	/**
+	 * @return A checker that builds the symbol table as well, and sends the
+	 * type errors to a report of their own rather than deferring them, e.g.
+	 * to check one statement at a time and keep what is found in each.
+	 */
+	static TypeCheckVisitor fused(SymbolMap<Type> variables, ErrorReport definitions, ErrorReport errors,
+			Attributes attributes) {
+		TypeCheckVisitor checker = new TypeCheckVisitor(variables, null, errors, attributes);
+		checker.definitions = definitions;
+		return checker;
+	}
+
+	/**
+	 * Check the bodies of the functions of a program on a pool. The errors
+	 * are still reported in the order of the program: those found in the
+	 * body of a function are kept until the walk gets to it.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
 	}
 
 	//// Helpers /////////////////////
@@ -74,11 +192,33 @@ public class TypeCheckVisitor implements Visitor<Type> {
 	 * Check whether the type of a particular expression is as expected.
 	 */
 	private void check(Expression exp, Type expected) {
-		Type actual = exp.accept(this);
+		checkAssignable(exp, expected, type(exp));
+	}
+
+	/**
+	 * Check whether the type an expression was found to have is as expected.
+	 */
+	private void checkAssignable(Expression exp, Type expected, Type actual) {
 		if (!assignableFrom(expected, actual))
 			errors.typeError(exp, expected, actual);
 	}
 
+	/**
+	 * @return The type of an expression. Expressions nested too deep to
+	 * recurse into are checked by a {@link Walker}.
+	 */
+	private Type type(Expression exp) {
+		if (depth >= recursionLimit) {
+			if (walker == null)
+				walker = new Walker();
+			return walker.walk(exp);
+		}
+		depth++;
+		Type type = dispatch(exp);
+		depth--;
+		return type;
+	}
+
 	/**
 	 * Check whether two types in an expression are the same
 	 */
@@ -88,7 +228,190 @@ public class TypeCheckVisitor implements Visitor<Type> {
 	}	
 
 	private boolean assignableFrom(Type varType, Type valueType) {
-		return varType.equals(valueType); 
+		return TypeTable.assignableFrom(varType, valueType);
+	}
+
+	/**
+	 * Record the type of an expression, and its value if all its operands
+	 * are constants.
+	 */
+	private Type typed(Expression n, Type type) {
+		attributes.setType(n, type);
+		if (n instanceof IntegerLiteral)
+			attributes.setConstant(n, ((IntegerLiteral) n).value);
+		else if (n instanceof Not) {
+			Expression e = ((Not) n).e;
+			if (attributes.isConstant(e))
+				attributes.setConstant(n, attributes.constant(e) == 0 ? 1 : 0);
+		}
+		else {
+			Expression e1 = operand(n, 0), e2 = operand(n, 1);
+			if (attributes.isConstant(e1) && attributes.isConstant(e2)) {
+				int v1 = attributes.constant(e1), v2 = attributes.constant(e2);
+				if (n instanceof LessThan)
+					attributes.setConstant(n, v1 < v2 ? 1 : 0);
+				else if (n instanceof Plus)
+					attributes.setConstant(n, v1 + v2);
+				else if (n instanceof Minus)
+					attributes.setConstant(n, v1 - v2);
+				else
+					attributes.setConstant(n, v1 * v2);
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * A conditional has no type of its own (it is the type of its
+	 * branches), but it may be a constant.
+	 */
+	private Type conditional(Conditional n, Type type) {
+		if (attributes.isConstant(n.e1)) {
+			Expression e = attributes.constant(n.e1) != 0 ? n.e2 : n.e3;
+			if (attributes.isConstant(e))
+				attributes.setConstant(n, attributes.constant(e));
+		}
+		return type;
+	}
+
+	/**
+	 * @return One of the two operands of a binary operator.
+	 */
+	private static Expression operand(Expression n, int i) {
+		if (n instanceof Plus)
+			return i == 0 ? ((Plus) n).e1 : ((Plus) n).e2;
+		if (n instanceof Minus)
+			return i == 0 ? ((Minus) n).e1 : ((Minus) n).e2;
+		if (n instanceof Times)
+			return i == 0 ? ((Times) n).e1 : ((Times) n).e2;
+		return i == 0 ? ((LessThan) n).e1 : ((LessThan) n).e2;
+	}
+
+	/**
+	 * Checks expressions in the same way as the visitor methods below.
+	 */
+	private class Walker extends ExpressionWalker<Type> {
+
+		@Override
+		protected void afterChild(Expression n, int i, Type type) {
+			if (n instanceof Conditional) {
+				if (i == 0)
+					checkAssignable(child(n, i), BooleanType.INSTANCE, type);
+			}
+			else if (n instanceof Not)
+				checkAssignable(child(n, i), BooleanType.INSTANCE, type);
+			else
+				checkAssignable(child(n, i), IntegerType.INSTANCE, type);
+		}
+
+		@Override
+		protected Type leave(Expression n, Type t1, Type t2, Type t3) {
+			if (n instanceof Conditional) {
+				check(((Conditional) n).e3, t2, t3);
+				return conditional((Conditional) n, t2);
+			}
+			if (n instanceof IntegerLiteral || n instanceof IdentifierExp)
+				return dispatch(n);
+			return typed(n, n instanceof LessThan || n instanceof Not ? BooleanType.INSTANCE : IntegerType.INSTANCE);
+		}
+	}
+
+	//// Function bodies //////////////
+
+	/**
+	 * Check the body of a function, in a scope of its own.
+	 */
+	private void checkBody(FunctionDeclaration n, ErrorReport definitions, ErrorReport errors) {
+		SymbolMap<Type> scope = new SymbolMap<Type>(variables.getSymbols(), 0);
+
+		for(Param param : n.formal) {
+			if (!scope.put(param.id, param.type))
+				errors.duplicateDefinition(param.name);
+		}
+		
+		// Traverse through function tree
+		TypeCheckVisitor checker = new TypeCheckVisitor(scope, this.functionExps, errors, attributes);
+		checker.definitions = definitions;
+		checker.recursionLimit = recursionLimit;
+		checker.dispatch(n.assign);
+		checker.check(n.ret, n.signature.result);
+	}
+
+	/**
+	 * Checks the bodies of some functions on the side, keeping the errors
+	 * found in each.
+	 */
+	private class Bodies extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		final List<FunctionDeclaration> functions;
+		final int from, to;
+
+		/**
+		 * For each function, reports keeping what would have gone to the
+		 * definitions and to the errors.
+		 */
+		final ErrorReport[][] found;
+
+		Bodies(List<FunctionDeclaration> functions, int from, int to) {
+			this.functions = functions;
+			this.from = from;
+			this.to = to;
+			this.found = new ErrorReport[to - from][];
+		}
+
+		@Override
+		protected void compute() {
+			for (int i = from; i < to && !stopped; i++) {
+				ErrorReport[] reports = found[i - from] = ErrorReport.buffered(2);
+				checkBody(functions.get(i), definitions == null ? null : reports[0], reports[1]);
+			}
+		}
+	}
+
+	/**
+	 * Start checking the bodies of the functions among the statements on
+	 * the pool, if there are enough of them to be worth it: at least two
+	 * tasks' worth. A pool of one thread would only add the cost of the
+	 * tasks to checking them in order.
+	 */
+	private void startBodies(NodeList<Statement> statements) {
+		if (pool.getParallelism() < 2)
+			return;
+		List<FunctionDeclaration> functions = new ArrayList<FunctionDeclaration>();
+		for (int i = 0; i < statements.size(); i++) {
+			if (statements.elementAt(i) instanceof FunctionDeclaration)
+				functions.add((FunctionDeclaration) statements.elementAt(i));
+		}
+		if (functions.size() < 2 * FUNCTIONS_PER_TASK)
+			return;
+		stopped = false;
+		bodies = new Bodies[(functions.size() + FUNCTIONS_PER_TASK - 1) / FUNCTIONS_PER_TASK];
+		bodyIndex = new IdentityHashMap<FunctionDeclaration, Integer>();
+		for (int i = 0; i < functions.size(); i++)
+			bodyIndex.put(functions.get(i), i);
+		for (int t = 0; t < bodies.length; t++) {
+			bodies[t] = new Bodies(functions, t * FUNCTIONS_PER_TASK,
+					Math.min(functions.size(), (t + 1) * FUNCTIONS_PER_TASK));
+			pool.execute(bodies[t]);
+		}
+	}
+
+	/**
+	 * Stop the checks of bodies that are not needed anymore, e.g. because
+	 * the walk stopped at too many errors, and wait for the ones that are
+	 * running, so that nothing is recorded in the Attributes after the
+	 * check returns.
+	 */
+	private void stopBodies() {
+		if (bodies != null) {
+			stopped = true;
+			for (Bodies task : bodies)
+				task.quietlyJoin();
+			bodies = null;
+			bodyIndex = null;
+		}
 	}
 
 	///////// Visitor implementation //////////////////////////////////////
@@ -96,7 +419,7 @@ public class TypeCheckVisitor implements Visitor<Type> {
 	@Override
 	public <T extends AST> Type visit(NodeList<T> ns) {
 		for (int i = 0; i < ns.size(); i++) {
-			ns.elementAt(i).accept(this);
+			dispatch(ns.elementAt(i));
 		}
 		return null;
 	}
@@ -104,8 +427,17 @@ public class TypeCheckVisitor implements Visitor<Type> {
 	@Override
 	public Type visit(Program n) {
 		//		variables = applyInheritance(variables);
-		n.statements.accept(this);
-		n.print.accept(this);
+		if (pool != null)
+			startBodies(n.statements);
+		try {
+			dispatch(n.statements);
+		}
+		finally {
+			stopBodies();
+		}
+		dispatch(n.print);
+		if (definitions != null)
+			errors.reportTo(definitions);
 		return null;
 	}
 
@@ -124,16 +456,21 @@ public class TypeCheckVisitor implements Visitor<Type> {
 		return n;
 	}
 
+	@Override
+	public Type visit(FunctionType n) {
+		return n;
+	}
+
 	/**
 	 * Can't use check, because print allows either Integer or Boolean types
 	 */
 	@Override
 	public Type visit(Print n) {
-		Type actual = n.exp.accept(this);
-		if (!assignableFrom(new IntegerType(), actual) && !assignableFrom(new BooleanType(), actual)) {
+		Type actual = type(n.exp);
+		if (!assignableFrom(IntegerType.INSTANCE, actual) && !assignableFrom(BooleanType.INSTANCE, actual)) {
 			List<Type> l = new ArrayList<Type>();
-			l.add(new IntegerType());
-			l.add(new BooleanType());
+			l.add(IntegerType.INSTANCE);
+			l.add(BooleanType.INSTANCE);
 			errors.typeError(n.exp, l, actual);
 		}
 		return null;
@@ -141,90 +478,84 @@ public class TypeCheckVisitor implements Visitor<Type> {
 
 	@Override
 	public Type visit(Assign n) {
-		Type expressionType = n.value.accept(this);
-		variables.set(n.name, expressionType);
+		Type expressionType = type(n.value);
+		if (definitions != null && variables.lookup(n.id) != null)
+			definitions.duplicateDefinition(n.name);
+		variables.set(n.id, expressionType);
 		return null; 
 	}
 
 	@Override
 	public Type visit(Conditional n) {
-		check(n.e1, new BooleanType());
-		Type t2 = n.e2.accept(this);
-		Type t3 = n.e3.accept(this);
+		check(n.e1, BooleanType.INSTANCE);
+		Type t2 = type(n.e2);
+		Type t3 = type(n.e3);
 		check(n.e3, t2, t3);
-		return t2;
+		return conditional(n, t2);
 	}
 
 	@Override
 	public Type visit(LessThan n) {
-		check(n.e1, new IntegerType());
-		check(n.e2, new IntegerType());
-		n.setType(new BooleanType());
-		return n.getType();
+		check(n.e1, IntegerType.INSTANCE);
+		check(n.e2, IntegerType.INSTANCE);
+		return typed(n, BooleanType.INSTANCE);
 	}
 
 	@Override
 	public Type visit(Plus n) {
-		check(n.e1, new IntegerType());
-		check(n.e2, new IntegerType());
-		n.setType(new IntegerType());
-		return n.getType();
+		check(n.e1, IntegerType.INSTANCE);
+		check(n.e2, IntegerType.INSTANCE);
+		return typed(n, IntegerType.INSTANCE);
 	}
 
 	@Override
 	public Type visit(Minus n) {
-		check(n.e1, new IntegerType());
-		check(n.e2, new IntegerType());
-		n.setType(new IntegerType());
-		return n.getType();
+		check(n.e1, IntegerType.INSTANCE);
+		check(n.e2, IntegerType.INSTANCE);
+		return typed(n, IntegerType.INSTANCE);
 	}
 
 	@Override
 	public Type visit(Times n) {
-		check(n.e1, new IntegerType());
-		check(n.e2, new IntegerType());
-		n.setType(new IntegerType());
-		return n.getType();
+		check(n.e1, IntegerType.INSTANCE);
+		check(n.e2, IntegerType.INSTANCE);
+		return typed(n, IntegerType.INSTANCE);
 	}
 
 	@Override
 	public Type visit(IntegerLiteral n) {
-		n.setType(new IntegerType());
-		return n.getType();
+		return typed(n, IntegerType.INSTANCE);
 	}
 
 	@Override
 	public Type visit(IdentifierExp n) {
-		Type type = variables.lookup(n.name);
-		if (type == null) 
-			type = new UnknownType();
+		Type type = variables.lookup(n.id);
+		if (type == null) {
+			if (definitions != null)
+				definitions.undefinedId(n.name);
+			type = UnknownType.INSTANCE;
+		}
 		return type;
 	}
 
 	@Override
 	public Type visit(Not n) {
-		check(n.e, new BooleanType());
-		n.setType(new BooleanType());
-		return n.getType(); 
+		check(n.e, BooleanType.INSTANCE);
+		return typed(n, BooleanType.INSTANCE);
 	}
 
 	@Override
 	public Type visit(FunctionDeclaration n) {
-		ImpTable<Type> scope = new ImpTable<Type>();
-
-		for(Param param : n.formal) {
-			try {
-				scope.put(param.name, param.type);
-			} catch (DuplicateException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		Integer i = bodyIndex == null ? null : bodyIndex.remove(n);
+		if (i == null)
+			checkBody(n, definitions, errors);
+		else {
+			Bodies task = bodies[i / FUNCTIONS_PER_TASK];
+			task.join();
+			ErrorReport.replay(task.found[i - task.from], new ErrorReport[] { definitions, errors });
 		}
-		
-		// Traverse through function tree
-		TypeCheckVisitor checker = new TypeCheckVisitor(scope, this.functionExps, errors);
-		n.assign.accept(checker);
-		checker.check(n.ret, n.type);
+		if (definitions != null && !variables.put(n.id, n.signature))
+			definitions.duplicateDefinition(n.name);
 				
 		return null;
 	}
@@ -1,11 +1,24 @@
 package typechecker.implementation;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import parser.Parser;
+import parser.jcc.ParseException;
+import parser.jcc.TokenMgrError;
 
+import ast.Attributes;
 import ast.Program;
 
+import typechecker.BufferedErrorSink;
+import typechecker.CheckResult;
 import typechecker.ErrorReport;
 import typechecker.TypeChecked;
 import typechecker.TypeCheckerException;
@@ -50,13 +63,115 @@ public class TypeChecker {
 	 * tests.
 	 */
 	public static TypeChecked parseAndCheck(File file) throws TypeCheckerException, Exception {
-		Program program = Parser.parse(file);
-		return new TypeCheckerImplementation(program).typeCheck();
+		return parseAndCheck(file, ALL_ERRORS);
 	}
 
 	public static TypeChecked parseAndCheck(String input) throws TypeCheckerException, Exception {
-		Program program = Parser.parse(input);
-		return new TypeCheckerImplementation(program).typeCheck();
+		return parseAndCheck(input, ALL_ERRORS);
+	}
+
+	/**
+	 * For maxErrors: check the whole program, or stop at the first error.
+	 */
+	public static final int ALL_ERRORS = Integer.MAX_VALUE;
+	public static final int FAIL_FAST = 1;
+
+	/**
+	 * Like {@link #parseAndCheck(File)}, but stop checking once maxErrors
+	 * errors have been found, e.g. FAIL_FAST when only whether the program
+	 * is correct matters.
+	 */
+	public static TypeChecked parseAndCheck(File file, int maxErrors) throws TypeCheckerException, Exception {
+		return check(Parser.parse(file), maxErrors);
+	}
+
+	public static TypeChecked parseAndCheck(String input, int maxErrors) throws TypeCheckerException, Exception {
+		return check(Parser.parse(input), maxErrors);
+	}
+
+	private static TypeChecked check(Program program, int maxErrors) throws TypeCheckerException {
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		checker.setMaxErrors(maxErrors);
+		return checker.typeCheck();
+	}
+
+	/**
+	 * How many programs of a batch one task checks, so that a batch of many
+	 * small programs is not mostly the cost of its tasks.
+	 */
+	private static final int PROGRAMS_PER_TASK = 64;
+
+	/**
+	 * Parse and check many programs on an executor. Nothing is printed: the
+	 * result for each program, in the order of the sources, has the errors
+	 * found in it. Each program is parsed and checked with state of its own
+	 * (its Attributes, ErrorReport and tables), all that is shared are the
+	 * canonical types, so the programs can be checked at the same time.
+	 */
+	public static List<CheckResult> checkAll(Collection<String> sources, ExecutorService executor)
+			throws InterruptedException {
+		return checkAll(sources, executor, ALL_ERRORS);
+	}
+
+	/**
+	 * Like {@link #checkAll(Collection, ExecutorService)}, stopping at
+	 * maxErrors errors in each program, e.g. FAIL_FAST when only which
+	 * programs are correct matters.
+	 */
+	public static List<CheckResult> checkAll(Collection<String> sources, ExecutorService executor,
+			final int maxErrors) throws InterruptedException {
+		final String[] programs = sources.toArray(new String[sources.size()]);
+		final CheckResult[] results = new CheckResult[programs.length];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int from = 0; from < programs.length; from += PROGRAMS_PER_TASK) {
+			final int start = from, end = Math.min(programs.length, from + PROGRAMS_PER_TASK);
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int i = start; i < end; i++)
+						results[i] = check(programs[i], maxErrors);
+					return null;
+				}
+			});
+		}
+		for (Future<Void> task : executor.invokeAll(tasks)) {
+			try {
+				task.get();
+			}
+			catch (ExecutionException e) {
+				throw new RuntimeException("Checking a batch failed", e.getCause());
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Check one program of a batch.
+	 */
+	private static CheckResult check(String source, int maxErrors) {
+		Program program;
+		try {
+			program = Parser.parse(source);
+		}
+		catch (Exception e) {
+			return new CheckResult(e);
+		}
+		catch (TokenMgrError e) {
+			// The lexer reports errors like the generated one, as Errors
+			return new CheckResult(new ParseException(e.getMessage()));
+		}
+		BufferedErrorSink sink = new BufferedErrorSink();
+		TypeCheckerImplementation checker = new TypeCheckerImplementation(program, new Attributes());
+		checker.setErrorSink(sink);
+		checker.setMaxErrors(maxErrors);
+		// The batch is what runs in parallel
+		checker.setPool(null);
+		try {
+			checker.typeCheck();
+		}
+		catch (TypeCheckerException e) {
+			// The errors are in the sink
+		}
+		return new CheckResult(sink.messages());
 	}
 
 }
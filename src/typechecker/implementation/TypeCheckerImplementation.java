@@ -1,15 +1,38 @@
 package typechecker.implementation;
 
+import java.util.concurrent.ForkJoinPool;
+
+import ast.Attributes;
 import ast.FunctionDeclaration;
 import ast.Program;
+import ast.SymbolMap;
 import ast.Type;
+import typechecker.BufferedErrorSink;
 import typechecker.ErrorReport;
+import typechecker.ErrorSink;
 import typechecker.TypeChecked;
 import typechecker.TypeCheckerException;
 import util.ImpTable;
+import visitor.ExpressionWalker;
 
 
 public class TypeCheckerImplementation extends TypeChecked {
+
+	/**
+	 * How {@link #typeCheck()} goes about it: building the symbol table
+	 * first (Phase 1) and then checking the types (Phase 2), or both in a
+	 * single walk over the program. They report the same errors in the same
+	 * order, except about a function used before its declaration: phase 1
+	 * declares every function first, so TWO_PHASE reports it against the
+	 * function's type where FUSED finds it unknown.
+	 * <p>
+	 * TWO_PHASE is the default.
+	 */
+	public enum Mode {
+		TWO_PHASE, FUSED
+	}
+
+	private Mode mode = Mode.TWO_PHASE;
 	
 	/**
 	 * The AST of the program we are type checking.
@@ -21,25 +44,125 @@ public class TypeCheckerImplementation extends TypeChecked {
 	 */
 	private ErrorReport errors = new ErrorReport();
 
+	/**
+	 * How many errors to stop checking at.
+	 */
+	private int maxErrors = Integer.MAX_VALUE;
+
+	/**
+	 * Where the bodies of functions are checked, see
+	 * {@link TypeCheckVisitor#setPool(ForkJoinPool)}.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * How deep the visitors recurse into expressions.
+	 */
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+
 	/**
 	 * The symbol table computed by phase 1:
 	 */
-	private ImpTable<Type> variables;
+	private SymbolMap<Type> variables;
 	
 	/**
 	 * The function table computed by phase 2:
 	 */
-	private ImpTable<FunctionDeclaration> functionExps;
+	private SymbolMap<FunctionDeclaration> functionExps;
+
+	/**
+	 * Where the types and constant values of the expressions go.
+	 */
+	private Attributes attributes;
 
+	/**
+	 * Check a program, keeping what is found out about its expressions in
+	 * Attributes of its own, see {@link #getAttributes()}.
+	 */
 	public TypeCheckerImplementation(Program program) {
+		this(program, new Attributes());
+	}
+
+	/**
+	 * Check a program, keeping what is found out about its expressions in
+	 * the given Attributes, e.g. one for each compilation.
+	 */
+	public TypeCheckerImplementation(Program program, Attributes attributes) {
 		this.program = program;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Check in the given mode rather than the default TWO_PHASE one.
+	 */
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Send the error messages somewhere else than to System.out, e.g. a
+	 * {@link BufferedErrorSink} to print them all at once, or
+	 * {@link ErrorSink#DISCARD}. Call this before checking.
+	 */
+	public void setErrorSink(ErrorSink sink) {
+		errors = new ErrorReport(sink);
+		errors.setMaxErrors(maxErrors);
+	}
+
+	/**
+	 * Stop checking as soon as the given number of errors has been found,
+	 * and raise the TypeCheckerException then. 1 fails fast, when only
+	 * whether the program is correct matters. The errors are the ones a
+	 * full report would start with: a fused check keeps its type errors
+	 * until it has found all the errors about definitions, so it only stops
+	 * early on those (see {@link TypeCheckVisitor#fused}).
+	 */
+	public void setMaxErrors(int maxErrors) {
+		errors.setMaxErrors(maxErrors);
+		this.maxErrors = maxErrors;
 	}
 
+	/**
+	 * Check the bodies of functions on the given pool, while the rest of the
+	 * program is checked, or in order with it if the pool is null (the
+	 * default). Only programs with many functions use the pool.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Have the visitors walk expressions from the given depth on, see
+	 * {@link TypeCheckVisitor#setRecursionLimit(int)}.
+	 */
+	public void setRecursionLimit(int limit) {
+		recursionLimit = limit;
+	}
+
+	/**
+	 * Check the program, recording what is found about its expressions in
+	 * {@link #getAttributes()}.
+	 */
 	public TypeChecked typeCheck() throws TypeCheckerException {
-		//Phase 1:
-		variables = buildTable();
-		//Phase 2:
-		program.accept(new TypeCheckVisitor(variables, functionExps, errors));
+		try {
+			TypeCheckVisitor checker;
+			if (mode == Mode.FUSED) {
+				variables = new SymbolMap<Type>(program.symbols);
+				checker = TypeCheckVisitor.fused(variables, functionExps, errors, attributes);
+			}
+			else {
+				//Phase 1:
+				variables = program.accept(symbolTableBuilder());
+				//Phase 2:
+				checker = new TypeCheckVisitor(variables, functionExps, errors, attributes);
+			}
+			checker.setPool(pool);
+			checker.setRecursionLimit(recursionLimit);
+			checker.dispatch(program);
+		}
+		catch (ErrorReport.TooManyErrors e) {
+			// The checking stopped early, the errors so far are in the report
+		}
 		//Throw an exception if there were errors:
 		errors.close();
 		// If there was no exception:
@@ -51,23 +174,43 @@ public class TypeCheckerImplementation extends TypeChecked {
 	 * It has only been made public to allow us to test Phase 1 of the typechecker
 	 * in isolation. In normal operation (not unit testing) this method should 
 	 * not be called by code outside the type checker.
+	 * <p>
+	 * The checker itself keeps the table in a {@link SymbolMap}, this returns
+	 * a copy of it keyed by name.
 	 */
 	public ImpTable<Type> buildTable() {
-		variables = program.accept(new BuildSymbolTableVisitor(errors));
-		return variables;
+		variables = program.accept(symbolTableBuilder());
+		return variables.toImpTable();
 	}
 
 	public ImpTable<Type> typeCheckPhaseTwo() throws TypeCheckerException {
-		program.accept(new TypeCheckVisitor(variables, functionExps, errors));
+		TypeCheckVisitor checker = new TypeCheckVisitor(variables, functionExps, errors, attributes);
+		checker.setRecursionLimit(recursionLimit);
+		program.accept(checker);
 		errors.close();
-		return variables;
+		return variables.toImpTable();
 	}
+	private BuildSymbolTableVisitor symbolTableBuilder() {
+		BuildSymbolTableVisitor builder = new BuildSymbolTableVisitor(errors);
+		builder.setRecursionLimit(recursionLimit);
+		return builder;
+	}
+
 	public Program getProgram() {
 		return program;
 	}
 
 	public ImpTable<Type> getTable() {
+		return variables.toImpTable();
+	}
+
+	public SymbolMap<Type> getSymbolMap() {
 		return variables;
 	}
 
+	@Override
+	public Attributes getAttributes() {
+		return attributes;
+	}
+
 }
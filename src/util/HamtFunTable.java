@@ -0,0 +1,284 @@
+package util;
+
+/**
+ * A functional table with the same operations as {@link FunTable}, kept in a
+ * hash array mapped trie rather than in a chain of bindings.
+ * <p>
+ * The trie branches 32 ways on 5 bits of the hash of the name at each
+ * level, and each node only has room for the branches it uses (a bitmap
+ * tells which). lookup and insert go down one path, so they take
+ * O(log32 N) steps instead of walking up to N bindings. insert copies the
+ * nodes on its path and shares all the others with the table it was called
+ * on, which stays as it was.
+ * <p>
+ * merge walks both tries together and only goes down where both have
+ * something: a subtree only one of them has, or one they share, is taken
+ * as it is.
+ * <p>
+ * Names whose hashes are equal are kept together in a collision node at
+ * the bottom of the trie.
+ */
+public final class HamtFunTable<V> implements Lookup<V> {
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private static final HamtFunTable<Object> EMPTY = new HamtFunTable<Object>(null);
+
+	/**
+	 * The root of the trie, null for the empty table.
+	 */
+	private final Node root;
+
+	private HamtFunTable(Node root) {
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <V> HamtFunTable<V> theEmpty() {
+		return (HamtFunTable<V>) EMPTY;
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @return A table with id bound to value, and the other bindings of this
+	 * one.
+	 */
+	public HamtFunTable<V> insert(String id, V value) {
+		Node node = root == null ? BitmapNode.EMPTY : root;
+		return new HamtFunTable<V>(node.insert(0, hash(id), id, value, true));
+	}
+
+	@SuppressWarnings("unchecked")
+	public V lookup(String id) {
+		return root == null ? null : (V) root.find(0, hash(id), id);
+	}
+
+	/**
+	 * @return A table with the bindings of this table and those of superTable
+	 * for the names this one doesn't have: this table overrides superTable.
+	 */
+	public HamtFunTable<V> merge(HamtFunTable<V> superTable) {
+		if (superTable.root == null)
+			return this;
+		if (root == null)
+			return superTable;
+		return new HamtFunTable<V>(merge(root, superTable.root, 0));
+	}
+
+	private static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private static int bit(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	//// Nodes ////////////////////////////////
+
+	private static abstract class Node {
+
+		/**
+		 * @return The value of key, or null.
+		 */
+		abstract Object find(int shift, int hash, String key);
+
+		/**
+		 * @return This node with key bound to value. If key is there already,
+		 * its value is only replaced if override.
+		 */
+		abstract Node insert(int shift, int hash, String key, Object value, boolean override);
+	}
+
+	/**
+	 * A node with up to 32 branches, each either a binding or a node one
+	 * level down. They are kept in array, two slots each: the key and its
+	 * value, or null and the node.
+	 */
+	private static final class BitmapNode extends Node {
+
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		final int bitmap;
+		final Object[] array;
+
+		BitmapNode(int bitmap, Object[] array) {
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		/**
+		 * @return Where the branch for bit is in array.
+		 */
+		int index(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		Object find(int shift, int hash, String key) {
+			int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return null;
+			int i = index(bit);
+			Object k = array[i];
+			if (k == null)
+				return ((Node) array[i + 1]).find(shift + BITS, hash, key);
+			return key.equals(k) ? array[i + 1] : null;
+		}
+
+		@Override
+		Node insert(int shift, int hash, String key, Object value, boolean override) {
+			int bit = bit(hash, shift);
+			int i = index(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] bigger = new Object[array.length + 2];
+				System.arraycopy(array, 0, bigger, 0, i);
+				bigger[i] = key;
+				bigger[i + 1] = value;
+				System.arraycopy(array, i, bigger, i + 2, array.length - i);
+				return new BitmapNode(bitmap | bit, bigger);
+			}
+			Object k = array[i], v = array[i + 1];
+			if (k == null) {
+				Node child = ((Node) v).insert(shift + BITS, hash, key, value, override);
+				return child == v ? this : with(i, null, child);
+			}
+			if (key.equals(k))
+				return !override || v == value ? this : with(i, k, value);
+			return with(i, null, node(shift + BITS, hash((String) k), (String) k, v, hash, key, value));
+		}
+
+		/**
+		 * @return A copy of this node with another branch at i.
+		 */
+		BitmapNode with(int i, Object key, Object value) {
+			Object[] copy = array.clone();
+			copy[i] = key;
+			copy[i + 1] = value;
+			return new BitmapNode(bitmap, copy);
+		}
+	}
+
+	/**
+	 * The bindings of names that have the same hash.
+	 */
+	private static final class CollisionNode extends Node {
+
+		final int hash;
+		final Object[] array;
+
+		CollisionNode(int hash, Object[] array) {
+			this.hash = hash;
+			this.array = array;
+		}
+
+		@Override
+		Object find(int shift, int hash, String key) {
+			if (hash != this.hash)
+				return null;
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i]))
+					return array[i + 1];
+			}
+			return null;
+		}
+
+		@Override
+		Node insert(int shift, int hash, String key, Object value, boolean override) {
+			if (hash != this.hash) {
+				// Make room for key in a node above this one
+				BitmapNode node = new BitmapNode(bit(this.hash, shift), new Object[] { null, this });
+				return node.insert(shift, hash, key, value, override);
+			}
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i])) {
+					if (!override || array[i + 1] == value)
+						return this;
+					Object[] copy = array.clone();
+					copy[i + 1] = value;
+					return new CollisionNode(hash, copy);
+				}
+			}
+			Object[] bigger = new Object[array.length + 2];
+			System.arraycopy(array, 0, bigger, 0, array.length);
+			bigger[array.length] = key;
+			bigger[array.length + 1] = value;
+			return new CollisionNode(hash, bigger);
+		}
+	}
+
+	/**
+	 * @return A node for two different keys, at the given level.
+	 */
+	private static Node node(int shift, int hash1, String key1, Object value1, int hash2, String key2,
+			Object value2) {
+		if (hash1 == hash2)
+			return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+		return BitmapNode.EMPTY.insert(shift, hash1, key1, value1, true).insert(shift, hash2, key2, value2, true);
+	}
+
+	/**
+	 * @return A node with the bindings of a and those of b that a doesn't
+	 * have, sharing what it can with both.
+	 */
+	private static Node merge(Node a, Node b, int shift) {
+		if (a == b)
+			return a;
+		if (a instanceof CollisionNode) {
+			CollisionNode c = (CollisionNode) a;
+			for (int i = 0; i < c.array.length; i += 2)
+				b = b.insert(shift, c.hash, (String) c.array[i], c.array[i + 1], true);
+			return b;
+		}
+		if (b instanceof CollisionNode) {
+			CollisionNode c = (CollisionNode) b;
+			for (int i = 0; i < c.array.length; i += 2)
+				a = a.insert(shift, c.hash, (String) c.array[i], c.array[i + 1], false);
+			return a;
+		}
+		BitmapNode x = (BitmapNode) a, y = (BitmapNode) b;
+		int bitmap = x.bitmap | y.bitmap;
+		Object[] array = new Object[2 * Integer.bitCount(bitmap)];
+		boolean same = bitmap == x.bitmap;
+		for (int bits = bitmap, i = 0; bits != 0; bits &= bits - 1, i += 2) {
+			int bit = bits & -bits;
+			if ((y.bitmap & bit) == 0) {
+				int j = x.index(bit);
+				array[i] = x.array[j];
+				array[i + 1] = x.array[j + 1];
+				continue;
+			}
+			int k = y.index(bit);
+			Object kb = y.array[k], vb = y.array[k + 1];
+			if ((x.bitmap & bit) == 0) {
+				array[i] = kb;
+				array[i + 1] = vb;
+				continue;
+			}
+			int j = x.index(bit);
+			Object ka = x.array[j], va = x.array[j + 1];
+			if (ka != null && kb != null) {
+				if (ka.equals(kb)) {
+					array[i] = ka;
+					array[i + 1] = va;
+				}
+				else
+					array[i + 1] = node(shift + BITS, hash((String) ka), (String) ka, va, hash((String) kb),
+							(String) kb, vb);
+			}
+			else if (ka != null)
+				array[i + 1] = ((Node) vb).insert(shift + BITS, hash((String) ka), (String) ka, va, true);
+			else if (kb != null)
+				array[i + 1] = ((Node) va).insert(shift + BITS, hash((String) kb), (String) kb, vb, false);
+			else
+				array[i + 1] = merge((Node) va, (Node) vb, shift + BITS);
+			same = same && array[i] == ka && array[i + 1] == va;
+		}
+		return same ? x : new BitmapNode(bitmap, array);
+	}
+
+}
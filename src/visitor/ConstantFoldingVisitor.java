@@ -0,0 +1,110 @@
+package visitor;
+
+import ast.Attributes;
+import ast.Conditional;
+import ast.Expression;
+import ast.IntegerLiteral;
+import ast.LessThan;
+import ast.Minus;
+import ast.Not;
+import ast.Plus;
+import ast.Times;
+import typechecker.TypeChecked;
+
+/**
+ * Replaces arithmetic on integer literals by its result, and conditionals
+ * whose condition is a constant by the branch it picks. The arithmetic
+ * wraps around like it does at run time.
+ * <p>
+ * The language has no boolean literals, so comparisons are not replaced,
+ * but a condition made of comparisons of literals and "!" is still known.
+ * <p>
+ * Picking a branch drops the other one, and the type errors in it with
+ * it: <code>1 < 2 ? 5 : !3</code> would become a correct <code>5</code>.
+ * So conditionals are only folded in a program that passed type checking,
+ * using the constants the checker found in it for the conditions of its
+ * own nodes.
+ */
+public class ConstantFoldingVisitor extends RewriteVisitor {
+
+	/**
+	 * What the checker found about the program, null if conditionals are
+	 * not folded.
+	 */
+	private final Attributes attributes;
+
+	/**
+	 * Fold arithmetic only, in any program.
+	 */
+	public ConstantFoldingVisitor() {
+		attributes = null;
+	}
+
+	/**
+	 * Fold conditionals as well, in the program that was checked (checked
+	 * is what the type checker returned for it), or in a rewrite of it.
+	 */
+	public ConstantFoldingVisitor(TypeChecked checked) {
+		if (checked == null)
+			throw new IllegalArgumentException("Conditionals are only folded in checked programs");
+		attributes = checked.getAttributes();
+	}
+
+	@Override
+	protected Expression visit(Plus n) {
+		if (n.e1 instanceof IntegerLiteral && n.e2 instanceof IntegerLiteral)
+			return factory().integer(((IntegerLiteral) n.e1).value + ((IntegerLiteral) n.e2).value);
+		return n;
+	}
+
+	@Override
+	protected Expression visit(Minus n) {
+		if (n.e1 instanceof IntegerLiteral && n.e2 instanceof IntegerLiteral)
+			return factory().integer(((IntegerLiteral) n.e1).value - ((IntegerLiteral) n.e2).value);
+		return n;
+	}
+
+	@Override
+	protected Expression visit(Times n) {
+		if (n.e1 instanceof IntegerLiteral && n.e2 instanceof IntegerLiteral)
+			return factory().integer(((IntegerLiteral) n.e1).value * ((IntegerLiteral) n.e2).value);
+		return n;
+	}
+
+	@Override
+	protected Expression visit(Conditional n) {
+		if (attributes == null)
+			return n;
+		switch (condition(n.e1)) {
+		case 1:
+			return n.e2;
+		case 0:
+			return n.e3;
+		default:
+			return n;
+		}
+	}
+
+	/**
+	 * @return 1 if a condition is always true, 0 if it is always false, and
+	 * -1 if that is not known. The checker knows it for the conditions in
+	 * the checked program, a rewritten one is looked at.
+	 */
+	private int condition(Expression e) {
+		if (attributes.isConstant(e))
+			return attributes.constant(e) != 0 ? 1 : 0;
+		int nots = 0;
+		while (e instanceof Not) {
+			e = ((Not) e).e;
+			nots++;
+		}
+		if (!(e instanceof LessThan))
+			return -1;
+		LessThan l = (LessThan) e;
+		if (!(l.e1 instanceof IntegerLiteral && l.e2 instanceof IntegerLiteral))
+			return -1;
+		int value = ((IntegerLiteral) l.e1).value < ((IntegerLiteral) l.e2).value ? 1 : 0;
+		return nots % 2 == 0 ? value : 1 - value;
+	}
+
+}
@@ -7,6 +7,7 @@ import ast.Assign;
 import ast.BooleanType;
 import ast.Conditional;
 import ast.FunctionDeclaration;
+import ast.FunctionType;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -49,7 +50,7 @@ import ast.UnknownType;
  * 
  * @author kdvolder
  */
-public class DefaultVisitor<R> implements Visitor<R> {
+public class DefaultVisitor<R> extends SwitchVisitor<R> {
 
 	@Override
 	public <T extends AST> R visit(NodeList<T> ns) {
@@ -126,6 +127,11 @@ public class DefaultVisitor<R> implements Visitor<R> {
 		throw new Error("Not implemented");
 	}
 
+	@Override
+	public R visit(FunctionType n) {
+		throw new Error("Not implemented");
+	}
+
 	@Override
 	public R visit(FunctionDeclaration n) {
 		throw new Error("Not implemented");
@@ -0,0 +1,24 @@
+package visitor;
+
+import ast.Expression;
+import ast.LessThan;
+import ast.Not;
+
+/**
+ * Replaces !!e by e, when e is a comparison or a negation, which are
+ * booleans whatever their operands are: for other expressions, !!e would
+ * be an error that e is not.
+ */
+public class DoubleNegationVisitor extends RewriteVisitor {
+
+	@Override
+	protected Expression visit(Not n) {
+		if (n.e instanceof Not) {
+			Expression e = ((Not) n.e).e;
+			if (e instanceof LessThan || e instanceof Not)
+				return e;
+		}
+		return n;
+	}
+
+}
@@ -0,0 +1,132 @@
+package visitor;
+
+import ast.AST;
+import ast.Conditional;
+import ast.Expression;
+import ast.LessThan;
+import ast.Minus;
+import ast.Not;
+import ast.Plus;
+import ast.Times;
+
+/**
+ * Walks an expression tree depth first, without recursion.
+ * <p>
+ * Visitors recurse through accept, which takes a few stack frames for every
+ * level of the tree, so machine generated expressions that are nested tens
+ * of thousands deep overflow the thread's stack. The visitors that go
+ * through whole programs therefore only recurse up to
+ * {@link #RECURSION_LIMIT} levels deep, and walk anything deeper with an
+ * ExpressionWalker, which keeps the path from the root on arrays in the
+ * heap.
+ * <p>
+ * A subclass gets told when the walk enters a node, after each child of a
+ * node has been walked, and when it leaves a node. The result returned for a
+ * node when leaving it is passed on to its parent.
+ */
+public abstract class ExpressionWalker<R> {
+
+	/**
+	 * How deep visitors recurse into an expression before they walk the rest
+	 * of it with an ExpressionWalker, unless they are given a limit of their
+	 * own.
+	 */
+	public static final int RECURSION_LIMIT = 500;
+
+	/**
+	 * The nodes on the path from the root to the current node, the index of
+	 * the next child to walk for each of them, and the results of the
+	 * children walked so far (three for each node).
+	 */
+	private Expression[] nodes = new Expression[16];
+	private int[] next = new int[16];
+	private Object[] results = new Object[48];
+	private int top = -1;
+
+	/**
+	 * Walk the tree under root.
+	 * @return The result of leaving root.
+	 */
+	@SuppressWarnings("unchecked")
+	public R walk(Expression root) {
+		int base = top;
+		push(root);
+		while (true) {
+			Expression n = nodes[top];
+			Expression child = child(n, next[top]);
+			if (child != null) {
+				push(child);
+				continue;
+			}
+			int r = top * 3;
+			R result = leave(n, (R) results[r], (R) results[r + 1], (R) results[r + 2]);
+			results[r] = results[r + 1] = results[r + 2] = null;
+			nodes[top--] = null;
+			if (top == base)
+				return result;
+			int i = next[top]++;
+			results[top * 3 + i] = result;
+			afterChild(nodes[top], i, result);
+		}
+	}
+
+	/**
+	 * Called before the children of n are walked.
+	 */
+	protected void enter(Expression n) {
+	}
+
+	/**
+	 * Called after the i-th child of n has been walked.
+	 */
+	protected void afterChild(Expression n, int i, R result) {
+	}
+
+	/**
+	 * Called after all the children of n have been walked, with their results
+	 * (null for children n doesn't have).
+	 * @return The result for n.
+	 */
+	protected abstract R leave(Expression n, R r1, R r2, R r3);
+
+	/**
+	 * @return The i-th child of n, or null if n has no more children.
+	 */
+	protected static Expression child(Expression n, int i) {
+		switch (n.kind()) {
+		case AST.PLUS:
+			return i == 0 ? ((Plus) n).e1 : i == 1 ? ((Plus) n).e2 : null;
+		case AST.MINUS:
+			return i == 0 ? ((Minus) n).e1 : i == 1 ? ((Minus) n).e2 : null;
+		case AST.TIMES:
+			return i == 0 ? ((Times) n).e1 : i == 1 ? ((Times) n).e2 : null;
+		case AST.LESS_THAN:
+			return i == 0 ? ((LessThan) n).e1 : i == 1 ? ((LessThan) n).e2 : null;
+		case AST.NOT:
+			return i == 0 ? ((Not) n).e : null;
+		case AST.CONDITIONAL:
+			Conditional c = (Conditional) n;
+			return i == 0 ? c.e1 : i == 1 ? c.e2 : i == 2 ? c.e3 : null;
+		default:
+			return null;
+		}
+	}
+
+	private void push(Expression n) {
+		if (++top == nodes.length) {
+			Expression[] biggerNodes = new Expression[top * 2];
+			System.arraycopy(nodes, 0, biggerNodes, 0, top);
+			nodes = biggerNodes;
+			int[] biggerNext = new int[top * 2];
+			System.arraycopy(next, 0, biggerNext, 0, top);
+			next = biggerNext;
+			Object[] biggerResults = new Object[top * 6];
+			System.arraycopy(results, 0, biggerResults, 0, top * 3);
+			results = biggerResults;
+		}
+		nodes[top] = n;
+		next[top] = 0;
+		enter(n);
+	}
+
+}
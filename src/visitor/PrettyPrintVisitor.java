@@ -7,7 +7,9 @@ import ast.AST;
 import ast.Assign;
 import ast.BooleanType;
 import ast.Conditional;
+import ast.Expression;
 import ast.FunctionDeclaration;
+import ast.FunctionType;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -42,9 +44,89 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	 */
 	private IndentingWriter out;
 	
+	/**
+	 * How deep we are inside of an expression, how deep to recurse, and the
+	 * walker used for expressions that are nested deeper.
+	 */
+	private int depth = 0;
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+	private Walker walker;
+
 	public PrettyPrintVisitor(PrintWriter out) {
 		this.out = new IndentingWriter(out);
 	}
+
+	/**
+	 * Walk expressions from the given depth on rather than from
+	 * {@link ExpressionWalker#RECURSION_LIMIT}, e.g. to test the walk on
+	 * small ones.
+	 */
+	public void setRecursionLimit(int limit) {
+		recursionLimit = limit;
+	}
+
+	private void print(Expression e) {
+		if (depth >= recursionLimit) {
+			if (walker == null)
+				walker = new Walker();
+			walker.walk(e);
+			return;
+		}
+		depth++;
+		e.accept(this);
+		depth--;
+	}
+
+	/**
+	 * Prints expressions in the same way as the visitor methods below.
+	 */
+	private class Walker extends ExpressionWalker<Void> {
+
+		@Override
+		protected void enter(Expression n) {
+			if (n instanceof Conditional)
+				out.print("( ");
+			else if (n instanceof Not)
+				out.print("!");
+			else if (child(n, 0) != null)
+				out.print("(");
+		}
+
+		@Override
+		protected void afterChild(Expression n, int i, Void result) {
+			if (n instanceof Conditional) {
+				if (i == 0)
+					out.print(" ? ");
+				else if (i == 1)
+					out.print(" : ");
+			}
+			else if (i == 0 && !(n instanceof Not))
+				out.print(operator(n));
+		}
+
+		@Override
+		protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+			if (n instanceof Conditional)
+				out.print(" )");
+			else if (n instanceof IntegerLiteral)
+				out.print(""+((IntegerLiteral) n).value);
+			else if (n instanceof IdentifierExp)
+				out.print(((IdentifierExp) n).name);
+			else if (!(n instanceof Not))
+				out.print(")");
+			return null;
+		}
+
+		private String operator(Expression n) {
+			if (n instanceof LessThan)
+				return " < ";
+			if (n instanceof Plus)
+				return " + ";
+			if (n instanceof Minus)
+				return " - ";
+			return " * ";
+		}
+	}
 	
 	///////////// Visitor methods /////////////////////////////////////////
 
@@ -67,6 +149,19 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visit(FunctionType n) {
+		n.result.accept(this);
+		out.print("(");
+		for (int i = 0; i < n.paramCount(); i++) {
+			if (i > 0)
+				out.print(", ");
+			n.param(i).accept(this);
+		}
+		out.print(")");
+		return null;
+	}
+
 	@Override
 	public Void visit(IntegerType n) {
 		out.print("int");
@@ -76,11 +171,11 @@ public class PrettyPrintVisitor implements Visitor<Void> {
   	@Override
 	public Void visit(Conditional n) {
 		out.print("( ");
-		n.e1.accept(this);
+		print(n.e1);
 		out.print(" ? ");
-		n.e2.accept(this);
+		print(n.e2);
 		out.print(" : ");
-		n.e3.accept(this);
+		print(n.e3);
 		out.print(" )");
 		return null;
 	}
@@ -88,7 +183,7 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(Print n) {
 		out.print("print ");
-		n.exp.accept(this);
+		print(n.exp);
 		out.println();
 		return null;
 	}
@@ -96,7 +191,7 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(Assign n) {
 		out.print(n.name + " = ");
-		n.value.accept(this);
+		print(n.value);
 		out.println(";");
 		return null;
 	}
@@ -104,9 +199,9 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(LessThan n) {
 		out.print("(");
-		n.e1.accept(this);
+		print(n.e1);
 		out.print(" < ");
-		n.e2.accept(this);
+		print(n.e2);
 		out.print(")");
 		return null;
 	}
@@ -114,9 +209,9 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(Plus n) {
 		out.print("(");
-		n.e1.accept(this);
+		print(n.e1);
 		out.print(" + ");
-		n.e2.accept(this);
+		print(n.e2);
 		out.print(")");
 		return null;
 	}
@@ -124,9 +219,9 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(Minus n) {
 		out.print("(");
-		n.e1.accept(this);
+		print(n.e1);
 		out.print(" - ");
-		n.e2.accept(this);
+		print(n.e2);
 		out.print(")");
 		return null;
 	}
@@ -134,9 +229,9 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(Times n) {
 		out.print("(");
-		n.e1.accept(this);
+		print(n.e1);
 		out.print(" * ");
-		n.e2.accept(this);
+		print(n.e2);
 		out.print(")");
 		return null;
 	}
@@ -156,7 +251,7 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 	@Override
 	public Void visit(Not n) {
 		out.print("!");
-		n.e.accept(this);
+		print(n.e);
 		return null;
 	}
 	
@@ -187,7 +282,7 @@ public class PrettyPrintVisitor implements Visitor<Void> {
 		out.print("{");
 		n.assign.accept(this);
 		out.print("return");
-		n.ret.accept(this);
+		print(n.ret);
 		return null;
 	}
 
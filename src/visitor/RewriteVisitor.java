@@ -0,0 +1,393 @@
+package visitor;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import ast.AST;
+import ast.Assign;
+import ast.Conditional;
+import ast.Expression;
+import ast.FunctionDeclaration;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.LessThan;
+import ast.Minus;
+import ast.NodeFactory;
+import ast.NodeList;
+import ast.Not;
+import ast.Plus;
+import ast.Print;
+import ast.Program;
+import ast.Statement;
+import ast.Times;
+
+/**
+ * Base class for passes that rewrite expressions, e.g. to fold constants.
+ * A pass overrides the visit methods for the kinds of nodes it rewrites:
+ * each gets a node whose children have been rewritten already, and returns
+ * either the node itself, if there's nothing to rewrite, or what to replace
+ * it with.
+ * <p>
+ * The tree is never changed (all the fields of nodes are final). A node is
+ * only made again when one of its children was replaced, everything else
+ * is shared between the old tree and the new one, and a Program, statement
+ * or list in which nothing changed is returned as it is.
+ * <p>
+ * Rewriting runs to a fixpoint: what a visit method returns is rewritten
+ * again, until nothing changes. Only the nodes the pass made itself with
+ * {@link #factory()} are looked at again, the subtrees it took from the
+ * node it was given are already rewritten, so after the one walk over the
+ * tree, the work done is proportional to the rewriting. A pass must make
+ * its nodes with {@link #factory()} for them to be rewritten. Several
+ * passes can be run together to a common fixpoint with
+ * {@link #combine(RewriteVisitor...)}.
+ * <p>
+ * Like {@link ExpressionWalker}, this keeps its own stack, so it can rewrite
+ * expressions of any depth.
+ * <p>
+ * A node that is shared (see {@link ast.HashConsingNodeFactory}) is walked
+ * once for each place it is used, like the other visitors do.
+ * <p>
+ * A pass must not turn an incorrect program into a correct one, e.g. by
+ * dropping a subexpression that has type errors: only rewrite what is
+ * known to be correct (see {@link ConstantFoldingVisitor}), or run the
+ * pass on a program that passed type checking. New nodes have no types or
+ * other {@link ast.Attributes}, a rewritten program has to be checked
+ * again for them.
+ */
+public abstract class RewriteVisitor {
+
+	/**
+	 * Makes the nodes with the factory the pass was given, and keeps those
+	 * that were not rewritten yet.
+	 */
+	private static class Recorder extends NodeFactory {
+
+		NodeFactory factory = new NodeFactory();
+		Set<Expression> fresh = newSet();
+
+		static Set<Expression> newSet() {
+			return Collections.newSetFromMap(new IdentityHashMap<Expression, Boolean>());
+		}
+
+		Expression made(Expression e) {
+			fresh.add(e);
+			return e;
+		}
+
+		void reset() {
+			// What is left was made but not used, clearing would cost as
+			// much as the table grew
+			if (!fresh.isEmpty())
+				fresh = newSet();
+		}
+
+		@Override
+		public Expression plus(Expression e1, Expression e2) {
+			return made(factory.plus(e1, e2));
+		}
+
+		@Override
+		public Expression minus(Expression e1, Expression e2) {
+			return made(factory.minus(e1, e2));
+		}
+
+		@Override
+		public Expression times(Expression e1, Expression e2) {
+			return made(factory.times(e1, e2));
+		}
+
+		@Override
+		public Expression lessThan(Expression e1, Expression e2) {
+			return made(factory.lessThan(e1, e2));
+		}
+
+		@Override
+		public Expression not(Expression e) {
+			return made(factory.not(e));
+		}
+
+		@Override
+		public Expression conditional(Expression e1, Expression e2, Expression e3) {
+			return made(factory.conditional(e1, e2, e3));
+		}
+
+		@Override
+		public Expression integer(int value) {
+			return made(factory.integer(value));
+		}
+
+		@Override
+		public Expression identifier(String name, int id) {
+			return made(factory.identifier(name, id));
+		}
+	}
+
+	private Recorder factory = new Recorder();
+
+	/**
+	 * The number of times a node was replaced.
+	 */
+	private int rewrites = 0;
+
+	/**
+	 * The explicit stack of the walk: the nodes being rewritten, the next
+	 * child to walk for each of them, and their children so far.
+	 */
+	private Expression[] nodes = new Expression[16];
+	private int[] next = new int[16];
+	private Expression[] children = new Expression[16 * 3];
+	private int top = -1;
+
+	/**
+	 * Make the nodes with another factory, e.g. a
+	 * {@link ast.HashConsingNodeFactory} to share them.
+	 */
+	public void setNodeFactory(NodeFactory factory) {
+		this.factory.factory = factory;
+	}
+
+	/**
+	 * @return The factory to make nodes with: the nodes it makes are
+	 * rewritten again.
+	 */
+	protected NodeFactory factory() {
+		return factory;
+	}
+
+	/**
+	 * @return The number of times a node was replaced so far.
+	 */
+	public int rewrites() {
+		return rewrites;
+	}
+
+	///////////// What to rewrite, overridden by passes ///////////////////
+
+	protected Expression visit(Plus n) {
+		return n;
+	}
+
+	protected Expression visit(Minus n) {
+		return n;
+	}
+
+	protected Expression visit(Times n) {
+		return n;
+	}
+
+	protected Expression visit(LessThan n) {
+		return n;
+	}
+
+	protected Expression visit(Not n) {
+		return n;
+	}
+
+	protected Expression visit(Conditional n) {
+		return n;
+	}
+
+	protected Expression visit(IntegerLiteral n) {
+		return n;
+	}
+
+	protected Expression visit(IdentifierExp n) {
+		return n;
+	}
+
+	/**
+	 * Call the visit method for the kind of node n is.
+	 */
+	protected Expression visitNode(Expression n) {
+		switch (n.kind()) {
+		case AST.PLUS:
+			return visit((Plus) n);
+		case AST.MINUS:
+			return visit((Minus) n);
+		case AST.TIMES:
+			return visit((Times) n);
+		case AST.LESS_THAN:
+			return visit((LessThan) n);
+		case AST.NOT:
+			return visit((Not) n);
+		case AST.CONDITIONAL:
+			return visit((Conditional) n);
+		case AST.INTEGER_LITERAL:
+			return visit((IntegerLiteral) n);
+		case AST.IDENTIFIER:
+			return visit((IdentifierExp) n);
+		default:
+			throw new IllegalArgumentException("Can't rewrite " + n);
+		}
+	}
+
+	/**
+	 * @return A pass that runs all the given passes to a common fixpoint. At
+	 * each node they are tried in order, the first one that rewrites it
+	 * wins. From then on, the passes make their nodes with the factory of
+	 * the combined pass, e.g. the one given to its
+	 * {@link #setNodeFactory(NodeFactory)}.
+	 */
+	public static RewriteVisitor combine(final RewriteVisitor... passes) {
+		RewriteVisitor combined = new RewriteVisitor() {
+			@Override
+			protected Expression visitNode(Expression n) {
+				for (RewriteVisitor pass : passes) {
+					Expression e = pass.visitNode(n);
+					if (e != n)
+						return e;
+				}
+				return n;
+			}
+		};
+		for (RewriteVisitor pass : passes)
+			pass.factory = combined.factory;
+		return combined;
+	}
+
+	///////////// Rewriting ///////////////////////////////////////////////
+
+	public Program rewrite(Program n) {
+		NodeList<Statement> statements = rewrite(n.statements);
+		Expression exp = rewrite(n.print.exp);
+		if (statements == n.statements && exp == n.print.exp)
+			return n;
+		return new Program(statements, exp == n.print.exp ? n.print : new Print(exp), n.symbols);
+	}
+
+	public Statement rewrite(Statement n) {
+		if (n instanceof Assign) {
+			Assign assign = (Assign) n;
+			Expression value = rewrite(assign.value);
+			return value == assign.value ? n : new Assign(assign.name, assign.id, value);
+		}
+		FunctionDeclaration function = (FunctionDeclaration) n;
+		NodeList<Statement> assign = rewrite(function.assign);
+		Expression ret = rewrite(function.ret);
+		if (assign == function.assign && ret == function.ret)
+			return n;
+		return new FunctionDeclaration(function.type, function.name, function.id, function.formal, assign, ret);
+	}
+
+	private NodeList<Statement> rewrite(NodeList<Statement> statements) {
+		NodeList<Statement> result = null;
+		for (int i = 0; i < statements.size(); i++) {
+			Statement statement = statements.elementAt(i);
+			Statement rewritten = rewrite(statement);
+			if (rewritten != statement && result == null) {
+				result = new NodeList<Statement>();
+				for (int j = 0; j < i; j++)
+					result.add(statements.elementAt(j));
+			}
+			if (result != null)
+				result.add(rewritten);
+		}
+		return result == null ? statements : result;
+	}
+
+	/**
+	 * @return The rewritten expression, which is e itself if nothing in it
+	 * was rewritten.
+	 */
+	public Expression rewrite(Expression e) {
+		factory.reset();
+		return walk(e, true);
+	}
+
+	/**
+	 * Rewrite e bottom up. Unless all, only walk into the nodes the pass
+	 * made that were not rewritten yet: the others are already rewritten.
+	 */
+	private Expression walk(Expression e, boolean all) {
+		int base = top;
+		push(e);
+		Expression result = null;
+		while (top > base) {
+			Expression n = nodes[top];
+			int i = next[top];
+			Expression child = ExpressionWalker.child(n, i);
+			if (child != null) {
+				next[top]++;
+				if (all || factory.fresh.contains(child))
+					push(child);
+				else
+					children[top * 3 + i] = child;
+				continue;
+			}
+			Expression rewritten = reduce(rebuild(n, top * 3));
+			children[top * 3] = children[top * 3 + 1] = children[top * 3 + 2] = null;
+			nodes[top--] = null;
+			if (top > base)
+				children[top * 3 + next[top] - 1] = rewritten;
+			else
+				result = rewritten;
+		}
+		return result;
+	}
+
+	/**
+	 * Run the pass on a node whose children are rewritten, and again on what
+	 * it returns, until it returns the node it was given.
+	 */
+	private Expression reduce(Expression n) {
+		Set<Expression> fresh = factory.fresh;
+		if (!fresh.isEmpty())
+			fresh.remove(n);
+		Expression e = visitNode(n);
+		if (e == n)
+			return n;
+		rewrites++;
+		// A subtree of n is rewritten already, new nodes may not be
+		return fresh.contains(e) ? walk(e, false) : e;
+	}
+
+	/**
+	 * @return n with the rewritten children at children[at..], made again
+	 * only if one of them changed.
+	 */
+	private Expression rebuild(Expression n, int at) {
+		Expression e1 = children[at], e2 = children[at + 1], e3 = children[at + 2];
+		if (n instanceof Plus) {
+			Plus p = (Plus) n;
+			return e1 == p.e1 && e2 == p.e2 ? n : factory.plus(e1, e2);
+		}
+		if (n instanceof Minus) {
+			Minus m = (Minus) n;
+			return e1 == m.e1 && e2 == m.e2 ? n : factory.minus(e1, e2);
+		}
+		if (n instanceof Times) {
+			Times t = (Times) n;
+			return e1 == t.e1 && e2 == t.e2 ? n : factory.times(e1, e2);
+		}
+		if (n instanceof LessThan) {
+			LessThan l = (LessThan) n;
+			return e1 == l.e1 && e2 == l.e2 ? n : factory.lessThan(e1, e2);
+		}
+		if (n instanceof Not)
+			return e1 == ((Not) n).e ? n : factory.not(e1);
+		if (n instanceof Conditional) {
+			Conditional c = (Conditional) n;
+			return e1 == c.e1 && e2 == c.e2 && e3 == c.e3 ? n : factory.conditional(e1, e2, e3);
+		}
+		return n;
+	}
+
+	private void push(Expression n) {
+		if (++top == nodes.length) {
+			Expression[] biggerNodes = new Expression[top * 2];
+			System.arraycopy(nodes, 0, biggerNodes, 0, top);
+			nodes = biggerNodes;
+			int[] biggerNext = new int[top * 2];
+			System.arraycopy(next, 0, biggerNext, 0, top);
+			next = biggerNext;
+			Expression[] biggerChildren = new Expression[top * 6];
+			System.arraycopy(children, 0, biggerChildren, 0, top * 3);
+			children = biggerChildren;
+		}
+		nodes[top] = n;
+		next[top] = 0;
+	}
+
+}
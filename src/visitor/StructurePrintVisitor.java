@@ -7,7 +7,9 @@ import ast.AST;
 import ast.Assign;
 import ast.BooleanType;
 import ast.Conditional;
+import ast.Expression;
 import ast.FunctionDeclaration;
+import ast.FunctionType;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -40,10 +42,64 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	 */
 	private IndentingWriter out;
 
+	/**
+	 * How deep we are inside of an expression, how deep to recurse, and the
+	 * walker used for expressions that are nested deeper.
+	 */
+	private int depth = 0;
+	private int recursionLimit = ExpressionWalker.RECURSION_LIMIT;
+	private Walker walker;
+
 	public StructurePrintVisitor(PrintWriter out) {
 		this.out = new IndentingWriter(out);
 	}
 
+	/**
+	 * Walk expressions from the given depth on rather than from
+	 * {@link ExpressionWalker#RECURSION_LIMIT}, e.g. to test the walk on
+	 * small ones.
+	 */
+	public void setRecursionLimit(int limit) {
+		recursionLimit = limit;
+	}
+
+	private void print(Expression e) {
+		if (depth >= recursionLimit) {
+			if (walker == null)
+				walker = new Walker();
+			walker.walk(e);
+			return;
+		}
+		depth++;
+		e.accept(this);
+		depth--;
+	}
+
+	/**
+	 * Prints expressions in the same way as the visitor methods below.
+	 */
+	private class Walker extends ExpressionWalker<Void> {
+
+		@Override
+		protected void enter(Expression n) {
+			if (n instanceof IntegerLiteral)
+				out.println("IntegerLiteral "+((IntegerLiteral) n).value);
+			else if (n instanceof IdentifierExp)
+				out.println("IdentifierExp " + ((IdentifierExp) n).name);
+			else {
+				out.println(n.getClass().getSimpleName());
+				out.indent();
+			}
+		}
+
+		@Override
+		protected Void leave(Expression n, Void r1, Void r2, Void r3) {
+			if (child(n, 0) != null)
+				out.outdent();
+			return null;
+		}
+	}
+
 	///////////// Visitor methods /////////////////////////////////////////
 
 	@Override
@@ -76,13 +132,19 @@ public class StructurePrintVisitor implements Visitor<Void> {
 		return null;
 	}
 
+	@Override
+	public Void visit(FunctionType n) {
+		out.println("FunctionType " + n);
+		return null;
+	}
+
 	@Override
 	public Void visit(Conditional n) {
 		out.println("Conditional");
 		out.indent();
-		n.e1.accept(this);
-		n.e2.accept(this);
-		n.e3.accept(this);
+		print(n.e1);
+		print(n.e2);
+		print(n.e3);
 		out.outdent();
 		return null;
 	}
@@ -90,7 +152,7 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(Print n) {
 		out.println("Print");
 		out.indent();
-		n.exp.accept(this);
+		print(n.exp);
 		out.outdent();
 		return null;
 	}
@@ -99,8 +161,8 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(Assign n) {
 		out.println("Assign");
 		out.indent();
-		new IdentifierExp(n.name).accept(this);
-		n.value.accept(this);
+		new IdentifierExp(n.name, n.id).accept(this);
+		print(n.value);
 		out.outdent();
 		return null;
 	}
@@ -109,8 +171,8 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(LessThan n) {
 		out.println("LessThan");
 		out.indent();
-		n.e1.accept(this);
-		n.e2.accept(this);
+		print(n.e1);
+		print(n.e2);
 		out.outdent();
 		return null;
 	}
@@ -119,8 +181,8 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(Plus n) {
 		out.println("Plus");
 		out.indent();
-		n.e1.accept(this);
-		n.e2.accept(this);
+		print(n.e1);
+		print(n.e2);
 		out.outdent();
 		return null;
 	}
@@ -129,8 +191,8 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(Minus n) {
 		out.println("Minus");
 		out.indent();
-		n.e1.accept(this);
-		n.e2.accept(this);
+		print(n.e1);
+		print(n.e2);
 		out.outdent();
 		return null;
 	}
@@ -139,8 +201,8 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(Times n) {
 		out.println("Times");
 		out.indent();
-		n.e1.accept(this);
-		n.e2.accept(this);
+		print(n.e1);
+		print(n.e2);
 		out.outdent();
 		return null;
 	}
@@ -161,7 +223,7 @@ public class StructurePrintVisitor implements Visitor<Void> {
 	public Void visit(Not n) {
 		out.println("Not");
 		out.indent();
-		n.e.accept(this);
+		print(n.e);
 		out.outdent();
 		return null;
 	}
@@ -194,7 +256,7 @@ public class StructurePrintVisitor implements Visitor<Void> {
 		// Return
 		out.println("return");
 		out.indent();
-		n.ret.accept(this);
+		print(n.ret);
 		
 		out.outdent();
 		out.outdent();
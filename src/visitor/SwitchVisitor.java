@@ -0,0 +1,82 @@
+package visitor;
+
+import ast.AST;
+import ast.Assign;
+import ast.BooleanType;
+import ast.Conditional;
+import ast.FunctionDeclaration;
+import ast.FunctionType;
+import ast.IdentifierExp;
+import ast.IntegerLiteral;
+import ast.IntegerType;
+import ast.LessThan;
+import ast.Minus;
+import ast.NodeList;
+import ast.Not;
+import ast.Plus;
+import ast.Print;
+import ast.Program;
+import ast.Times;
+import ast.UnknownType;
+
+/**
+ * A Visitor that can visit a node with {@link #dispatch(AST)} rather than
+ * with n.accept(this).
+ * <p>
+ * accept is a virtual call on the node, which then makes an interface call
+ * on the visitor. In a traversal that meets all the classes of nodes, both
+ * calls go to many different methods, so the JIT can't inline them.
+ * dispatch switches on the node's {@link AST#kind()} instead, and calls the
+ * visit method on this visitor, whose class the JIT usually knows.
+ * <p>
+ * A visitor opts in by extending this class and calling dispatch where it
+ * called accept. It still is a Visitor, nodes can still accept it.
+ */
+public abstract class SwitchVisitor<R> implements Visitor<R> {
+
+	/**
+	 * Visit n with the visit method for its kind, like n.accept(this).
+	 */
+	@SuppressWarnings("unchecked")
+	public R dispatch(AST n) {
+		switch (n.kind()) {
+		case AST.PLUS:
+			return visit((Plus) n);
+		case AST.MINUS:
+			return visit((Minus) n);
+		case AST.TIMES:
+			return visit((Times) n);
+		case AST.LESS_THAN:
+			return visit((LessThan) n);
+		case AST.NOT:
+			return visit((Not) n);
+		case AST.CONDITIONAL:
+			return visit((Conditional) n);
+		case AST.INTEGER_LITERAL:
+			return visit((IntegerLiteral) n);
+		case AST.IDENTIFIER:
+			return visit((IdentifierExp) n);
+		case AST.ASSIGN:
+			return visit((Assign) n);
+		case AST.FUNCTION_DECLARATION:
+			return visit((FunctionDeclaration) n);
+		case AST.PRINT:
+			return visit((Print) n);
+		case AST.PROGRAM:
+			return visit((Program) n);
+		case AST.NODE_LIST:
+			return visit((NodeList<AST>) n);
+		case AST.INTEGER_TYPE:
+			return visit((IntegerType) n);
+		case AST.BOOLEAN_TYPE:
+			return visit((BooleanType) n);
+		case AST.UNKNOWN_TYPE:
+			return visit((UnknownType) n);
+		case AST.FUNCTION_TYPE:
+			return visit((FunctionType) n);
+		default:
+			return n.accept(this);
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import ast.Assign;
 import ast.BooleanType;
 import ast.Conditional;
 import ast.FunctionDeclaration;
+import ast.FunctionType;
 import ast.IdentifierExp;
 import ast.IntegerLiteral;
 import ast.IntegerType;
@@ -57,6 +58,7 @@ public interface Visitor<R> {
 	public R visit(IntegerType n);
 	public R visit(BooleanType n);
 	public R visit(UnknownType n);
+	public R visit(FunctionType n);
 
 	// Functions
 	public R visit(FunctionDeclaration n);